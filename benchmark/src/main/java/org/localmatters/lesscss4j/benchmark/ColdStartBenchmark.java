@@ -0,0 +1,77 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.output.NullOutputStream;
+import org.localmatters.lesscss4j.compile.DefaultLessCssCompilerFactory;
+import org.localmatters.lesscss4j.compile.LessCssCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the first compile in a fresh JVM.  Every measurement is made in a new fork so it includes class loading,
+ * initialization of the lexer and parser tables and interpretation of code the JIT has not yet compiled.  The
+ * compiler is created during setup, optionally with warm up compiles, so the score is the latency of the first
+ * request served after initialization.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 0 )
+@Measurement( iterations = 1 )
+@Fork( 20 )
+public class ColdStartBenchmark
+{
+  @Param( { "less/css-big.less", "less/mixins-args.less" } )
+  public String fixture;
+
+  /**
+   * The number of warm up compiles performed when creating the compiler.
+   */
+  @Param( { "0", "1", "50" } )
+  public int warmUpIterations;
+
+  private FixtureStyleSheetResource _resource;
+  private LessCssCompiler _compiler;
+
+  @Setup
+  public void setUp()
+    throws IOException
+  {
+    _resource = FixtureStyleSheetResource.load( fixture );
+    final DefaultLessCssCompilerFactory factory = new DefaultLessCssCompilerFactory();
+    factory.setWarmUpIterations( warmUpIterations );
+    _compiler = factory.create();
+  }
+
+  @Benchmark
+  public void firstCompile()
+    throws IOException
+  {
+    _compiler.compile( _resource, new NullOutputStream(), null );
+  }
+}
@@ -0,0 +1,166 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.antlr.runtime.tree.Tree;
+import org.apache.commons.io.output.NullOutputStream;
+import org.localmatters.lesscss4j.compile.DefaultLessCssCompilerFactory;
+import org.localmatters.lesscss4j.compile.LessCssCompilerImpl;
+import org.localmatters.lesscss4j.model.StyleSheet;
+import org.localmatters.lesscss4j.output.StyleSheetWriter;
+import org.localmatters.lesscss4j.parser.Antlr4StyleSheetParser;
+import org.localmatters.lesscss4j.parser.LessCssStyleSheetParser;
+import org.localmatters.lesscss4j.parser.StyleSheetTree;
+import org.localmatters.lesscss4j.transform.StyleSheetEvaluationContext;
+import org.localmatters.lesscss4j.transform.Transformer;
+import org.localmatters.lesscss4j.transform.manager.TransformerManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures each phase of {@link LessCssCompilerImpl#compile} in isolation so that the dominant phase for a given
+ * stylesheet can be identified.  The input of each phase is produced once during setup by running the preceding
+ * phases, so a benchmark only ever measures the phase it is named after.
+ * <p/>
+ * Run with <code>buildr lesscss4j:benchmark:run</code> or directly via <code>org.openjdk.jmh.Main</code>.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+public class CompilePhaseBenchmark
+{
+  /**
+   * The fixtures from the compiler test suite.  <code>big.less</code> does not parse so its plain CSS twin is used.
+   */
+  @Param( { "css/big.css", "less/css-big.less", "less/mixins-args.less", "less/operations.less" } )
+  public String fixture;
+
+  private FixtureStyleSheetResource _resource;
+  private LessCssCompilerImpl _compiler;
+  private LessCssStyleSheetParser _parser;
+  private Antlr4StyleSheetParser _antlr4Parser;
+  private LessCssStyleSheetParser _scannerParser;
+  private TransformerManager _transformerManager;
+  private Transformer<StyleSheet> _styleSheetTransformer;
+  private StyleSheetWriter _writer;
+
+  private Tree _parseTree;
+  private StyleSheet _styleSheet;
+  private StyleSheet _transformed;
+
+  @Setup
+  public void setUp()
+    throws IOException
+  {
+    _resource = FixtureStyleSheetResource.load( fixture );
+    _compiler = (LessCssCompilerImpl) new DefaultLessCssCompilerFactory().create();
+    _parser = (LessCssStyleSheetParser) _compiler.getStyleSheetParser();
+    _antlr4Parser = new Antlr4StyleSheetParser();
+    _scannerParser = new LessCssStyleSheetParser();
+    _scannerParser.setScannerEnabled( true );
+    _transformerManager = _compiler.getTransformerManager();
+    _writer = _compiler.getStyleSheetWriter();
+
+    _parseTree = parse();
+    _styleSheet = create();
+    _styleSheetTransformer = _transformerManager.getTransformer( _styleSheet );
+    _transformed = transform();
+  }
+
+  /**
+   * Lexing and parsing of the stylesheet into an AST.
+   */
+  @Benchmark
+  public Tree parse()
+    throws IOException
+  {
+    return _parser.parseTree( _resource, null );
+  }
+
+  /**
+   * As {@link #parse()} but using the parser generated from the ANTLR 4 grammar.
+   */
+  @Benchmark
+  public Tree parseAntlr4()
+    throws IOException
+  {
+    return _antlr4Parser.parseTree( _resource, null );
+  }
+
+  /**
+   * As {@link #parse()} but tokenizing the stylesheet with the hand written scanner.
+   */
+  @Benchmark
+  public Tree parseScanner()
+    throws IOException
+  {
+    return _scannerParser.parseTree( _resource, null );
+  }
+
+  /**
+   * Construction of the model from the AST, including the parsing of any imported stylesheets.
+   */
+  @Benchmark
+  public StyleSheet create()
+  {
+    return _parser.getStyleSheetFactory().create( new StyleSheetTree( _parseTree, _resource ), null );
+  }
+
+  /**
+   * Evaluation of variables, mixins, nested rule sets and functions.
+   */
+  @Benchmark
+  public StyleSheet transform()
+  {
+    final StyleSheetEvaluationContext context = new StyleSheetEvaluationContext();
+    context.setResource( _resource );
+    return _styleSheetTransformer.transform( _styleSheet, context, _transformerManager ).get( 0 );
+  }
+
+  /**
+   * Serialization of the transformed stylesheet.
+   */
+  @Benchmark
+  public void write()
+    throws IOException
+  {
+    _writer.write( new NullOutputStream(), _transformed, null );
+  }
+
+  /**
+   * All of the phases above, as performed by the compiler.
+   */
+  @Benchmark
+  public void compile()
+    throws IOException
+  {
+    _compiler.compile( _resource, new NullOutputStream(), null );
+  }
+}
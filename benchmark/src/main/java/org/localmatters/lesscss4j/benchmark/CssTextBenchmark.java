@@ -0,0 +1,111 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.localmatters.lesscss4j.util.CssText;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the scanners in {@link CssText} with the regular expressions they replaced, for a typical colour function,
+ * import, character set and IE alpha filter.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+public class CssTextBenchmark
+{
+  private static final String COLOR_COMPONENT = "(-?\\d+(\\.\\d+)?||\\d+%?)";
+  private static final Pattern COLOR_FUNCTION = Pattern.compile(
+    "(?i)(?:rgb|hsl)a?\\s*\\(\\s*" + COLOR_COMPONENT + "\\s*,\\s*" + COLOR_COMPONENT + "\\s*,\\s*" +
+    COLOR_COMPONENT + "(?:\\s*,\\s*" + COLOR_COMPONENT + ")?\\s*\\)" );
+  private static final Pattern IMPORT_PATH =
+    Pattern.compile( "(?i:u\\s*r\\s*l\\(\\s*['\"]?|['\"])(.*?)(?:['\"]?\\s*\\)|['\"])" );
+  private static final String CHARSET_REGEX = "['\"]\\s*(\\S*)\\s*['\"]";
+  private static final Pattern IE_ALPHA_FILTER =
+    Pattern.compile( "(?i)['\"]progid:DXImageTransform\\.Microsoft\\.(Alpha\\(.*\\))['\"]" );
+
+  public String color = "rgba(255, 128, 0, 0.5)";
+  public String importPath = "url(\"common/layout.less\")";
+  public String charset = "\"UTF-8\"";
+  public String alphaFilter = "\"progid:DXImageTransform.Microsoft.Alpha(Opacity=80)\"";
+
+  @Benchmark
+  public String[] colorRegex()
+  {
+    final Matcher matcher = COLOR_FUNCTION.matcher( color );
+    return matcher.matches() ?
+           new String[]{ matcher.group( 1 ), matcher.group( 3 ), matcher.group( 5 ), matcher.group( 7 ) } :
+           null;
+  }
+
+  @Benchmark
+  public String[] colorScanner()
+  {
+    return CssText.parseColorFunction( color );
+  }
+
+  @Benchmark
+  public String importRegex()
+  {
+    final Matcher matcher = IMPORT_PATH.matcher( importPath );
+    return matcher.matches() ? matcher.group( 1 ) : null;
+  }
+
+  @Benchmark
+  public String importScanner()
+  {
+    return CssText.parseImportPath( importPath );
+  }
+
+  @Benchmark
+  public String charsetRegex()
+  {
+    return charset.replaceFirst( CHARSET_REGEX, "$1" );
+  }
+
+  @Benchmark
+  public String charsetScanner()
+  {
+    return CssText.unquoteCharset( charset );
+  }
+
+  @Benchmark
+  public String alphaFilterRegex()
+  {
+    final Matcher matcher = IE_ALPHA_FILTER.matcher( alphaFilter );
+    return matcher.matches() ? matcher.group( 1 ) : null;
+  }
+
+  @Benchmark
+  public String alphaFilterScanner()
+  {
+    return CssText.parseIEAlphaFilter( alphaFilter );
+  }
+}
@@ -0,0 +1,90 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import javax.annotation.Nonnull;
+import org.apache.commons.io.IOUtils;
+import org.localmatters.lesscss4j.parser.ContentStyleSheetResource;
+import org.localmatters.lesscss4j.parser.StyleSheetResource;
+
+/**
+ * A {@link StyleSheetResource} whose content is held in memory so that benchmarks measure the compiler rather than
+ * the file system.  The original URL is retained so that relative <code>@import</code> statements still resolve.
+ */
+public class FixtureStyleSheetResource
+  implements ContentStyleSheetResource
+{
+  @Nonnull
+  private final URL _url;
+  @Nonnull
+  private final byte[] _content;
+
+  public FixtureStyleSheetResource( @Nonnull final URL url, @Nonnull final byte[] content )
+  {
+    _url = url;
+    _content = content;
+  }
+
+  /**
+   * Load the named fixture from the classpath.
+   *
+   * @param resourceName The classpath resource name of the fixture. (e.g. <code>less/mixins.less</code>)
+   * @return The resource.
+   */
+  @Nonnull
+  public static FixtureStyleSheetResource load( @Nonnull final String resourceName )
+    throws IOException
+  {
+    final URL url = FixtureStyleSheetResource.class.getClassLoader().getResource( resourceName );
+    if ( null == url )
+    {
+      throw new IOException( "Unable to locate fixture " + resourceName );
+    }
+    try ( final InputStream input = url.openStream() )
+    {
+      return new FixtureStyleSheetResource( url, IOUtils.toByteArray( input ) );
+    }
+  }
+
+  @Nonnull
+  public byte[] getContent()
+  {
+    return _content;
+  }
+
+  @Nonnull
+  public InputStream getInputStream()
+  {
+    return new ByteArrayInputStream( _content );
+  }
+
+  @Nonnull
+  public ByteBuffer readContent()
+  {
+    return ByteBuffer.wrap( _content );
+  }
+
+  @Nonnull
+  public URL getUrl()
+  {
+    return _url;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.benchmark;
+
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import org.localmatters.lesscss4j.parser.StyleSheetResource;
+import org.localmatters.lesscss4j.parser.StyleSheetResourceLoader;
+
+/**
+ * The stylesheets produced by a {@link StyleSheetGenerator}.  Acts as the {@link StyleSheetResourceLoader} for the
+ * compiler so that <code>@import</code> statements resolve to the generated stylesheets.
+ */
+public class GeneratedStyleSheets
+  implements StyleSheetResourceLoader
+{
+  private final Map<String, FixtureStyleSheetResource> _resources = new LinkedHashMap<>();
+
+  void add( @Nonnull final URL url, @Nonnull final byte[] content )
+  {
+    _resources.put( url.toString(), new FixtureStyleSheetResource( url, content ) );
+  }
+
+  /**
+   * @return The stylesheet that imports all of the others.
+   */
+  @Nonnull
+  public FixtureStyleSheetResource getMain()
+  {
+    return _resources.values().iterator().next();
+  }
+
+  /**
+   * @return The number of stylesheets, including the main stylesheet.
+   */
+  public int getCount()
+  {
+    return _resources.size();
+  }
+
+  /**
+   * @return The combined size, in bytes, of all of the stylesheets.
+   */
+  public long getSize()
+  {
+    long size = 0;
+    for ( final FixtureStyleSheetResource resource : _resources.values() )
+    {
+      size += resource.getContent().length;
+    }
+    return size;
+  }
+
+  @Nonnull
+  public StyleSheetResource getResource( @Nonnull final URL url )
+  {
+    final FixtureStyleSheetResource resource = _resources.get( url.toString() );
+    if ( null == resource )
+    {
+      throw new IllegalArgumentException( "Not a generated stylesheet: " + url );
+    }
+    return resource;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Collection;
+import java.util.Collections;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * JMH profiler that reports the peak heap usage during each iteration.  The heap is collected and the peak usage of
+ * each heap memory pool is reset before the iteration.  The reported value is the sum of the peak usage of each pool
+ * and, as the pools may peak at different times, is an upper bound on the actual peak.
+ * <p/>
+ * Enable with <code>-prof org.localmatters.lesscss4j.benchmark.PeakHeapProfiler</code>.
+ */
+public class PeakHeapProfiler
+  implements InternalProfiler
+{
+  public String getDescription()
+  {
+    return "Peak heap usage";
+  }
+
+  public void beforeIteration( final BenchmarkParams benchmarkParams, final IterationParams iterationParams )
+  {
+    System.gc();
+    for ( final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+    {
+      if ( MemoryType.HEAP == pool.getType() )
+      {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  public Collection<? extends Result<?>> afterIteration( final BenchmarkParams benchmarkParams,
+                                                         final IterationParams iterationParams,
+                                                         final IterationResult result )
+  {
+    long peak = 0;
+    for ( final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+    {
+      if ( MemoryType.HEAP == pool.getType() && null != pool.getPeakUsage() )
+      {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return Collections.singletonList( new ScalarResult( "peak.heap", peak / ( 1024.0 * 1024.0 ), "MB",
+                                                        AggregationPolicy.MAX ) );
+  }
+}
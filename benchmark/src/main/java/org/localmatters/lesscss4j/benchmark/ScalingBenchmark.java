@@ -0,0 +1,150 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.benchmark;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.output.NullOutputStream;
+import org.localmatters.lesscss4j.compile.DefaultLessCssCompilerFactory;
+import org.localmatters.lesscss4j.compile.LessCssCompiler;
+import org.localmatters.lesscss4j.error.WriterErrorHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how compile time grows along each dimension of a generated stylesheet.  Every dimension starts from the
+ * same baseline stylesheet and only the named dimension is multiplied by <code>scale</code>, so plotting the score
+ * against the scale for a dimension shows where the compiler stops scaling linearly.  Run with
+ * <code>-prof org.localmatters.lesscss4j.benchmark.PeakHeapProfiler</code> to also record the peak heap usage.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class ScalingBenchmark
+{
+  public enum Dimension
+  {
+    RULE_SETS,
+    NESTING_DEPTH,
+    SELECTORS_PER_RULE,
+    MIXIN_FAN_OUT,
+    MIXIN_ARGUMENTS,
+    VARIABLES,
+    IMPORTS_FLAT,
+    IMPORTS_CHAIN,
+    IMPORTS_TREE
+  }
+
+  public static final int BASE_RULE_SET_COUNT = 200;
+  public static final int BASE_VARIABLE_COUNT = 10;
+
+  @Param
+  public Dimension dimension;
+
+  @Param( { "1", "2", "4", "8", "16", "32" } )
+  public int scale;
+
+  private LessCssCompiler _compiler;
+  private GeneratedStyleSheets _styleSheets;
+
+  @Setup
+  public void setUp()
+    throws IOException
+  {
+    _styleSheets = createGenerator( dimension, scale ).generate();
+
+    final DefaultLessCssCompilerFactory factory = new DefaultLessCssCompilerFactory();
+    factory.setStyleSheetResourceLoader( _styleSheets );
+    _compiler = factory.create();
+
+    // Fail fast rather than measuring the reporting of errors in the generated stylesheet
+    final WriterErrorHandler errorHandler = new WriterErrorHandler();
+    errorHandler.setWriter( new PrintWriter( System.err, true ) );
+    _compiler.compile( _styleSheets.getMain(), new NullOutputStream(), errorHandler );
+    if ( 0 != errorHandler.getErrorCount() )
+    {
+      throw new IllegalStateException( "Generated stylesheet for " + dimension + "=" + scale + " has errors" );
+    }
+  }
+
+  /**
+   * Create a generator for the baseline stylesheet with the specified dimension multiplied by the scale.
+   */
+  public static StyleSheetGenerator createGenerator( final Dimension dimension, final int scale )
+  {
+    final StyleSheetGenerator generator = new StyleSheetGenerator();
+    generator.setRuleSetCount( BASE_RULE_SET_COUNT );
+    generator.setNestingDepth( 1 );
+    generator.setSelectorsPerRule( 1 );
+    generator.setMixinFanOut( 1 );
+    generator.setMixinArgumentCount( 1 );
+    generator.setVariableCount( BASE_VARIABLE_COUNT );
+    switch ( dimension )
+    {
+      case RULE_SETS:
+        generator.setRuleSetCount( BASE_RULE_SET_COUNT * scale );
+        break;
+      case NESTING_DEPTH:
+        generator.setNestingDepth( scale );
+        break;
+      case SELECTORS_PER_RULE:
+        generator.setSelectorsPerRule( scale );
+        break;
+      case MIXIN_FAN_OUT:
+        generator.setMixinFanOut( scale );
+        break;
+      case MIXIN_ARGUMENTS:
+        generator.setMixinArgumentCount( scale );
+        break;
+      case VARIABLES:
+        generator.setVariableCount( BASE_VARIABLE_COUNT * scale );
+        break;
+      case IMPORTS_FLAT:
+        generator.setImportCount( scale );
+        generator.setImportShape( StyleSheetGenerator.ImportShape.FLAT );
+        break;
+      case IMPORTS_CHAIN:
+        generator.setImportCount( scale );
+        generator.setImportShape( StyleSheetGenerator.ImportShape.CHAIN );
+        break;
+      case IMPORTS_TREE:
+        generator.setImportCount( scale );
+        generator.setImportShape( StyleSheetGenerator.ImportShape.TREE );
+        break;
+    }
+    return generator;
+  }
+
+  @Benchmark
+  public void compile()
+    throws IOException
+  {
+    _compiler.compile( _styleSheets.getMain(), new NullOutputStream(), null );
+  }
+}
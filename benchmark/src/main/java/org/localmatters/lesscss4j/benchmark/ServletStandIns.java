@@ -0,0 +1,214 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Minimal in-memory stand-ins for the servlet container objects used by
+ * {@link org.localmatters.lesscss4j.servlet.LessCssServlet}.  Resources are served from the classpath and responses
+ * are discarded.  Only the methods used by the servlet are implemented, all other methods return a default value.
+ */
+final class ServletStandIns
+{
+  private ServletStandIns()
+  {
+  }
+
+  /**
+   * @return A servlet context that resolves resources against the classpath.
+   */
+  @Nonnull
+  static ServletContext newServletContext()
+  {
+    return newProxy( ServletContext.class, new Handler()
+    {
+      @Override
+      Object invoke( @Nonnull final String method, @Nullable final Object[] args )
+      {
+        switch ( method )
+        {
+          case "getResource":
+            return ServletStandIns.class.getClassLoader().getResource( stripLeadingSlash( (String) args[ 0 ] ) );
+          case "getContextPath":
+            return "";
+          default:
+            return null;
+        }
+      }
+    } );
+  }
+
+  @Nonnull
+  static ServletConfig newServletConfig( @Nonnull final ServletContext servletContext,
+                                         @Nonnull final Map<String, String> initParameters )
+  {
+    final Map<String, String> parameters = new HashMap<>( initParameters );
+    return new ServletConfig()
+    {
+      public String getServletName()
+      {
+        return "benchmark";
+      }
+
+      public ServletContext getServletContext()
+      {
+        return servletContext;
+      }
+
+      public String getInitParameter( final String name )
+      {
+        return parameters.get( name );
+      }
+
+      public Enumeration<String> getInitParameterNames()
+      {
+        return Collections.enumeration( parameters.keySet() );
+      }
+    };
+  }
+
+  /**
+   * @param pathInfo   The requested resource.
+   * @param parameters The request parameters.
+   * @return A GET request without conditional headers.
+   */
+  @Nonnull
+  static HttpServletRequest newRequest( @Nonnull final String pathInfo, @Nonnull final Map<String, String> parameters )
+  {
+    return newProxy( HttpServletRequest.class, new Handler()
+    {
+      @Override
+      Object invoke( @Nonnull final String method, @Nullable final Object[] args )
+      {
+        switch ( method )
+        {
+          case "getPathInfo":
+            return pathInfo;
+          case "getMethod":
+            return "GET";
+          case "getParameter":
+            return parameters.get( (String) args[ 0 ] );
+          case "getDateHeader":
+            return -1L;
+          default:
+            return null;
+        }
+      }
+    } );
+  }
+
+  /**
+   * @return A response that discards its content.  As it is stateless it may be shared between threads.
+   */
+  @Nonnull
+  static HttpServletResponse newResponse()
+  {
+    final ServletOutputStream output = new ServletOutputStream()
+    {
+      @Override
+      public boolean isReady()
+      {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener( final WriteListener writeListener )
+      {
+      }
+
+      @Override
+      public void write( final int b )
+      {
+      }
+
+      @Override
+      public void write( final byte[] b, final int off, final int len )
+      {
+      }
+    };
+    return newProxy( HttpServletResponse.class, new Handler()
+    {
+      @Override
+      Object invoke( @Nonnull final String method, @Nullable final Object[] args )
+      {
+        return "getOutputStream".equals( method ) ? output : null;
+      }
+    } );
+  }
+
+  @Nonnull
+  private static String stripLeadingSlash( @Nonnull final String path )
+  {
+    return path.startsWith( "/" ) ? path.substring( 1 ) : path;
+  }
+
+  @Nonnull
+  private static <T> T newProxy( @Nonnull final Class<T> type, @Nonnull final Handler handler )
+  {
+    final ClassLoader classLoader = ServletStandIns.class.getClassLoader();
+    return type.cast( Proxy.newProxyInstance( classLoader, new Class<?>[]{ type }, handler ) );
+  }
+
+  /**
+   * Dispatches on method name and substitutes the default value of primitive return types for null.
+   */
+  private abstract static class Handler
+    implements InvocationHandler
+  {
+    @Nullable
+    abstract Object invoke( @Nonnull String method, @Nullable Object[] args );
+
+    public final Object invoke( final Object proxy, final Method method, final Object[] args )
+    {
+      final Object result = invoke( method.getName(), args );
+      if ( null != result || !method.getReturnType().isPrimitive() )
+      {
+        return result;
+      }
+      else if ( boolean.class == method.getReturnType() )
+      {
+        return Boolean.FALSE;
+      }
+      else if ( long.class == method.getReturnType() )
+      {
+        return 0L;
+      }
+      else if ( int.class == method.getReturnType() )
+      {
+        return 0;
+      }
+      else
+      {
+        return null;
+      }
+    }
+  }
+}
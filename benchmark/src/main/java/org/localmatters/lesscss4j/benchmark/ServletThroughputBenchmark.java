@@ -0,0 +1,207 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.benchmark;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.localmatters.lesscss4j.servlet.LessCssServlet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Drives {@link LessCssServlet#service} from many threads using in-memory stand-ins for the servlet container.
+ * The throughput benchmark reports requests per second and the latency benchmark reports latency percentiles.
+ * Each thread requests the resources in <code>resources</code> in turn, starting at a different resource to the
+ * other threads.
+ * <p/>
+ * The scenarios are:
+ * <ul>
+ * <li>COLD: caching is disabled so every request compiles its resource.</li>
+ * <li>WARM: every resource is compiled before measuring and cached forever.</li>
+ * <li>EXPIRY: entries are cached for <code>cacheMillis</code> so threads contend to refresh them.</li>
+ * <li>CLEAR_CACHE_STORM: every <code>clearCacheInterval</code>th request of each thread clears the cache.</li>
+ * </ul>
+ * The {@link #main} method runs each scenario with 1 to 64 threads. When run via <code>org.openjdk.jmh.Main</code>
+ * the thread count is selected with <code>-t</code>.
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class ServletThroughputBenchmark
+{
+  public enum Scenario
+  {
+    COLD,
+    WARM,
+    EXPIRY,
+    CLEAR_CACHE_STORM
+  }
+
+  public static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32, 64 };
+
+  @Param
+  public Scenario scenario;
+
+  /**
+   * Comma separated list of the resources requested.
+   */
+  @Param( "less/tiny.less,less/mixins.less,less/css.less,less/variables.less,less/css-big.less" )
+  public String resources;
+
+  @Param( "10" )
+  public int cacheMillis;
+
+  @Param( "100" )
+  public int clearCacheInterval;
+
+  private LessCssServlet _servlet;
+  private HttpServletResponse _response;
+  private String[] _paths;
+
+  @Setup( Level.Trial )
+  public void setUp()
+    throws ServletException, IOException
+  {
+    _paths = resources.split( "," );
+    _response = ServletStandIns.newResponse();
+
+    final Map<String, String> initParameters = new HashMap<>();
+    initParameters.put( LessCssServlet.JMX_ENABLED, "false" );
+    if ( Scenario.EXPIRY == scenario )
+    {
+      initParameters.put( LessCssServlet.CACHE_MILLISECONDS_PARAM_NAME, String.valueOf( cacheMillis ) );
+    }
+
+    _servlet = new LessCssServlet();
+    _servlet.setCacheEnabled( Scenario.COLD != scenario );
+    _servlet.init( ServletStandIns.newServletConfig( ServletStandIns.newServletContext(), initParameters ) );
+
+    if ( Scenario.COLD != scenario )
+    {
+      for ( final String path : _paths )
+      {
+        _servlet.service( (ServletRequest) newRequest( path, false ), _response );
+      }
+    }
+  }
+
+  @TearDown( Level.Trial )
+  public void tearDown()
+  {
+    _servlet.destroy();
+  }
+
+  static HttpServletRequest newRequest( final String path, final boolean clearCache )
+  {
+    final Map<String, String> parameters =
+      clearCache ? Collections.singletonMap( LessCssServlet.CLEAR_CACHE, "true" ) : Collections.<String, String>emptyMap();
+    return ServletStandIns.newRequest( "/" + path, parameters );
+  }
+
+  @State( Scope.Thread )
+  public static class Client
+  {
+    private HttpServletRequest[] _requests;
+    private HttpServletRequest[] _clearCacheRequests;
+    private int _next;
+    private int _count;
+
+    @Setup( Level.Trial )
+    public void setUp( final ServletThroughputBenchmark benchmark )
+    {
+      final String[] paths = benchmark._paths;
+      _requests = new HttpServletRequest[ paths.length ];
+      _clearCacheRequests = new HttpServletRequest[ paths.length ];
+      for ( int i = 0; i < paths.length; i++ )
+      {
+        _requests[ i ] = newRequest( paths[ i ], false );
+        _clearCacheRequests[ i ] = newRequest( paths[ i ], true );
+      }
+      // Spread the threads across the resources
+      _next = System.identityHashCode( this ) % paths.length;
+    }
+
+    HttpServletRequest nextRequest( final ServletThroughputBenchmark benchmark )
+    {
+      final int index = _next;
+      _next = ( _next + 1 ) % _requests.length;
+      if ( Scenario.CLEAR_CACHE_STORM == benchmark.scenario && 0 == ++_count % benchmark.clearCacheInterval )
+      {
+        return _clearCacheRequests[ index ];
+      }
+      return _requests[ index ];
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode( Mode.Throughput )
+  @OutputTimeUnit( TimeUnit.SECONDS )
+  public void throughput( final Client client )
+    throws ServletException, IOException
+  {
+    _servlet.service( (ServletRequest) client.nextRequest( this ), _response );
+  }
+
+  @Benchmark
+  @BenchmarkMode( Mode.SampleTime )
+  @OutputTimeUnit( TimeUnit.MICROSECONDS )
+  public void latency( final Client client )
+    throws ServletException, IOException
+  {
+    _servlet.service( (ServletRequest) client.nextRequest( this ), _response );
+  }
+
+  /**
+   * Runs every scenario with each of {@link #THREAD_COUNTS}. Standard JMH command line options may be supplied.
+   */
+  public static void main( final String[] args )
+    throws RunnerException, CommandLineOptionException
+  {
+    final CommandLineOptions options = new CommandLineOptions( args );
+    for ( final int threads : THREAD_COUNTS )
+    {
+      new Runner( new OptionsBuilder()
+                    .parent( options )
+                    .include( ServletThroughputBenchmark.class.getName() )
+                    .threads( threads )
+                    .build() ).run();
+    }
+  }
+}
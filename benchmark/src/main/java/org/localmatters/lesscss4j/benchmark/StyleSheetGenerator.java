@@ -0,0 +1,316 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.benchmark;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * Generates LESS stylesheets of a tunable size and shape so that the cost of each language feature can be measured
+ * as it grows.  The generated stylesheets are held in memory and exposed via {@link GeneratedStyleSheets}.
+ * <p/>
+ * The variables and mixins are defined by the main stylesheet, or by a stylesheet that it imports first when there are
+ * imports.  Rule sets are distributed evenly across the main
+ * stylesheet and the imported stylesheets, each top level rule set containing a chain of nested rule sets.  Each rule
+ * set has {@link #setSelectorsPerRule selectorsPerRule} selectors so nesting multiplies the number of selectors
+ * written, and includes {@link #setMixinFanOut mixinFanOut} mixins.
+ */
+public class StyleSheetGenerator
+{
+  /**
+   * The shape of the <code>@import</code> graph.
+   */
+  public enum ImportShape
+  {
+    /**
+     * The main stylesheet imports every other stylesheet.
+     */
+    FLAT,
+    /**
+     * Each stylesheet imports the next.
+     */
+    CHAIN,
+    /**
+     * A balanced binary tree rooted at the main stylesheet.
+     */
+    TREE
+  }
+
+  public static final String BASE_URL = "file:/generated/";
+  public static final String MAIN_NAME = "main.less";
+  public static final String DEFINITIONS_NAME = "definitions.less";
+
+  private int _ruleSetCount = 100;
+  private int _nestingDepth = 1;
+  private int _selectorsPerRule = 1;
+  private int _mixinFanOut = 0;
+  private int _mixinArgumentCount = 0;
+  private int _variableCount = 0;
+  private int _importCount = 0;
+  private ImportShape _importShape = ImportShape.FLAT;
+
+  public int getRuleSetCount()
+  {
+    return _ruleSetCount;
+  }
+
+  /**
+   * @param ruleSetCount The number of top level rule sets, across all stylesheets.
+   */
+  public void setRuleSetCount( final int ruleSetCount )
+  {
+    _ruleSetCount = ruleSetCount;
+  }
+
+  public int getNestingDepth()
+  {
+    return _nestingDepth;
+  }
+
+  /**
+   * @param nestingDepth The depth of each top level rule set. A depth of 1 means no nested rule sets.
+   */
+  public void setNestingDepth( final int nestingDepth )
+  {
+    _nestingDepth = nestingDepth;
+  }
+
+  public int getSelectorsPerRule()
+  {
+    return _selectorsPerRule;
+  }
+
+  public void setSelectorsPerRule( final int selectorsPerRule )
+  {
+    _selectorsPerRule = selectorsPerRule;
+  }
+
+  public int getMixinFanOut()
+  {
+    return _mixinFanOut;
+  }
+
+  /**
+   * @param mixinFanOut The number of mixins defined, each of which is included by every rule set.
+   */
+  public void setMixinFanOut( final int mixinFanOut )
+  {
+    _mixinFanOut = mixinFanOut;
+  }
+
+  public int getMixinArgumentCount()
+  {
+    return _mixinArgumentCount;
+  }
+
+  /**
+   * @param mixinArgumentCount The number of arguments of each mixin. Each argument is used by one declaration.
+   */
+  public void setMixinArgumentCount( final int mixinArgumentCount )
+  {
+    _mixinArgumentCount = mixinArgumentCount;
+  }
+
+  public int getVariableCount()
+  {
+    return _variableCount;
+  }
+
+  /**
+   * @param variableCount The number of global variables. Declarations reference the variables in turn.
+   */
+  public void setVariableCount( final int variableCount )
+  {
+    _variableCount = variableCount;
+  }
+
+  public int getImportCount()
+  {
+    return _importCount;
+  }
+
+  /**
+   * @param importCount The number of stylesheets imported, in addition to the main stylesheet.
+   */
+  public void setImportCount( final int importCount )
+  {
+    _importCount = importCount;
+  }
+
+  public ImportShape getImportShape()
+  {
+    return _importShape;
+  }
+
+  public void setImportShape( @Nonnull final ImportShape importShape )
+  {
+    _importShape = importShape;
+  }
+
+  @Nonnull
+  public GeneratedStyleSheets generate()
+  {
+    final int fileCount = _importCount + 1;
+    final List<StringBuilder> files = new ArrayList<>( fileCount );
+    for ( int i = 0; i < fileCount; i++ )
+    {
+      files.add( new StringBuilder() );
+    }
+
+    // Imports must precede the other content of a stylesheet and mixins must be defined before they are used, so
+    // when there are imports the definitions are placed in a stylesheet that the main stylesheet imports first
+    final StringBuilder definitions = 0 == _importCount ? files.get( 0 ) : new StringBuilder();
+    if ( 0 != _importCount )
+    {
+      writeImport( files.get( 0 ), DEFINITIONS_NAME );
+    }
+    for ( int i = 1; i < fileCount; i++ )
+    {
+      writeImport( files.get( getImportParent( i ) ), getName( i ) );
+    }
+
+    writeVariables( definitions );
+    writeMixins( definitions );
+
+    for ( int i = 0; i < _ruleSetCount; i++ )
+    {
+      writeRuleSet( files.get( i % fileCount ), "r" + i, i, 1, "" );
+    }
+
+    final GeneratedStyleSheets styleSheets = new GeneratedStyleSheets();
+    for ( int i = 0; i < fileCount; i++ )
+    {
+      styleSheets.add( getUrl( getName( i ) ), files.get( i ).toString().getBytes( StandardCharsets.UTF_8 ) );
+    }
+    if ( 0 != _importCount )
+    {
+      styleSheets.add( getUrl( DEFINITIONS_NAME ), definitions.toString().getBytes( StandardCharsets.UTF_8 ) );
+    }
+    return styleSheets;
+  }
+
+  protected int getImportParent( final int index )
+  {
+    switch ( _importShape )
+    {
+      case CHAIN:
+        return index - 1;
+      case TREE:
+        return ( index - 1 ) / 2;
+      default:
+        return 0;
+    }
+  }
+
+  protected String getName( final int index )
+  {
+    return 0 == index ? MAIN_NAME : "import-" + index + ".less";
+  }
+
+  protected void writeImport( final StringBuilder output, final String name )
+  {
+    output.append( "@import url(\"" ).append( name ).append( "\");\n" );
+  }
+
+  protected void writeVariables( final StringBuilder output )
+  {
+    for ( int i = 0; i < _variableCount; i++ )
+    {
+      output.append( "@var" ).append( i ).append( ": " ).append( i + 1 ).append( "px;\n" );
+    }
+  }
+
+  protected void writeMixins( final StringBuilder output )
+  {
+    for ( int i = 0; i < _mixinFanOut; i++ )
+    {
+      output.append( ".mixin" ).append( i );
+      if ( 0 != _mixinArgumentCount )
+      {
+        output.append( " (" );
+        for ( int j = 0; j < _mixinArgumentCount; j++ )
+        {
+          output.append( 0 != j ? ", " : "" ).append( "@a" ).append( j ).append( ": " ).append( j ).append( "px" );
+        }
+        output.append( ")" );
+      }
+      output.append( " {\n" );
+      output.append( "  border-width: " ).append( i ).append( "px;\n" );
+      for ( int j = 0; j < _mixinArgumentCount; j++ )
+      {
+        output.append( "  margin-" ).append( j ).append( ": @a" ).append( j ).append( " * 2;\n" );
+      }
+      output.append( "}\n" );
+    }
+  }
+
+  protected void writeRuleSet( final StringBuilder output,
+                               final String name,
+                               final int index,
+                               final int depth,
+                               final String indent )
+  {
+    output.append( indent );
+    for ( int i = 0; i < _selectorsPerRule; i++ )
+    {
+      output.append( 0 != i ? ", ." : "." ).append( name ).append( "-s" ).append( i );
+    }
+    output.append( " {\n" );
+
+    final String bodyIndent = indent + "  ";
+    output.append( bodyIndent ).append( "color: #" ).append( String.format( "%06x", index & 0xFFFFFF ) ).append( ";\n" );
+    output.append( bodyIndent ).append( "width: " ).append( getValue( index ) ).append( ";\n" );
+    output.append( bodyIndent ).append( "height: " ).append( getValue( index + depth ) ).append( ";\n" );
+
+    for ( int i = 0; i < _mixinFanOut; i++ )
+    {
+      output.append( bodyIndent ).append( ".mixin" ).append( i ).append( "(" );
+      for ( int j = 0; j < _mixinArgumentCount; j++ )
+      {
+        output.append( 0 != j ? ", " : "" ).append( getValue( index + j ) );
+      }
+      output.append( ");\n" );
+    }
+
+    if ( depth < _nestingDepth )
+    {
+      writeRuleSet( output, name + "-n" + depth, index, depth + 1, bodyIndent );
+    }
+    output.append( indent ).append( "}\n" );
+  }
+
+  protected String getValue( final int index )
+  {
+    return 0 == _variableCount ? ( index % 100 ) + "px" : "@var" + ( index % _variableCount );
+  }
+
+  @Nonnull
+  protected static URL getUrl( @Nonnull final String name )
+  {
+    try
+    {
+      return new URL( new URL( BASE_URL ), name );
+    }
+    catch ( final MalformedURLException e )
+    {
+      throw new IllegalStateException( e );
+    }
+  }
+}
@@ -51,6 +51,8 @@ import org.localmatters.lesscss4j.error.ErrorUtils;
 }
 @lexer::header {
 package org.localmatters.lesscss4j.parser.antlr;
+
+import org.localmatters.lesscss4j.util.StringTable;
 }
 @members {
     private ErrorHandler _errorHandler;
@@ -64,11 +66,143 @@ package org.localmatters.lesscss4j.parser.antlr;
         return _errorCount;
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        _errorCount = 0;
+    }
+
     @Override
     public void displayRecognitionError(String[] tokenNames, RecognitionException e) {
         _errorCount++;
         ErrorUtils.handleError(_errorHandler, e, this);
     }
+
+    // The following methods look ahead over the buffered tokens to rule out alternatives that would otherwise
+    // be tried by backtracking.  Backtracking over every declaration to rule out a nested rule set or a mixin
+    // reference was the bulk of the time spent making decisions.  A check returning false must imply that the
+    // alternative can not match, so that the decisions choose the same alternatives as before.  Checks that
+    // are exact replace the syntactic predicate, the others are evaluated first thing within it.
+
+    /**
+     * Returns the first of the given token types found looking ahead from the current token, or EOF.
+     */
+    private int scanAhead(int type1, int type2, int type3, int type4) {
+        for (int i = 1; ; i++) {
+            int type = input.LA(i);
+            if (type == EOF || type == type1 || type == type2 || type == type3 || type == type4) {
+                return type;
+            }
+        }
+    }
+
+    /**
+     * A nested rule set must reach its opening brace before any semicolon or brace.
+     */
+    private boolean isNestedRuleSetAhead() {
+        return scanAhead(LBRACE, SEMI, RBRACE, LBRACE) == LBRACE;
+    }
+
+    /**
+     * Mixin references contain no colons so they must reach their semicolon first.  Declarations and variable
+     * definitions reach a colon first.
+     */
+    private boolean isMixinReferenceAhead() {
+        return scanAhead(SEMI, COLON, LBRACE, RBRACE) == SEMI;
+    }
+
+    private boolean isMixinAccessorAhead() {
+        int i;
+        if (input.LA(1) == HASH) {
+            i = 2;
+        } else if (input.LA(1) == DOT) {
+            i = 3;
+        } else {
+            return false;
+        }
+        while (input.LA(i) == WS) {
+            i++;
+        }
+        return input.LA(i) == LBRACKET;
+    }
+
+    /**
+     * Matches functionName WS* LPAREN.
+     */
+    private boolean isFunctionAhead() {
+        int i = 1;
+        if (!isIdent(input.LA(i)) && input.LA(i) != PERCENT) {
+            return false;
+        }
+        while ((input.LA(i + 1) == DOT || input.LA(i + 1) == COLON) && isIdent(input.LA(i + 2))) {
+            i += 2;
+        }
+        i++;
+        while (input.LA(i) == WS) {
+            i++;
+        }
+        return input.LA(i) == LPAREN;
+    }
+
+    /**
+     * A list of terms contains a separator followed by the next term before the end of the value.
+     */
+    private boolean isTermListAhead() {
+        for (int i = 1; ; i++) {
+            switch (input.LA(i)) {
+                case EOF:
+                case SEMI:
+                case RBRACE:
+                case IMPORTANT_SYM:
+                    return false;
+                case WS:
+                case COMMA:
+                    switch (input.LA(i + 1)) {
+                        case EOF:
+                        case SEMI:
+                        case RBRACE:
+                        case IMPORTANT_SYM:
+                        case WS:
+                        case COMMA:
+                            break;
+                        default:
+                            return true;
+                    }
+            }
+        }
+    }
+
+    private static boolean isIdent(int type) {
+        switch (type) {
+            case IDENT:
+            case ALPHA:
+            case EXPRESSION:
+            case CHARSET:
+            case MEDIA_SYM:
+            case IMPORT_SYM:
+            case PAGE_SYM:
+            case AND:
+            case ONLY:
+            case NOT:
+            case KEYFRAMES:
+            case FONT:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
+@lexer::members {
+    // Share the text of the tokens repeated throughout a stylesheet rather than
+    // creating it from the input each time it is requested.  The text is looked
+    // up by the characters of the token so no string is created when shared.
+    @Override
+    public Token emit() {
+        if (null == state.text && (IDENT == state.type || NUMBER == state.type || HASH == state.type)) {
+            state.text = StringTable.intern(input, getCharIndex() - state.tokenStartCharIndex);
+        }
+        return super.emit();
+    }
 }
 
 // -------------
@@ -222,8 +356,8 @@ ruleSet
     ;
 
 ruleSetElement
-    : (innerSelectorList WS* LBRACE)=>innerSelectorList WS* LBRACE (WS* ruleSetElement)* WS* RBRACE    -> ^(RULESET innerSelectorList ruleSetElement*)
-    | (mixinSelectorList WS* SEMI)=>mixinSelectorList WS!* SEMI!
+    : ({isNestedRuleSetAhead()}? innerSelectorList WS* LBRACE)=>innerSelectorList WS* LBRACE (WS* ruleSetElement)* WS* RBRACE    -> ^(RULESET innerSelectorList ruleSetElement*)
+    | ({isMixinReferenceAhead()}? mixinSelectorList WS* SEMI)=>mixinSelectorList WS!* SEMI!
     | declaration
     | variableDef
     ;
@@ -440,8 +574,8 @@ propertyValue
     // The SOLIDUS in the first branch is necessary in order to parse declarations of the form:
     //     cursor: url(img/cursors/grab.cur), default/9;
     : propertyTermNoExpr ((propTermSep|WS* SOLIDUS WS*) propertyTerm)* EOF?
-    | (mixinMacroSelector WS* LBRACKET)=>mixinAccessor EOF?
-    | (primaryExpression propTermSep propertyTerm)=>propertyTermExpression (propTermSep propertyTerm)+ EOF?
+    | {isMixinAccessorAhead()}?=> mixinAccessor EOF?
+    | ({isTermListAhead()}? primaryExpression propTermSep propertyTerm)=>propertyTermExpression (propTermSep propertyTerm)+ EOF?
     | additiveExpression EOF? -> ^(EXPR additiveExpression)
     ;
 
@@ -465,14 +599,10 @@ propTermSep
     ;
 
 propertyTermNoExpr
-    : (functionPred)=>function
+    : {isFunctionAhead()}?=> function
     | literal -> ^(LITERAL literal)
     ;
 
-functionPred
-    : functionName WS* LPAREN
-    ;
-
 functionName
     : (ident | PERCENT) ((DOT | COLON) ident)*
     ;
@@ -498,7 +628,7 @@ functionArg
     ;
 
 functionArgItem
-    : (functionPred)=>function
+    : {isFunctionAhead()}?=> function
     | literal
     | additiveExpression
     ;
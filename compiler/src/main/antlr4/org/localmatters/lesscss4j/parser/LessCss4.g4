@@ -0,0 +1,596 @@
+// Copyright 2010-present Local Matters, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+// ANTLR 4 version of LessCss.g used by Antlr4StyleSheetParser.  The rules and tokens mirror those of LessCss.g so
+// that Antlr4TreeBuilder can build the same AST while the rules are parsed.  The rewrite rules, the '!' and '^' operators
+// and the syntactic predicates of LessCss.g have no equivalent here.  The tree shapes are produced by
+// Antlr4TreeBuilder and ANTLR 4 resolves the ambiguities that needed predicates by preferring the first alternative.
+// Any change to LessCss.g must be made to this grammar and to Antlr4TreeBuilder too.
+
+grammar LessCss4;
+
+styleSheet
+    : WS*
+      (charSet WS*)?
+      (importFile WS*)*
+      (bodyset WS*)*
+      EOF
+    ;
+
+charSet
+    : '@' CHARSET WS+ STRING WS* SEMI
+    ;
+
+importFile
+    : '@' IMPORT_SYM WS+ importLocation (WS+ medium (WS* COMMA WS* medium)*)? WS* SEMI
+    ;
+
+importLocation
+    : STRING
+    | URI
+    ;
+
+media
+    : '@' MEDIA_SYM WS+ medium (WS* COMMA WS* medium)* WS*
+        LBRACE WS*
+            (ruleList WS*)*
+        RBRACE
+    ;
+
+medium
+    : ((ONLY | NOT) WS+)? mediaType (WS+ AND WS+ mediaExpression)*
+    | mediaExpression (WS+ AND WS+ mediaExpression)*
+    ;
+
+mediaType
+    : ident
+    ;
+
+mediaExpression
+    : LPAREN WS* mediaFeature (WS* COLON WS* (ident | numberOrColor))? WS* RPAREN
+    ;
+
+mediaFeature
+    : ident
+    ;
+
+bodyset
+    : ruleList
+    | media
+    | page
+    ;
+
+ruleList
+    : variableDef
+    | mixinMacro
+    | keyframesRule
+    | ruleSet
+    ;
+
+page
+    : '@' PAGE_SYM (WS+ COLON pseudoPage)? WS* LBRACE WS* (pageElement WS*)* RBRACE
+    ;
+
+pseudoPage
+    : ident
+    ;
+
+pageElement
+    : mixinSelectorList WS* SEMI
+    | declaration
+    | variableDef
+    ;
+
+combinator
+    : WS* combinatorNonWs WS*
+    | WS+
+    ;
+
+combinatorNonWs
+    : PLUS
+    | GREATER
+    ;
+
+mixinMacro
+    : mixinMacroSelector WS* LPAREN WS* mixinMacroArg (WS* COMMA WS* mixinMacroArg)* WS* RPAREN WS* LBRACE (WS* ruleSetElement)+ WS* RBRACE
+    ;
+
+mixinMacroArg
+    : variable WS* COLON WS* mixinMacroArgDefault
+    ;
+
+mixinMacroArgDefault
+    : numberOrColor # constantArgDefault
+    | literal       # literalArgDefault
+    ;
+
+mixinMacroSelector
+    : cssClass
+    | HASH
+    ;
+
+keyframesRule
+    : keyframesSelector WS* LBRACE WS* keyframesBody (WS* keyframesBody)* WS* RBRACE
+    ;
+
+keyframesSelector
+    : '@' KEYFRAMES WS+ ident
+    ;
+
+keyframesBody
+    : variableDef                                                   # keyframesVariableDef
+    | keyframe WS* LBRACE (WS* ruleSetElement)* WS* RBRACE          # keyframesRuleSet
+    ;
+
+keyframe
+    : NUMBER
+    | ident
+    ;
+
+ruleSet
+    : ruleSetSelector WS* LBRACE (WS* ruleSetElement)* WS* RBRACE
+    ;
+
+ruleSetElement
+    : innerSelectorList WS* LBRACE (WS* ruleSetElement)* WS* RBRACE # nestedRuleSet
+    | mixinSelectorList WS* SEMI                                    # mixinReferences
+    | declaration                                                   # ruleSetDeclaration
+    | variableDef                                                   # ruleSetVariableDef
+    ;
+
+mixinSelectorList
+    : mixinSelector (WS* COMMA WS* mixinSelector)*
+    ;
+
+mixinSelector
+    : mixinMacroSelector WS* LPAREN (WS* mixinMacroCallArgList)? WS* RPAREN # mixinCall
+    | mixinNoArgSelector                                                    # mixinNoArgCall
+    ;
+
+mixinNoArgSelector
+    : mixinSimpleSelector (combinator mixinSimpleSelector)*
+    ;
+
+mixinSimpleSelector
+    : elementName (mixinSubsequent)*
+    | mixinSubsequent+
+    ;
+
+mixinMacroCallArgList
+    : mixinMacroCallArg (WS* COMMA WS* mixinMacroCallArg)*
+    ;
+
+mixinMacroCallArg
+    : literal             # literalCallArg
+    | additiveExpression  # expressionCallArg
+    ;
+
+mixinSubsequent
+    : HASH
+    | cssClass
+    ;
+
+innerSelectorList
+    : innerSelector (WS* COMMA WS* innerSelector)*
+    ;
+
+innerSelector
+    : (combinatorNonWs WS*)? selector
+    ;
+
+ruleSetSelector
+    : fontFaceSelector # fontFaceRuleSetSelector
+    | selectorList     # selectorListRuleSetSelector
+    ;
+
+fontFaceSelector
+    : '@' FONT_FACE
+    ;
+
+selectorList
+    : selector (WS* COMMA WS* selector)*
+    ;
+
+selector
+    : simpleSelector (combinator simpleSelector)*
+    ;
+
+simpleSelector
+    : elementName (elementSubsequent)*
+    | elementSubsequent+
+    ;
+
+elementSubsequent
+    : HASH
+    | cssClass
+    | attrib
+    | pseudo
+    ;
+
+cssClass
+    : DOT ident
+    ;
+
+elementName
+    : ident
+    | STAR
+    ;
+
+attrib
+    : LBRACKET WS* ident (WS* attribOp WS* (ident | STRING | number))? WS* RBRACKET
+    ;
+
+attribOp
+    : OPEQ
+    | INCLUDES
+    | DASHMATCH
+    | START_MATCH
+    | END_MATCH
+    | SUBSTR_MATCH
+    ;
+
+pseudo
+    : COLON COLON? ident (LPAREN WS* pseudoArg WS* RPAREN)?
+    ;
+
+pseudoArg
+    : number
+    | (ident | number) WS* (PLUS | MINUS) WS* number
+    | selector
+    ;
+
+variableDef
+    : variableExpr WS* SEMI
+    ;
+
+variableExpr
+    : variable WS* COLON WS* propertyValue
+    ;
+
+variable
+    : '@' ident
+    ;
+
+literal
+    : (STRING | URI | ident)
+    ;
+
+additiveExpression
+    : multiplicativeExpression (WS* (PLUS | MINUS) WS* multiplicativeExpression)*
+    ;
+
+multiplicativeExpression
+    : primaryExpression (WS* (STAR | SOLIDUS) WS* primaryExpression)*
+    ;
+
+primaryExpression
+    : LPAREN WS* additiveExpression WS* RPAREN # parenExpression
+    | exprValue                                # valueExpression
+    ;
+
+exprValue
+    : variable      # variableValue
+    | numberOrColor # constantValue
+    ;
+
+numberOrColor
+    : number
+    | hexColor
+    | RGB_COLOR
+    | HSL_COLOR
+    ;
+
+number
+    : MINUS? NUMBER
+    ;
+
+declaration
+    : fontDeclaration                                                          # fontPropertyDeclaration
+    | property WS* COLON (WS* propertyValue (WS* important)?)? WS* SEMI         # propertyDeclaration
+    ;
+
+propPrefix
+    : STAR
+    | UNDERSCORE
+    ;
+
+fontDeclaration
+    : fontProperty WS* COLON WS* fontPropertyValue (WS* important)? WS* SEMI
+    ;
+
+fontProperty
+    : propPrefix? FONT
+    ;
+
+fontPropertyValue
+    : (fontStyle WS*)* fontSize (WS* SOLIDUS WS* lineHeight)? WS* fontFamily (WS* COMMA WS* fontFamily)*
+    | ident
+    ;
+
+fontFamily
+    : ident
+    | STRING
+    | variable
+    ;
+
+lineHeight
+    : ident
+    | numberOrColor
+    ;
+
+fontSize
+    : ident
+    | numberOrColor
+    ;
+
+fontStyle
+    : ident
+    | NUMBER
+    ;
+
+property
+    : propPrefix? identNoFont
+    ;
+
+propertyValue
+    : propertyTermNoExpr ((propTermSep | WS* SOLIDUS WS*) propertyTerm)*            # termListValue
+    | mixinAccessor                                                                 # mixinAccessorValue
+    | propertyTermExpression (propTermSep propertyTerm)+                            # expressionListValue
+    | additiveExpression                                                            # expressionValue
+    ;
+
+mixinAccessor
+    : mixinMacroSelector WS* LBRACKET WS* mixinAccessorItem WS* RBRACKET
+    ;
+
+mixinAccessorItem
+    : STRING   # stringAccessorItem
+    | variable # variableAccessorItem
+    ;
+
+propertyTermExpression
+    : primaryExpression
+    ;
+
+propTermSep
+    : WS* COMMA WS*
+    | WS+
+    ;
+
+propertyTermNoExpr
+    : function # functionTerm
+    | literal  # literalTerm
+    ;
+
+functionName
+    : (ident | PERCENT) ((DOT | COLON) ident)*
+    ;
+
+propertyTerm
+    : propertyTermNoExpr
+    | propertyTermExpression
+    ;
+
+function
+    : ieExpression                                              # ieFunction
+    | functionName WS* LPAREN functionArgList? RPAREN           # namedFunction
+    ;
+
+functionArgList
+    : ieFunctionTerm (WS* COMMA WS* ieFunctionTerm)*            # ieFunctionArgList
+    | functionArg ((WS* COMMA WS* | WS+) functionArg)*          # termFunctionArgList
+    ;
+
+functionArg
+    : propertyTerm
+    ;
+
+ieFunctionTerm
+    : ident WS* ieFunctionTermOp WS* (literal | additiveExpression)
+    ;
+
+ieFunctionTermOp
+    : OPEQ
+    | COLON
+    ;
+
+ieExpression
+    : EXPRESSION WS* LPAREN ieExprTerm RPAREN
+    ;
+
+ieExprTerm
+    : (STRING | '&' | '?' | ~('&' | '?' | LPAREN | RPAREN | STRING))*
+      (LPAREN ieExprTerm RPAREN (STRING | ~(LPAREN | RPAREN | STRING))*)*
+    ;
+
+important
+    : IMPORTANT_SYM
+    ;
+
+hexColor
+    : HASH
+    ;
+
+identNoFont
+    : IDENT
+    | ALPHA
+    | EXPRESSION
+    | CHARSET
+    | MEDIA_SYM
+    | IMPORT_SYM
+    | PAGE_SYM
+    | AND
+    | ONLY
+    | NOT
+    | KEYFRAMES
+    ;
+
+ident
+    : identNoFont
+    | FONT
+    ;
+
+// ==============================================================
+// LEXER
+//
+// The tokens match the same input as the tokens of LessCss.g.  ANTLR 4 lexers take the longest match, choosing
+// the first rule listed when rules match input of the same length, so the keywords are listed before IDENT.
+// ==============================================================
+
+fragment HEXCHAR  : [a-fA-F0-9] ;
+
+fragment NONASCII : '\u0080'..'\uFFFE' ;
+
+fragment UNICODE  : '\\' HEXCHAR (HEXCHAR (HEXCHAR (HEXCHAR (HEXCHAR HEXCHAR?)?)?)?)? ;
+
+fragment ESCAPE
+    : UNICODE
+    | '\\' ~[\r\n\fa-fA-F0-9]
+    ;
+
+fragment NMSTART
+    : '_'
+    | [a-zA-Z]
+    | NONASCII
+    | ESCAPE
+    ;
+
+fragment NMCHAR
+    : NMSTART
+    | DIGIT
+    | '-'
+    ;
+
+fragment A      : ('a'|'A') | '\\' ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')'1' ;
+fragment B      : ('b'|'B') | '\\' ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')'2' ;
+fragment C      : ('c'|'C') | '\\' ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')'3' ;
+fragment D      : ('d'|'D') | '\\' ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')'4' ;
+fragment E      : ('e'|'E') | '\\' ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')'5' ;
+fragment F      : ('f'|'F') | '\\' ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')'6' ;
+fragment G      : ('g'|'G') | '\\' ( 'g' | 'G' | ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')'7' ) ;
+fragment H      : ('h'|'H') | '\\' ( 'h' | 'H' | ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')'8' ) ;
+fragment I      : ('i'|'I') | '\\' ( 'i' | 'I' | ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')'9' ) ;
+fragment J      : ('j'|'J') | '\\' ( 'j' | 'J' | ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')('A'|'a') ) ;
+fragment K      : ('k'|'K') | '\\' ( 'k' | 'K' | ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')('B'|'b') ) ;
+fragment L      : ('l'|'L') | '\\' ( 'l' | 'L' | ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')('C'|'c') ) ;
+fragment M      : ('m'|'M') | '\\' ( 'm' | 'M' | ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')('D'|'d') ) ;
+fragment N      : ('n'|'N') | '\\' ( 'n' | 'N' | ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')('E'|'e') ) ;
+fragment O      : ('o'|'O') | '\\' ( 'o' | 'O' | ('0' ('0' ('0' '0'?)?)?)? ('4'|'6')('F'|'f') ) ;
+fragment P      : ('p'|'P') | '\\' ( 'p' | 'P' | ('0' ('0' ('0' '0'?)?)?)? ('5'|'7')('0') ) ;
+fragment Q      : ('q'|'Q') | '\\' ( 'q' | 'Q' | ('0' ('0' ('0' '0'?)?)?)? ('5'|'7')('1') ) ;
+fragment R      : ('r'|'R') | '\\' ( 'r' | 'R' | ('0' ('0' ('0' '0'?)?)?)? ('5'|'7')('2') ) ;
+fragment S      : ('s'|'S') | '\\' ( 's' | 'S' | ('0' ('0' ('0' '0'?)?)?)? ('5'|'7')('3') ) ;
+fragment T      : ('t'|'T') | '\\' ( 't' | 'T' | ('0' ('0' ('0' '0'?)?)?)? ('5'|'7')('4') ) ;
+fragment U      : ('u'|'U') | '\\' ( 'u' | 'U' | ('0' ('0' ('0' '0'?)?)?)? ('5'|'7')('5') ) ;
+fragment V      : ('v'|'V') | '\\' ( 'v' | 'V' | ('0' ('0' ('0' '0'?)?)?)? ('5'|'7')('6') ) ;
+fragment W      : ('w'|'W') | '\\' ( 'w' | 'W' | ('0' ('0' ('0' '0'?)?)?)? ('5'|'7')('7') ) ;
+fragment X      : ('x'|'X') | '\\' ( 'x' | 'X' | ('0' ('0' ('0' '0'?)?)?)? ('5'|'7')('8') ) ;
+fragment Y      : ('y'|'Y') | '\\' ( 'y' | 'Y' | ('0' ('0' ('0' '0'?)?)?)? ('5'|'7')('9') ) ;
+fragment Z      : ('z'|'Z') | '\\' ( 'z' | 'Z' | ('0' ('0' ('0' '0'?)?)?)? ('5'|'7')('A'|'a') ) ;
+fragment DIGIT  : [0-9] ;
+
+COMMENT
+    : ('//' ~[\n\r]* '\r'? '\n' | '/*' .*? '*/') -> channel(HIDDEN)
+    ;
+
+CDO : '<!--' -> channel(HIDDEN) ;
+
+CDC : '-->' -> channel(HIDDEN) ;
+
+INCLUDES        : '~=' ;
+DASHMATCH       : '|=' ;
+
+START_MATCH     : '^=' ;
+END_MATCH       : '$=' ;
+SUBSTR_MATCH    : '*=' ;
+
+GREATER         : '>'  ;
+LBRACE          : '{'  ;
+RBRACE          : '}'  ;
+LBRACKET        : '['  ;
+RBRACKET        : ']'  ;
+OPEQ            : '='  ;
+SEMI            : ';'  ;
+COLON           : ':'  ;
+SOLIDUS         : '/'  ;
+MINUS           : '-'  ;
+PLUS            : '+'  ;
+STAR            : '*'  ;
+LPAREN          : '('  ;
+RPAREN          : ')'  ;
+COMMA           : ','  ;
+DOT             : '.'  ;
+PERCENT         : '%'  ;
+UNDERSCORE      : '_'  ;
+
+STRING
+    : '\'' ~[\n\r\f']* '\''
+    | '"' ~[\n\r\f"]* '"'
+    ;
+
+ALPHA      : A L P H A                  ;
+EXPRESSION : E X P R E S S I O N        ;
+CHARSET    : 'charset'                  ;
+IMPORT_SYM : I M P O R T                ;
+PAGE_SYM   : P A G E                    ;
+MEDIA_SYM  : M E D I A                  ;
+FONT_FACE  : F O N T '-' F A C E        ;
+FONT       : F O N T                    ;
+ONLY       : O N L Y                    ;
+NOT        : N O T                      ;
+AND        : A N D                      ;
+
+KEYFRAMES
+    : ('-' W E B K I T '-')? K E Y F R A M E S
+    ;
+
+RGB_COLOR
+    : R G B   WS* '(' (WS* '-')? WS* NUMBER WS* ',' (WS* '-')? WS* NUMBER WS* ',' (WS* '-')? WS* NUMBER WS* ')'
+    | R G B A WS* '(' (WS* '-')? WS* NUMBER WS* ',' (WS* '-')? WS* NUMBER WS* ',' (WS* '-')? WS* NUMBER WS* ',' (WS* '-')? WS* NUMBER WS* ')'
+    ;
+
+HSL_COLOR
+    : H S L   WS* '(' WS* NUMBER WS* ',' WS* NUMBER WS* ',' WS* NUMBER WS* ')'
+    | H S L A WS* '(' WS* NUMBER WS* ',' WS* NUMBER WS* ',' WS* NUMBER WS* ',' WS* NUMBER WS* ')'
+    ;
+
+IDENT      : '-'? NMSTART NMCHAR* ;
+
+HASH       : '#' NMCHAR+ ;
+
+IMPORTANT_SYM : '!' WS* I M P O R T A N T ;
+
+fragment UNIT
+    : ([a-zA-Z] | NONASCII | ESCAPE)+ | '%'
+    ;
+
+NUMBER
+    : (DIGIT+ ('.' DIGIT*)? | '.' DIGIT+) UNIT?
+    ;
+
+URI
+    : U R L '(' WS* STRING WS* ')'
+    | U R L '(' WS* URL_NO_WS (~[\n\r\f'")]* URL_NO_WS)? WS* ')'
+    ;
+
+fragment URL_NO_WS : ~[\n\r\f'") \t] ;
+
+// Unterminated strings and urls
+INVALID
+    : '\'' ~[\n\r\f']*
+    | '"' ~[\n\r\f"]*
+    | U R L '(' WS* URL_NO_WS (~[\n\r\f'")]* URL_NO_WS)? WS*
+    ;
+
+WS : [ \t\r\n\f]+ ;
@@ -49,6 +49,7 @@ public class CompilerMain
   private static final int NO_SINGLE_LINE_OPT = 3;
   private static final int BRACE_NEWLINE_OPT = 'b';
   private static final int NO_BRACE_NEWLINE_OPT = 4;
+  private static final int PROFILE_OPT = 5;
 
   private static final CLOptionDescriptor[] OPTIONS = new CLOptionDescriptor[]{
     new CLOptionDescriptor( "help",
@@ -95,9 +96,14 @@ public class CompilerMain
                             CLOptionDescriptor.ARGUMENT_DISALLOWED,
                             NO_BRACE_NEWLINE_OPT,
                             "Don't place opening braces on their own line" ),
+    new CLOptionDescriptor( "profile",
+                            CLOptionDescriptor.ARGUMENT_DISALLOWED,
+                            PROFILE_OPT,
+                            "Print phase timings, allocation, imports and counts to standard error" ),
   };
 
   private boolean _prettyPrint = false;
+  private boolean _profile = false;
   private PrettyPrintOptions _prettyPrintOptions;
   private String _inputFilename;
   private String _outputFilename;
@@ -122,6 +128,16 @@ public class CompilerMain
     _prettyPrint = prettyPrint;
   }
 
+  boolean isProfile()
+  {
+    return _profile;
+  }
+
+  void setProfile( final boolean profile )
+  {
+    _profile = profile;
+  }
+
   private void printUsage()
   {
     final String lineSeparator = System.getProperty( "line.separator" );
@@ -241,6 +257,11 @@ public class CompilerMain
           formatOptions.setOpeningBraceOnNewLine( false );
           break;
         }
+        case PROFILE_OPT:
+        {
+          setProfile( true );
+          break;
+        }
         case INDENT_OPT:
         {
           final String indent = option.getArgument();
@@ -312,6 +333,11 @@ public class CompilerMain
         factory.setPrettyPrintOptions( getPrettyPrintOptions() );
       }
 
+      if ( isProfile() )
+      {
+        factory.setCompileListener( new ProfileReport( System.err ) );
+      }
+
       final LessCssCompiler compiler = factory.create();
       compiler.compile( input, output, null );
     }
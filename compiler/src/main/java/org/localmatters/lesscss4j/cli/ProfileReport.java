@@ -0,0 +1,94 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.cli;
+
+import java.io.PrintStream;
+import javax.annotation.Nonnull;
+import org.localmatters.lesscss4j.compile.CompileListener;
+import org.localmatters.lesscss4j.compile.CompileStats;
+import org.localmatters.lesscss4j.parser.StyleSheetResource;
+
+/**
+ * Prints the statistics collected while compiling a stylesheet in a human readable form.  Used by the
+ * <code>--profile</code> option of {@link CompilerMain}.
+ */
+class ProfileReport
+  implements CompileListener
+{
+  private final PrintStream _out;
+
+  ProfileReport( @Nonnull final PrintStream out )
+  {
+    _out = out;
+  }
+
+  @Override
+  public void compileCompleted( @Nonnull final StyleSheetResource resource, @Nonnull final CompileStats stats )
+  {
+    _out.println( "Phases:" );
+    for ( final CompileStats.Phase phase : CompileStats.Phase.values() )
+    {
+      printPhase( phase.name().toLowerCase(), stats.getTime( phase ), stats.getAllocatedBytes( phase ) );
+    }
+    printPhase( "total", stats.getTotalTime(), stats.getTotalAllocatedBytes() );
+
+    final CompileStats.ResourceStats root = stats.getRootResource();
+    if ( null != root )
+    {
+      _out.println( "Parse times:" );
+      printResource( root, 1 );
+    }
+
+    _out.println( "Counts:" );
+    printCount( "rule sets", stats.getCount( CompileStats.Counter.RULE_SETS ) );
+    printCount( "declarations", stats.getCount( CompileStats.Counter.DECLARATIONS ) );
+    printCount( "mixin expansions", stats.getCount( CompileStats.Counter.MIXIN_EXPANSIONS ) );
+    printCount( "variable lookups", stats.getCount( CompileStats.Counter.VARIABLE_LOOKUPS ) );
+    printCount( "function calls", stats.getCount( CompileStats.Counter.FUNCTION_CALLS ) );
+    _out.flush();
+  }
+
+  private void printPhase( final String name, final long nanos, final long allocatedBytes )
+  {
+    _out.print( String.format( "  %-12s %10.3f ms", name, nanos / 1000000.0 ) );
+    if ( -1 != allocatedBytes )
+    {
+      _out.print( String.format( " %12d KiB", allocatedBytes / 1024 ) );
+    }
+    _out.println();
+  }
+
+  private void printResource( final CompileStats.ResourceStats resource, final int depth )
+  {
+    final StringBuilder line = new StringBuilder();
+    for ( int i = 0; i < depth; i++ )
+    {
+      line.append( "  " );
+    }
+    line.append( null != resource.getUrl() ? resource.getUrl() : "<stdin>" );
+    line.append( String.format( " %.3f ms", resource.getParseTime() / 1000000.0 ) );
+    _out.println( line );
+    for ( final CompileStats.ResourceStats child : resource.getImports() )
+    {
+      printResource( child, depth + 1 );
+    }
+  }
+
+  private void printCount( final String name, final long count )
+  {
+    _out.println( String.format( "  %-18s %8d", name, count ) );
+  }
+}
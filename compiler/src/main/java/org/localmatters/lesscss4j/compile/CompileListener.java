@@ -0,0 +1,37 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.compile;
+
+import javax.annotation.Nonnull;
+import org.localmatters.lesscss4j.parser.StyleSheetResource;
+
+/**
+ * Receives the {@link CompileStats} collected while compiling a stylesheet.  Listeners are registered with the
+ * compiler (see {@link DefaultLessCssCompilerFactory#setCompileListener}) and statistics are only collected when a
+ * listener is present.
+ * <p/>
+ * A single listener instance may be notified concurrently if the compiler is shared between threads.
+ */
+public interface CompileListener
+{
+  /**
+   * Invoked once a compile has finished, whether or not it was successful.
+   *
+   * @param resource The stylesheet that was compiled.
+   * @param stats    The statistics collected during the compile.
+   */
+  void compileCompleted( @Nonnull StyleSheetResource resource, @Nonnull CompileStats stats );
+}
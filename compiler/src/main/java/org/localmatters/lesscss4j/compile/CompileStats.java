@@ -0,0 +1,389 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.compile;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Statistics collected during a single run of the compiler.  Time and allocated bytes are attributed to the
+ * {@link Phase} that was active when they were spent.  Phases nest (e.g. the imported stylesheets are parsed while
+ * the model is being built) but the figures for each phase exclude those of any phase nested within it, so the
+ * phase totals add up to the total for the compile.  The parse time of each stylesheet is also recorded, in a tree
+ * mirroring the <code>@import</code> statements.
+ * <p/>
+ * The compiler binds the instance to the current thread for the duration of the compile so that the parser,
+ * factories and transformers can report to it via the static methods on this class without it being passed around.
+ * When no statistics are being collected these methods do nothing.  Like {@link
+ * org.localmatters.lesscss4j.error.ErrorHandler}, instances are not thread safe and only relate to a single compile.
+ */
+public final class CompileStats
+{
+  public enum Phase
+  {
+    /**
+     * Lexing and parsing of the stylesheet and any imported stylesheets into an AST.
+     */
+    PARSE,
+    /**
+     * Resolving <code>@import</code> statements to resources.
+     */
+    IMPORT,
+    /**
+     * Building the model from the AST.
+     */
+    BUILD,
+    /**
+     * Evaluating variables, mixins, nested rule sets and functions.
+     */
+    TRANSFORM,
+    /**
+     * Writing the resulting CSS.
+     */
+    WRITE
+  }
+
+  public enum Counter
+  {
+    RULE_SETS,
+    DECLARATIONS,
+    MIXIN_EXPANSIONS,
+    VARIABLE_LOOKUPS,
+    FUNCTION_CALLS
+  }
+
+  private static final ThreadLocal<CompileStats> CURRENT = new ThreadLocal<>();
+
+  private final long[] _times = new long[ Phase.values().length ];
+  private final long[] _allocatedBytes = new long[ Phase.values().length ];
+  private final long[] _counters = new long[ Counter.values().length ];
+  private final boolean _allocationTracked;
+  private Phase _phase;
+  private long _timeMark;
+  private long _allocationMark;
+  private ResourceStats _rootResource;
+  private ResourceStats _resource;
+
+  public CompileStats()
+  {
+    _allocationTracked = -1 != getCurrentThreadAllocatedBytes();
+  }
+
+  /**
+   * Returns the statistics bound to the current thread.
+   *
+   * @return The statistics, <code>null</code> if none are being collected.
+   */
+  @Nullable
+  public static CompileStats current()
+  {
+    return CURRENT.get();
+  }
+
+  /**
+   * Binds the statistics to the current thread.
+   *
+   * @param stats The statistics to bind.  <code>null</code> to stop collecting statistics.
+   * @return The statistics previously bound to the current thread, so that they can be restored.
+   */
+  @Nullable
+  public static CompileStats bind( @Nullable final CompileStats stats )
+  {
+    final CompileStats previous = CURRENT.get();
+    if ( null == stats )
+    {
+      CURRENT.remove();
+    }
+    else
+    {
+      CURRENT.set( stats );
+    }
+    return previous;
+  }
+
+  /**
+   * Increments a counter on the statistics bound to the current thread, if any.
+   */
+  public static void increment( @Nonnull final Counter counter )
+  {
+    final CompileStats stats = CURRENT.get();
+    if ( null != stats )
+    {
+      stats._counters[ counter.ordinal() ]++;
+    }
+  }
+
+  /**
+   * Adds to a counter on the statistics bound to the current thread, if any.
+   */
+  public static void increment( @Nonnull final Counter counter, final long amount )
+  {
+    final CompileStats stats = CURRENT.get();
+    if ( null != stats )
+    {
+      stats._counters[ counter.ordinal() ] += amount;
+    }
+  }
+
+  /**
+   * Makes the given phase the active phase on the statistics bound to the current thread, if any.
+   *
+   * @param phase The phase being entered.
+   * @return The previously active phase, to be passed to {@link #exit(Phase)}.
+   */
+  @Nullable
+  public static Phase enter( @Nonnull final Phase phase )
+  {
+    final CompileStats stats = CURRENT.get();
+    return null != stats ? stats.setPhase( phase ) : null;
+  }
+
+  /**
+   * Restores the phase that was active before the matching call to {@link #enter(Phase)}.
+   *
+   * @param previous The value returned from {@link #enter(Phase)}.
+   */
+  public static void exit( @Nullable final Phase previous )
+  {
+    final CompileStats stats = CURRENT.get();
+    if ( null != stats )
+    {
+      stats.setPhase( previous );
+    }
+  }
+
+  /**
+   * Makes the stylesheet with the given URL the current stylesheet on the statistics bound to the current thread, if
+   * any.  Parse time is attributed to the current stylesheet and stylesheets entered while it is current are recorded
+   * as its imports.
+   *
+   * @param url The URL of the stylesheet, <code>null</code> if unknown.
+   * @return The previously current stylesheet, to be passed to {@link #exitResource(ResourceStats)}.
+   */
+  @Nullable
+  public static ResourceStats enterResource( @Nullable final String url )
+  {
+    final CompileStats stats = CURRENT.get();
+    if ( null == stats )
+    {
+      return null;
+    }
+    final ResourceStats previous = stats._resource;
+    final ResourceStats resource = new ResourceStats( url );
+    if ( null == previous )
+    {
+      stats._rootResource = resource;
+    }
+    else
+    {
+      previous._imports.add( resource );
+    }
+    stats._resource = resource;
+    return previous;
+  }
+
+  /**
+   * Restores the stylesheet that was current before the matching call to {@link #enterResource(String)}.
+   *
+   * @param previous The value returned from {@link #enterResource(String)}.
+   */
+  public static void exitResource( @Nullable final ResourceStats previous )
+  {
+    final CompileStats stats = CURRENT.get();
+    if ( null != stats )
+    {
+      stats._resource = previous;
+    }
+  }
+
+  /**
+   * Sets the active phase, attributing the time and memory spent since the last change to the phase that was
+   * active until now.
+   *
+   * @param phase The new phase.  <code>null</code> to stop attributing time to any phase.
+   * @return The phase that was active until now.
+   */
+  @Nullable
+  public Phase setPhase( @Nullable final Phase phase )
+  {
+    final long time = System.nanoTime();
+    final long allocation = _allocationTracked ? getCurrentThreadAllocatedBytes() : 0;
+    final Phase previous = _phase;
+    if ( null != previous )
+    {
+      _times[ previous.ordinal() ] += time - _timeMark;
+      _allocatedBytes[ previous.ordinal() ] += allocation - _allocationMark;
+      if ( Phase.PARSE == previous && null != _resource )
+      {
+        _resource._parseTime += time - _timeMark;
+      }
+    }
+    _phase = phase;
+    _timeMark = time;
+    _allocationMark = allocation;
+    return previous;
+  }
+
+  /**
+   * @return The wall time spent in the given phase in nanoseconds.
+   */
+  public long getTime( @Nonnull final Phase phase )
+  {
+    return _times[ phase.ordinal() ];
+  }
+
+  /**
+   * @return The wall time spent in all phases in nanoseconds.
+   */
+  public long getTotalTime()
+  {
+    long total = 0;
+    for ( final long time : _times )
+    {
+      total += time;
+    }
+    return total;
+  }
+
+  /**
+   * @return The bytes allocated by the compiling thread during the given phase.  <code>-1</code> if the JVM does
+   *         not support measuring thread allocation.
+   */
+  public long getAllocatedBytes( @Nonnull final Phase phase )
+  {
+    return _allocationTracked ? _allocatedBytes[ phase.ordinal() ] : -1;
+  }
+
+  /**
+   * @return The bytes allocated by the compiling thread during all phases.  <code>-1</code> if the JVM does not
+   *         support measuring thread allocation.
+   */
+  public long getTotalAllocatedBytes()
+  {
+    if ( !_allocationTracked )
+    {
+      return -1;
+    }
+    long total = 0;
+    for ( final long allocated : _allocatedBytes )
+    {
+      total += allocated;
+    }
+    return total;
+  }
+
+  public long getCount( @Nonnull final Counter counter )
+  {
+    return _counters[ counter.ordinal() ];
+  }
+
+  /**
+   * @return The stylesheet that was compiled, with the stylesheets it imported.  <code>null</code> if it was not
+   *         parsed.
+   */
+  @Nullable
+  public ResourceStats getRootResource()
+  {
+    return _rootResource;
+  }
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder buf = new StringBuilder();
+    for ( final Phase phase : Phase.values() )
+    {
+      if ( buf.length() > 0 )
+      {
+        buf.append( ", " );
+      }
+      buf.append( phase.name().toLowerCase() ).append( '=' ).append( getTime( phase ) / 1000 ).append( "us" );
+      if ( _allocationTracked )
+      {
+        buf.append( '/' ).append( getAllocatedBytes( phase ) ).append( 'B' );
+      }
+    }
+    for ( final Counter counter : Counter.values() )
+    {
+      buf.append( ", " ).append( counter.name().toLowerCase() ).append( '=' ).append( getCount( counter ) );
+    }
+    return buf.toString();
+  }
+
+  /**
+   * Statistics for a single stylesheet.
+   */
+  public static final class ResourceStats
+  {
+    @Nullable
+    private final String _url;
+    private final List<ResourceStats> _imports = new ArrayList<>();
+    private long _parseTime;
+
+    ResourceStats( @Nullable final String url )
+    {
+      _url = url;
+    }
+
+    /**
+     * @return The URL of the stylesheet, <code>null</code> if unknown. (e.g. read from stdin)
+     */
+    @Nullable
+    public String getUrl()
+    {
+      return _url;
+    }
+
+    /**
+     * @return The wall time spent parsing the stylesheet in nanoseconds, excluding the stylesheets it imports.
+     */
+    public long getParseTime()
+    {
+      return _parseTime;
+    }
+
+    /**
+     * @return The stylesheets imported by this stylesheet, in the order they were imported.
+     */
+    @Nonnull
+    public List<ResourceStats> getImports()
+    {
+      return Collections.unmodifiableList( _imports );
+    }
+  }
+
+  /**
+   * @return The number of bytes allocated by the current thread so far, -1 if this can not be determined.
+   */
+  static long getCurrentThreadAllocatedBytes()
+  {
+    final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if ( bean instanceof com.sun.management.ThreadMXBean )
+    {
+      final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+      if ( sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled() )
+      {
+        return sunBean.getThreadAllocatedBytes( Thread.currentThread().getId() );
+      }
+    }
+    return -1;
+  }
+}
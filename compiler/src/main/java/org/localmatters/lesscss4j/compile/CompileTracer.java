@@ -0,0 +1,77 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.compile;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Receives notification of the internal operations of the compiler so that they can be recorded by an external
+ * tracing system.  Tracers are registered via {@link CompileTracing}, either explicitly or by listing the
+ * implementation in <code>META-INF/services/org.localmatters.lesscss4j.compile.CompileTracer</code>.
+ */
+public interface CompileTracer
+{
+  enum Operation
+  {
+    /**
+     * Lexing and parsing of a resource.  The name is null and the size is the number of characters parsed.
+     */
+    PARSE,
+    /**
+     * Resolving, parsing and merging an imported stylesheet.  The name is the import path as written and the size is
+     * the number of top level elements imported.
+     */
+    IMPORT,
+    /**
+     * Expansion of a mixin.  The name is the selector of the mixin and the size is the number of declarations
+     * produced.
+     */
+    MIXIN_EXPANSION,
+    /**
+     * Evaluation of a function.  The name is the function name and the size is the number of arguments.
+     */
+    FUNCTION_CALL,
+    /**
+     * Writing of the compiled stylesheet.  The name is null and the size is the number of bytes written.
+     */
+    WRITE
+  }
+
+  /**
+   * An operation that is being traced.
+   */
+  interface Span
+  {
+    /**
+     * Completes the operation.
+     *
+     * @param resource The URL of the resource the operation relates to, if known.
+     * @param name     The name of the element the operation relates to, as described by the {@link Operation}.
+     * @param size     The size of the operation, as described by the {@link Operation}.
+     */
+    void end( @Nullable String resource, @Nullable String name, long size );
+  }
+
+  /**
+   * Invoked when an operation starts.
+   *
+   * @param operation The operation.
+   * @return The span to complete when the operation ends or null if the operation is not being traced.
+   */
+  @Nullable
+  Span start( @Nonnull Operation operation );
+}
@@ -0,0 +1,114 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.compile;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.localmatters.lesscss4j.parser.StyleSheetResource;
+
+/**
+ * Holds the {@link CompileTracer} for the JVM.  The tracer is initially the first implementation found by
+ * {@link ServiceLoader}, if any.  When there is no tracer the cost of tracing an operation is a single volatile read.
+ */
+public final class CompileTracing
+{
+  @Nullable
+  private static volatile CompileTracer c_tracer = loadTracer();
+
+  private CompileTracing()
+  {
+  }
+
+  @Nullable
+  public static CompileTracer getTracer()
+  {
+    return c_tracer;
+  }
+
+  /**
+   * Replaces the tracer.  Spans started by the previous tracer are still completed by that tracer.
+   *
+   * @param tracer The tracer or null to disable tracing.
+   */
+  public static void setTracer( @Nullable final CompileTracer tracer )
+  {
+    c_tracer = tracer;
+  }
+
+  /**
+   * Starts tracing an operation.
+   *
+   * @return The span to pass to {@link #end} or null if the operation is not being traced.
+   */
+  @Nullable
+  public static CompileTracer.Span start( @Nonnull final CompileTracer.Operation operation )
+  {
+    final CompileTracer tracer = c_tracer;
+    return null != tracer ? tracer.start( operation ) : null;
+  }
+
+  /**
+   * Completes an operation if it is being traced.
+   */
+  public static void end( @Nullable final CompileTracer.Span span,
+                          @Nullable final String resource,
+                          @Nullable final String name,
+                          final long size )
+  {
+    if ( null != span )
+    {
+      span.end( resource, name, size );
+    }
+  }
+
+  /**
+   * @return The URL of the resource as a string, or null if unknown.
+   */
+  @Nullable
+  public static String toString( @Nullable final StyleSheetResource resource )
+  {
+    try
+    {
+      final URL url = null != resource ? resource.getUrl() : null;
+      return null != url ? url.toString() : null;
+    }
+    catch ( final IOException e )
+    {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static CompileTracer loadTracer()
+  {
+    try
+    {
+      final Iterator<CompileTracer> tracers =
+        ServiceLoader.load( CompileTracer.class, CompileTracing.class.getClassLoader() ).iterator();
+      return tracers.hasNext() ? tracers.next() : null;
+    }
+    catch ( final ServiceConfigurationError | LinkageError e )
+    {
+      // A tracer that can not be loaded, for example because the JVM does not support it, disables tracing
+      return null;
+    }
+  }
+}
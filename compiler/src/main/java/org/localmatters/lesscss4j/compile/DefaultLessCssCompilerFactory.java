@@ -15,9 +15,11 @@
 */
 package org.localmatters.lesscss4j.compile;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import org.localmatters.lesscss4j.factory.StyleSheetFactory;
 import org.localmatters.lesscss4j.model.Declaration;
 import org.localmatters.lesscss4j.model.Keyframes;
@@ -29,9 +31,17 @@ import org.localmatters.lesscss4j.model.expression.FunctionExpression;
 import org.localmatters.lesscss4j.output.PrettyPrintOptions;
 import org.localmatters.lesscss4j.output.StyleSheetWriter;
 import org.localmatters.lesscss4j.output.StyleSheetWriterImpl;
+import org.localmatters.lesscss4j.parser.Antlr4ModelStyleSheetParser;
+import org.localmatters.lesscss4j.parser.Antlr4StyleSheetParser;
+import org.localmatters.lesscss4j.parser.CachingStyleSheetTreeParser;
+import org.localmatters.lesscss4j.parser.IncrementalStyleSheetParser;
+import org.localmatters.lesscss4j.parser.LessCssScanner;
 import org.localmatters.lesscss4j.parser.LessCssStyleSheetParser;
+import org.localmatters.lesscss4j.parser.PlainCssParser;
+import org.localmatters.lesscss4j.parser.StreamingStyleSheetParser;
 import org.localmatters.lesscss4j.parser.StyleSheetParser;
 import org.localmatters.lesscss4j.parser.StyleSheetResourceLoader;
+import org.localmatters.lesscss4j.parser.StyleSheetTreeParser;
 import org.localmatters.lesscss4j.transform.DeclarationTransformer;
 import org.localmatters.lesscss4j.transform.FunctionTransformer;
 import org.localmatters.lesscss4j.transform.KeyframesTransformer;
@@ -76,6 +86,16 @@ public class DefaultLessCssCompilerFactory
   private TransformerManager _transformerManager;
   private Map<String, Function> _functions;
   private Map<Class, Transformer> _transformers;
+  private CompileListener _compileListener;
+  private int _warmUpIterations;
+  private boolean _importCacheEnabled;
+  private Executor _importExecutor;
+  private boolean _plainCssPassThroughEnabled;
+  private boolean _antlr4ParserEnabled;
+  private boolean _directModelEnabled;
+  private boolean _scannerEnabled;
+  private boolean _incrementalParseEnabled;
+  private boolean _streamingParseEnabled;
 
   /**
    * Specify a map of functions to use during compilation.
@@ -207,6 +227,139 @@ public class DefaultLessCssCompilerFactory
     _transformers = transformers;
   }
 
+  /**
+   * Sets a listener that receives the {@link CompileStats} of every compile.  Statistics are only collected when a
+   * listener is set.
+   *
+   * @param compileListener The listener to notify.
+   */
+  public void setCompileListener( final CompileListener compileListener )
+  {
+    _compileListener = compileListener;
+  }
+
+  /**
+   * Sets the number of times the created compiler compiles a representative stylesheet before it is returned so that
+   * the first real compile does not pay the one-off costs of compilation.  Defaults to 0.
+   *
+   * @param warmUpIterations The number of warm up compiles.
+   * @see LessCssCompilerImpl#warmUp(int)
+   */
+  public void setWarmUpIterations( final int warmUpIterations )
+  {
+    _warmUpIterations = warmUpIterations;
+  }
+
+  /**
+   * Sets whether the created compiler caches the parse trees of imported stylesheets so that a stylesheet imported by
+   * many stylesheets, or on every compile, is only parsed again when it changes.  The cache is shared by all compiles
+   * performed by the compiler.  Defaults to false.
+   *
+   * @param importCacheEnabled True to cache the parse trees of imported stylesheets.
+   * @see CachingStyleSheetTreeParser
+   */
+  public void setImportCacheEnabled( final boolean importCacheEnabled )
+  {
+    _importCacheEnabled = importCacheEnabled;
+  }
+
+  /**
+   * Sets the executor used to parse imported stylesheets concurrently.  Useful when a stylesheet has many imports
+   * that are slow to read.  The imports are still processed in order and errors are reported as when parsing
+   * sequentially.  Any custom {@link StyleSheetResourceLoader} must be thread safe.  Defaults to <code>null</code>,
+   * parsing imports sequentially on the compiling thread.
+   *
+   * @param importExecutor The executor to parse imports on.
+   * @see StyleSheetFactory#setImportExecutor
+   */
+  public void setImportExecutor( final Executor importExecutor )
+  {
+    _importExecutor = importExecutor;
+  }
+
+  /**
+   * Sets whether imported <code>.css</code> stylesheets that contain only plain CSS are passed through to the output,
+   * minified or pretty printed, without being compiled.  This is much faster for large vendor stylesheets but the
+   * rule sets they contain can not be used as mixins and values are written as they appear rather than evaluated.
+   * Defaults to false.
+   *
+   * @param plainCssPassThroughEnabled True to pass plain CSS imports through.
+   * @see PlainCssParser
+   */
+  public void setPlainCssPassThroughEnabled( final boolean plainCssPassThroughEnabled )
+  {
+    _plainCssPassThroughEnabled = plainCssPassThroughEnabled;
+  }
+
+  /**
+   * Sets whether stylesheets are parsed by the parser generated from the ANTLR 4 grammar rather than the one generated
+   * from the ANTLR 3 grammar.  Both parsers produce the same tree but the ANTLR 4 parser is slower, taking about 14ms
+   * rather than 12.5ms to parse css/big.css from the tests once warmed up.  Syntax errors are reported with different
+   * messages.  Defaults to false.
+   *
+   * @param antlr4ParserEnabled True to use the ANTLR 4 parser.
+   * @see Antlr4StyleSheetParser
+   */
+  public void setAntlr4ParserEnabled( final boolean antlr4ParserEnabled )
+  {
+    _antlr4ParserEnabled = antlr4ParserEnabled;
+  }
+
+  /**
+   * Sets whether the ANTLR 4 parser builds the rule sets, declarations, selectors and expressions of a stylesheet
+   * while it parses it, rather than building a tree and then building the model from the tree.  Stylesheets are still
+   * built from the tree when the factories of the parser have been replaced, the stylesheet contains
+   * <code>@media</code>, <code>@keyframes</code> or <code>@page</code> rules, or it contains an error that the
+   * factories report.  Implies {@link #setAntlr4ParserEnabled setAntlr4ParserEnabled(true)}.  Defaults to false.
+   *
+   * @param directModelEnabled True to build the model while parsing.
+   * @see Antlr4ModelStyleSheetParser
+   */
+  public void setDirectModelEnabled( final boolean directModelEnabled )
+  {
+    _directModelEnabled = directModelEnabled;
+  }
+
+  /**
+   * Sets whether stylesheets are tokenized by the hand written scanner rather than the lexer generated from the
+   * grammar.  The scanner is faster and produces the same tokens for valid stylesheets.  It is not used by the ANTLR 4
+   * parser.  Defaults to false.
+   *
+   * @param scannerEnabled True to use the hand written scanner.
+   * @see LessCssScanner
+   */
+  public void setScannerEnabled( final boolean scannerEnabled )
+  {
+    _scannerEnabled = scannerEnabled;
+  }
+
+  /**
+   * Sets whether the compilers created keep the content and tree of every stylesheet they parse, so that when a
+   * stylesheet is edited only the top level elements that were edited are parsed again.  Intended for development
+   * servers and watch modes that compile the same stylesheets over and over.  Ignored when the ANTLR 4 parser is
+   * enabled.  Defaults to false.
+   *
+   * @param incrementalParseEnabled True to parse edited stylesheets incrementally.
+   * @see IncrementalStyleSheetParser
+   */
+  public void setIncrementalParseEnabled( final boolean incrementalParseEnabled )
+  {
+    _incrementalParseEnabled = incrementalParseEnabled;
+  }
+
+  /**
+   * Sets whether the compilers created build the model of each top level element of a stylesheet as soon as it has
+   * been parsed, so that the tokens and tree of the whole stylesheet are never held in memory at once.  Intended for
+   * very large stylesheets.  Ignored when the ANTLR 4 parser or incremental parsing is enabled.  Defaults to false.
+   *
+   * @param streamingParseEnabled True to parse stylesheets one top level element at a time.
+   * @see StreamingStyleSheetParser
+   */
+  public void setStreamingParseEnabled( final boolean streamingParseEnabled )
+  {
+    _streamingParseEnabled = streamingParseEnabled;
+  }
+
   /**
    * Creates and initializes the compiler
    */
@@ -214,6 +367,17 @@ public class DefaultLessCssCompilerFactory
   {
     final LessCssCompilerImpl compiler = new LessCssCompilerImpl();
     initializeCompiler( compiler );
+    if ( _warmUpIterations > 0 )
+    {
+      try
+      {
+        compiler.warmUp( _warmUpIterations );
+      }
+      catch ( final IOException e )
+      {
+        throw new IllegalStateException( "Unable to warm up compiler", e );
+      }
+    }
     return compiler;
   }
 
@@ -224,6 +388,22 @@ public class DefaultLessCssCompilerFactory
    */
   protected void initializeCompiler( final LessCssCompilerImpl compiler )
   {
+    if ( _directModelEnabled )
+    {
+      compiler.setStyleSheetParser( createAntlr4ModelStyleSheetParser() );
+    }
+    else if ( _antlr4ParserEnabled )
+    {
+      compiler.setStyleSheetParser( createAntlr4StyleSheetParser() );
+    }
+    else if ( _incrementalParseEnabled )
+    {
+      compiler.setStyleSheetParser( createIncrementalStyleSheetParser() );
+    }
+    else if ( _streamingParseEnabled )
+    {
+      compiler.setStyleSheetParser( createStreamingStyleSheetParser() );
+    }
     initializeParser( compiler.getStyleSheetParser() );
     initializeWriter( compiler.getStyleSheetWriter() );
     TransformerManager transformerManager = _transformerManager;
@@ -232,6 +412,7 @@ public class DefaultLessCssCompilerFactory
       transformerManager = createDefaultTransformManager();
     }
     compiler.setTransformerManager( transformerManager );
+    compiler.setCompileListener( _compileListener );
   }
 
   /**
@@ -326,9 +507,92 @@ public class DefaultLessCssCompilerFactory
     {
       parser.setInitialBufferSize( _readBufferSize );
     }
+    if ( _scannerEnabled )
+    {
+      parser.setScannerEnabled( true );
+    }
     if ( null != _styleSheetResourceLoader )
     {
       ( (StyleSheetFactory) parser.getStyleSheetFactory() ).setStyleSheetResourceLoader( _styleSheetResourceLoader );
     }
+    if ( null != _importExecutor )
+    {
+      ( (StyleSheetFactory) parser.getStyleSheetFactory() ).setImportExecutor( _importExecutor );
+    }
+    if ( _plainCssPassThroughEnabled )
+    {
+      ( (StyleSheetFactory) parser.getStyleSheetFactory() ).setPlainCssParser( createPlainCssParser() );
+    }
+    if ( _importCacheEnabled )
+    {
+      final StyleSheetFactory styleSheetFactory = (StyleSheetFactory) parser.getStyleSheetFactory();
+      styleSheetFactory.setStyleSheetTreeParser( createImportTreeParser( styleSheetFactory.getStyleSheetTreeParser() ) );
+    }
+  }
+
+  /**
+   * Creates the parser used when the ANTLR 4 parser is enabled.
+   *
+   * @return The parser.
+   */
+  protected LessCssStyleSheetParser createAntlr4StyleSheetParser()
+  {
+    return new Antlr4StyleSheetParser();
+  }
+
+  /**
+   * Creates the parser used when building the model while parsing is enabled.
+   *
+   * @return The parser.
+   */
+  protected LessCssStyleSheetParser createAntlr4ModelStyleSheetParser()
+  {
+    return new Antlr4ModelStyleSheetParser();
+  }
+
+  /**
+   * Creates the parser used when incremental parsing is enabled.
+   *
+   * @return The parser.
+   */
+  protected LessCssStyleSheetParser createIncrementalStyleSheetParser()
+  {
+    return new IncrementalStyleSheetParser();
+  }
+
+  /**
+   * Creates the parser used when streaming parsing is enabled.
+   *
+   * @return The parser.
+   */
+  protected LessCssStyleSheetParser createStreamingStyleSheetParser()
+  {
+    return new StreamingStyleSheetParser();
+  }
+
+  /**
+   * Creates the parser used to pass plain CSS imports through to the output.
+   *
+   * @return The parser.
+   */
+  protected PlainCssParser createPlainCssParser()
+  {
+    final PlainCssParser parser = new PlainCssParser();
+    if ( null != _defaultEncoding )
+    {
+      parser.setDefaultEncoding( _defaultEncoding );
+    }
+    return parser;
+  }
+
+  /**
+   * Creates the parser used to parse imported stylesheets when the import cache is enabled.
+   *
+   * @param delegate The parser that parses the stylesheets that are not in the cache.
+   * @return The caching parser.
+   */
+  protected StyleSheetTreeParser createImportTreeParser( final StyleSheetTreeParser delegate )
+  {
+    return new CachingStyleSheetTreeParser( delegate );
   }
 }
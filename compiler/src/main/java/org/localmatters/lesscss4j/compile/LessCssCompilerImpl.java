@@ -17,7 +17,11 @@ package org.localmatters.lesscss4j.compile;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.URL;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
 import org.localmatters.lesscss4j.error.ErrorHandler;
 import org.localmatters.lesscss4j.model.StyleSheet;
 import org.localmatters.lesscss4j.output.StyleSheetWriter;
@@ -25,16 +29,29 @@ import org.localmatters.lesscss4j.output.StyleSheetWriterImpl;
 import org.localmatters.lesscss4j.parser.LessCssStyleSheetParser;
 import org.localmatters.lesscss4j.parser.StyleSheetParser;
 import org.localmatters.lesscss4j.parser.StyleSheetResource;
+import org.localmatters.lesscss4j.parser.UrlStyleSheetResource;
 import org.localmatters.lesscss4j.transform.StyleSheetEvaluationContext;
 import org.localmatters.lesscss4j.transform.Transformer;
 import org.localmatters.lesscss4j.transform.manager.TransformerManager;
+import org.localmatters.lesscss4j.util.StringTable;
 
 public class LessCssCompilerImpl
   implements LessCssCompiler
 {
+  /**
+   * Name of the stylesheet, relative to this class, compiled by {@link #warmUp}.
+   */
+  public static final String WARM_UP_RESOURCE = "warm-up.less";
+
   private StyleSheetParser _styleSheetParser = new LessCssStyleSheetParser();
   private StyleSheetWriter _styleSheetWriter = new StyleSheetWriterImpl();
   private TransformerManager _transformerManager;
+  private CompileListener _compileListener;
+  /**
+   * The string tables not currently bound to a compile.  They are held by the compiler rather than by the threads that
+   * used them so that they are discarded along with the compiler.
+   */
+  private final ConcurrentLinkedQueue<StringTable> _stringTables = new ConcurrentLinkedQueue<>();
 
   public TransformerManager getTransformerManager()
   {
@@ -66,6 +83,20 @@ public class LessCssCompilerImpl
     _styleSheetWriter = styleSheetWriter;
   }
 
+  public CompileListener getCompileListener()
+  {
+    return _compileListener;
+  }
+
+  /**
+   * Sets the listener that is notified with the {@link CompileStats} of each compile.  Statistics are only collected
+   * if a listener is set.
+   */
+  public void setCompileListener( final CompileListener compileListener )
+  {
+    _compileListener = compileListener;
+  }
+
   public void compile( final StyleSheetResource input, final OutputStream output, final ErrorHandler errorHandler )
     throws IOException
   {
@@ -73,15 +104,98 @@ public class LessCssCompilerImpl
     {
       throw new IllegalStateException( "No TransformerManager defined in compiler." );
     }
+    final CompileListener listener = getCompileListener();
+    if ( null == listener )
+    {
+      compileWithStringTable( input, output, errorHandler );
+    }
+    else
+    {
+      final CompileStats stats = new CompileStats();
+      final CompileStats previous = CompileStats.bind( stats );
+      try
+      {
+        compileWithStringTable( input, output, errorHandler );
+      }
+      finally
+      {
+        stats.setPhase( null );
+        CompileStats.bind( previous );
+        listener.compileCompleted( input, stats );
+      }
+    }
+  }
+
+  /**
+   * Compiles a representative stylesheet so that the one-off costs of the first compile in a JVM, such as class
+   * loading and the initialization of the lexer and parser tables, are paid before the first real compile.  Further
+   * iterations give the JIT the opportunity to compile the hot paths.  The compile listener is not notified.
+   *
+   * @param iterations The number of times to compile the stylesheet.
+   */
+  public void warmUp( final int iterations )
+    throws IOException
+  {
+    final URL url = LessCssCompilerImpl.class.getResource( WARM_UP_RESOURCE );
+    if ( null == url )
+    {
+      throw new IllegalStateException( "Unable to locate warm up stylesheet " + WARM_UP_RESOURCE );
+    }
+    for ( int i = 0; i < iterations; i++ )
+    {
+      compileWithStringTable( new UrlStyleSheetResource( url ), new NullOutputStream(), null );
+    }
+  }
+
+  /**
+   * Compiles a representative stylesheet once.
+   *
+   * @see #warmUp(int)
+   */
+  public void warmUp()
+    throws IOException
+  {
+    warmUp( 1 );
+  }
+
+  /**
+   * Compiles the stylesheet with a {@link StringTable} bound to the current thread, so that the strings repeated
+   * throughout the stylesheet are shared.  The table is unbound once the compile completes.
+   */
+  private void compileWithStringTable( final StyleSheetResource input,
+                                       final OutputStream output,
+                                       final ErrorHandler errorHandler )
+    throws IOException
+  {
+    final StringTable pooled = _stringTables.poll();
+    final StringTable table = null != pooled ? pooled : new StringTable();
+    final StringTable previous = StringTable.bind( table );
+    try
+    {
+      doCompile( input, output, errorHandler );
+    }
+    finally
+    {
+      StringTable.bind( previous );
+      _stringTables.offer( table );
+    }
+  }
+
+  protected void doCompile( final StyleSheetResource input, final OutputStream output, final ErrorHandler errorHandler )
+    throws IOException
+  {
     if ( null != errorHandler && null != input.getUrl() )
     {
       // Set the context in the error handler to the name of the file we're reading.
       errorHandler.setContext( FilenameUtils.getName( input.getUrl().getPath() ) );
     }
+    CompileStats.enterResource( CompileTracing.toString( input ) );
+    CompileStats.enter( CompileStats.Phase.BUILD );
     StyleSheet styleSheet = getStyleSheetParser().parse( input, errorHandler );
 
     if ( null == errorHandler || 0 == errorHandler.getErrorCount() )
     {
+      CompileStats.enter( CompileStats.Phase.TRANSFORM );
       final StyleSheetEvaluationContext context = new StyleSheetEvaluationContext();
       context.setResource( input );
       context.setErrorHandler( errorHandler );
@@ -98,7 +212,18 @@ public class LessCssCompilerImpl
 
     if ( null == errorHandler || 0 == errorHandler.getErrorCount() )
     {
-      getStyleSheetWriter().write( output, styleSheet, errorHandler );
+      CompileStats.enter( CompileStats.Phase.WRITE );
+      final CompileTracer.Span span = CompileTracing.start( CompileTracer.Operation.WRITE );
+      if ( null == span )
+      {
+        getStyleSheetWriter().write( output, styleSheet, errorHandler );
+      }
+      else
+      {
+        final CountingOutputStream countingOutput = new CountingOutputStream( output );
+        getStyleSheetWriter().write( countingOutput, styleSheet, errorHandler );
+        CompileTracing.end( span, CompileTracing.toString( input ), null, countingOutput.getByteCount() );
+      }
     }
   }
 }
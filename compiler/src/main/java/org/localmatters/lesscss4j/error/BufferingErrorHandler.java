@@ -0,0 +1,80 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.error;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Holds back the errors reported to it so that they can be passed on to another error handler later, or dropped.
+ * The context of each error is recorded with it and set on the other error handler while the error is passed on.
+ */
+public class BufferingErrorHandler
+  extends AbstractErrorHandler
+{
+  private final List<String> _messages = new ArrayList<>();
+  private final List<Throwable> _exceptions = new ArrayList<>();
+  private final List<Object> _contexts = new ArrayList<>();
+
+  @Override
+  public void handleError( final String message, final Throwable exception )
+  {
+    super.handleError( message, exception );
+    _messages.add( message );
+    _exceptions.add( exception );
+    _contexts.add( getContext() );
+  }
+
+  /**
+   * Passes the errors reported so far to the given error handler, in the order they were reported.
+   *
+   * @param errorHandler The error handler to pass the errors to.  If <code>null</code>, the first error is thrown.
+   */
+  public void replay( @Nullable final ErrorHandler errorHandler )
+  {
+    final Object previousContext = null != errorHandler ? errorHandler.getContext() : null;
+    try
+    {
+      for ( int i = 0; i < _messages.size(); i++ )
+      {
+        final String message = _messages.get( i );
+        final Throwable exception = _exceptions.get( i );
+        final Object context = _contexts.get( i );
+        if ( null != errorHandler )
+        {
+          errorHandler.setContext( null != context ? context : previousContext );
+          errorHandler.handleError( message, exception );
+        }
+        else if ( exception instanceof LessCssException )
+        {
+          throw (LessCssException) exception;
+        }
+        else
+        {
+          throw new LessCssException( message, exception );
+        }
+      }
+    }
+    finally
+    {
+      if ( null != errorHandler )
+      {
+        errorHandler.setContext( previousContext );
+      }
+    }
+  }
+}
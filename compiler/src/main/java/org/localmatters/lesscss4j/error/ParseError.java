@@ -24,4 +24,9 @@ public class ParseError
   {
     super( message, exception );
   }
+
+  public ParseError( final String message, final Throwable cause )
+  {
+    super( message, cause );
+  }
 }
@@ -17,6 +17,7 @@ package org.localmatters.lesscss4j.factory;
 
 import org.antlr.runtime.tree.Tree;
 import org.localmatters.lesscss4j.parser.antlr.LessCssParser;
+import org.localmatters.lesscss4j.util.StringTable;
 import static org.localmatters.lesscss4j.parser.antlr.LessCssLexer.*;
 
 public abstract class AbstractObjectFactory<T>
@@ -55,6 +56,6 @@ public abstract class AbstractObjectFactory<T>
         buf.append( child.getText() );
       }
     }
-    return buf.toString();
+    return StringTable.intern( buf );
   }
 }
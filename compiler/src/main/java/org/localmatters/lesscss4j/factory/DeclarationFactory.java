@@ -17,14 +17,13 @@ package org.localmatters.lesscss4j.factory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.antlr.runtime.ANTLRStringStream;
 import org.antlr.runtime.CommonTokenStream;
 import org.antlr.runtime.RecognitionException;
 import org.antlr.runtime.tree.Tree;
+import org.localmatters.lesscss4j.compile.CompileStats;
 import org.localmatters.lesscss4j.error.ErrorHandler;
 import org.localmatters.lesscss4j.model.Declaration;
 import org.localmatters.lesscss4j.model.Selector;
@@ -34,6 +33,8 @@ import org.localmatters.lesscss4j.model.expression.FunctionExpression;
 import org.localmatters.lesscss4j.model.expression.LiteralExpression;
 import org.localmatters.lesscss4j.parser.antlr.LessCssLexer;
 import org.localmatters.lesscss4j.parser.antlr.LessCssParser;
+import org.localmatters.lesscss4j.util.CssText;
+import org.localmatters.lesscss4j.util.StringTable;
 import static org.localmatters.lesscss4j.parser.antlr.LessCssLexer.*;
 
 public class DeclarationFactory
@@ -65,10 +66,10 @@ public class DeclarationFactory
   @Nullable
   public Declaration create( @Nonnull final Tree declarationNode, @Nullable final ErrorHandler errorHandler )
   {
-    final Declaration declaration = new Declaration();
-    declaration.setLine( declarationNode.getLine() );
-    declaration.setChar( declarationNode.getCharPositionInLine() );
-
+    CompileStats.increment( CompileStats.Counter.DECLARATIONS );
+    String property = null;
+    List<Object> values = null;
+    boolean important = false;
     for ( int idx = 0, numChildren = declarationNode.getChildCount(); idx < numChildren; idx++ )
     {
       final Tree child = declarationNode.getChild( idx );
@@ -76,25 +77,20 @@ public class DeclarationFactory
       {
         case IDENT:
         case FONT:
-          String propName = child.getText();
           final Tree propChild = child.getChild( 0 );
-          if ( null != propChild )
-          {
-            propName = propChild.getText() + propName;
-          }
-          declaration.setProperty( propName );
+          property = createProperty( null != propChild ? propChild.getText() : null, child.getText() );
           break;
 
         case PROP_VALUE:
-          final List<Object> values = createPropValues( child, errorHandler );
-          if ( null != values )
+          final List<Object> propValues = createPropValues( child, errorHandler );
+          if ( null != propValues )
           {
-            declaration.setValues( values );
+            values = propValues;
           }
           break;
 
         case IMPORTANT_SYM:
-          declaration.setImportant( true );
+          important = true;
           break;
 
         default:
@@ -103,7 +99,52 @@ public class DeclarationFactory
       }
     }
 
-    return null == declaration.getValues() ? null : declaration;
+    return createDeclaration( property,
+                              values,
+                              important,
+                              declarationNode.getLine(),
+                              declarationNode.getCharPositionInLine() );
+  }
+
+  /**
+   * Creates a declaration from the parts of a <code>DECLARATION</code> node, for parsers that build the model without
+   * a tree.
+   *
+   * @param property  The name of the property, see {@link #createProperty(String, String)}.
+   * @param values    The values of the declaration, see {@link #createPropValue(int, String)} and
+   *                  {@link #createPropValue(Expression, ErrorHandler)}.
+   * @param important True if the declaration is <code>!important</code>.
+   * @return The declaration, <code>null</code> if it has no values.  The caller counts it in {@link CompileStats}.
+   */
+  @Nullable
+  public Declaration createDeclaration( final String property,
+                                        @Nullable final List<Object> values,
+                                        final boolean important,
+                                        final int line,
+                                        final int charPositionInLine )
+  {
+    if ( null == values )
+    {
+      return null;
+    }
+    final Declaration declaration = new Declaration();
+    declaration.setLine( line );
+    declaration.setChar( charPositionInLine );
+    declaration.setProperty( property );
+    declaration.setValues( values );
+    declaration.setImportant( important );
+    return declaration;
+  }
+
+  /**
+   * @param prefix The prefix of the property name, i.e. <code>*</code> or <code>_</code>, if any.
+   * @param name   The name of the property.
+   * @return The full name of the property.
+   */
+  @Nonnull
+  public String createProperty( @Nullable final String prefix, @Nonnull final String name )
+  {
+    return null != prefix ? StringTable.intern( prefix + name ) : name;
   }
 
   protected List<Object> createPropValues( final Tree valueNode, final ErrorHandler errorHandler )
@@ -120,15 +161,10 @@ public class DeclarationFactory
         case EXPRESSION:
         case FUNCTION:
         {
-          Expression expression = getExpressionFactory().create( child, errorHandler );
+          final Expression expression = getExpressionFactory().create( child, errorHandler );
           if ( null != expression )
           {
-            final Expression ieFilter = parseIE8AlphaFilter( expression, errorHandler );
-            if ( null != ieFilter )
-            {
-              expression = ieFilter;
-            }
-            values.add( expression );
+            values.add( createPropValue( expression, errorHandler ) );
           }
           break;
         }
@@ -143,47 +179,89 @@ public class DeclarationFactory
           break;
         }
 
-        case COMMA:
-        case NUMBER:
-        case SOLIDUS:
-        case IDENT:
-        case STRING:
-          // These tokens just spit out as is
-          values.add( child.getText() );
-          break;
-
-        case WS:
-          values.add( " " );
-          break;
-
         default:
-          handleUnexpectedChild( "Unexpected declaration value child:", child );
+          final String value = createPropValue( child.getType(), child.getText() );
+          if ( null != value )
+          {
+            values.add( value );
+          }
+          else
+          {
+            handleUnexpectedChild( "Unexpected declaration value child:", child );
+          }
           break;
       }
     }
     return values.size() > 0 ? values : null;
   }
 
+  /**
+   * Creates the value of a token in the value of a declaration, for parsers that build the model without a tree.
+   *
+   * @param type The type of the token.
+   * @param text The text of the token.
+   * @return The value, <code>null</code> if the token is not output as it is.
+   */
+  @Nullable
+  public String createPropValue( final int type, @Nonnull final String text )
+  {
+    switch ( type )
+    {
+      case COMMA:
+      case NUMBER:
+      case SOLIDUS:
+      case IDENT:
+      case STRING:
+        // These tokens just spit out as is
+        return StringTable.intern( text );
+
+      case WS:
+        return " ";
+
+      default:
+        return null;
+    }
+  }
+
   protected AccessorExpression createMixinAccessor( final Tree accessorNode, final ErrorHandler errorHandler )
   {
-    final AccessorExpression expression = new AccessorExpression();
-    expression.setSelector( getSelectorFactory().create( accessorNode.getChild( 0 ), errorHandler ) );
+    final Selector selector = getSelectorFactory().create( accessorNode.getChild( 0 ), errorHandler );
     final Tree propertyNode = accessorNode.getChild( 1 );
-    switch ( propertyNode.getType() )
+    final String property =
+      VAR == propertyNode.getType() ? propertyNode.getChild( 0 ).getText() : propertyNode.getText();
+    return createMixinAccessor( selector, propertyNode.getType(), property );
+  }
+
+  /**
+   * Creates the accessor of a <code>MIXIN_ACCESSOR</code> node, for parsers that build the model without a tree.
+   *
+   * @param selector     The selector of the mixin.
+   * @param propertyType <code>VAR</code> if the accessor names a variable, otherwise the type of the token naming the
+   *                     property.
+   * @param property     The name of the variable or the text of the token naming the property.
+   * @return The accessor.
+   */
+  @Nonnull
+  public AccessorExpression createMixinAccessor( @Nullable final Selector selector,
+                                                 final int propertyType,
+                                                 @Nonnull final String property )
+  {
+    final AccessorExpression expression = new AccessorExpression();
+    expression.setSelector( selector );
+    switch ( propertyType )
     {
       case VAR:
-        expression.setProperty( propertyNode.getChild( 0 ).getText() );
+        expression.setProperty( property );
         expression.setVariable( true );
         break;
 
       case STRING:
-        final String str = propertyNode.getText();
-        expression.setProperty( str.substring( 1, str.length() - 1 ) ); // strip off quotes
+        expression.setProperty( property.substring( 1, property.length() - 1 ) ); // strip off quotes
         expression.setVariable( false );
         break;
 
       default:
-        expression.setProperty( propertyNode.getText() );
+        expression.setProperty( property );
         expression.setVariable( false );
         break;
     }
@@ -191,8 +269,19 @@ public class DeclarationFactory
     return expression;
   }
 
-  private final Pattern _ieAlphaPattern =
-    Pattern.compile( "(?i)['\"]progid:DXImageTransform\\.Microsoft\\.(Alpha\\(.*\\))['\"]" );
+  /**
+   * Creates the value of an expression in the value of a declaration, for parsers that build the model without a
+   * tree.
+   *
+   * @param expression An expression from the value of a declaration.
+   * @return The IE8 alpha filter parsed from the expression, or the expression if it is not one.
+   */
+  @Nonnull
+  public Expression createPropValue( @Nonnull final Expression expression, @Nullable final ErrorHandler errorHandler )
+  {
+    final Expression ieFilter = parseIE8AlphaFilter( expression, errorHandler );
+    return null != ieFilter ? ieFilter : expression;
+  }
 
   /**
    * We can't handle the IE8 way of processing Alpha in the Lexer...it just looks like a literal string.  This method
@@ -208,15 +297,15 @@ public class DeclarationFactory
     {
       final String text = ( (LiteralExpression) value ).getValue();
 
-      // Short circuit test to avoid doing the regex match if we don't have to
+      // Short circuit test to avoid scanning the text if we don't have to
       if ( ( text.charAt( 0 ) == '"' || text.charAt( 0 ) == '\'' ) &&
            text.length() > "'progid:DXImageTransform.Microsoft.Alpha()'".length() &&
            ( text.charAt( text.length() - 1 ) == '"' || text.charAt( text.length() - 1 ) == '\'' ) )
       {
-        final Matcher matcher = _ieAlphaPattern.matcher( text );
-        if ( matcher.matches() )
+        final String alpha = CssText.parseIEAlphaFilter( text );
+        if ( null != alpha )
         {
-          final LessCssLexer lexer = new LessCssLexer( new ANTLRStringStream( matcher.group( 1 ) ) );
+          final LessCssLexer lexer = new LessCssLexer( new ANTLRStringStream( alpha ) );
           final LessCssParser parser = new LessCssParser( new CommonTokenStream( lexer ) );
           try
           {
@@ -30,6 +30,7 @@ import org.localmatters.lesscss4j.model.expression.LiteralExpression;
 import org.localmatters.lesscss4j.model.expression.MultiplyExpression;
 import org.localmatters.lesscss4j.model.expression.SubtractExpression;
 import org.localmatters.lesscss4j.model.expression.VariableReferenceExpression;
+import org.localmatters.lesscss4j.util.StringTable;
 import static org.localmatters.lesscss4j.parser.antlr.LessCssLexer.*;
 
 public class ExpressionFactory
@@ -69,16 +70,95 @@ public class ExpressionFactory
 
   protected LiteralExpression createLiteral( final String text, final Tree expression )
   {
-    final LiteralExpression literal = new LiteralExpression( text );
-    literal.setType( expression.getType() );
-    literal.setLine( expression.getLine() );
-    literal.setChar( expression.getCharPositionInLine() );
+    return createLiteral( text, expression.getType(), expression.getLine(), expression.getCharPositionInLine() );
+  }
+
+  /**
+   * Creates the literal of a node of the given type from its text, for parsers that build the model without a tree.
+   * The per node methods of this factory are the ones used to build expressions from a tree, so both build the same
+   * model.
+   */
+  @Nonnull
+  public LiteralExpression createLiteral( @Nonnull final String text,
+                                          final int type,
+                                          final int line,
+                                          final int charPositionInLine )
+  {
+    final LiteralExpression literal = new LiteralExpression( StringTable.intern( text ) );
+    literal.setType( type );
+    literal.setLine( line );
+    literal.setChar( charPositionInLine );
     return literal;
   }
 
+  @Nonnull
+  public ConstantExpression createConstant( @Nonnull final String text, final int line, final int charPositionInLine )
+  {
+    return position( new ConstantExpression( text ), line, charPositionInLine );
+  }
+
+  @Nonnull
+  public VariableReferenceExpression createVariableReference( @Nonnull final String name,
+                                                              final int line,
+                                                              final int charPositionInLine )
+  {
+    return position( new VariableReferenceExpression( name ), line, charPositionInLine );
+  }
+
+  /**
+   * @param operator The type of the operator, one of <code>STAR</code>, <code>SOLIDUS</code>, <code>PLUS</code> or
+   *                 <code>MINUS</code>.
+   */
+  @Nonnull
+  public Expression createOperation( final int operator,
+                                     @Nonnull final Expression left,
+                                     @Nonnull final Expression right,
+                                     final int line,
+                                     final int charPositionInLine )
+  {
+    final AbstractElement result;
+    switch ( operator )
+    {
+      case STAR:
+        result = new MultiplyExpression( left, right );
+        break;
+
+      case SOLIDUS:
+        result = new DivideExpression( left, right );
+        break;
+
+      case PLUS:
+        result = new AddExpression( left, right );
+        break;
+
+      case MINUS:
+        result = new SubtractExpression( left, right );
+        break;
+
+      default:
+        throw new IllegalStateException( "Unexpected operator " + operator );
+    }
+    return (Expression) position( result, line, charPositionInLine );
+  }
+
+  /**
+   * @return The function, without any arguments.
+   */
+  @Nonnull
+  public FunctionExpression createFunction( @Nonnull final String name, final int line, final int charPositionInLine )
+  {
+    return position( new FunctionExpression( name ), line, charPositionInLine );
+  }
+
+  @Nonnull
+  public ListExpression createListExpression()
+  {
+    return new ListExpression();
+  }
+
   protected Expression createListExpression( final Tree expression )
   {
-    final ListExpression listExpr = new ListExpression();
+    final ListExpression listExpr = createListExpression();
     for ( int idx = 0, numChildren = expression.getChildCount(); idx < numChildren; idx++ )
     {
       final Tree child = expression.getChild( idx );
@@ -100,11 +180,13 @@ public class ExpressionFactory
 
   protected Expression createExpression( final Tree expression )
   {
+    final int line = expression.getLine();
+    final int charPositionInLine = expression.getCharPositionInLine();
     final Expression result;
     switch ( expression.getType() )
     {
       case CONSTANT:
-        result = new ConstantExpression( concatChildNodeText( expression ) );
+        result = createConstant( concatChildNodeText( expression ), line, charPositionInLine );
         break;
 
       case LITERAL:
@@ -112,27 +194,18 @@ public class ExpressionFactory
         break;
 
       case STAR:
-        result = new MultiplyExpression( createExpression( expression.getChild( 0 ) ),
-                                         createExpression( expression.getChild( 1 ) ) );
-        break;
-
       case SOLIDUS:
-        result = new DivideExpression( createExpression( expression.getChild( 0 ) ),
-                                       createExpression( expression.getChild( 1 ) ) );
-        break;
-
       case PLUS:
-        result = new AddExpression( createExpression( expression.getChild( 0 ) ),
-                                    createExpression( expression.getChild( 1 ) ) );
-        break;
-
       case MINUS:
-        result = new SubtractExpression( createExpression( expression.getChild( 0 ) ),
-                                         createExpression( expression.getChild( 1 ) ) );
+        result = createOperation( expression.getType(),
+                                  createExpression( expression.getChild( 0 ) ),
+                                  createExpression( expression.getChild( 1 ) ),
+                                  line,
+                                  charPositionInLine );
         break;
 
       case VAR:
-        result = new VariableReferenceExpression( expression.getChild( 0 ).getText() );
+        result = createVariableReference( expression.getChild( 0 ).getText(), line, charPositionInLine );
         break;
 
       case EXPR:
@@ -146,8 +219,7 @@ public class ExpressionFactory
 
     if ( result instanceof AbstractElement )
     {
-      ( (AbstractElement) result ).setLine( expression.getLine() );
-      ( (AbstractElement) result ).setChar( expression.getCharPositionInLine() );
+      position( (AbstractElement) result, line, charPositionInLine );
     }
 
     return result;
@@ -156,7 +228,8 @@ public class ExpressionFactory
   protected Expression createFunction( final Tree function )
   {
     final Tree nameNode = function.getChild( 0 );
-    final FunctionExpression func = new FunctionExpression( concatChildNodeText( nameNode ) );
+    final FunctionExpression func =
+      createFunction( concatChildNodeText( nameNode ), function.getLine(), function.getCharPositionInLine() );
     for ( int idx = 1, numChildren = function.getChildCount(); idx < numChildren; idx++ )
     {
       final Tree child = function.getChild( idx );
@@ -195,8 +268,13 @@ public class ExpressionFactory
       }
     }
 
-    func.setLine( function.getLine() );
-    func.setChar( function.getCharPositionInLine() );
     return func;
   }
+
+  private static <T extends AbstractElement> T position( final T element, final int line, final int charPositionInLine )
+  {
+    element.setLine( line );
+    element.setChar( charPositionInLine );
+    return element;
+  }
 }
@@ -0,0 +1,232 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.factory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.antlr.runtime.tree.Tree;
+import org.localmatters.lesscss4j.compile.CompileStats;
+import org.localmatters.lesscss4j.error.BufferingErrorHandler;
+import org.localmatters.lesscss4j.error.ErrorHandler;
+import org.localmatters.lesscss4j.parser.StyleSheetResource;
+import org.localmatters.lesscss4j.util.StringTable;
+import static org.localmatters.lesscss4j.parser.antlr.LessCssLexer.*;
+
+/**
+ * Parses the stylesheets imported by a stylesheet, and the stylesheets they import in turn, concurrently on an
+ * {@link Executor} ahead of the {@link StyleSheetFactory} reaching the imports.  The factory still processes the
+ * imports one at a time and in order, it just picks up the trees parsed here rather than parsing them itself.
+ * <p/>
+ * Errors reported while parsing a stylesheet are held back until the factory picks up its tree and are then passed to
+ * the error handler of the compile, so that they are reported in the same order and with the same context as when
+ * parsing sequentially.  Imports that can not be resolved here are left for the factory to report.
+ * <p/>
+ * An instance only relates to a single compile.
+ */
+final class ImportPrefetcher
+{
+  private final StyleSheetFactory _factory;
+  private final Executor _executor;
+  private final ConcurrentMap<String, FutureTask<ParseResult>> _tasks = new ConcurrentHashMap<>();
+
+  ImportPrefetcher( @Nonnull final StyleSheetFactory factory, @Nonnull final Executor executor )
+  {
+    _factory = factory;
+    _executor = executor;
+  }
+
+  /**
+   * Starts parsing the stylesheets imported by the given stylesheet.
+   *
+   * @param styleSheetNode The parsed stylesheet.
+   * @param resource       The stylesheet that the import paths are relative to.
+   */
+  void prefetch( @Nonnull final Tree styleSheetNode, @Nonnull final StyleSheetResource resource )
+  {
+    for ( int idx = 0, numChildren = styleSheetNode.getChildCount(); idx < numChildren; idx++ )
+    {
+      final Tree child = styleSheetNode.getChild( idx );
+      if ( IMPORT == child.getType() )
+      {
+        prefetch( child.getChild( 0 ).getText(), resource );
+      }
+    }
+  }
+
+  private void prefetch( final String importUrl, final StyleSheetResource relativeTo )
+  {
+    final StyleSheetResource importResource;
+    final URL url;
+    try
+    {
+      final String path = _factory.cleanImportPath( importUrl );
+      if ( _factory.isPlainCssCandidate( path ) )
+      {
+        // Most likely passed through by the factory without being parsed
+        return;
+      }
+      importResource = _factory.getImportResource( path, relativeTo );
+      url = importResource.getUrl();
+    }
+    catch ( final IOException | RuntimeException e )
+    {
+      // The factory reports the error when it reaches the import
+      return;
+    }
+    if ( null == url )
+    {
+      return;
+    }
+
+    final String key = url.toExternalForm();
+    // Share strings with the compile that the stylesheet is imported into
+    final StringTable table = StringTable.current();
+    final FutureTask<ParseResult> task = new FutureTask<>( new Callable<ParseResult>()
+    {
+      public ParseResult call()
+        throws IOException
+      {
+        final StringTable previous = StringTable.bind( table );
+        try
+        {
+          return parse( importResource );
+        }
+        finally
+        {
+          StringTable.bind( previous );
+        }
+      }
+    } );
+    if ( null == _tasks.putIfAbsent( key, task ) )
+    {
+      try
+      {
+        _executor.execute( task );
+      }
+      catch ( final RejectedExecutionException e )
+      {
+        // Leave the stylesheet to be parsed by the factory
+        _tasks.remove( key, task );
+      }
+    }
+  }
+
+  private ParseResult parse( final StyleSheetResource resource )
+    throws IOException
+  {
+    final BufferingErrorHandler errorHandler = new BufferingErrorHandler();
+    final Tree tree = _factory.getStyleSheetTreeParser().parseTree( resource, errorHandler );
+    if ( null != tree && 0 == errorHandler.getErrorCount() )
+    {
+      prefetch( tree, resource );
+    }
+    return new ParseResult( tree, errorHandler );
+  }
+
+  /**
+   * Returns the result of parsing the given stylesheet, parsing it on the current thread if it has not been started or
+   * waiting for the parse to complete if it has.
+   *
+   * @param resource The imported stylesheet.
+   * @return The result, <code>null</code> if the stylesheet was not parsed ahead of time.
+   * @throws IOException If the stylesheet could not be read.
+   */
+  @Nullable
+  ParseResult get( @Nonnull final StyleSheetResource resource )
+    throws IOException
+  {
+    final URL url = resource.getUrl();
+    final FutureTask<ParseResult> task = null != url ? _tasks.get( url.toExternalForm() ) : null;
+    if ( null == task )
+    {
+      return null;
+    }
+
+    final CompileStats.Phase previousPhase = CompileStats.enter( CompileStats.Phase.PARSE );
+    try
+    {
+      // Parse the stylesheet on this thread if no thread of the executor has started it, as they may all be waiting
+      // on imports themselves.  Does nothing if the parse has already started.
+      task.run();
+      return task.get();
+    }
+    catch ( final InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Interrupted while parsing " + url );
+    }
+    catch ( final ExecutionException e )
+    {
+      final Throwable cause = e.getCause();
+      if ( cause instanceof IOException )
+      {
+        throw (IOException) cause;
+      }
+      else if ( cause instanceof RuntimeException )
+      {
+        throw (RuntimeException) cause;
+      }
+      else if ( cause instanceof Error )
+      {
+        throw (Error) cause;
+      }
+      else
+      {
+        throw new IOException( cause );
+      }
+    }
+    finally
+    {
+      CompileStats.exit( previousPhase );
+    }
+  }
+
+  static final class ParseResult
+  {
+    @Nullable
+    private final Tree _tree;
+    private final BufferingErrorHandler _errors;
+
+    ParseResult( @Nullable final Tree tree, @Nonnull final BufferingErrorHandler errors )
+    {
+      _tree = tree;
+      _errors = errors;
+    }
+
+    /**
+     * Passes the errors reported while parsing the stylesheet to the given error handler and returns the tree.
+     *
+     * @param errorHandler The error handler of the compile.  If <code>null</code>, the first error is thrown.
+     * @return The parsed stylesheet, <code>null</code> if it could not be parsed.
+     */
+    @Nullable
+    Tree getTree( @Nullable final ErrorHandler errorHandler )
+    {
+      _errors.replay( errorHandler );
+      return _tree;
+    }
+  }
+}
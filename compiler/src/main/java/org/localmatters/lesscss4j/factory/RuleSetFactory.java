@@ -18,6 +18,7 @@ package org.localmatters.lesscss4j.factory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.antlr.runtime.tree.Tree;
+import org.localmatters.lesscss4j.compile.CompileStats;
 import org.localmatters.lesscss4j.error.ErrorHandler;
 import org.localmatters.lesscss4j.model.Declaration;
 import org.localmatters.lesscss4j.model.MixinReference;
@@ -66,9 +67,8 @@ public class RuleSetFactory
   @Nullable
   public RuleSet create( @Nonnull final Tree ruleSetNode, @Nullable final ErrorHandler errorHandler )
   {
-    final RuleSet ruleSet = new RuleSet();
-    ruleSet.setLine( ruleSetNode.getLine() );
-    ruleSet.setChar( ruleSetNode.getCharPositionInLine() );
+    CompileStats.increment( CompileStats.Counter.RULE_SETS );
+    final RuleSet ruleSet = createRuleSet( ruleSetNode.getLine(), ruleSetNode.getCharPositionInLine() );
 
     for ( int idx = 0, numChildren = ruleSetNode.getChildCount(); idx < numChildren; idx++ )
     {
@@ -88,17 +88,7 @@ public class RuleSetFactory
           final Expression expr = getExpressionFactory().create( child.getChild( 1 ), null );
           if ( null != expr )
           {
-            final String varName = child.getChild( 0 ).getText();
-            if ( null != ruleSet.getVariable( varName ) )
-            {
-              // todo: error -- duplicate error
-            }
-            ruleSet.setVariable( varName, expr );
-
-            if ( child.getType() == MIXIN_ARG )
-            {
-              ruleSet.addArgument( varName, expr );
-            }
+            addVariable( ruleSet, child.getChild( 0 ).getText(), expr, child.getType() == MIXIN_ARG );
           }
           break;
 
@@ -135,13 +125,58 @@ public class RuleSetFactory
     return ruleSet;
   }
 
+  /**
+   * Creates an empty rule set, for parsers that build the model without a tree.  The caller counts the rule set in
+   * {@link CompileStats}.
+   */
+  @Nonnull
+  public RuleSet createRuleSet( final int line, final int charPositionInLine )
+  {
+    final RuleSet ruleSet = new RuleSet();
+    ruleSet.setLine( line );
+    ruleSet.setChar( charPositionInLine );
+    return ruleSet;
+  }
+
+  /**
+   * Adds a variable defined by the rule set, or an argument of the mixin macro, to the rule set.
+   *
+   * @param argument True if the variable is an argument of the mixin macro.
+   */
+  public void addVariable( @Nonnull final RuleSet ruleSet,
+                           @Nonnull final String name,
+                           @Nonnull final Expression value,
+                           final boolean argument )
+  {
+    if ( null != ruleSet.getVariable( name ) )
+    {
+      // todo: error -- duplicate error
+    }
+    ruleSet.setVariable( name, value );
+
+    if ( argument )
+    {
+      ruleSet.addArgument( name, value );
+    }
+  }
+
+  /**
+   * @return A reference to a mixin, without a selector or arguments.
+   */
+  @Nonnull
+  public MixinReference createMixinReference( final int line, final int charPositionInLine )
+  {
+    final MixinReference ref = new MixinReference();
+    ref.setLine( line );
+    ref.setChar( charPositionInLine );
+    return ref;
+  }
+
   protected MixinReference createMixinReferences( final Tree mixinNode, final ErrorHandler errorHandler )
   {
     // todo: put this in it's own factory?
 
-    final MixinReference ref = new MixinReference();
-    ref.setLine( mixinNode.getLine() );
-    ref.setChar( mixinNode.getCharPositionInLine() );
+    final MixinReference ref = createMixinReference( mixinNode.getLine(), mixinNode.getCharPositionInLine() );
 
     for ( int idx = 0, numChildren = mixinNode.getChildCount(); idx < numChildren; idx++ )
     {
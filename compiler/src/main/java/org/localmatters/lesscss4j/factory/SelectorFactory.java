@@ -27,12 +27,26 @@ public class SelectorFactory
   @Nullable
   public Selector create( @Nonnull final Tree selectorNode, @Nullable final ErrorHandler errorHandler )
   {
-    final String selectorText = concatChildNodeText( selectorNode );
-    if ( selectorText.length() > 0 )
+    return createSelector( concatChildNodeText( selectorNode ),
+                           selectorNode.getLine(),
+                           selectorNode.getCharPositionInLine() );
+  }
+
+  /**
+   * Creates the selector of a <code>SELECTOR</code> node from its text, for parsers that build the model without a
+   * tree.
+   *
+   * @param text The text of the selector, with any whitespace compressed into a single space.
+   * @return The selector, <code>null</code> if the text is empty.
+   */
+  @Nullable
+  public Selector createSelector( @Nonnull final String text, final int line, final int charPositionInLine )
+  {
+    if ( text.length() > 0 )
     {
-      final Selector selector = new Selector( selectorText );
-      selector.setLine( selectorNode.getLine() );
-      selector.setChar( selectorNode.getCharPositionInLine() );
+      final Selector selector = new Selector( text );
+      selector.setLine( line );
+      selector.setChar( charPositionInLine );
       return selector;
     }
     else
@@ -17,12 +17,14 @@ package org.localmatters.lesscss4j.factory;
 
 import java.io.IOException;
 import java.net.URL;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executor;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.antlr.runtime.tree.Tree;
 import org.apache.commons.io.FilenameUtils;
+import org.localmatters.lesscss4j.compile.CompileStats;
+import org.localmatters.lesscss4j.compile.CompileTracer;
+import org.localmatters.lesscss4j.compile.CompileTracing;
 import org.localmatters.lesscss4j.error.ErrorHandler;
 import org.localmatters.lesscss4j.error.ErrorUtils;
 import org.localmatters.lesscss4j.error.ImportException;
@@ -30,19 +32,27 @@ import org.localmatters.lesscss4j.model.AbstractElement;
 import org.localmatters.lesscss4j.model.Keyframes;
 import org.localmatters.lesscss4j.model.Media;
 import org.localmatters.lesscss4j.model.Page;
+import org.localmatters.lesscss4j.model.PlainCss;
 import org.localmatters.lesscss4j.model.RuleSet;
 import org.localmatters.lesscss4j.model.StyleSheet;
 import org.localmatters.lesscss4j.model.expression.Expression;
 import org.localmatters.lesscss4j.parser.DefaultStyleSheetResourceLoader;
+import org.localmatters.lesscss4j.parser.PlainCssParser;
 import org.localmatters.lesscss4j.parser.StyleSheetResource;
 import org.localmatters.lesscss4j.parser.StyleSheetResourceLoader;
 import org.localmatters.lesscss4j.parser.StyleSheetTree;
 import org.localmatters.lesscss4j.parser.StyleSheetTreeParser;
+import org.localmatters.lesscss4j.util.CssText;
 import static org.localmatters.lesscss4j.parser.antlr.LessCssLexer.*;
 
 public class StyleSheetFactory
   extends AbstractObjectFactory<StyleSheet>
 {
+  /**
+   * Prefetcher for the stylesheet being created on the current thread, if imports are parsed concurrently.
+   */
+  private static final ThreadLocal<ImportPrefetcher> PREFETCHER = new ThreadLocal<>();
+
   private ObjectFactory<RuleSet> _ruleSetFactory;
   private ObjectFactory<Media> _mediaFactory;
   private ObjectFactory<Keyframes> _keyframesFactory;
@@ -50,20 +60,8 @@ public class StyleSheetFactory
   private ObjectFactory<Expression> _expressionFactory;
   private StyleSheetTreeParser _styleSheetTreeParser;
   private StyleSheetResourceLoader _styleSheetResourceLoader = new DefaultStyleSheetResourceLoader();
-
-  /**
-   * Pattern to extract the path from an <code>@import</code> statement.
-   * Possible options (whitespace is insignificant):
-   * <ul>
-   * <li>url("some/path")</li>
-   * <li>url('some/path')</li>
-   * <li>url(some/path)</li>
-   * <li>"some/path"</li>
-   * <li>'some/path'</li>
-   * </ul>
-   */
-  private final Pattern _importCleanupPattern =
-    Pattern.compile( "(?i:u\\s*r\\s*l\\(\\s*['\"]?|['\"])(.*?)(?:['\"]?\\s*\\)|['\"])" );
+  private Executor _importExecutor;
+  private PlainCssParser _plainCssParser;
 
   public StyleSheetTreeParser getStyleSheetTreeParser()
   {
@@ -75,6 +73,41 @@ public class StyleSheetFactory
     _styleSheetTreeParser = styleSheetTreeParser;
   }
 
+  public Executor getImportExecutor()
+  {
+    return _importExecutor;
+  }
+
+  /**
+   * Sets the executor used to parse imported stylesheets concurrently.  When set, the imports of a stylesheet, and
+   * the imports of those stylesheets in turn, are parsed on the executor as soon as they are discovered.  The imports
+   * are still processed in order and errors are reported in the same order and context as when parsing sequentially.
+   * The {@link StyleSheetTreeParser} and {@link StyleSheetResourceLoader} must be thread safe.
+   *
+   * @param importExecutor The executor.  <code>null</code>, the default, to parse imports sequentially.
+   */
+  public void setImportExecutor( final Executor importExecutor )
+  {
+    _importExecutor = importExecutor;
+  }
+
+  public PlainCssParser getPlainCssParser()
+  {
+    return _plainCssParser;
+  }
+
+  /**
+   * Sets the parser used to pass imported <code>.css</code> stylesheets through to the output without compiling
+   * them.  Stylesheets that turn out not to be plain CSS are compiled as usual.  The rule sets of stylesheets that
+   * are passed through can not be used as mixins.
+   *
+   * @param plainCssParser The parser.  <code>null</code>, the default, to compile all imported stylesheets.
+   */
+  public void setPlainCssParser( final PlainCssParser plainCssParser )
+  {
+    _plainCssParser = plainCssParser;
+  }
+
   public ObjectFactory<Expression> getExpressionFactory()
   {
     return _expressionFactory;
@@ -135,11 +168,108 @@ public class StyleSheetFactory
     stylesheet.setLine( styleSheetNode.getLine() );
     stylesheet.setChar( styleSheetNode.getCharPositionInLine() );
 
-    processStyleSheet( stylesheet, styleSheetNode, resource, errorHandler );
+    if ( null != getImportExecutor() && null != resource )
+    {
+      final ImportPrefetcher prefetcher = new ImportPrefetcher( this, getImportExecutor() );
+      prefetcher.prefetch( styleSheetNode, resource );
+      final ImportPrefetcher previous = PREFETCHER.get();
+      PREFETCHER.set( prefetcher );
+      try
+      {
+        processStyleSheet( stylesheet, styleSheetNode, resource, errorHandler );
+      }
+      finally
+      {
+        if ( null == previous )
+        {
+          PREFETCHER.remove();
+        }
+        else
+        {
+          PREFETCHER.set( previous );
+        }
+      }
+    }
+    else
+    {
+      processStyleSheet( stylesheet, styleSheetNode, resource, errorHandler );
+    }
 
     return stylesheet;
   }
 
+  /**
+   * Adds a top level element to a stylesheet that is being parsed one element at a time.  The stylesheet must have
+   * been created by {@link #create(Tree, ErrorHandler)} from a tree holding the <code>@charset</code> and
+   * <code>@import</code> rules of the stylesheet, with the remaining elements added in order as they are parsed.
+   *
+   * @param stylesheet   The stylesheet.
+   * @param element      The tree of the element.
+   * @param resource     The stylesheet being parsed.
+   * @param errorHandler The handler for any errors.
+   */
+  public void addElement( @Nonnull final StyleSheet stylesheet,
+                          @Nonnull final Tree element,
+                          @Nullable final StyleSheetResource resource,
+                          @Nullable final ErrorHandler errorHandler )
+  {
+    positionAt( stylesheet, element.getLine(), element.getCharPositionInLine() );
+    processStyleSheetNode( stylesheet, element, resource, errorHandler );
+  }
+
+  /**
+   * Like {@link #addElement(StyleSheet, Tree, StyleSheetResource, ErrorHandler)} for a rule set or mixin macro built
+   * without a tree.
+   */
+  public void addRuleSet( @Nonnull final StyleSheet stylesheet,
+                          @Nullable final RuleSet ruleSet,
+                          final int line,
+                          final int charPositionInLine )
+  {
+    positionAt( stylesheet, line, charPositionInLine );
+    addRuleSet( stylesheet, ruleSet );
+  }
+
+  /**
+   * Like {@link #addElement(StyleSheet, Tree, StyleSheetResource, ErrorHandler)} for a variable with a value built
+   * without a tree.
+   */
+  public void addVariable( @Nonnull final StyleSheet stylesheet,
+                           @Nonnull final String name,
+                           @Nullable final Expression value,
+                           final int line,
+                           final int charPositionInLine )
+  {
+    positionAt( stylesheet, line, charPositionInLine );
+    addVariable( stylesheet, name, value );
+  }
+
+  private void positionAt( final StyleSheet stylesheet, final int line, final int charPositionInLine )
+  {
+    if ( 0 == stylesheet.getLine() )
+    {
+      // Like the tree of a whole stylesheet, positioned at its first element
+      stylesheet.setLine( line );
+      stylesheet.setChar( charPositionInLine );
+    }
+  }
+
+  private void addRuleSet( final StyleSheet stylesheet, final RuleSet ruleSet )
+  {
+    if ( null != ruleSet )
+    {
+      stylesheet.addBodyElement( ruleSet );
+    }
+  }
+
+  private void addVariable( final StyleSheet stylesheet, final String name, final Expression value )
+  {
+    if ( null != value )
+    {
+      stylesheet.setVariable( name, value );
+    }
+  }
+
   protected void processStyleSheet( final StyleSheet stylesheet,
                                     final Tree styleSheetNode,
                                     final StyleSheetResource resource,
@@ -161,7 +291,7 @@ public class StyleSheetFactory
     {
       case CHARSET:
         String charset = child.getChild( 0 ).getText();
-        charset = charset.replaceFirst( "['\"]\\s*(\\S*)\\s*['\"]", "$1" );
+        charset = CssText.unquoteCharset( charset );
         if ( charset.length() > 0 )
         {
           stylesheet.setCharset( charset );
@@ -174,20 +304,14 @@ public class StyleSheetFactory
 
       case VAR:
         final Tree exprNode = child.getChild( 1 );
-        final Expression expr = getExpressionFactory().create( exprNode, errorHandler );
-        if ( null != expr )
-        {
-          stylesheet.setVariable( child.getChild( 0 ).getText(), expr );
-        }
+        addVariable( stylesheet,
+                     child.getChild( 0 ).getText(),
+                     getExpressionFactory().create( exprNode, errorHandler ) );
         break;
 
       case MIXIN_MACRO:
       case RULESET:
-        final RuleSet ruleSet = getRuleSetFactory().create( child, errorHandler );
-        if ( null != ruleSet )
-        {
-          stylesheet.addBodyElement( ruleSet );
-        }
+        addRuleSet( stylesheet, getRuleSetFactory().create( child, errorHandler ) );
         break;
 
       case MEDIA_SYM:
@@ -257,18 +381,50 @@ public class StyleSheetFactory
       saveContext = errorHandler.getContext();
       errorHandler.setContext( path );
     }
+    final CompileTracer.Span span = CompileTracing.start( CompileTracer.Operation.IMPORT );
+    StyleSheetResource importResource = null;
+    Tree result = null;
     try
     {
-      final StyleSheetResource importResource = getImportResource( path, relativeTo );
-      final int preImportErrorCount = null != errorHandler ? errorHandler.getErrorCount() : 0;
-      final Tree result = getStyleSheetTreeParser().parseTree( importResource, errorHandler );
-      if ( null == errorHandler || preImportErrorCount == errorHandler.getErrorCount() )
+      final CompileStats.Phase previousPhase = CompileStats.enter( CompileStats.Phase.IMPORT );
+      try
+      {
+        importResource = getImportResource( path, relativeTo );
+      }
+      finally
       {
-        processStyleSheet( stylesheet, result, importResource, errorHandler );
+        CompileStats.exit( previousPhase );
+      }
+      final CompileStats.ResourceStats previousResource =
+        CompileStats.enterResource( CompileTracing.toString( importResource ) );
+      try
+      {
+        final PlainCss plainCss = isPlainCssCandidate( path ) ? parsePlainCss( importResource ) : null;
+        if ( null != plainCss )
+        {
+          stylesheet.addBodyElement( plainCss );
+        }
+        else
+        {
+          final int preImportErrorCount = null != errorHandler ? errorHandler.getErrorCount() : 0;
+          result = parseImport( importResource, errorHandler );
+          if ( null == errorHandler || preImportErrorCount == errorHandler.getErrorCount() )
+          {
+            processStyleSheet( stylesheet, result, importResource, errorHandler );
+          }
+        }
+      }
+      finally
+      {
+        CompileStats.exitResource( previousResource );
       }
     }
     finally
     {
+      CompileTracing.end( span,
+                          CompileTracing.toString( importResource ),
+                          path,
+                          null != result ? result.getChildCount() : 0 );
       if ( null != errorHandler )
       {
         errorHandler.setContext( saveContext );
@@ -276,6 +432,52 @@ public class StyleSheetFactory
     }
   }
 
+  /**
+   * @return True if the imported stylesheet should be passed through to the output if it is plain CSS.
+   */
+  protected boolean isPlainCssCandidate( final String path )
+  {
+    return null != getPlainCssParser() && "css".equalsIgnoreCase( FilenameUtils.getExtension( path ) );
+  }
+
+  /**
+   * Reads an imported stylesheet that may be passed through to the output.
+   *
+   * @return The content of the stylesheet, <code>null</code> if it is not plain CSS and must be compiled.
+   */
+  @Nullable
+  protected PlainCss parsePlainCss( final StyleSheetResource importResource )
+    throws IOException
+  {
+    final CompileStats.Phase previousPhase = CompileStats.enter( CompileStats.Phase.PARSE );
+    try
+    {
+      return getPlainCssParser().parse( importResource );
+    }
+    finally
+    {
+      CompileStats.exit( previousPhase );
+    }
+  }
+
+  /**
+   * Parses an imported stylesheet, or picks up its tree if it has already been parsed concurrently.
+   */
+  protected Tree parseImport( final StyleSheetResource importResource, final ErrorHandler errorHandler )
+    throws IOException
+  {
+    final ImportPrefetcher prefetcher = PREFETCHER.get();
+    final ImportPrefetcher.ParseResult prefetched = null != prefetcher ? prefetcher.get( importResource ) : null;
+    if ( null != prefetched )
+    {
+      return prefetched.getTree( errorHandler );
+    }
+    else
+    {
+      return getStyleSheetTreeParser().parseTree( importResource, errorHandler );
+    }
+  }
+
   protected StyleSheetResource getImportResource( String path, final StyleSheetResource relativeTo )
     throws IOException
   {
@@ -297,12 +499,25 @@ public class StyleSheetFactory
     return getStyleSheetResourceLoader().getResource( importUrl );
   }
 
+  /**
+   * Extracts the path from an <code>@import</code> statement.
+   * Possible options (whitespace is insignificant):
+   * <ul>
+   * <li>url("some/path")</li>
+   * <li>url('some/path')</li>
+   * <li>url(some/path)</li>
+   * <li>"some/path"</li>
+   * <li>'some/path'</li>
+   * </ul>
+   *
+   * @see CssText#parseImportPath(String)
+   */
   protected String cleanImportPath( final String path )
   {
-    final Matcher matcher = _importCleanupPattern.matcher( path );
-    if ( matcher.matches() )
+    final String cleanPath = CssText.parseImportPath( path );
+    if ( null != cleanPath )
     {
-      return matcher.group( 1 );
+      return cleanPath;
     }
     else
     {
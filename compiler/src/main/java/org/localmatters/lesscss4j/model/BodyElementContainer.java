@@ -16,6 +16,7 @@
 package org.localmatters.lesscss4j.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -24,18 +25,34 @@ import org.localmatters.lesscss4j.model.expression.Expression;
 
 /**
  * Parent container for CSS elements that contain variables and additional rule sets. (e.g. @media, @keyframes, etc)
+ * <p/>
+ * Copying a container does not copy its variables or body elements.  The copy shares them with the original until
+ * either container is modified, at which point the modified container copies the collections it changes, so copying a
+ * container takes the same time no matter how large it is.  The variables and body elements themselves are never
+ * copied, they are shared by every copy as they are not modified once the stylesheet has been parsed.
  */
 public class BodyElementContainer
   extends AbstractElement
   implements VariableContainer, RuleSetContainer
 {
-  private final List<BodyElement> _bodyElements = new ArrayList<>();
-  private final Map<String, Expression> _variables = new LinkedHashMap<>();
-  private final Map<Selector, List<RuleSet>> _ruleSetMap = new LinkedHashMap<>();
+  private List<BodyElement> _bodyElements;
+  private Map<String, Expression> _variables;
+  private Map<Selector, List<RuleSet>> _ruleSetMap;
   private int _ruleSetCount;
+  /**
+   * True if the variables are shared with another container and must be copied before they are modified.
+   */
+  private boolean _variablesShared;
+  /**
+   * True if the body elements are shared with another container and must be copied before they are modified.
+   */
+  private boolean _bodyElementsShared;
 
   public BodyElementContainer()
   {
+    _bodyElements = new ArrayList<>();
+    _variables = new LinkedHashMap<>();
+    _ruleSetMap = new LinkedHashMap<>();
   }
 
   public BodyElementContainer( final BodyElementContainer copy )
@@ -46,26 +63,30 @@ public class BodyElementContainer
   public BodyElementContainer( final BodyElementContainer copy, final boolean copyBodyElements )
   {
     super( copy );
-    for ( final Map.Entry<String, Expression> entry : copy._variables.entrySet() )
+    _variables = copy._variables;
+    _variablesShared = true;
+    copy._variablesShared = true;
+    if ( copyBodyElements )
     {
-      _variables.put( entry.getKey(), entry.getValue().clone() );
+      _bodyElements = copy._bodyElements;
+      _ruleSetMap = copy._ruleSetMap;
+      _ruleSetCount = copy._ruleSetCount;
+      _bodyElementsShared = true;
+      copy._bodyElementsShared = true;
     }
-    if ( copyBodyElements )
+    else
     {
-      for ( BodyElement element : copy._bodyElements )
-      {
-        if ( element instanceof RuleSet )
-        {
-          element = ( (RuleSet) element ).clone();
-        }
-        addBodyElement( element );
-      }
+      _bodyElements = new ArrayList<>();
+      _ruleSetMap = new LinkedHashMap<>();
     }
   }
 
+  /**
+   * @return The body elements, which can not be modified through the list.
+   */
   public List<BodyElement> getBodyElements()
   {
-    return _bodyElements;
+    return Collections.unmodifiableList( _bodyElements );
   }
 
   public void addBodyElement( final BodyElement bodyElement )
@@ -75,6 +96,7 @@ public class BodyElementContainer
 
   public void addBodyElement( final BodyElement bodyElement, final int index )
   {
+    copyBodyElementsIfShared();
     if ( index >= 0 )
     {
       _bodyElements.add( Math.min( _bodyElements.size(), index ), bodyElement );
@@ -103,12 +125,26 @@ public class BodyElementContainer
   public void clearBodyElements()
   {
     _ruleSetCount = 0;
-    _ruleSetMap.clear();
-    _bodyElements.clear();
+    if ( _bodyElementsShared )
+    {
+      _bodyElements = new ArrayList<>();
+      _ruleSetMap = new LinkedHashMap<>();
+      _bodyElementsShared = false;
+    }
+    else
+    {
+      _ruleSetMap.clear();
+      _bodyElements.clear();
+    }
   }
 
   public void setVariable( final String name, final Expression value )
   {
+    if ( _variablesShared )
+    {
+      _variables = new LinkedHashMap<>( _variables );
+      _variablesShared = false;
+    }
     _variables.put( name, value );
   }
 
@@ -119,7 +155,7 @@ public class BodyElementContainer
 
   public Iterator<String> getVariableNames()
   {
-    return _variables.keySet().iterator();
+    return Collections.unmodifiableSet( _variables.keySet() ).iterator();
   }
 
   public void addRuleSet( final RuleSet ruleSet, final int index )
@@ -129,11 +165,27 @@ public class BodyElementContainer
 
   public List<RuleSet> getRuleSet( final Selector selector )
   {
-    return _ruleSetMap.get( selector );
+    final List<RuleSet> ruleSets = _ruleSetMap.get( selector );
+    return null != ruleSets ? Collections.unmodifiableList( ruleSets ) : null;
   }
 
   public int getRuleSetCount()
   {
     return _ruleSetCount;
   }
+
+  private void copyBodyElementsIfShared()
+  {
+    if ( _bodyElementsShared )
+    {
+      _bodyElements = new ArrayList<>( _bodyElements );
+      final Map<Selector, List<RuleSet>> ruleSetMap = new LinkedHashMap<>();
+      for ( final Map.Entry<Selector, List<RuleSet>> entry : _ruleSetMap.entrySet() )
+      {
+        ruleSetMap.put( entry.getKey(), new ArrayList<>( entry.getValue() ) );
+      }
+      _ruleSetMap = ruleSetMap;
+      _bodyElementsShared = false;
+    }
+  }
 }
@@ -17,19 +17,30 @@ package org.localmatters.lesscss4j.model;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Container for the declarations of a rule set or page.  As with the body elements, a copy of the container shares
+ * the declarations with the original until either container is modified.
+ */
 public class DeclarationContainer
   extends BodyElementContainer
 {
-  private final Map<String, Declaration> _declarationMap = new LinkedHashMap<>();
-  private final List<DeclarationElement> _declarations = new ArrayList<>();
+  private Map<String, Declaration> _declarationMap;
+  private List<DeclarationElement> _declarations;
   private boolean _mixinReferenceUsed = false;
+  /**
+   * True if the declarations are shared with another container and must be copied before they are modified.
+   */
+  private boolean _declarationsShared;
 
   public DeclarationContainer()
   {
+    _declarationMap = new LinkedHashMap<>();
+    _declarations = new ArrayList<>();
   }
 
   public DeclarationContainer( final DeclarationContainer copy )
@@ -42,10 +53,16 @@ public class DeclarationContainer
     super( copy );
     if ( copyDeclarations )
     {
-      for ( final DeclarationElement declaration : copy._declarations )
-      {
-        addDeclaration( declaration.clone() );
-      }
+      _declarationMap = copy._declarationMap;
+      _declarations = copy._declarations;
+      _mixinReferenceUsed = copy._mixinReferenceUsed;
+      _declarationsShared = true;
+      copy._declarationsShared = true;
+    }
+    else
+    {
+      _declarationMap = new LinkedHashMap<>();
+      _declarations = new ArrayList<>();
     }
   }
 
@@ -54,15 +71,27 @@ public class DeclarationContainer
     return _mixinReferenceUsed;
   }
 
+  /**
+   * @return The declarations, which can not be modified through the list.
+   */
   public List<DeclarationElement> getDeclarations()
   {
-    return _declarations;
+    return Collections.unmodifiableList( _declarations );
   }
 
   public void clearDeclarations()
   {
-    _declarations.clear();
-    _declarationMap.clear();
+    if ( _declarationsShared )
+    {
+      _declarations = new ArrayList<>();
+      _declarationMap = new LinkedHashMap<>();
+      _declarationsShared = false;
+    }
+    else
+    {
+      _declarations.clear();
+      _declarationMap.clear();
+    }
     _mixinReferenceUsed = false;
   }
 
@@ -79,6 +108,7 @@ public class DeclarationContainer
 
   public void addDeclaration( final DeclarationElement declaration )
   {
+    copyDeclarationsIfShared();
     _declarations.add( declaration );
     addDeclarationMapEntry( declaration );
 
@@ -92,6 +122,7 @@ public class DeclarationContainer
   {
     if ( declaration instanceof Declaration )
     {
+      copyDeclarationsIfShared();
       _declarationMap.put( ( (Declaration) declaration ).getProperty(), (Declaration) declaration );
     }
   }
@@ -100,4 +131,14 @@ public class DeclarationContainer
   {
     return _declarationMap.get( property );
   }
+
+  private void copyDeclarationsIfShared()
+  {
+    if ( _declarationsShared )
+    {
+      _declarations = new ArrayList<>( _declarations );
+      _declarationMap = new LinkedHashMap<>( _declarationMap );
+      _declarationsShared = false;
+    }
+  }
 }
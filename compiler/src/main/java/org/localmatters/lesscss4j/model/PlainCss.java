@@ -0,0 +1,64 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.model;
+
+/**
+ * The content of an imported stylesheet that contains only plain CSS.  The content is not evaluated, it is written
+ * in place of the import exactly as it was read.  The rule sets it contains are not available as mixins.
+ *
+ * @see org.localmatters.lesscss4j.parser.PlainCssParser
+ */
+public class PlainCss
+  extends BodyElementContainer
+  implements BodyElement
+{
+  private String _source;
+
+  public PlainCss()
+  {
+  }
+
+  public PlainCss( final PlainCss copy )
+  {
+    super( copy );
+    _source = copy._source;
+  }
+
+  /**
+   * @return The location of the stylesheet the content was read from, <code>null</code> if unknown.
+   */
+  public String getSource()
+  {
+    return _source;
+  }
+
+  public void setSource( final String source )
+  {
+    _source = source;
+  }
+
+  @Override
+  public Object clone()
+  {
+    return new PlainCss( this );
+  }
+
+  @Override
+  public String toString()
+  {
+    return null != getSource() ? getSource() : super.toString();
+  }
+}
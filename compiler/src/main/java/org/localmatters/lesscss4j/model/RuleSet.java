@@ -16,6 +16,7 @@
 package org.localmatters.lesscss4j.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,10 +27,19 @@ public class RuleSet
   implements BodyElement, Cloneable
 {
   private List<Selector> _selectors;
-  private final Map<String, Expression> _arguments = new LinkedHashMap<>();
+  private Map<String, Expression> _arguments;
+  /**
+   * True if the selectors are shared with another rule set and must be copied before they are modified.
+   */
+  private boolean _selectorsShared;
+  /**
+   * True if the arguments are shared with another rule set and must be copied before they are modified.
+   */
+  private boolean _argumentsShared;
 
   public RuleSet()
   {
+    _arguments = new LinkedHashMap<>();
   }
 
   public RuleSet( final RuleSet copy )
@@ -40,29 +50,26 @@ public class RuleSet
   public RuleSet( final RuleSet copy, final boolean copyDeclarations )
   {
     super( copy, copyDeclarations );
-    if ( null != copy._selectors )
-    {
-      _selectors = new ArrayList<>( copy._selectors.size() );
-      for ( final Selector selector : copy._selectors )
-      {
-        _selectors.add( selector.clone() );
-      }
-    }
-
-    for ( final Map.Entry<String, Expression> entry : copy._arguments.entrySet() )
-    {
-      _arguments.put( entry.getKey(), entry.getValue().clone() );
-    }
+    _selectors = copy._selectors;
+    _arguments = copy._arguments;
+    _selectorsShared = true;
+    _argumentsShared = true;
+    copy._selectorsShared = true;
+    copy._argumentsShared = true;
   }
 
+  /**
+   * @return The selectors, which can not be modified through the list, or <code>null</code> if there are none.
+   */
   public List<Selector> getSelectors()
   {
-    return _selectors;
+    return null != _selectors ? Collections.unmodifiableList( _selectors ) : null;
   }
 
   public void setSelectors( final List<Selector> selectors )
   {
     _selectors = selectors;
+    _selectorsShared = false;
   }
 
   public void addSelector( final Selector selector )
@@ -71,19 +78,42 @@ public class RuleSet
     {
       _selectors = new ArrayList<>();
     }
+    else if ( _selectorsShared )
+    {
+      _selectors = new ArrayList<>( _selectors );
+    }
+    _selectorsShared = false;
     _selectors.add( selector );
   }
 
+  /**
+   * @return The arguments, which can not be modified through the map.
+   */
   public Map<String, Expression> getArguments()
   {
-    return _arguments;
+    return Collections.unmodifiableMap( _arguments );
   }
 
   public void addArgument( final String name, final Expression value )
   {
+    if ( _argumentsShared )
+    {
+      _arguments = new LinkedHashMap<>( _arguments );
+      _argumentsShared = false;
+    }
     _arguments.put( name, value );
   }
 
+  public void clearArguments()
+  {
+    _arguments = new LinkedHashMap<>();
+    _argumentsShared = false;
+  }
+
+  /**
+   * @return A copy of the rule set that shares its selectors, arguments, declarations and body elements until either
+   *         rule set is modified.
+   */
   @Override
   public RuleSet clone()
   {
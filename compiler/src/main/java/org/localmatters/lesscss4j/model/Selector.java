@@ -15,11 +15,41 @@
 */
 package org.localmatters.lesscss4j.model;
 
+import java.io.IOException;
+
+/**
+ * A selector of a rule set.  The selector of a nested rule set is formed from the selectors of the rule sets that
+ * enclose it, so rather than copying the text of every enclosing selector a nested selector refers to the two
+ * selectors it is formed from, sharing them with every other selector formed from the same selectors.  The text of
+ * such a selector is only built when asked for, {@link #appendTo(Appendable)} writes it without building it, and its
+ * hash code is computed from the hash codes of the selectors it is formed from.
+ */
 public class Selector
   extends AbstractElement
   implements Cloneable
 {
-  String _text;
+  /**
+   * The text of the selector, or <code>null</code> if the selector is formed from two selectors and its text has not
+   * been asked for.
+   */
+  private String _text;
+  /**
+   * The enclosing selector, if the selector is formed from two selectors.
+   */
+  private Selector _parent;
+  /**
+   * The nested selector, if the selector is formed from two selectors.
+   */
+  private Selector _child;
+  /**
+   * True if the selectors are separated by the descendant combinator.
+   */
+  private boolean _descendant;
+  private int _length;
+  /**
+   * The hash code of the text, which like that of {@link String} is computed when first needed.
+   */
+  private int _hash;
 
   public Selector()
   {
@@ -28,31 +58,117 @@ public class Selector
 
   public Selector( final String text )
   {
-    _text = text;
+    setText( text );
   }
 
   public Selector( final Selector... selectors )
   {
-    final StringBuilder buf = new StringBuilder();
-    for ( final Selector selector : selectors )
+    if ( 0 == selectors.length )
+    {
+      setText( "" );
+    }
+    else
     {
-      if ( buf.length() > 0 && selector.getText().charAt( 0 ) != ':' )
+      Selector selector = selectors[ 0 ];
+      for ( int i = 1; i < selectors.length; i++ )
       {
-        buf.append( ' ' );
+        selector = new Selector( selector, selectors[ i ] );
       }
-      buf.append( selector.getText() );
+      _text = selector._text;
+      _parent = selector._parent;
+      _child = selector._child;
+      _descendant = selector._descendant;
+      _length = selector._length;
+      _hash = selector._hash;
     }
-    setText( buf.toString() );
+  }
+
+  private Selector( final Selector parent, final Selector child )
+  {
+    _parent = parent;
+    _child = child;
+    // Pseudo classes and elements are appended to the enclosing selector
+    _descendant = parent._length > 0 && child._length > 0 && ':' != child.charAt( 0 );
+    _length = parent._length + ( _descendant ? 1 : 0 ) + child._length;
   }
 
   public String getText()
   {
+    if ( null == _text && null != _parent )
+    {
+      final StringBuilder buf = new StringBuilder( _length );
+      appendTo( buf );
+      _text = buf.toString();
+    }
     return _text;
   }
 
   public void setText( final String text )
   {
     _text = text;
+    _parent = null;
+    _child = null;
+    _descendant = false;
+    _length = null != text ? text.length() : 0;
+    _hash = 0;
+  }
+
+  /**
+   * Appends the text of the selector, without building the text of a selector formed from other selectors.
+   */
+  public void appendTo( final Appendable out )
+    throws IOException
+  {
+    if ( null != _text )
+    {
+      out.append( _text );
+    }
+    else
+    {
+      _parent.appendTo( out );
+      if ( _descendant )
+      {
+        out.append( ' ' );
+      }
+      _child.appendTo( out );
+    }
+  }
+
+  private void appendTo( final StringBuilder buf )
+  {
+    if ( null != _text )
+    {
+      buf.append( _text );
+    }
+    else
+    {
+      _parent.appendTo( buf );
+      if ( _descendant )
+      {
+        buf.append( ' ' );
+      }
+      _child.appendTo( buf );
+    }
+  }
+
+  private char charAt( final int index )
+  {
+    if ( null != _text )
+    {
+      return _text.charAt( index );
+    }
+    else if ( index < _parent._length )
+    {
+      return _parent.charAt( index );
+    }
+    else if ( _descendant && index == _parent._length )
+    {
+      return ' ';
+    }
+    else
+    {
+      return _child.charAt( index - _parent._length - ( _descendant ? 1 : 0 ) );
+    }
   }
 
   @Override
@@ -74,13 +190,47 @@ public class Selector
     }
 
     final Selector that = (Selector) obj;
+    if ( _length != that._length || hashCode() != that.hashCode() )
+    {
+      return false;
+    }
+    else if ( null != _parent &&
+              _parent == that._parent &&
+              _child == that._child &&
+              _descendant == that._descendant )
+    {
+      return true;
+    }
     return getText().equals( that.getText() );
   }
 
+  /**
+   * @return The hash code of the text of the selector, computed for a selector formed from two selectors without
+   *         building its text.
+   */
   @Override
   public int hashCode()
   {
-    return _text.hashCode();
+    int hash = _hash;
+    if ( 0 == hash )
+    {
+      if ( null != _text || null == _parent )
+      {
+        hash = _text.hashCode();
+      }
+      else
+      {
+        // The hash code of a string is the sum of each character times 31 to the power of its distance from the end
+        hash = _parent.hashCode();
+        if ( _descendant )
+        {
+          hash = 31 * hash + ' ';
+        }
+        hash = hash * pow31( _child._length ) + _child.hashCode();
+      }
+      _hash = hash;
+    }
+    return hash;
   }
 
   @Override
@@ -88,4 +238,19 @@ public class Selector
   {
     return new Selector( this );
   }
+
+  private static int pow31( final int exponent )
+  {
+    int result = 1;
+    int base = 31;
+    for ( int e = exponent; e > 0; e >>= 1 )
+    {
+      if ( 0 != ( e & 1 ) )
+      {
+        result *= base;
+      }
+      base *= base;
+    }
+    return result;
+  }
 }
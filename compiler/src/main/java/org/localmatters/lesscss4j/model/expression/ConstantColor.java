@@ -18,12 +18,11 @@ package org.localmatters.lesscss4j.model.expression;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.text.DecimalFormat;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.localmatters.lesscss4j.error.DivideByZeroException;
 import org.localmatters.lesscss4j.error.UnitMismatchException;
+import org.localmatters.lesscss4j.util.CssText;
 import org.realityforge.css.lizard.model.ColorKeyword;
 
 public class ConstantColor
@@ -41,22 +40,6 @@ public class ConstantColor
   private int _blue;
   private BigDecimal _alpha = MAX_ALPHA_VALUE;
 
-  private static final String COLOR_COMPONENT_CONSTANT = "(-?\\d+(\\.\\d+)?||\\d+%?)";
-  /**
-   * Regular expression that is used to extract the rgb or hsl and alpha values from the color function value
-   */
-  private static final Pattern RGB_HSL_PATTERN = Pattern.compile(
-    "(?i)(?:rgb|hsl)a?\\s*\\(\\s*" +
-    COLOR_COMPONENT_CONSTANT +
-    "\\s*,\\s*" +
-    COLOR_COMPONENT_CONSTANT +
-    "\\s*,\\s*" +
-    COLOR_COMPONENT_CONSTANT +
-    "(?:\\s*,\\s*" +
-    COLOR_COMPONENT_CONSTANT +
-    ")?\\s*\\)"
-  );
-
   public ConstantColor()
   {
     this( 0 );
@@ -105,12 +88,12 @@ public class ConstantColor
     }
     else if ( isRGBFunction( value ) )
     {
-      final Matcher matcher = RGB_HSL_PATTERN.matcher( value );
-      if ( matcher.matches() )
+      final String[] components = CssText.parseColorFunction( value );
+      if ( null != components )
       {
-        final String red = matcher.group( 1 );
-        final String green = matcher.group( 3 );
-        final String blue = matcher.group( 5 );
+        final String red = components[ 0 ];
+        final String green = components[ 1 ];
+        final String blue = components[ 2 ];
 
         setRed( parseRGBValue( red ) );
         setGreen( parseRGBValue( green ) );
@@ -118,7 +101,7 @@ public class ConstantColor
 
         if ( value.charAt( 3 ) == 'a' || value.charAt( 3 ) == 'A' )
         {
-          final String alpha = matcher.group( 7 );
+          final String alpha = components[ 3 ];
           setAlpha( parseAlphaValue( alpha ) );
         }
       }
@@ -129,18 +112,18 @@ public class ConstantColor
     }
     else if ( isHSLFunction( value ) )
     {
-      final Matcher matcher = RGB_HSL_PATTERN.matcher( value );
-      if ( matcher.matches() )
+      final String[] components = CssText.parseColorFunction( value );
+      if ( null != components )
       {
         if ( value.charAt( 3 ) == 'a' || value.charAt( 3 ) == 'A' )
         {
-          final String alpha = matcher.group( 7 );
+          final String alpha = components[ 3 ];
           setAlpha( new BigDecimal( alpha ) );
         }
 
-        final float hue = Integer.parseInt( matcher.group( 1 ) );
-        final BigDecimal saturation = parsePercentage( matcher.group( 3 ) );
-        final BigDecimal lightness = parsePercentage( matcher.group( 5 ) );
+        final float hue = Integer.parseInt( components[ 0 ] );
+        final BigDecimal saturation = parsePercentage( components[ 1 ] );
+        final BigDecimal lightness = parsePercentage( components[ 2 ] );
 
         setHSL( hue, saturation.floatValue(), lightness.floatValue() );
       }
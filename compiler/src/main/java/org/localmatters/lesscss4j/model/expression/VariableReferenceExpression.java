@@ -15,6 +15,7 @@
 */
 package org.localmatters.lesscss4j.model.expression;
 
+import org.localmatters.lesscss4j.compile.CompileStats;
 import org.localmatters.lesscss4j.error.UndefinedVariableException;
 import org.localmatters.lesscss4j.model.AbstractElement;
 import org.localmatters.lesscss4j.transform.EvaluationContext;
@@ -48,6 +49,7 @@ public class VariableReferenceExpression
 
   public Expression evaluate( final EvaluationContext context )
   {
+    CompileStats.increment( CompileStats.Counter.VARIABLE_LOOKUPS );
     final Expression value = context.getVariable( getVariableName() );
     if ( null == value )
     {
@@ -28,6 +28,7 @@ import org.localmatters.lesscss4j.model.DeclarationElement;
 import org.localmatters.lesscss4j.model.Keyframes;
 import org.localmatters.lesscss4j.model.Media;
 import org.localmatters.lesscss4j.model.Page;
+import org.localmatters.lesscss4j.model.PlainCss;
 import org.localmatters.lesscss4j.model.RuleSet;
 import org.localmatters.lesscss4j.model.Selector;
 import org.localmatters.lesscss4j.model.StyleSheet;
@@ -231,6 +232,11 @@ public class StyleSheetWriterImpl
       {
         writeBreak( writer );
       }
+      if ( element instanceof PlainCss )
+      {
+        writeBodyElements( writer, ( (PlainCss) element ).getBodyElements(), indent );
+        continue;
+      }
       writeIndent( writer, indent );
       if ( element instanceof Media )
       {
@@ -333,14 +339,15 @@ public class StyleSheetWriterImpl
       return;
     }
 
-    for ( int idx = 0, selectorsSize = ruleSet.getSelectors().size(); idx < selectorsSize; idx++ )
+    final List<Selector> selectors = ruleSet.getSelectors();
+    for ( int idx = 0, selectorsSize = selectors.size(); idx < selectorsSize; idx++ )
     {
-      final Selector selector = ruleSet.getSelectors().get( idx );
+      final Selector selector = selectors.get( idx );
       if ( idx > 0 )
       {
         writeSeparator( writer, "," );
       }
-      writer.write( selector.getText() );
+      selector.appendTo( writer );
     }
 
     writeOpeningBrace( writer, indent, declarations );
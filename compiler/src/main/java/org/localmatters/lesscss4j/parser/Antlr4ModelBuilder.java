@@ -0,0 +1,1215 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.tree.CommonTree;
+import org.antlr.runtime.tree.Tree;
+import org.antlr.v4.runtime.BufferedTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.localmatters.lesscss4j.compile.CompileStats;
+import org.localmatters.lesscss4j.error.ErrorHandler;
+import org.localmatters.lesscss4j.factory.DeclarationFactory;
+import org.localmatters.lesscss4j.factory.ExpressionFactory;
+import org.localmatters.lesscss4j.factory.RuleSetFactory;
+import org.localmatters.lesscss4j.factory.SelectorFactory;
+import org.localmatters.lesscss4j.factory.StyleSheetFactory;
+import org.localmatters.lesscss4j.model.Declaration;
+import org.localmatters.lesscss4j.model.MixinReference;
+import org.localmatters.lesscss4j.model.RuleSet;
+import org.localmatters.lesscss4j.model.Selector;
+import org.localmatters.lesscss4j.model.StyleSheet;
+import org.localmatters.lesscss4j.model.expression.AccessorExpression;
+import org.localmatters.lesscss4j.model.expression.ConstantExpression;
+import org.localmatters.lesscss4j.model.expression.Expression;
+import org.localmatters.lesscss4j.model.expression.FunctionExpression;
+import org.localmatters.lesscss4j.model.expression.ListExpression;
+import org.localmatters.lesscss4j.model.expression.LiteralExpression;
+import org.localmatters.lesscss4j.parser.antlr.LessCssParser;
+import org.localmatters.lesscss4j.parser.antlr4.LessCss4Parser;
+import org.localmatters.lesscss4j.util.StringTable;
+
+/**
+ * Builds the model of a stylesheet while the ANTLR 4 grammar (LessCss4.g4) is being parsed, creating the rule sets,
+ * declarations, selectors and expressions with the per node methods of the factories that would create them from the
+ * AST built by {@link Antlr4TreeBuilder}, without building the AST.  Only the <code>@charset</code> and
+ * <code>@import</code> rules are built as trees, so that imports are handled by the {@link StyleSheetFactory}.
+ * <code>@media</code>, <code>@keyframes</code> and <code>@page</code> rules are not built at all, leaving stylesheets
+ * with them to be built from the AST.
+ * <p/>
+ * Like {@link Antlr4TreeBuilder}, the elements matched by the rules being parsed are kept on a stack and replaced by
+ * the model of the rule when it is exited.  Rules made only of tokens are kept as their context, and their text is
+ * only read from the token stream when it is needed.  Other rules without a rewrite in LessCss.g leave their elements
+ * on the stack, marked as belonging to a rule.  Stylesheets the factories would reject, and input the builder does not
+ * understand, are not built and {@link #isComplete()} returns false, so that they can be built from the AST instead.
+ */
+final class Antlr4ModelBuilder
+  implements Antlr4StyleSheetParser.Builder
+{
+  /**
+   * Added to the ANTLR 3 type of the node of the AST that an element stands for.  Other elements are tokens, with
+   * their ANTLR 3 type as the kind.
+   */
+  private static final int NODE = 1 << 16;
+  /**
+   * Added to the index of a rule made only of tokens, kept as its context.
+   */
+  private static final int TEXT = 1 << 17;
+  /**
+   * Set on the elements left on the stack by a rule without a rewrite, which are part of the tree of that rule.
+   */
+  private static final int MEMBER = 1 << 18;
+  private static final int KIND = MEMBER - 1;
+
+  private final CharStream _input;
+  private final BufferedTokenStream _tokens;
+  private final RuleSetFactory _ruleSetFactory;
+  private final DeclarationFactory _declarationFactory;
+  private final SelectorFactory _selectorFactory;
+  private final ExpressionFactory _expressionFactory;
+  private final ErrorHandler _errorHandler;
+  private final StringBuilder _text = new StringBuilder();
+  private Object[] _values = new Object[ 64 ];
+  private int[] _kinds = new int[ 64 ];
+  private int[] _lines = new int[ 64 ];
+  private int[] _chars = new int[ 64 ];
+  private int _size;
+  private int[] _frames = new int[ 32 ];
+  private int _depth;
+  private boolean _incomplete;
+  private long _ruleSetCount;
+  private long _declarationCount;
+
+  /**
+   * @param factory The factory for the stylesheet, using the default factories with a single
+   *                {@link ExpressionFactory} and {@link SelectorFactory}.
+   */
+  Antlr4ModelBuilder( @Nonnull final CharStream input,
+                      @Nonnull final BufferedTokenStream tokens,
+                      @Nonnull final StyleSheetFactory factory,
+                      @Nullable final ErrorHandler errorHandler )
+  {
+    _input = input;
+    _tokens = tokens;
+    _ruleSetFactory = (RuleSetFactory) factory.getRuleSetFactory();
+    _declarationFactory = (DeclarationFactory) _ruleSetFactory.getDeclarationFactory();
+    _selectorFactory = (SelectorFactory) _ruleSetFactory.getSelectorFactory();
+    _expressionFactory = (ExpressionFactory) factory.getExpressionFactory();
+    _errorHandler = errorHandler;
+  }
+
+  /**
+   * @return False if the stylesheet could not be built, and must be built from its AST.
+   */
+  boolean isComplete()
+  {
+    return !_incomplete;
+  }
+
+  /**
+   * Creates the stylesheet once it has been parsed.  The <code>@charset</code> and <code>@import</code> rules are
+   * handled by the factory before the other elements are added.
+   *
+   * @param factory      The factory for the stylesheet.
+   * @param resource     The stylesheet being parsed.
+   * @param errorHandler The handler for any errors.
+   * @return The stylesheet.
+   */
+  @Nonnull
+  StyleSheet createStyleSheet( @Nonnull final StyleSheetFactory factory,
+                               @Nullable final StyleSheetResource resource,
+                               @Nullable final ErrorHandler errorHandler )
+  {
+    final CommonTree header = new CommonTree( new CommonToken( LessCssParser.STYLESHEET, "STYLESHEET" ) );
+    for ( int i = 0; i < _size; i++ )
+    {
+      if ( NODE + LessCssParser.CHARSET == _kinds[ i ] || NODE + LessCssParser.IMPORT == _kinds[ i ] )
+      {
+        header.addChild( (Tree) _values[ i ] );
+      }
+    }
+    final StyleSheet styleSheet = factory.create( new StyleSheetTree( header, resource ), errorHandler );
+    for ( int i = 0; i < _size; i++ )
+    {
+      switch ( _kinds[ i ] & KIND )
+      {
+        case NODE + LessCssParser.VAR:
+          final Variable variable = (Variable) _values[ i ];
+          factory.addVariable( styleSheet, variable._name, variable._value, _lines[ i ], _chars[ i ] );
+          break;
+
+        case NODE + LessCssParser.RULESET:
+        case NODE + LessCssParser.MIXIN_MACRO:
+          factory.addRuleSet( styleSheet, (RuleSet) _values[ i ], _lines[ i ], _chars[ i ] );
+          break;
+
+        default:
+          break;
+      }
+    }
+    CompileStats.increment( CompileStats.Counter.RULE_SETS, _ruleSetCount );
+    CompileStats.increment( CompileStats.Counter.DECLARATIONS, _declarationCount );
+    return styleSheet;
+  }
+
+  @Override
+  public void reset()
+  {
+    Arrays.fill( _values, 0, _size, null );
+    _size = 0;
+    _depth = 0;
+    _incomplete = false;
+    _ruleSetCount = 0;
+    _declarationCount = 0;
+  }
+
+  @Override
+  public void enterEveryRule( final ParserRuleContext ctx )
+  {
+    if ( _depth == _frames.length )
+    {
+      _frames = Arrays.copyOf( _frames, _depth * 2 );
+    }
+    _frames[ _depth++ ] = _size;
+    final int rule = ctx.getRuleIndex();
+    if ( LessCss4Parser.RULE_media == rule ||
+         LessCss4Parser.RULE_keyframesRule == rule ||
+         LessCss4Parser.RULE_page == rule )
+    {
+      // Rare enough to be left to their factories, building the stylesheet from the tree
+      _incomplete = true;
+    }
+  }
+
+  @Override
+  public void visitTerminal( final TerminalNode node )
+  {
+    final Token token = node.getSymbol();
+    if ( Token.EOF != token.getType() && !_incomplete )
+    {
+      push( token,
+            Antlr4TreeBuilder.getTokenType( token.getType() ),
+            token.getLine(),
+            token.getCharPositionInLine() );
+    }
+  }
+
+  @Override
+  public void visitErrorNode( final ErrorNode node )
+  {
+  }
+
+  @Override
+  public void exitEveryRule( final ParserRuleContext ctx )
+  {
+    final int start = _frames[ --_depth ];
+    if ( !_incomplete )
+    {
+      try
+      {
+        exitRule( ctx, start );
+      }
+      catch ( final RuntimeException e )
+      {
+        // Unsupported or invalid input, the factories report it when they build the model from the tree
+        _incomplete = true;
+      }
+    }
+  }
+
+  /**
+   * Replaces the elements matched by the given rule by its model.
+   *
+   * @param ctx   The rule.
+   * @param start The index of the first element matched by the rule.
+   */
+  private void exitRule( final ParserRuleContext ctx, final int start )
+  {
+    switch ( ctx.getRuleIndex() )
+    {
+      case LessCss4Parser.RULE_styleSheet:
+        checkStyleSheet( start );
+        break;
+      case LessCss4Parser.RULE_charSet:
+      {
+        // ^(CHARSET STRING)
+        final int index = findToken( LessCssParser.CHARSET, start );
+        final CommonTree tree = new CommonTree( createToken( index ) );
+        tree.addChild( new CommonTree( createToken( findToken( LessCssParser.STRING, start ) ) ) );
+        replace( start, NODE + LessCssParser.CHARSET, tree, _lines[ index ], _chars[ index ] );
+        break;
+      }
+      case LessCss4Parser.RULE_importFile:
+      {
+        // ^(IMPORT importLocation medium*)
+        final int index = nextRule( start );
+        replace( start, NODE + LessCssParser.IMPORT, createImportTree( start ), _lines[ index ], _chars[ index ] );
+        break;
+      }
+      case LessCss4Parser.RULE_mixinSelectorList:
+      case LessCss4Parser.RULE_mixinMacroCallArgList:
+      case LessCss4Parser.RULE_primaryExpression:
+        keepRules( start );
+        break;
+      case LessCss4Parser.RULE_variable:
+      {
+        // ^(ident), the token of the name
+        final Token token = ( (ParserRuleContext) _values[ nextRule( start ) ] ).getStart();
+        replace( start,
+                 Antlr4TreeBuilder.getTokenType( token.getType() ) | MEMBER,
+                 token,
+                 token.getLine(),
+                 token.getCharPositionInLine() );
+        break;
+      }
+      case LessCss4Parser.RULE_mixinMacro:
+        // ^(MIXIN_MACRO ^(SELECTOR mixinMacroSelector) mixinMacroArg+ ruleSetElement+)
+        replaceWithRuleSet( start, NODE + LessCssParser.MIXIN_MACRO, true );
+        break;
+      case LessCss4Parser.RULE_mixinMacroArg:
+      {
+        // ^(MIXIN_ARG variable ^(EXPR mixinMacroArgDefault))
+        final int index = nextRule( start );
+        final Variable variable =
+          new Variable( getText( index ), (Expression) _values[ nextRule( index + 1 ) ] );
+        replace( start, NODE + LessCssParser.MIXIN_ARG, variable, _lines[ index ], _chars[ index ] );
+        break;
+      }
+      case LessCss4Parser.RULE_mixinMacroArgDefault:
+        // ^(CONSTANT numberOrColor) or ^(LITERAL literal)
+        if ( ctx instanceof LessCss4Parser.ConstantArgDefaultContext )
+        {
+          replace( start, NODE + LessCssParser.EXPR, createConstant( start ), _lines[ start ], _chars[ start ] );
+        }
+        else
+        {
+          replace( start, NODE + LessCssParser.LITERAL, createLiteral( start ), _lines[ start ], _chars[ start ] );
+        }
+        break;
+      case LessCss4Parser.RULE_ruleSet:
+        // ^(RULESET ruleSetSelector ruleSetElement*)
+        replaceWithRuleSet( start, NODE + LessCssParser.RULESET, false );
+        break;
+      case LessCss4Parser.RULE_ruleSetElement:
+        if ( ctx instanceof LessCss4Parser.NestedRuleSetContext )
+        {
+          // ^(RULESET innerSelectorList ruleSetElement*)
+          replaceWithRuleSet( start, NODE + LessCssParser.RULESET, false );
+        }
+        else
+        {
+          // mixinSelectorList WS!* SEMI!, declaration or variableDef
+          keepRules( start );
+        }
+        break;
+      case LessCss4Parser.RULE_mixinSelector:
+        // ^(MIXIN_REF ^(SELECTOR mixinMacroSelector) mixinMacroCallArgList*) or
+        // ^(MIXIN_REF ^(SELECTOR mixinNoArgSelector))
+        replace( start, NODE + LessCssParser.MIXIN_REF, createMixinReference( start ), _lines[ start ], _chars[ start ] );
+        break;
+      case LessCss4Parser.RULE_mixinMacroCallArg:
+        // ^(MIXIN_ARG ^(LITERAL literal)) or ^(MIXIN_ARG ^(EXPR additiveExpression))
+        replace( start,
+                 NODE + LessCssParser.MIXIN_ARG,
+                 ctx instanceof LessCss4Parser.LiteralCallArgContext ?
+                 createLiteral( start ) :
+                 _values[ nextRule( start ) ],
+                 _lines[ start ],
+                 _chars[ start ] );
+        break;
+      case LessCss4Parser.RULE_innerSelectorList:
+      case LessCss4Parser.RULE_selectorList:
+        // ^(SELECTOR innerSelector)+ or ^(SELECTOR selector)+
+        keepSelectors( start );
+        break;
+      case LessCss4Parser.RULE_ruleSetSelector:
+        // ^(SELECTOR fontFaceSelector)
+        if ( ctx instanceof LessCss4Parser.FontFaceRuleSetSelectorContext )
+        {
+          replace( start, NODE + LessCssParser.SELECTOR, createSelector( start ), _lines[ start ], _chars[ start ] );
+        }
+        else
+        {
+          keepAll( ctx, start );
+        }
+        break;
+      case LessCss4Parser.RULE_variableDef:
+        // variableExpr WS* SEMI!
+        keepAllExcept( start, LessCssParser.SEMI );
+        break;
+      case LessCss4Parser.RULE_variableExpr:
+      {
+        // ^(VAR variable ^(EXPR propertyValue))
+        final int index = nextRule( start );
+        final Variable variable =
+          new Variable( getText( index ), (Expression) _values[ nextRule( index + 1 ) ] );
+        replace( start, NODE + LessCssParser.VAR, variable, _lines[ index ], _chars[ index ] );
+        break;
+      }
+      case LessCss4Parser.RULE_additiveExpression:
+      case LessCss4Parser.RULE_multiplicativeExpression:
+        // multiplicativeExpression ( WS!* (PLUS|MINUS)^ WS!* multiplicativeExpression )*
+        replaceWithOperators( start );
+        break;
+      case LessCss4Parser.RULE_exprValue:
+        // ^(VAR variable) or ^(CONSTANT numberOrColor)
+        replace( start,
+                 NODE + LessCssParser.EXPR,
+                 ctx instanceof LessCss4Parser.VariableValueContext ?
+                 _expressionFactory.createVariableReference( getText( start ), _lines[ start ], _chars[ start ] ) :
+                 createConstant( start ),
+                 _lines[ start ],
+                 _chars[ start ] );
+        break;
+      case LessCss4Parser.RULE_declaration:
+        // ^(DECLARATION property ^(PROP_VALUE propertyValue)? important?) or fontDeclaration
+        if ( ctx instanceof LessCss4Parser.PropertyDeclarationContext )
+        {
+          replaceWithDeclaration( start );
+        }
+        else
+        {
+          keepAll( ctx, start );
+        }
+        break;
+      case LessCss4Parser.RULE_fontDeclaration:
+        // ^(DECLARATION fontProperty ^(PROP_VALUE fontPropertyValue) important?)
+        replaceWithDeclaration( start );
+        break;
+      case LessCss4Parser.RULE_fontProperty:
+        // ^(FONT propPrefix?)
+        replaceWithProperty( start, findToken( LessCssParser.FONT, start ) );
+        break;
+      case LessCss4Parser.RULE_property:
+        // ^(identNoFont propPrefix?)
+        replaceWithProperty( start, _size - 1 );
+        break;
+      case LessCss4Parser.RULE_fontPropertyValue:
+        // (fontStyle WS*)* fontSize (WS!* SOLIDUS WS!* lineHeight)? WS* fontFamily (WS!* COMMA WS* fontFamily)*
+        removeWhitespace( start, LessCssParser.SOLIDUS, true );
+        replace( start, NODE + LessCssParser.PROP_VALUE, createPropValues( start ), 0, 0 );
+        break;
+      case LessCss4Parser.RULE_propertyValue:
+        // ^(PROP_VALUE propertyValue) in a declaration and ^(EXPR propertyValue) in a variable
+        if ( ctx.getParent() instanceof LessCss4Parser.VariableExprContext )
+        {
+          replace( start, NODE + LessCssParser.EXPR, createExpression( start ), 0, 0 );
+        }
+        else
+        {
+          replace( start, NODE + LessCssParser.PROP_VALUE, createPropValues( start ), 0, 0 );
+        }
+        break;
+      case LessCss4Parser.RULE_mixinAccessor:
+        // ^(MIXIN_ACCESSOR ^(SELECTOR mixinMacroSelector) mixinAccessorItem)
+        replace( start, NODE + LessCssParser.MIXIN_ACCESSOR, createAccessor( start ), _lines[ start ], _chars[ start ] );
+        break;
+      case LessCss4Parser.RULE_mixinAccessorItem:
+        // ^(VAR variable)
+        if ( ctx instanceof LessCss4Parser.VariableAccessorItemContext )
+        {
+          final int index = nextRule( start );
+          replace( start, NODE + LessCssParser.VAR, getText( index ), _lines[ index ], _chars[ index ] );
+        }
+        else
+        {
+          keepAll( ctx, start );
+        }
+        break;
+      case LessCss4Parser.RULE_propertyTermExpression:
+      {
+        // ^(EXPR primaryExpression)
+        final int index = nextRule( start );
+        replace( start, NODE + LessCssParser.EXPR, _values[ index ], _lines[ index ], _chars[ index ] );
+        break;
+      }
+      case LessCss4Parser.RULE_propertyTermNoExpr:
+        // ^(LITERAL literal)
+        if ( ctx instanceof LessCss4Parser.LiteralTermContext )
+        {
+          replace( start, NODE + LessCssParser.LITERAL, createLiteral( start ), _lines[ start ], _chars[ start ] );
+        }
+        else
+        {
+          keepAll( ctx, start );
+        }
+        break;
+      case LessCss4Parser.RULE_function:
+        // ^(FUNCTION ^(FUNCTION_NAME functionName) functionArgList)
+        if ( ctx instanceof LessCss4Parser.NamedFunctionContext )
+        {
+          replace( start, NODE + LessCssParser.FUNCTION, createFunction( start ), _lines[ start ], _chars[ start ] );
+        }
+        else
+        {
+          keepAll( ctx, start );
+        }
+        break;
+      case LessCss4Parser.RULE_functionArgList:
+        // ieFunctionTerm (WS!* COMMA WS!* ieFunctionTerm)* or functionArg ((WS!* COMMA WS!*|WS+) functionArg)*
+        removeWhitespace( start,
+                          ctx instanceof LessCss4Parser.IeFunctionArgListContext ? -1 : LessCssParser.COMMA,
+                          false );
+        keepAll( ctx, start );
+        break;
+      case LessCss4Parser.RULE_ieFunctionTerm:
+        // ^(ieFunctionTermOp ident ^(LITERAL literal)? ^(EXPR additiveExpression)?)
+        replaceWithIeFunctionTerm( start );
+        break;
+      case LessCss4Parser.RULE_ieExpression:
+      {
+        // ^(FUNCTION ^(FUNCTION_NAME EXPRESSION) ieExprTerm)
+        final int index = findToken( LessCssParser.EXPRESSION, start );
+        final FunctionExpression function =
+          _expressionFactory.createFunction( getText( index ), _lines[ index ], _chars[ index ] );
+        for ( int i = index + 1; i < _size; i++ )
+        {
+          if ( isText( i ) )
+          {
+            final ParserRuleContext term = (ParserRuleContext) _values[ i ];
+            for ( int t = term.getStart().getTokenIndex(), end = term.getStop().getTokenIndex(); t <= end; t++ )
+            {
+              final Token token = _tokens.get( t );
+              if ( Token.DEFAULT_CHANNEL == token.getChannel() )
+              {
+                function.addArgument( createLiteral( token ) );
+              }
+            }
+          }
+        }
+        replace( start, NODE + LessCssParser.FUNCTION, function, _lines[ index ], _chars[ index ] );
+        break;
+      }
+      default:
+        keepAll( ctx, start );
+        break;
+    }
+  }
+
+  private void push( final Object value, final int kind, final int line, final int charPositionInLine )
+  {
+    if ( _size == _values.length )
+    {
+      _values = Arrays.copyOf( _values, _size * 2 );
+      _kinds = Arrays.copyOf( _kinds, _size * 2 );
+      _lines = Arrays.copyOf( _lines, _size * 2 );
+      _chars = Arrays.copyOf( _chars, _size * 2 );
+    }
+    _values[ _size ] = value;
+    _kinds[ _size ] = kind;
+    _lines[ _size ] = line;
+    _chars[ _size++ ] = charPositionInLine;
+  }
+
+  /**
+   * Replaces the elements from the given index with the given element.
+   */
+  private void replace( final int start,
+                        final int kind,
+                        @Nullable final Object value,
+                        final int line,
+                        final int charPositionInLine )
+  {
+    Arrays.fill( _values, start, _size, null );
+    _size = start;
+    push( value, kind, line, charPositionInLine );
+  }
+
+  /**
+   * Keeps the elements of a rule without a rewrite.  A rule made only of tokens is replaced by its context.
+   */
+  private void keepAll( final ParserRuleContext ctx, final int start )
+  {
+    boolean text = true;
+    for ( int i = start; i < _size && text; i++ )
+    {
+      text = _kinds[ i ] < NODE || ( _kinds[ i ] >= TEXT && _kinds[ i ] < MEMBER );
+    }
+    if ( start == _size )
+    {
+      // Matched nothing, like an empty tree
+    }
+    else if ( text )
+    {
+      replace( start, TEXT + ctx.getRuleIndex(), ctx, _lines[ start ], _chars[ start ] );
+    }
+    else
+    {
+      for ( int i = start; i < _size; i++ )
+      {
+        _kinds[ i ] |= MEMBER;
+      }
+    }
+  }
+
+  /**
+   * Keeps the elements of a rule without a rewrite, except its own tokens of the given type.
+   */
+  private void keepAllExcept( final int start, final int type )
+  {
+    int size = start;
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( _kinds[ i ] != type )
+      {
+        move( i, size++ );
+        _kinds[ size - 1 ] |= MEMBER;
+      }
+    }
+    truncate( size );
+  }
+
+  /**
+   * Keeps only the elements of the rules matched by the rule.
+   */
+  private void keepRules( final int start )
+  {
+    int size = start;
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( isRule( i ) )
+      {
+        move( i, size++ );
+        _kinds[ size - 1 ] |= MEMBER;
+      }
+    }
+    truncate( size );
+  }
+
+  /**
+   * Replaces each of the rules matched by the rule with its selector and removes its own tokens.
+   */
+  private void keepSelectors( final int start )
+  {
+    int size = start;
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( isRule( i ) )
+      {
+        final Selector selector = createSelector( i );
+        move( i, size );
+        _values[ size ] = selector;
+        _kinds[ size++ ] = NODE + LessCssParser.SELECTOR | MEMBER;
+      }
+    }
+    truncate( size );
+  }
+
+  /**
+   * Removes the whitespace before or after the own tokens of the given type, or all of its own whitespace if the
+   * type is -1.  If <code>beforeComma</code> is true the whitespace before a comma is removed too.
+   */
+  private void removeWhitespace( final int start, final int type, final boolean beforeComma )
+  {
+    int size = start;
+    for ( int i = start; i < _size; i++ )
+    {
+      final boolean omitted =
+        LessCssParser.WS == _kinds[ i ] &&
+        ( -1 == type ||
+          isToken( i - 1, type ) ||
+          isToken( i + 1, type ) ||
+          ( beforeComma && isToken( i + 1, LessCssParser.COMMA ) ) );
+      if ( !omitted )
+      {
+        move( i, size++ );
+      }
+    }
+    truncate( size );
+  }
+
+  private void move( final int from, final int to )
+  {
+    _values[ to ] = _values[ from ];
+    _kinds[ to ] = _kinds[ from ];
+    _lines[ to ] = _lines[ from ];
+    _chars[ to ] = _chars[ from ];
+  }
+
+  private void truncate( final int size )
+  {
+    Arrays.fill( _values, size, _size, null );
+    _size = size;
+  }
+
+  /**
+   * @return True if the element is a rule or part of one rather than a token of the rule being exited.
+   */
+  private boolean isRule( final int index )
+  {
+    return _kinds[ index ] >= NODE;
+  }
+
+  /**
+   * @return True if the element is a rule made only of tokens, kept as its context.
+   */
+  private boolean isText( final int index )
+  {
+    return ( _kinds[ index ] & KIND ) >= TEXT;
+  }
+
+  private boolean isToken( final int index, final int type )
+  {
+    return index >= 0 && index < _size && _kinds[ index ] == type;
+  }
+
+  private int findToken( final int type, final int start )
+  {
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( _kinds[ i ] == type )
+      {
+        return i;
+      }
+    }
+    throw new IllegalStateException( "Missing token " + type );
+  }
+
+  private int nextRule( final int start )
+  {
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( isRule( i ) )
+      {
+        return i;
+      }
+    }
+    throw new IllegalStateException( "Missing rule" );
+  }
+
+  /**
+   * @return The text of the tree of the element, with any whitespace compressed into a single space.
+   */
+  private String getText( final int index )
+  {
+    final Object value = _values[ index ];
+    if ( value instanceof Token )
+    {
+      return getText( (Token) value );
+    }
+    final ParserRuleContext ctx = (ParserRuleContext) value;
+    final int first = ctx.getStart().getTokenIndex();
+    final int last = ctx.getStop().getTokenIndex();
+    if ( first == last )
+    {
+      return getText( ctx.getStart() );
+    }
+    _text.setLength( 0 );
+    for ( int i = first; i <= last; i++ )
+    {
+      final Token token = _tokens.get( i );
+      if ( Token.DEFAULT_CHANNEL == token.getChannel() )
+      {
+        _text.append( getText( token ) );
+      }
+    }
+    return StringTable.intern( _text );
+  }
+
+  private String getText( final Token token )
+  {
+    return LessCss4Parser.WS == token.getType() ? " " : StringTable.intern( token.getText() );
+  }
+
+  private CommonToken createToken( final int index )
+  {
+    return Antlr4TreeBuilder.createToken( _input, (Token) _values[ index ] );
+  }
+
+  private Tree createImportTree( final int start )
+  {
+    final CommonTree tree = new CommonTree( new CommonToken( LessCssParser.IMPORT, "IMPORT" ) );
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( isText( i ) )
+      {
+        final ParserRuleContext ctx = (ParserRuleContext) _values[ i ];
+        for ( int t = ctx.getStart().getTokenIndex(), end = ctx.getStop().getTokenIndex(); t <= end; t++ )
+        {
+          final Token token = _tokens.get( t );
+          if ( Token.DEFAULT_CHANNEL == token.getChannel() )
+          {
+            tree.addChild( new CommonTree( Antlr4TreeBuilder.createToken( _input, token ) ) );
+          }
+        }
+      }
+    }
+    return tree;
+  }
+
+  /**
+   * Checks that the elements of the stylesheet are those that {@link StyleSheetFactory} accepts.
+   */
+  private void checkStyleSheet( final int start )
+  {
+    for ( int i = start; i < _size; i++ )
+    {
+      switch ( _kinds[ i ] & KIND )
+      {
+        case NODE + LessCssParser.CHARSET:
+        case NODE + LessCssParser.IMPORT:
+        case NODE + LessCssParser.VAR:
+        case NODE + LessCssParser.RULESET:
+        case NODE + LessCssParser.MIXIN_MACRO:
+          break;
+
+        default:
+          checkIgnored( i );
+          break;
+      }
+    }
+  }
+
+  /**
+   * Checks that the element is one that the factories ignore when they do not expect it, i.e. whitespace.
+   */
+  private void checkIgnored( final int index )
+  {
+    if ( LessCssParser.WS != ( _kinds[ index ] & KIND ) )
+    {
+      throw new IllegalStateException( "Unexpected element " + _kinds[ index ] );
+    }
+  }
+
+  @Nullable
+  private Selector createSelector( final int index )
+  {
+    return _selectorFactory.createSelector( getText( index ), _lines[ index ], _chars[ index ] );
+  }
+
+  private ConstantExpression createConstant( final int index )
+  {
+    return _expressionFactory.createConstant( getText( index ), _lines[ index ], _chars[ index ] );
+  }
+
+  private LiteralExpression createLiteral( final int index )
+  {
+    return _expressionFactory.createLiteral( getText( index ),
+                                             LessCssParser.LITERAL,
+                                             _lines[ index ],
+                                             _chars[ index ] );
+  }
+
+  private LiteralExpression createLiteral( final Token token )
+  {
+    return _expressionFactory.createLiteral( token.getText(),
+                                             Antlr4TreeBuilder.getTokenType( token.getType() ),
+                                             token.getLine(),
+                                             token.getCharPositionInLine() );
+  }
+
+  private void replaceWithRuleSet( final int start, final int kind, final boolean selectorFirst )
+  {
+    _ruleSetCount++;
+    final int first = nextRule( start );
+    final RuleSet ruleSet = _ruleSetFactory.createRuleSet( _lines[ first ], _chars[ first ] );
+    for ( int i = first; i < _size; i++ )
+    {
+      if ( !isRule( i ) )
+      {
+        continue;
+      }
+      if ( i == first && selectorFirst )
+      {
+        final Selector selector = createSelector( i );
+        if ( null != selector )
+        {
+          ruleSet.addSelector( selector );
+        }
+        continue;
+      }
+      final Object value = _values[ i ];
+      switch ( _kinds[ i ] & KIND )
+      {
+        case NODE + LessCssParser.SELECTOR:
+          if ( null != value )
+          {
+            ruleSet.addSelector( (Selector) value );
+          }
+          break;
+
+        case NODE + LessCssParser.MIXIN_ARG:
+        case NODE + LessCssParser.VAR:
+          final Variable variable = (Variable) value;
+          _ruleSetFactory.addVariable( ruleSet,
+                                       variable._name,
+                                       variable._value,
+                                       NODE + LessCssParser.MIXIN_ARG == ( _kinds[ i ] & KIND ) );
+          break;
+
+        case NODE + LessCssParser.DECLARATION:
+          if ( null != value )
+          {
+            ruleSet.addDeclaration( (Declaration) value );
+          }
+          break;
+
+        case NODE + LessCssParser.MIXIN_REF:
+          ruleSet.addDeclaration( (MixinReference) value );
+          break;
+
+        case NODE + LessCssParser.RULESET:
+          ruleSet.addRuleSet( (RuleSet) value, -1 );
+          break;
+
+        default:
+          checkIgnored( i );
+          break;
+      }
+    }
+    replace( start, kind, ruleSet, ruleSet.getLine(), ruleSet.getChar() );
+  }
+
+  private MixinReference createMixinReference( final int start )
+  {
+    final MixinReference reference = _ruleSetFactory.createMixinReference( _lines[ start ], _chars[ start ] );
+    reference.setSelector( createSelector( start ) );
+    for ( int i = start + 1; i < _size; i++ )
+    {
+      if ( !isRule( i ) )
+      {
+        continue;
+      }
+      if ( NODE + LessCssParser.MIXIN_ARG == ( _kinds[ i ] & KIND ) )
+      {
+        reference.addArgument( (Expression) _values[ i ] );
+      }
+      else
+      {
+        checkIgnored( i );
+      }
+    }
+    return reference;
+  }
+
+  private AccessorExpression createAccessor( final int start )
+  {
+    final Selector selector = createSelector( start );
+    final int index = nextRule( start + 1 );
+    if ( NODE + LessCssParser.VAR == _kinds[ index ] )
+    {
+      return _declarationFactory.createMixinAccessor( selector, LessCssParser.VAR, (String) _values[ index ] );
+    }
+    else
+    {
+      final Token token = ( (ParserRuleContext) _values[ index ] ).getStart();
+      return _declarationFactory.createMixinAccessor( selector,
+                                                      Antlr4TreeBuilder.getTokenType( token.getType() ),
+                                                      getText( index ) );
+    }
+  }
+
+  private void replaceWithOperators( final int start )
+  {
+    Expression result = null;
+    int line = 0;
+    int charPositionInLine = 0;
+    int operator = -1;
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( isRule( i ) )
+      {
+        final Expression operand = (Expression) _values[ i ];
+        if ( -1 == operator )
+        {
+          result = operand;
+          line = _lines[ i ];
+          charPositionInLine = _chars[ i ];
+        }
+        else
+        {
+          result = _expressionFactory.createOperation( _kinds[ operator ],
+                                                       result,
+                                                       operand,
+                                                       _lines[ operator ],
+                                                       _chars[ operator ] );
+          line = _lines[ operator ];
+          charPositionInLine = _chars[ operator ];
+        }
+      }
+      else if ( LessCssParser.WS != _kinds[ i ] )
+      {
+        operator = i;
+      }
+    }
+    replace( start, NODE + LessCssParser.EXPR, result, line, charPositionInLine );
+  }
+
+  private void replaceWithProperty( final int start, final int index )
+  {
+    // The property is named by the token of the identifier, prefixed by any propPrefix
+    final Token token = isText( index ) ? ( (ParserRuleContext) _values[ index ] ).getStart() : (Token) _values[ index ];
+    final String name = _declarationFactory.createProperty( index > start ? getText( start ) : null, getText( token ) );
+    replace( start,
+             NODE + Antlr4TreeBuilder.getTokenType( token.getType() ),
+             name,
+             token.getLine(),
+             token.getCharPositionInLine() );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private void replaceWithDeclaration( final int start )
+  {
+    _declarationCount++;
+    final int index = nextRule( start );
+    switch ( _kinds[ index ] )
+    {
+      case NODE + LessCssParser.IDENT:
+      case NODE + LessCssParser.FONT:
+        break;
+
+      default:
+        throw new IllegalStateException( "Unexpected declaration child:" );
+    }
+    List<Object> values = null;
+    boolean important = false;
+    for ( int i = index + 1; i < _size; i++ )
+    {
+      if ( NODE + LessCssParser.PROP_VALUE == _kinds[ i ] )
+      {
+        if ( null != _values[ i ] )
+        {
+          values = (List<Object>) _values[ i ];
+        }
+      }
+      else if ( TEXT + LessCss4Parser.RULE_important == _kinds[ i ] )
+      {
+        important = true;
+      }
+    }
+    final Declaration declaration = _declarationFactory.createDeclaration( (String) _values[ index ],
+                                                                           values,
+                                                                           important,
+                                                                           _lines[ index ],
+                                                                           _chars[ index ] );
+    replace( start, NODE + LessCssParser.DECLARATION, declaration, _lines[ index ], _chars[ index ] );
+  }
+
+  /**
+   * Creates the values of a declaration from the elements of its value, like {@link DeclarationFactory}.
+   */
+  @Nullable
+  private List<Object> createPropValues( final int start )
+  {
+    final List<Object> values = new ArrayList<>( _size - start );
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( isText( i ) )
+      {
+        final ParserRuleContext ctx = (ParserRuleContext) _values[ i ];
+        for ( int t = ctx.getStart().getTokenIndex(), end = ctx.getStop().getTokenIndex(); t <= end; t++ )
+        {
+          final Token token = _tokens.get( t );
+          if ( Token.DEFAULT_CHANNEL == token.getChannel() )
+          {
+            addPropValue( values, token );
+          }
+        }
+      }
+      else if ( _values[ i ] instanceof Token )
+      {
+        addPropValue( values, (Token) _values[ i ] );
+      }
+      else
+      {
+        switch ( _kinds[ i ] & KIND )
+        {
+          case NODE + LessCssParser.LITERAL:
+          case NODE + LessCssParser.EXPR:
+          case NODE + LessCssParser.FUNCTION:
+          {
+            values.add( _declarationFactory.createPropValue( (Expression) _values[ i ], _errorHandler ) );
+            break;
+          }
+
+          case NODE + LessCssParser.MIXIN_ACCESSOR:
+            values.add( _values[ i ] );
+            break;
+
+          default:
+            throw new IllegalStateException( "Unexpected declaration value child:" );
+        }
+      }
+    }
+    return values.size() > 0 ? values : null;
+  }
+
+  private void addPropValue( final List<Object> values, final Token token )
+  {
+    final String value =
+      _declarationFactory.createPropValue( Antlr4TreeBuilder.getTokenType( token.getType() ), token.getText() );
+    if ( null == value )
+    {
+      throw new IllegalStateException( "Unexpected declaration value child:" );
+    }
+    values.add( value );
+  }
+
+  /**
+   * Creates the value of a variable from the elements of its value, like the {@link ExpressionFactory} creates the
+   * expression of an <code>EXPR</code> node.
+   */
+  private Expression createExpression( final int start )
+  {
+    int count = 0;
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( isText( i ) )
+      {
+        final ParserRuleContext ctx = (ParserRuleContext) _values[ i ];
+        for ( int t = ctx.getStart().getTokenIndex(), end = ctx.getStop().getTokenIndex(); t <= end; t++ )
+        {
+          if ( Token.DEFAULT_CHANNEL == _tokens.get( t ).getChannel() )
+          {
+            count++;
+          }
+        }
+      }
+      else
+      {
+        count++;
+      }
+    }
+    if ( 1 == count )
+    {
+      return toExpression( start );
+    }
+
+    final ListExpression list = _expressionFactory.createListExpression();
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( isText( i ) )
+      {
+        final ParserRuleContext ctx = (ParserRuleContext) _values[ i ];
+        for ( int t = ctx.getStart().getTokenIndex(), end = ctx.getStop().getTokenIndex(); t <= end; t++ )
+        {
+          final Token token = _tokens.get( t );
+          if ( Token.DEFAULT_CHANNEL == token.getChannel() )
+          {
+            list.addExpression( createListLiteral( token ) );
+          }
+        }
+      }
+      else if ( _values[ i ] instanceof Token )
+      {
+        list.addExpression( createListLiteral( (Token) _values[ i ] ) );
+      }
+      else
+      {
+        list.addExpression( toExpression( i ) );
+      }
+    }
+    return list;
+  }
+
+  private LiteralExpression createListLiteral( final Token token )
+  {
+    final int type = Antlr4TreeBuilder.getTokenType( token.getType() );
+    if ( LessCssParser.COMMA != type && LessCssParser.WS != type )
+    {
+      throw new IllegalStateException( "Unexpected expression type" );
+    }
+    return createLiteral( token );
+  }
+
+  private Expression toExpression( final int index )
+  {
+    switch ( _kinds[ index ] & KIND )
+    {
+      case NODE + LessCssParser.LITERAL:
+      case NODE + LessCssParser.EXPR:
+        return (Expression) _values[ index ];
+
+      default:
+        throw new IllegalStateException( "Unexpected expression type" );
+    }
+  }
+
+  private FunctionExpression createFunction( final int start )
+  {
+    final FunctionExpression function =
+      _expressionFactory.createFunction( getText( start ), _lines[ start ], _chars[ start ] );
+    for ( int i = start + 1; i < _size; i++ )
+    {
+      if ( 0 == ( _kinds[ i ] & MEMBER ) )
+      {
+        continue;
+      }
+      final Object value = _values[ i ];
+      if ( value instanceof Token )
+      {
+        function.addArgument( createLiteral( (Token) value ) );
+        continue;
+      }
+      switch ( _kinds[ i ] & KIND )
+      {
+        case NODE + LessCssParser.OPEQ:
+          for ( final Expression expression : (Expression[]) value )
+          {
+            function.addArgument( expression );
+          }
+          break;
+
+        case NODE + LessCssParser.FUNCTION:
+        case NODE + LessCssParser.LITERAL:
+        case NODE + LessCssParser.EXPR:
+          function.addArgument( (Expression) value );
+          break;
+
+        default:
+          throw new IllegalStateException( "Unexpected function argument" );
+      }
+    }
+    return function;
+  }
+
+  private void replaceWithIeFunctionTerm( final int start )
+  {
+    final int name = nextRule( start );
+    final int operator = nextRule( name + 1 );
+    final int value = nextRule( operator + 1 );
+    final Expression[] arguments = new Expression[]{
+      createLiteral( ( (ParserRuleContext) _values[ name ] ).getStart() ),
+      createLiteral( ( (ParserRuleContext) _values[ operator ] ).getStart() ),
+      isText( value ) ? createLiteral( value ) : (Expression) _values[ value ]
+    };
+    replace( start, NODE + LessCssParser.OPEQ, arguments, _lines[ operator ], _chars[ operator ] );
+  }
+
+  /**
+   * A variable defined by a stylesheet, rule set or mixin argument.
+   */
+  private static final class Variable
+  {
+    private final String _name;
+    private final Expression _value;
+
+    Variable( @Nonnull final String name, @Nonnull final Expression value )
+    {
+      _name = name;
+      _value = value;
+    }
+  }
+}
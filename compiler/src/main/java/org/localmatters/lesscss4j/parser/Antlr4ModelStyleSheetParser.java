@@ -0,0 +1,148 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.IOException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.tree.Tree;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.localmatters.lesscss4j.compile.CompileStats;
+import org.localmatters.lesscss4j.compile.CompileTracer;
+import org.localmatters.lesscss4j.compile.CompileTracing;
+import org.localmatters.lesscss4j.error.ErrorHandler;
+import org.localmatters.lesscss4j.error.ErrorUtils;
+import org.localmatters.lesscss4j.error.LessCssException;
+import org.localmatters.lesscss4j.factory.DeclarationFactory;
+import org.localmatters.lesscss4j.factory.ExpressionFactory;
+import org.localmatters.lesscss4j.factory.ObjectFactory;
+import org.localmatters.lesscss4j.factory.RuleSetFactory;
+import org.localmatters.lesscss4j.factory.SelectorFactory;
+import org.localmatters.lesscss4j.factory.StyleSheetFactory;
+import org.localmatters.lesscss4j.model.Selector;
+import org.localmatters.lesscss4j.model.StyleSheet;
+import org.localmatters.lesscss4j.model.expression.Expression;
+
+/**
+ * {@link Antlr4StyleSheetParser} that builds the model of a stylesheet while it is parsed, using
+ * {@link Antlr4ModelBuilder}, rather than building the AST and then walking it with the factories.  Only the
+ * <code>@charset</code> and <code>@import</code> rules are handed to the {@link StyleSheetFactory} as a tree.
+ * <p/>
+ * The model is built with the per node methods of the default factories, so stylesheets are built from the AST as
+ * usual when the {@link ObjectFactory} for stylesheets, or any of the factories it uses, has been replaced or wired
+ * differently.  Stylesheets that the factories would reject, and those with <code>@media</code>,
+ * <code>@keyframes</code> or <code>@page</code> rules, are also built from the AST.  Imported stylesheets and
+ * stylesheets parsed with {@link #parseTree(StyleSheetResource, ErrorHandler)} are always built from the AST.
+ */
+public class Antlr4ModelStyleSheetParser
+  extends Antlr4StyleSheetParser
+{
+  @Nullable
+  @Override
+  public StyleSheet parse( @Nonnull final StyleSheetResource input, @Nullable final ErrorHandler errorHandler )
+    throws IOException
+  {
+    final ObjectFactory<StyleSheet> styleSheetFactory = getStyleSheetFactory();
+    if ( !isDefaultFactory( styleSheetFactory ) )
+    {
+      return super.parse( input, errorHandler );
+    }
+    final StyleSheetFactory factory = (StyleSheetFactory) styleSheetFactory;
+
+    final CompileTracer.Span span = CompileTracing.start( CompileTracer.Operation.PARSE );
+    final CompileStats.Phase previousPhase = CompileStats.enter( CompileStats.Phase.PARSE );
+    final CharStream stream = createCharStream( input );
+    final ErrorListener errorListener = new ErrorListener( errorHandler );
+    final Antlr4ModelBuilder modelBuilder;
+    Tree tree = null;
+    try
+    {
+      final CommonTokenStream tokens = createTokenStream( stream, input, errorListener );
+      modelBuilder = new Antlr4ModelBuilder( stream, tokens, factory, errorHandler );
+      parse( tokens, modelBuilder, errorListener );
+      if ( errorListener.getErrorCount() > 0 )
+      {
+        return null;
+      }
+      else if ( !modelBuilder.isComplete() )
+      {
+        tokens.reset();
+        final Antlr4TreeBuilder treeBuilder = new Antlr4TreeBuilder( stream );
+        parse( tokens, treeBuilder, errorListener );
+        tree = treeBuilder.getTree();
+      }
+    }
+    catch ( final LessCssException e )
+    {
+      ErrorUtils.handleError( errorHandler, e );
+      return null;
+    }
+    finally
+    {
+      CompileStats.exit( previousPhase );
+      CompileTracing.end( span, CompileTracing.toString( input ), null, stream.size() );
+    }
+
+    if ( null != tree )
+    {
+      return factory.create( new StyleSheetTree( tree, input ), errorHandler );
+    }
+    else
+    {
+      return modelBuilder.createStyleSheet( factory, input, errorHandler );
+    }
+  }
+
+  /**
+   * @return True if the given factory, and the factories it uses to build rule sets, declarations, selectors and
+   *         expressions, are those created by {@link StyleSheetFactory#createDefaultObjectFactory()} and use a single
+   *         {@link ExpressionFactory} and {@link SelectorFactory} as they do there.  {@link Antlr4ModelBuilder} builds
+   *         the model with the per node methods of these factories, so it is the model they would build from the
+   *         tree.  The factories of the rules it does not build are used to build those stylesheets from the tree.
+   */
+  static boolean isDefaultFactory( @Nonnull final ObjectFactory<StyleSheet> styleSheetFactory )
+  {
+    if ( StyleSheetFactory.class != styleSheetFactory.getClass() )
+    {
+      return false;
+    }
+    final StyleSheetFactory factory = (StyleSheetFactory) styleSheetFactory;
+    final ObjectFactory<Expression> expressionFactory = factory.getExpressionFactory();
+    if ( RuleSetFactory.class != classOf( factory.getRuleSetFactory() ) ||
+         ExpressionFactory.class != classOf( expressionFactory ) )
+    {
+      return false;
+    }
+    final RuleSetFactory ruleSetFactory = (RuleSetFactory) factory.getRuleSetFactory();
+    final ObjectFactory<Selector> selectorFactory = ruleSetFactory.getSelectorFactory();
+    if ( DeclarationFactory.class != classOf( ruleSetFactory.getDeclarationFactory() ) ||
+         SelectorFactory.class != classOf( selectorFactory ) )
+    {
+      return false;
+    }
+    final DeclarationFactory declarationFactory = (DeclarationFactory) ruleSetFactory.getDeclarationFactory();
+    return expressionFactory == ruleSetFactory.getExpressionFactory() &&
+           expressionFactory == declarationFactory.getExpressionFactory() &&
+           selectorFactory == declarationFactory.getSelectorFactory();
+  }
+
+  @Nullable
+  private static Class<?> classOf( @Nullable final Object object )
+  {
+    return null != object ? object.getClass() : null;
+  }
+}
@@ -0,0 +1,241 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.IOException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.tree.Tree;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.localmatters.lesscss4j.compile.CompileTracer;
+import org.localmatters.lesscss4j.compile.CompileTracing;
+import org.localmatters.lesscss4j.error.ErrorHandler;
+import org.localmatters.lesscss4j.error.ErrorUtils;
+import org.localmatters.lesscss4j.error.LessCssException;
+import org.localmatters.lesscss4j.error.ParseError;
+import org.localmatters.lesscss4j.parser.antlr4.LessCss4Lexer;
+import org.localmatters.lesscss4j.parser.antlr4.LessCss4Parser;
+
+/**
+ * A {@link LessCssStyleSheetParser} that parses stylesheets with the ANTLR 4 grammar (LessCss4.g4) rather than the
+ * ANTLR 3 grammar, building the same AST.  Stylesheets are first parsed using SLL prediction, which is faster but
+ * stops at the first syntax error.  Only stylesheets that fail to parse that way are parsed again using full LL
+ * prediction to tell an ambiguity the SLL prediction could not resolve from a real syntax error and to report the
+ * errors.  The prediction caches of the ANTLR 4 runtime are shared by all parsers so parsing gets faster as more
+ * stylesheets are parsed.  The AST is built by {@link Antlr4TreeBuilder} as the stylesheet is parsed, so no parse
+ * tree is built.
+ * <p/>
+ * Errors are reported with the position and message produced by ANTLR 4, which may differ from those produced by
+ * the ANTLR 3 parser.
+ */
+public class Antlr4StyleSheetParser
+  extends LessCssStyleSheetParser
+{
+  @Override
+  protected Tree doParseTree( @Nonnull final StyleSheetResource input, @Nullable final ErrorHandler errorHandler )
+    throws IOException
+  {
+    final CompileTracer.Span span = CompileTracing.start( CompileTracer.Operation.PARSE );
+    final CharStream stream = createCharStream( input );
+    final ErrorListener errorListener = new ErrorListener( errorHandler );
+    try
+    {
+      final Antlr4TreeBuilder treeBuilder = new Antlr4TreeBuilder( stream );
+      parse( createTokenStream( stream, input, errorListener ), treeBuilder, errorListener );
+      return errorListener.getErrorCount() == 0 ? treeBuilder.getTree() : null;
+    }
+    catch ( final LessCssException e )
+    {
+      ErrorUtils.handleError( errorHandler, e );
+    }
+    finally
+    {
+      CompileTracing.end( span, CompileTracing.toString( input ), null, stream.size() );
+    }
+    return null;
+  }
+
+  /**
+   * Creates the stream of the tokens of the ANTLR 4 lexer over the given character stream.
+   */
+  @Nonnull
+  final CommonTokenStream createTokenStream( @Nonnull final CharStream stream,
+                                             @Nonnull final StyleSheetResource input,
+                                             @Nonnull final ErrorListener errorListener )
+  {
+    final LessCss4Lexer lexer = new LessCss4Lexer( new Antlr4CharStream( stream, CompileTracing.toString( input ) ) );
+    lexer.removeErrorListeners();
+    lexer.addErrorListener( errorListener );
+    return new CommonTokenStream( lexer );
+  }
+
+  /**
+   * Parses the stylesheet in the given token stream, first with SLL prediction and then with LL prediction if that
+   * fails.  The builder is notified of the rules and tokens as they are parsed and is reset before the stylesheet is
+   * parsed again.
+   */
+  final void parse( @Nonnull final CommonTokenStream tokens,
+                    @Nonnull final Builder builder,
+                    @Nonnull final ErrorListener errorListener )
+  {
+    final LessCss4Parser parser = new LessCss4Parser( tokens );
+    parser.removeErrorListeners();
+    parser.setErrorHandler( new BailErrorStrategy() );
+    parser.getInterpreter().setPredictionMode( PredictionMode.SLL );
+    parser.setBuildParseTree( false );
+    parser.addParseListener( builder );
+    try
+    {
+      parser.styleSheet();
+    }
+    catch ( final ParseCancellationException e )
+    {
+      tokens.reset();
+      parser.reset();
+      builder.reset();
+      parser.addErrorListener( errorListener );
+      parser.setErrorHandler( new DefaultErrorStrategy() );
+      parser.getInterpreter().setPredictionMode( PredictionMode.LL );
+      parser.styleSheet();
+    }
+  }
+
+  /**
+   * Builds the result of a parse from the events of the parser.
+   */
+  interface Builder
+    extends ParseTreeListener
+  {
+    /**
+     * Discards everything built so far, so that the stylesheet can be parsed again.
+     */
+    void reset();
+  }
+
+  /**
+   * Reports the syntax errors found by the lexer and the parser to the {@link ErrorHandler}.
+   */
+  static final class ErrorListener
+    extends BaseErrorListener
+  {
+    private final ErrorHandler _errorHandler;
+    private int _errorCount;
+
+    ErrorListener( @Nullable final ErrorHandler errorHandler )
+    {
+      _errorHandler = errorHandler;
+    }
+
+    int getErrorCount()
+    {
+      return _errorCount;
+    }
+
+    @Override
+    public void syntaxError( final Recognizer<?, ?> recognizer,
+                             final Object offendingSymbol,
+                             final int line,
+                             final int charPositionInLine,
+                             final String msg,
+                             final RecognitionException e )
+    {
+      _errorCount++;
+      ErrorUtils.handleError( _errorHandler,
+                              new ParseError( ErrorUtils.formatPosition( line, charPositionInLine ) + " - " + msg, e ) );
+    }
+  }
+
+  /**
+   * Presents the character stream created for the ANTLR 3 lexer to the ANTLR 4 lexer, so that stylesheets are read
+   * and decoded the same way by both parsers and the tokens of the AST can refer to the characters of the stream.
+   */
+  private static final class Antlr4CharStream
+    implements org.antlr.v4.runtime.CharStream
+  {
+    private final CharStream _input;
+    private final String _sourceName;
+
+    Antlr4CharStream( @Nonnull final CharStream input, @Nullable final String sourceName )
+    {
+      _input = input;
+      _sourceName = null != sourceName ? sourceName : UNKNOWN_SOURCE_NAME;
+    }
+
+    @Override
+    public String getText( final Interval interval )
+    {
+      final int stop = Math.min( interval.b, _input.size() - 1 );
+      return interval.a > stop ? "" : _input.substring( interval.a, stop );
+    }
+
+    @Override
+    public void consume()
+    {
+      _input.consume();
+    }
+
+    @Override
+    public int LA( final int i )
+    {
+      return _input.LA( i );
+    }
+
+    @Override
+    public int mark()
+    {
+      return -1;
+    }
+
+    @Override
+    public void release( final int marker )
+    {
+    }
+
+    @Override
+    public int index()
+    {
+      return _input.index();
+    }
+
+    @Override
+    public void seek( final int index )
+    {
+      _input.seek( index );
+    }
+
+    @Override
+    public int size()
+    {
+      return _input.size();
+    }
+
+    @Override
+    public String getSourceName()
+    {
+      return _sourceName;
+    }
+  }
+}
@@ -0,0 +1,646 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.tree.CommonTreeAdaptor;
+import org.antlr.runtime.tree.Tree;
+import org.antlr.runtime.tree.TreeAdaptor;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.localmatters.lesscss4j.parser.antlr.LessCssParser;
+import org.localmatters.lesscss4j.parser.antlr4.LessCss4Parser;
+import org.localmatters.lesscss4j.util.StringTable;
+
+/**
+ * Builds the AST produced by the rewrite rules of the ANTLR 3 grammar (LessCss.g) while the ANTLR 4 grammar
+ * (LessCss4.g4) is being parsed, so that the rest of the compiler can not tell which parser was used.  The listener
+ * receives the events of the parser directly so the parser does not need to build a parse tree.  The tokens of the
+ * AST are created over the same character stream and with the same token types as those of the ANTLR 3 lexer.
+ * <p/>
+ * The trees of the tokens and rules matched by the rules being parsed are kept on a stack.  When a rule is exited,
+ * the elements it matched are replaced by the tree of its rewrite.  Rules without a rewrite in LessCss.g keep all
+ * of their elements, including whitespace.  The elements are not assumed to be complete so the builder does not fail
+ * on input with syntax errors, although the tree it builds for such input is meaningless.
+ */
+final class Antlr4TreeBuilder
+  implements Antlr4StyleSheetParser.Builder
+{
+  /**
+   * The ANTLR 3 token type of each ANTLR 4 token type.
+   */
+  private static final int[] TOKEN_TYPES = createTokenTypeMap();
+  /**
+   * Added to the index of a rule to tell the elements matched by rules from tokens.
+   */
+  private static final int RULE = 1 << 16;
+  /**
+   * Used in place of a rule index or token type to match any rule or token.
+   */
+  private static final int ANY = -1;
+
+  private final TreeAdaptor _adaptor = new CommonTreeAdaptor();
+  private final CharStream _input;
+  private Object[] _trees = new Object[ 64 ];
+  private int[] _kinds = new int[ 64 ];
+  private int _size;
+  private int[] _frames = new int[ 32 ];
+  private int _depth;
+
+  Antlr4TreeBuilder( @Nonnull final CharStream input )
+  {
+    _input = input;
+  }
+
+  /**
+   * @return The tree of the stylesheet, once it has been parsed.
+   */
+  @Nullable
+  Tree getTree()
+  {
+    return 1 == _size ? (Tree) _trees[ 0 ] : null;
+  }
+
+  @Override
+  public void reset()
+  {
+    Arrays.fill( _trees, 0, _size, null );
+    _size = 0;
+    _depth = 0;
+  }
+
+  @Override
+  public void enterEveryRule( final ParserRuleContext ctx )
+  {
+    if ( _depth == _frames.length )
+    {
+      _frames = Arrays.copyOf( _frames, _depth * 2 );
+    }
+    _frames[ _depth++ ] = _size;
+  }
+
+  @Override
+  public void visitTerminal( final TerminalNode node )
+  {
+    final Token token = node.getSymbol();
+    if ( Token.EOF == token.getType() )
+    {
+      return;
+    }
+    push( _adaptor.create( createToken( _input, token ) ), token.getType() );
+  }
+
+  @Override
+  public void visitErrorNode( final ErrorNode node )
+  {
+  }
+
+  @Override
+  public void exitEveryRule( final ParserRuleContext ctx )
+  {
+    final int start = _frames[ --_depth ];
+    final Object tree = rewrite( ctx, start );
+    Arrays.fill( _trees, start, _size, null );
+    _size = start;
+    push( tree, RULE + ctx.getRuleIndex() );
+  }
+
+  /**
+   * Creates the tree of the rewrite of the given rule from the elements it matched.
+   *
+   * @param ctx   The rule.
+   * @param start The index of the first element matched by the rule.
+   * @return The tree of the rule.
+   */
+  private Object rewrite( final ParserRuleContext ctx, final int start )
+  {
+    switch ( ctx.getRuleIndex() )
+    {
+      case LessCss4Parser.RULE_styleSheet:
+        // ^(STYLESHEET charSet* importFile* bodyset*)
+        return addRules( createNode( LessCssParser.STYLESHEET ), start );
+      case LessCss4Parser.RULE_charSet:
+        // ^(CHARSET STRING)
+        return addTokens( findToken( LessCss4Parser.CHARSET, start ), LessCss4Parser.STRING, start );
+      case LessCss4Parser.RULE_importFile:
+        // ^(IMPORT importLocation medium*)
+        return addRules( createNode( LessCssParser.IMPORT ), start );
+      case LessCss4Parser.RULE_media:
+        // ^(MEDIA_SYM ^(MEDIA_EXPR medium)+ ruleList*)
+        return addRules( findToken( LessCss4Parser.MEDIA_SYM, start ),
+                         start,
+                         LessCss4Parser.RULE_medium,
+                         LessCssParser.MEDIA_EXPR );
+      case LessCss4Parser.RULE_page:
+        // ^(PAGE_SYM pseudoPage? pageElement*)
+        return addRules( findToken( LessCss4Parser.PAGE_SYM, start ), start );
+      case LessCss4Parser.RULE_pageElement:
+      case LessCss4Parser.RULE_mixinSelectorList:
+      case LessCss4Parser.RULE_mixinMacroCallArgList:
+      case LessCss4Parser.RULE_variable:
+        // Only the rules, e.g. mixinSelectorList WS!* SEMI!
+        return _adaptor.rulePostProcessing( addRules( _adaptor.nil(), start ) );
+      case LessCss4Parser.RULE_mixinMacro:
+        // ^(MIXIN_MACRO ^(SELECTOR mixinMacroSelector) mixinMacroArg+ ruleSetElement+)
+        return createSelectorTree( LessCssParser.MIXIN_MACRO, LessCssParser.SELECTOR, start );
+      case LessCss4Parser.RULE_mixinMacroArg:
+        // ^(MIXIN_ARG variable ^(EXPR mixinMacroArgDefault))
+        return addRules( createNode( LessCssParser.MIXIN_ARG ),
+                         start,
+                         LessCss4Parser.RULE_mixinMacroArgDefault,
+                         LessCssParser.EXPR );
+      case LessCss4Parser.RULE_mixinMacroArgDefault:
+        // ^(CONSTANT numberOrColor) or ^(LITERAL literal)
+        return addRules( createNode( ctx instanceof LessCss4Parser.ConstantArgDefaultContext ?
+                                     LessCssParser.CONSTANT :
+                                     LessCssParser.LITERAL ), start );
+      case LessCss4Parser.RULE_keyframesRule:
+        // ^(KEYFRAMES ^(SELECTOR keyframesSelector) keyframesBody+)
+        return createSelectorTree( LessCssParser.KEYFRAMES, LessCssParser.SELECTOR, start );
+      case LessCss4Parser.RULE_keyframesBody:
+        // ^(RULESET ^(SELECTOR keyframe) ruleSetElement*)
+        return ctx instanceof LessCss4Parser.KeyframesRuleSetContext ?
+               createSelectorTree( LessCssParser.RULESET, LessCssParser.SELECTOR, start ) :
+               addAll( start );
+      case LessCss4Parser.RULE_ruleSet:
+        // ^(RULESET ruleSetSelector ruleSetElement*)
+        return addRules( createNode( LessCssParser.RULESET ), start );
+      case LessCss4Parser.RULE_ruleSetElement:
+        if ( ctx instanceof LessCss4Parser.NestedRuleSetContext )
+        {
+          // ^(RULESET innerSelectorList ruleSetElement*)
+          return addRules( createNode( LessCssParser.RULESET ), start );
+        }
+        else
+        {
+          // mixinSelectorList WS!* SEMI!, declaration or variableDef
+          return _adaptor.rulePostProcessing( addRules( _adaptor.nil(), start ) );
+        }
+      case LessCss4Parser.RULE_mixinSelector:
+        // ^(MIXIN_REF ^(SELECTOR mixinMacroSelector) mixinMacroCallArgList*) or
+        // ^(MIXIN_REF ^(SELECTOR mixinNoArgSelector))
+        return createSelectorTree( LessCssParser.MIXIN_REF, LessCssParser.SELECTOR, start );
+      case LessCss4Parser.RULE_mixinMacroCallArg:
+        // ^(MIXIN_ARG ^(LITERAL literal)) or ^(MIXIN_ARG ^(EXPR additiveExpression))
+        return addRules( createNode( LessCssParser.MIXIN_ARG ),
+                         start,
+                         ANY,
+                         ctx instanceof LessCss4Parser.LiteralCallArgContext ?
+                         LessCssParser.LITERAL :
+                         LessCssParser.EXPR );
+      case LessCss4Parser.RULE_innerSelectorList:
+      case LessCss4Parser.RULE_selectorList:
+        // ^(SELECTOR innerSelector)+ or ^(SELECTOR selector)+
+        return _adaptor.rulePostProcessing( addRules( _adaptor.nil(), start, ANY, LessCssParser.SELECTOR ) );
+      case LessCss4Parser.RULE_ruleSetSelector:
+        // ^(SELECTOR fontFaceSelector)
+        return ctx instanceof LessCss4Parser.FontFaceRuleSetSelectorContext ?
+               addRules( createNode( LessCssParser.SELECTOR ), start ) :
+               addAll( start );
+      case LessCss4Parser.RULE_variableDef:
+        // variableExpr WS* SEMI!
+        return addAllExcept( start, LessCss4Parser.SEMI );
+      case LessCss4Parser.RULE_variableExpr:
+        // ^(VAR variable ^(EXPR propertyValue))
+        return addRules( createNode( LessCssParser.VAR ), start, LessCss4Parser.RULE_propertyValue, LessCssParser.EXPR );
+      case LessCss4Parser.RULE_additiveExpression:
+      case LessCss4Parser.RULE_multiplicativeExpression:
+        // multiplicativeExpression ( WS!* (PLUS|MINUS)^ WS!* multiplicativeExpression )*
+        return createOperatorTree( start );
+      case LessCss4Parser.RULE_primaryExpression:
+        // (LPAREN! WS!*) additiveExpression (WS!* RPAREN!) or exprValue
+        return _adaptor.rulePostProcessing( addRules( _adaptor.nil(), start ) );
+      case LessCss4Parser.RULE_exprValue:
+        // ^(VAR variable) or ^(CONSTANT numberOrColor)
+        return addRules( createNode( ctx instanceof LessCss4Parser.VariableValueContext ?
+                                     LessCssParser.VAR :
+                                     LessCssParser.CONSTANT ), start );
+      case LessCss4Parser.RULE_declaration:
+        // ^(DECLARATION property ^(PROP_VALUE propertyValue)? important?) or fontDeclaration
+        return ctx instanceof LessCss4Parser.PropertyDeclarationContext ?
+               addRules( createNode( LessCssParser.DECLARATION ),
+                         start,
+                         LessCss4Parser.RULE_propertyValue,
+                         LessCssParser.PROP_VALUE ) :
+               addAll( start );
+      case LessCss4Parser.RULE_fontDeclaration:
+        // ^(DECLARATION fontProperty ^(PROP_VALUE fontPropertyValue) important?)
+        return addRules( createNode( LessCssParser.DECLARATION ),
+                         start,
+                         LessCss4Parser.RULE_fontPropertyValue,
+                         LessCssParser.PROP_VALUE );
+      case LessCss4Parser.RULE_fontProperty:
+        // ^(FONT propPrefix?)
+        return addRules( findToken( LessCss4Parser.FONT, start ), start );
+      case LessCss4Parser.RULE_fontPropertyValue:
+        // (fontStyle WS*)* fontSize (WS!* SOLIDUS WS!* lineHeight)? WS* fontFamily (WS!* COMMA WS* fontFamily)*
+        return addAllExceptWhitespace( start, LessCss4Parser.SOLIDUS, true );
+      case LessCss4Parser.RULE_property:
+        // ^(identNoFont propPrefix?)
+        return addRules( findRule( LessCss4Parser.RULE_identNoFont, start ), start, LessCss4Parser.RULE_propPrefix );
+      case LessCss4Parser.RULE_propertyValue:
+        // ^(EXPR additiveExpression)
+        return ctx instanceof LessCss4Parser.ExpressionValueContext ?
+               addRules( createNode( LessCssParser.EXPR ), start ) :
+               addAll( start );
+      case LessCss4Parser.RULE_mixinAccessor:
+        // ^(MIXIN_ACCESSOR ^(SELECTOR mixinMacroSelector) mixinAccessorItem)
+        return createSelectorTree( LessCssParser.MIXIN_ACCESSOR, LessCssParser.SELECTOR, start );
+      case LessCss4Parser.RULE_mixinAccessorItem:
+        // ^(VAR variable)
+        return ctx instanceof LessCss4Parser.VariableAccessorItemContext ?
+               addRules( createNode( LessCssParser.VAR ), start ) :
+               addAll( start );
+      case LessCss4Parser.RULE_propertyTermExpression:
+        // ^(EXPR primaryExpression)
+        return addRules( createNode( LessCssParser.EXPR ), start );
+      case LessCss4Parser.RULE_propertyTermNoExpr:
+        // ^(LITERAL literal)
+        return ctx instanceof LessCss4Parser.LiteralTermContext ?
+               addRules( createNode( LessCssParser.LITERAL ), start ) :
+               addAll( start );
+      case LessCss4Parser.RULE_function:
+        // ^(FUNCTION ^(FUNCTION_NAME functionName) functionArgList)
+        return ctx instanceof LessCss4Parser.NamedFunctionContext ?
+               createSelectorTree( LessCssParser.FUNCTION, LessCssParser.FUNCTION_NAME, start ) :
+               addAll( start );
+      case LessCss4Parser.RULE_functionArgList:
+        // ieFunctionTerm (WS!* COMMA WS!* ieFunctionTerm)* or functionArg ((WS!* COMMA WS!*|WS+) functionArg)*
+        return ctx instanceof LessCss4Parser.IeFunctionArgListContext ?
+               addAllExceptWhitespace( start, ANY, false ) :
+               addAllExceptWhitespace( start, LessCss4Parser.COMMA, false );
+      case LessCss4Parser.RULE_ieFunctionTerm:
+        // ^(ieFunctionTermOp ident ^(LITERAL literal)? ^(EXPR additiveExpression)?)
+        return createIeFunctionTermTree( start );
+      case LessCss4Parser.RULE_ieExpression:
+      {
+        // ^(FUNCTION ^(FUNCTION_NAME EXPRESSION) ieExprTerm)
+        final Object root = createNode( LessCssParser.FUNCTION );
+        _adaptor.addChild( root, addTokens( createNode( LessCssParser.FUNCTION_NAME ),
+                                            LessCss4Parser.EXPRESSION,
+                                            start ) );
+        return addRules( root, start );
+      }
+      default:
+        return addAll( start );
+    }
+  }
+
+  private void push( final Object tree, final int kind )
+  {
+    if ( _size == _trees.length )
+    {
+      _trees = Arrays.copyOf( _trees, _size * 2 );
+      _kinds = Arrays.copyOf( _kinds, _size * 2 );
+    }
+    _trees[ _size ] = tree;
+    _kinds[ _size++ ] = kind;
+  }
+
+  private boolean isRule( final int index )
+  {
+    return _kinds[ index ] >= RULE;
+  }
+
+  private boolean isToken( final int index, final int type )
+  {
+    return index >= 0 && index < _size && _kinds[ index ] == type;
+  }
+
+  private Object createNode( final int type )
+  {
+    return _adaptor.create( type, LessCssParser.tokenNames[ type ] );
+  }
+
+  @Nullable
+  private Object findToken( final int type, final int start )
+  {
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( _kinds[ i ] == type )
+      {
+        return _trees[ i ];
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private Object findRule( final int ruleIndex, final int start )
+  {
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( _kinds[ i ] == RULE + ruleIndex )
+      {
+        return _trees[ i ];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds the elements matched by the rule, keeping all of its tokens.
+   */
+  private Object addAll( final int start )
+  {
+    final Object root = _adaptor.nil();
+    for ( int i = start; i < _size; i++ )
+    {
+      _adaptor.addChild( root, _trees[ i ] );
+    }
+    return _adaptor.rulePostProcessing( root );
+  }
+
+  /**
+   * Adds the elements matched by the rule, except the tokens of the given type.
+   */
+  private Object addAllExcept( final int start, final int type )
+  {
+    final Object root = _adaptor.nil();
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( _kinds[ i ] != type )
+      {
+        _adaptor.addChild( root, _trees[ i ] );
+      }
+    }
+    return _adaptor.rulePostProcessing( root );
+  }
+
+  /**
+   * Adds the elements matched by the rule, except the whitespace before or after tokens of the given type, or all
+   * whitespace if the type is {@link #ANY}.  If <code>beforeComma</code> is true the whitespace before a comma is
+   * omitted too.
+   */
+  private Object addAllExceptWhitespace( final int start, final int type, final boolean beforeComma )
+  {
+    final Object root = _adaptor.nil();
+    for ( int i = start; i < _size; i++ )
+    {
+      final boolean omitted =
+        LessCss4Parser.WS == _kinds[ i ] &&
+        ( ANY == type ||
+          isToken( i - 1, type ) ||
+          isToken( i + 1, type ) ||
+          ( beforeComma && isToken( i + 1, LessCss4Parser.COMMA ) ) );
+      if ( !omitted )
+      {
+        _adaptor.addChild( root, _trees[ i ] );
+      }
+    }
+    return _adaptor.rulePostProcessing( root );
+  }
+
+  /**
+   * Adds the tokens of the given type matched by the rule as children of the given root.
+   */
+  private Object addTokens( @Nullable final Object root, final int type, final int start )
+  {
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( _kinds[ i ] == type )
+      {
+        _adaptor.addChild( root, _trees[ i ] );
+      }
+    }
+    return root;
+  }
+
+  /**
+   * Adds the trees of all of the rules matched by the rule as children of the given root, except the root itself.
+   */
+  private Object addRules( @Nullable final Object root, final int start )
+  {
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( isRule( i ) && _trees[ i ] != root )
+      {
+        _adaptor.addChild( root, _trees[ i ] );
+      }
+    }
+    return root;
+  }
+
+  /**
+   * Adds the trees of the rules matched by the rule as children of the given root, except the root itself.  The
+   * trees of rules with the given index are added as the child of a new node of the given type.
+   */
+  private Object addRules( @Nullable final Object root, final int start, final int ruleIndex, final int type )
+  {
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( isRule( i ) && _trees[ i ] != root )
+      {
+        if ( ANY == ruleIndex || _kinds[ i ] == RULE + ruleIndex )
+        {
+          final Object child = createNode( type );
+          _adaptor.addChild( child, _trees[ i ] );
+          _adaptor.addChild( root, child );
+        }
+        else
+        {
+          _adaptor.addChild( root, _trees[ i ] );
+        }
+      }
+    }
+    return root;
+  }
+
+  /**
+   * Adds the tree of the given rule as a child of the given root, unless it is the root itself.
+   */
+  private Object addRules( @Nullable final Object root, final int start, final int ruleIndex )
+  {
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( _kinds[ i ] == RULE + ruleIndex && _trees[ i ] != root )
+      {
+        _adaptor.addChild( root, _trees[ i ] );
+      }
+    }
+    return root;
+  }
+
+  /**
+   * Creates a tree with a node of the given type as the root, the first rule as the child of a node of the given
+   * selector type and the other rules as children.
+   */
+  private Object createSelectorTree( final int type, final int selectorType, final int start )
+  {
+    final Object root = createNode( type );
+    boolean first = true;
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( isRule( i ) )
+      {
+        if ( first )
+        {
+          final Object selector = createNode( selectorType );
+          _adaptor.addChild( selector, _trees[ i ] );
+          _adaptor.addChild( root, selector );
+          first = false;
+        }
+        else
+        {
+          _adaptor.addChild( root, _trees[ i ] );
+        }
+      }
+    }
+    return root;
+  }
+
+  /**
+   * Creates the tree of a left associative binary expression, with the operators as roots and ignoring whitespace.
+   */
+  private Object createOperatorTree( final int start )
+  {
+    Object result = null;
+    Object operator = null;
+    for ( int i = start; i < _size; i++ )
+    {
+      if ( isRule( i ) )
+      {
+        if ( null == operator )
+        {
+          result = _trees[ i ];
+        }
+        else
+        {
+          _adaptor.addChild( operator, result );
+          _adaptor.addChild( operator, _trees[ i ] );
+          result = operator;
+        }
+      }
+      else if ( LessCss4Parser.WS != _kinds[ i ] )
+      {
+        operator = _trees[ i ];
+      }
+    }
+    return result;
+  }
+
+  private Object createIeFunctionTermTree( final int start )
+  {
+    final Object root = findRule( LessCss4Parser.RULE_ieFunctionTermOp, start );
+    _adaptor.addChild( root, findRule( LessCss4Parser.RULE_ident, start ) );
+    final Object literal = findRule( LessCss4Parser.RULE_literal, start );
+    if ( null != literal )
+    {
+      final Object child = createNode( LessCssParser.LITERAL );
+      _adaptor.addChild( child, literal );
+      _adaptor.addChild( root, child );
+    }
+    final Object expression = findRule( LessCss4Parser.RULE_additiveExpression, start );
+    if ( null != expression )
+    {
+      final Object child = createNode( LessCssParser.EXPR );
+      _adaptor.addChild( child, expression );
+      _adaptor.addChild( root, child );
+    }
+    return root;
+  }
+
+  /**
+   * @return The ANTLR 3 token type of the given ANTLR 4 token type.
+   */
+  static int getTokenType( final int type )
+  {
+    return TOKEN_TYPES[ type ];
+  }
+
+  /**
+   * Creates the ANTLR 3 token of the given ANTLR 4 token, over the given character stream.
+   */
+  @Nonnull
+  static CommonToken createToken( @Nonnull final CharStream input, @Nonnull final Token token )
+  {
+    final CommonToken result = new CommonToken( input,
+                                                TOKEN_TYPES[ token.getType() ],
+                                                Token.DEFAULT_CHANNEL,
+                                                token.getStartIndex(),
+                                                token.getStopIndex() );
+    result.setLine( token.getLine() );
+    result.setCharPositionInLine( token.getCharPositionInLine() );
+    result.setTokenIndex( token.getTokenIndex() );
+    switch ( result.getType() )
+    {
+      case LessCssParser.IDENT:
+      case LessCssParser.NUMBER:
+      case LessCssParser.HASH:
+        // Share the text of the tokens repeated throughout a stylesheet, as LessCssLexer does
+        result.setText( StringTable.intern( token.getText() ) );
+        break;
+
+      default:
+        break;
+    }
+    return result;
+  }
+
+  /**
+   * Maps the token types of LessCss4.g4 to those of LessCss.g.  The tokens have the same names in both grammars and
+   * the tokens defined implicitly by literals in the parser rules are matched on the literal.
+   */
+  private static int[] createTokenTypeMap()
+  {
+    final Map<String, Integer> types = new HashMap<>();
+    for ( int type = 0; type < LessCssParser.tokenNames.length; type++ )
+    {
+      types.put( LessCssParser.tokenNames[ type ], type );
+    }
+
+    final int[] map = new int[ LessCss4Parser.tokenNames.length ];
+    for ( final Field field : LessCss4Parser.class.getFields() )
+    {
+      final int modifiers = field.getModifiers();
+      if ( Modifier.isStatic( modifiers ) && int.class == field.getType() && !field.getName().startsWith( "RULE_" ) )
+      {
+        try
+        {
+          final int type = field.getInt( null );
+          if ( type > 0 && type < map.length )
+          {
+            Integer result = types.get( field.getName() );
+            if ( null == result )
+            {
+              result = types.get( LessCss4Parser.tokenNames[ type ] );
+            }
+            if ( null == result )
+            {
+              throw new IllegalStateException( "No token matching " + field.getName() + " in LessCss.g" );
+            }
+            map[ type ] = result;
+          }
+        }
+        catch ( final IllegalAccessException e )
+        {
+          throw new IllegalStateException( e );
+        }
+      }
+    }
+    return map;
+  }
+}
@@ -0,0 +1,384 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.antlr.runtime.tree.Tree;
+import org.apache.commons.io.IOUtils;
+import org.localmatters.lesscss4j.error.ErrorHandler;
+
+/**
+ * {@link StyleSheetTreeParser} that caches the trees produced by another parser so that stylesheets imported by many
+ * stylesheets, or on every compile, are only parsed once.  Trees are keyed by the URL of the stylesheet and are
+ * re-parsed whenever the stylesheet changes.  Resources without a URL and stylesheets that fail to parse are never
+ * cached.
+ * <p/>
+ * A stylesheet is considered unchanged while its last modified time and length are unchanged, as reported by the file
+ * system for files and by the {@link URLConnection} for other URLs, so that looking up a cached tree does not read the
+ * stylesheet.  As a last modified time only has the granularity of the file system or protocol, the content of a
+ * stylesheet cached within {@link #TIMESTAMP_GRANULARITY} of its last modification is hashed, and a lookup with the
+ * same last modified time and length compares the hash until it is seen again after that window, so that an edit that
+ * keeps the length and lands within the same tick is still picked up.  The content of resources that do not report a
+ * last modified time is hashed on every lookup.  The hashed content is the content that is parsed, so a stylesheet is
+ * never read twice by a lookup.
+ * <p/>
+ * A cached tree can therefore only be stale when a stylesheet is changed without changing its length and its last
+ * modified time is set back to the previous one, e.g. by a tool that preserves timestamps when copying, or when a
+ * server reports a last modified time that does not change with the content.
+ * <p/>
+ * Instances are thread safe and are intended to be shared by all the compiles performed by a compiler.  The cached
+ * trees are only ever read by the compiler.
+ */
+public class CachingStyleSheetTreeParser
+  implements StyleSheetTreeParser
+{
+  /**
+   * The coarsest granularity of the last modified times of stylesheets, in milliseconds, that of FAT file systems.
+   */
+  public static final long TIMESTAMP_GRANULARITY = 2000;
+
+  private final StyleSheetTreeParser _delegate;
+  private final ConcurrentMap<String, Entry> _entries = new ConcurrentHashMap<>();
+  private final AtomicLong _hitCount = new AtomicLong();
+  private final AtomicLong _missCount = new AtomicLong();
+
+  public CachingStyleSheetTreeParser( @Nonnull final StyleSheetTreeParser delegate )
+  {
+    _delegate = delegate;
+  }
+
+  @Nonnull
+  public StyleSheetTreeParser getDelegate()
+  {
+    return _delegate;
+  }
+
+  @Nullable
+  public Tree parseTree( @Nonnull final StyleSheetResource input, @Nullable final ErrorHandler handler )
+    throws IOException
+  {
+    final URL url = input.getUrl();
+    if ( null == url )
+    {
+      return getDelegate().parseTree( input, handler );
+    }
+
+    final String key = url.toExternalForm();
+    final Stamp stamp = getStamp( input, url );
+    final boolean settled = null != stamp && System.currentTimeMillis() - stamp._lastModified > TIMESTAMP_GRANULARITY;
+    final Entry entry = _entries.get( key );
+    final boolean stampMatches = null != entry && null != stamp && stamp.equals( entry._stamp );
+    if ( stampMatches && null == entry._hash )
+    {
+      _hitCount.incrementAndGet();
+      return entry._tree;
+    }
+
+    // Hash the content unless the time and length alone identify it
+    final ByteBuffer content;
+    final byte[] hash;
+    if ( settled && !stampMatches )
+    {
+      content = null;
+      hash = null;
+    }
+    else
+    {
+      content = readContent( input );
+      hash = hash( content );
+      if ( null != entry && Arrays.equals( hash, entry._hash ) )
+      {
+        if ( settled || null != stamp && !stampMatches )
+        {
+          // Once settled any later edit changes the last modified time, so the hash is no longer needed
+          _entries.replace( key, entry, new Entry( stamp, settled ? null : hash, entry._tree ) );
+        }
+        _hitCount.incrementAndGet();
+        return entry._tree;
+      }
+    }
+
+    _missCount.incrementAndGet();
+    final int preParseErrorCount = null != handler ? handler.getErrorCount() : 0;
+    final StyleSheetResource resource = null != content ? new ReadResource( input, content ) : input;
+    final Tree tree = getDelegate().parseTree( resource, handler );
+    if ( null != tree && ( null == handler || preParseErrorCount == handler.getErrorCount() ) )
+    {
+      _entries.put( key, new Entry( stamp, settled ? null : hash, tree ) );
+    }
+    else
+    {
+      _entries.remove( key );
+    }
+    return tree;
+  }
+
+  /**
+   * Returns the last modified time and length of the stylesheet without reading it.
+   *
+   * @return The stamp, <code>null</code> if the resource does not report a last modified time.
+   */
+  @Nullable
+  private static Stamp getStamp( @Nonnull final StyleSheetResource resource, @Nonnull final URL url )
+    throws IOException
+  {
+    final File file = getFile( resource, url );
+    final long lastModified;
+    final long length;
+    if ( null != file )
+    {
+      lastModified = file.lastModified();
+      length = file.length();
+    }
+    else
+    {
+      final URLConnection connection = url.openConnection();
+      connection.setUseCaches( false );
+      if ( connection instanceof HttpURLConnection )
+      {
+        ( (HttpURLConnection) connection ).setRequestMethod( "HEAD" );
+      }
+      try
+      {
+        lastModified = connection.getLastModified();
+        length = connection.getContentLengthLong();
+      }
+      finally
+      {
+        close( connection );
+      }
+    }
+    return lastModified > 0 ? new Stamp( lastModified, length ) : null;
+  }
+
+  @Nullable
+  private static File getFile( @Nonnull final StyleSheetResource resource, @Nonnull final URL url )
+  {
+    if ( resource instanceof FileStyleSheetResource )
+    {
+      return ( (FileStyleSheetResource) resource ).getFile();
+    }
+    else if ( "file".equals( url.getProtocol() ) )
+    {
+      try
+      {
+        return new File( url.toURI() );
+      }
+      catch ( final URISyntaxException | IllegalArgumentException e )
+      {
+        return null;
+      }
+    }
+    else
+    {
+      return null;
+    }
+  }
+
+  private static void close( @Nonnull final URLConnection connection )
+  {
+    if ( connection instanceof HttpURLConnection )
+    {
+      ( (HttpURLConnection) connection ).disconnect();
+    }
+    else
+    {
+      // Reading the headers of other connections may have opened the stream
+      try
+      {
+        connection.getInputStream().close();
+      }
+      catch ( final IOException e )
+      {
+        // Reported when the stylesheet is read
+      }
+    }
+  }
+
+  @Nonnull
+  private static ByteBuffer readContent( @Nonnull final StyleSheetResource resource )
+    throws IOException
+  {
+    if ( resource instanceof ContentStyleSheetResource )
+    {
+      return ( (ContentStyleSheetResource) resource ).readContent();
+    }
+    try ( final InputStream input = resource.getInputStream() )
+    {
+      return ByteBuffer.wrap( IOUtils.toByteArray( input ) );
+    }
+  }
+
+  @Nonnull
+  private static byte[] hash( @Nonnull final ByteBuffer content )
+  {
+    final MessageDigest digest;
+    try
+    {
+      digest = MessageDigest.getInstance( "SHA-1" );
+    }
+    catch ( final NoSuchAlgorithmException e )
+    {
+      throw new IllegalStateException( "SHA-1 digest not available", e );
+    }
+    digest.update( content.duplicate() );
+    return digest.digest();
+  }
+
+  /**
+   * Removes all the cached trees.
+   */
+  public void clear()
+  {
+    _entries.clear();
+  }
+
+  /**
+   * @return The number of stylesheets with a cached tree.
+   */
+  public int getEntryCount()
+  {
+    return _entries.size();
+  }
+
+  /**
+   * @return The number of times a cached tree was returned.
+   */
+  public long getHitCount()
+  {
+    return _hitCount.get();
+  }
+
+  /**
+   * @return The number of times a stylesheet had to be parsed.
+   */
+  public long getMissCount()
+  {
+    return _missCount.get();
+  }
+
+  private static final class Stamp
+  {
+    private final long _lastModified;
+    private final long _length;
+
+    Stamp( final long lastModified, final long length )
+    {
+      _lastModified = lastModified;
+      _length = length;
+    }
+
+    @Override
+    public boolean equals( final Object o )
+    {
+      if ( this == o )
+      {
+        return true;
+      }
+      if ( !( o instanceof Stamp ) )
+      {
+        return false;
+      }
+      final Stamp stamp = (Stamp) o;
+      return _lastModified == stamp._lastModified && _length == stamp._length;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return 31 * (int) ( _lastModified ^ ( _lastModified >>> 32 ) ) + (int) ( _length ^ ( _length >>> 32 ) );
+    }
+  }
+
+  private static final class Entry
+  {
+    @Nullable
+    private final Stamp _stamp;
+    /**
+     * The hash of the content, <code>null</code> once the stamp alone identifies the content.
+     */
+    @Nullable
+    private final byte[] _hash;
+    private final Tree _tree;
+
+    Entry( @Nullable final Stamp stamp, @Nullable final byte[] hash, @Nonnull final Tree tree )
+    {
+      _stamp = stamp;
+      _hash = hash;
+      _tree = tree;
+    }
+  }
+
+  /**
+   * A stylesheet with the content already read from it, so that the content hashed is the content parsed.
+   */
+  private static final class ReadResource
+    implements ContentStyleSheetResource
+  {
+    private final StyleSheetResource _resource;
+    private final ByteBuffer _content;
+
+    ReadResource( @Nonnull final StyleSheetResource resource, @Nonnull final ByteBuffer content )
+    {
+      _resource = resource;
+      _content = content;
+    }
+
+    @Nonnull
+    public ByteBuffer readContent()
+    {
+      return _content.duplicate();
+    }
+
+    @Nonnull
+    public InputStream getInputStream()
+    {
+      final ByteBuffer content = readContent();
+      if ( content.hasArray() )
+      {
+        return new ByteArrayInputStream( content.array(),
+                                         content.arrayOffset() + content.position(),
+                                         content.remaining() );
+      }
+      final byte[] bytes = new byte[ content.remaining() ];
+      content.get( bytes );
+      return new ByteArrayInputStream( bytes );
+    }
+
+    @Nullable
+    public URL getUrl()
+      throws IOException
+    {
+      return _resource.getUrl();
+    }
+  }
+}
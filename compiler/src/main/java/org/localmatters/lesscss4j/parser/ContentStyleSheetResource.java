@@ -0,0 +1,37 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link StyleSheetResource} that can supply its entire content at once.  The parser decodes the content directly
+ * into a character array of the right size rather than reading it through a stream into a growing buffer.
+ */
+public interface ContentStyleSheetResource
+  extends StyleSheetResource
+{
+  /**
+   * Reads the content of the stylesheet.
+   *
+   * @return A buffer positioned at the start of the content with its limit at the end of the content.
+   */
+  @Nonnull
+  ByteBuffer readContent()
+    throws IOException;
+}
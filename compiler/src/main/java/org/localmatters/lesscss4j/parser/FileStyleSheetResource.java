@@ -16,14 +16,17 @@
 package org.localmatters.lesscss4j.parser;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import javax.annotation.Nonnull;
 import org.apache.commons.io.FileUtils;
 
 public class FileStyleSheetResource
-  implements StyleSheetResource
+  implements ContentStyleSheetResource
 {
   @Nonnull
   private final File _file;
@@ -51,6 +54,31 @@ public class FileStyleSheetResource
     return FileUtils.openInputStream( getFile() );
   }
 
+  /**
+   * Reads the file into a buffer of the size of the file.
+   */
+  @Nonnull
+  public ByteBuffer readContent()
+    throws IOException
+  {
+    try ( final FileInputStream input = FileUtils.openInputStream( getFile() );
+          final FileChannel channel = input.getChannel() )
+    {
+      final long size = channel.size();
+      if ( size > Integer.MAX_VALUE )
+      {
+        throw new IOException( "File '" + getFile() + "' is too large" );
+      }
+      final ByteBuffer buffer = ByteBuffer.allocate( (int) size );
+      while ( buffer.hasRemaining() && -1 != channel.read( buffer ) )
+      {
+        // Keep reading until the buffer is full or the file has been truncated
+      }
+      buffer.flip();
+      return buffer;
+    }
+  }
+
   @Nonnull
   public URL getUrl()
     throws IOException
@@ -0,0 +1,423 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.TokenSource;
+import org.antlr.runtime.TokenStream;
+import org.antlr.runtime.tree.CommonTree;
+import org.antlr.runtime.tree.Tree;
+import org.localmatters.lesscss4j.compile.CompileTracer;
+import org.localmatters.lesscss4j.compile.CompileTracing;
+import org.localmatters.lesscss4j.error.AbstractErrorHandler;
+import org.localmatters.lesscss4j.error.ErrorHandler;
+import org.localmatters.lesscss4j.parser.antlr.LessCssLexer;
+
+/**
+ * {@link LessCssStyleSheetParser} for development servers and watch modes that keeps the content and tree of each
+ * stylesheet it parses, keyed by the URL of the stylesheet.  When a stylesheet is parsed again after it has been edited,
+ * only the top level elements (rule sets, media blocks, variable definitions and so on) from the first one the edit
+ * touches up to the first one that starts on a line after the edit are parsed again.  The elements before and after
+ * those are copied from the previous tree, with the positions of the following elements shifted by the size of the
+ * edit.  The resulting tree is the same as the one produced by parsing the whole stylesheet.
+ * <p/>
+ * The whole stylesheet is parsed when it has not been parsed before, has no URL, when the elements that are parsed
+ * again have syntax errors or characters that no token matches, or when the edit touches the <code>@charset</code> or
+ * <code>@import</code> rules, so that syntax errors are always reported as by {@link LessCssStyleSheetParser}.
+ * <p/>
+ * Instances are thread safe.  The trees returned are never modified.
+ */
+public class IncrementalStyleSheetParser
+  extends LessCssStyleSheetParser
+{
+  private final ConcurrentMap<String, Entry> _entries = new ConcurrentHashMap<>();
+  private final AtomicLong _fullParseCount = new AtomicLong();
+  private final AtomicLong _incrementalParseCount = new AtomicLong();
+
+  @Override
+  protected Tree doParseTree( @Nonnull final StyleSheetResource input, @Nullable final ErrorHandler errorHandler )
+    throws IOException
+  {
+    final URL url = input.getUrl();
+    if ( null == url )
+    {
+      return super.doParseTree( input, errorHandler );
+    }
+
+    final CompileTracer.Span span = CompileTracing.start( CompileTracer.Operation.PARSE );
+    final CharStream stream = createCharStream( input );
+    try
+    {
+      final char[] content = stream.substring( 0, stream.size() - 1 ).toCharArray();
+      final String key = url.toExternalForm();
+      final Entry entry = _entries.get( key );
+      Tree tree = null;
+      if ( null != entry )
+      {
+        tree = parseChanges( key, entry, content );
+      }
+      if ( null == tree )
+      {
+        _fullParseCount.incrementAndGet();
+        final int preParseErrorCount = null != errorHandler ? errorHandler.getErrorCount() : 0;
+        final TokenStream tokens = new CommonTokenStream( createTokenSource( new ANTLRStringStream( content, content.length ) ) );
+        tree = parseTree( tokens, errorHandler );
+        if ( null == tree || ( null != errorHandler && preParseErrorCount != errorHandler.getErrorCount() ) )
+        {
+          _entries.remove( key );
+        }
+        else
+        {
+          _entries.put( key, new Entry( content, tree, getStarts( tree, tokens, 0 ) ) );
+        }
+      }
+      return tree;
+    }
+    finally
+    {
+      CompileTracing.end( span, CompileTracing.toString( input ), null, stream.size() );
+    }
+  }
+
+  /**
+   * Builds the tree of the edited content of a stylesheet from the tree of its previous content, parsing only the
+   * top level elements that were edited.
+   *
+   * @param key     The key of the stylesheet.
+   * @param entry   The previous content and tree of the stylesheet.
+   * @param content The edited content of the stylesheet.
+   * @return The tree of the edited content, or <code>null</code> if the whole stylesheet must be parsed.
+   */
+  @Nullable
+  private Tree parseChanges( @Nonnull final String key, @Nonnull final Entry entry, @Nonnull final char[] content )
+  {
+    final char[] previous = entry._content;
+    final int maxLength = Math.min( previous.length, content.length );
+    int prefixLength = 0;
+    while ( prefixLength < maxLength && previous[ prefixLength ] == content[ prefixLength ] )
+    {
+      prefixLength++;
+    }
+    if ( prefixLength == previous.length && prefixLength == content.length )
+    {
+      return entry._tree;
+    }
+    int suffixLength = 0;
+    while ( suffixLength < maxLength - prefixLength &&
+            previous[ previous.length - suffixLength - 1 ] == content[ content.length - suffixLength - 1 ] )
+    {
+      suffixLength++;
+    }
+
+    final int[] starts = entry._starts;
+    if ( null == starts )
+    {
+      return null;
+    }
+
+    // The elements before the one the edit starts in are kept.  Each top level element ends with a ';' or '}' which
+    // the lexer matches without looking at the following characters, so their tokens are unchanged.
+    final int elementCount = starts.length;
+    int first = 0;
+    while ( first < elementCount && starts[ first ] < prefixLength )
+    {
+      first++;
+    }
+    first = Math.max( 0, first - 1 );
+
+    // The elements starting on a line after the end of the edit are kept, so only their line changes.
+    final int editEnd = previous.length - suffixLength;
+    int lineEnd = editEnd;
+    while ( lineEnd < previous.length && '\n' != previous[ lineEnd ] )
+    {
+      lineEnd++;
+    }
+    int last = elementCount;
+    while ( last > first && starts[ last - 1 ] > lineEnd )
+    {
+      last--;
+    }
+
+    final Tree previousTree = entry._tree;
+    for ( int i = last; i < elementCount; i++ )
+    {
+      if ( isHeader( previousTree.getChild( i ) ) )
+      {
+        return null;
+      }
+    }
+
+    final int delta = content.length - previous.length;
+    final int start = first < elementCount ? starts[ first ] : previous.length;
+    final int end = last < elementCount ? starts[ last ] + delta : content.length;
+    final int parseStart = 0 == first ? 0 : start;
+    final List<Token> editedTokens = lex( content, parseStart, end );
+    if ( null == editedTokens )
+    {
+      return null;
+    }
+    final TokenStream tokens = new CommonTokenStream( new ListTokenSource( editedTokens ) );
+    final AbstractErrorHandler errorHandler = new AbstractErrorHandler();
+    final Tree edited = parseTree( tokens, errorHandler );
+    if ( null == edited || 0 != errorHandler.getErrorCount() )
+    {
+      return null;
+    }
+    if ( 0 != parseStart )
+    {
+      for ( int i = 0; i < edited.getChildCount(); i++ )
+      {
+        if ( isHeader( edited.getChild( i ) ) )
+        {
+          return null;
+        }
+      }
+    }
+
+    _incrementalParseCount.incrementAndGet();
+    final CharStream input = new ANTLRStringStream( content, content.length );
+    final int lineDelta = countLines( content, prefixLength, content.length - suffixLength ) -
+                          countLines( previous, prefixLength, editEnd );
+    final int[] editedStarts = getStarts( edited, tokens, parseStart );
+    if ( null == editedStarts )
+    {
+      return null;
+    }
+    final CommonTree tree = new CommonTree( new CommonToken( previousTree.getType(), previousTree.getText() ) );
+    final int[] treeStarts = new int[ first + editedStarts.length + elementCount - last ];
+    for ( int i = 0; i < first; i++ )
+    {
+      tree.addChild( copy( previousTree.getChild( i ), input, 0, 0 ) );
+      treeStarts[ i ] = starts[ i ];
+    }
+    for ( int i = 0; i < editedStarts.length; i++ )
+    {
+      tree.addChild( copy( edited.getChild( i ), input, 0, 0 ) );
+      treeStarts[ first + i ] = editedStarts[ i ];
+    }
+    for ( int i = last; i < elementCount; i++ )
+    {
+      tree.addChild( copy( previousTree.getChild( i ), input, delta, lineDelta ) );
+      treeStarts[ first + editedStarts.length + i - last ] = starts[ i ] + delta;
+    }
+    _entries.put( key, new Entry( content, tree, treeStarts ) );
+    return tree;
+  }
+
+  /**
+   * Returns the tokens of the elements that are parsed again.  The lexer reports errors to the console rather than the
+   * error handler, so the tokens are checked to cover every character of the elements instead.  The content after the
+   * elements is also lexed so that a token that runs on past them, such as an unclosed comment, is detected.
+   *
+   * @param content The edited content of the stylesheet.
+   * @param start   The index of the first character of the elements.
+   * @param end     The index of the character after the elements.
+   * @return The tokens followed by an EOF token, or <code>null</code> if the characters could not all be matched by
+   *         tokens or a token does not end at <code>end</code>.
+   */
+  @Nullable
+  private List<Token> lex( @Nonnull final char[] content, final int start, final int end )
+  {
+    final ANTLRStringStream stream = new ANTLRStringStream( content, content.length );
+    stream.seek( start );
+    final TokenSource source = createTokenSource( stream );
+    final List<Token> tokens = new ArrayList<>();
+    int next = start;
+    while ( next < end )
+    {
+      final Token token = source.nextToken();
+      if ( Token.EOF == token.getType() || next != ( (CommonToken) token ).getStartIndex() )
+      {
+        // The lexer skipped the characters it could not match
+        return null;
+      }
+      tokens.add( token );
+      next = ( (CommonToken) token ).getStopIndex() + 1;
+    }
+    if ( next != end )
+    {
+      return null;
+    }
+    tokens.add( new CommonToken( stream, Token.EOF, Token.DEFAULT_CHANNEL, end, end - 1 ) );
+    return tokens;
+  }
+
+  /**
+   * Copies a tree, moving its tokens to the given stream.
+   *
+   * @param tree      The tree to copy.
+   * @param input     The stream holding the content of the stylesheet.
+   * @param delta     The number of characters to move the tokens by.
+   * @param lineDelta The number of lines to move the tokens by.
+   * @return The copy of the tree.
+   */
+  @Nonnull
+  private static Tree copy( @Nonnull final Tree tree,
+                            @Nonnull final CharStream input,
+                            final int delta,
+                            final int lineDelta )
+  {
+    final Token token = ( (CommonTree) tree ).getToken();
+    final CommonToken copy = new CommonToken( token );
+    if ( null != token.getInputStream() )
+    {
+      copy.setInputStream( input );
+    }
+    if ( token.getLine() > 0 )
+    {
+      copy.setLine( token.getLine() + lineDelta );
+      copy.setStartIndex( copy.getStartIndex() + delta );
+      copy.setStopIndex( copy.getStopIndex() + delta );
+    }
+    final CommonTree result = new CommonTree( copy );
+    for ( int i = 0; i < tree.getChildCount(); i++ )
+    {
+      result.addChild( copy( tree.getChild( i ), input, delta, lineDelta ) );
+    }
+    return result;
+  }
+
+  /**
+   * Returns the index of the first character of each top level element of a tree.  The first token of an element is
+   * not always part of its tree, so the tokens the parser matched for each element are used.
+   *
+   * @param tree   The tree of the stylesheet.
+   * @param tokens The tokens the tree was parsed from.
+   * @param start  The index of the first character parsed.
+   * @return The start of each element, or <code>null</code> if the start of an element is not known.
+   */
+  @Nullable
+  private static int[] getStarts( @Nonnull final Tree tree, @Nonnull final TokenStream tokens, final int start )
+  {
+    final int[] starts = new int[ tree.getChildCount() ];
+    for ( int i = 0; i < starts.length; i++ )
+    {
+      final int tokenIndex = tree.getChild( i ).getTokenStartIndex();
+      if ( tokenIndex < 0 )
+      {
+        return null;
+      }
+      starts[ i ] = ( (CommonToken) tokens.get( tokenIndex ) ).getStartIndex();
+      if ( starts[ i ] < start )
+      {
+        return null;
+      }
+    }
+    return starts;
+  }
+
+  /**
+   * @return True if the element is one that can only appear at the start of the stylesheet.
+   */
+  private static boolean isHeader( @Nonnull final Tree element )
+  {
+    return LessCssLexer.CHARSET == element.getType() || LessCssLexer.IMPORT == element.getType();
+  }
+
+  private static int countLines( @Nonnull final char[] content, final int start, final int end )
+  {
+    int count = 0;
+    for ( int i = start; i < end; i++ )
+    {
+      if ( '\n' == content[ i ] )
+      {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Forgets the content and trees of all the stylesheets, so that they are parsed in full when next parsed.
+   */
+  public void clear()
+  {
+    _entries.clear();
+  }
+
+  /**
+   * @return The number of times a whole stylesheet was parsed.
+   */
+  public long getFullParseCount()
+  {
+    return _fullParseCount.get();
+  }
+
+  /**
+   * @return The number of times an edited stylesheet was parsed by only parsing the edited elements.
+   */
+  public long getIncrementalParseCount()
+  {
+    return _incrementalParseCount.get();
+  }
+
+  private static final class ListTokenSource
+    implements TokenSource
+  {
+    private final List<Token> _tokens;
+    private int _index;
+
+    ListTokenSource( @Nonnull final List<Token> tokens )
+    {
+      _tokens = tokens;
+    }
+
+    @Override
+    public Token nextToken()
+    {
+      // The last token is EOF and is returned for every request past the end
+      final Token token = _tokens.get( _index );
+      if ( _index < _tokens.size() - 1 )
+      {
+        _index++;
+      }
+      return token;
+    }
+
+    @Override
+    public String getSourceName()
+    {
+      return null;
+    }
+  }
+
+  private static final class Entry
+  {
+    private final char[] _content;
+    private final Tree _tree;
+    private final int[] _starts;
+
+    Entry( final char[] content, final Tree tree, final int[] starts )
+    {
+      _content = content;
+      _tree = tree;
+      _starts = starts;
+    }
+  }
+}
@@ -0,0 +1,920 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import javax.annotation.Nonnull;
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.TokenSource;
+import org.localmatters.lesscss4j.parser.antlr.LessCssLexer;
+import org.localmatters.lesscss4j.util.StringTable;
+
+/**
+ * Hand written replacement for the {@link LessCssLexer} generated from LessCss.g, producing tokens of the same types
+ * with the same boundaries and positions.  Like the generated lexer, it starts scanning at the current position of
+ * the stream.  Each token is scanned in a single pass over the characters of the
+ * stylesheet, dispatching on its first character and classifying characters with lookup tables, rather than
+ * predicting the token with the generated DFA and then matching it again one character at a time.
+ * <p/>
+ * The scanner reproduces the quirks of the generated lexer that affect valid stylesheets: keywords are only
+ * recognized when written without escapes and a keyword at the very end of the stylesheet is an <code>IDENT</code>.
+ * Like the generated lexer, it reports characters that do not form a token to standard error and skips them, but it
+ * may resume scanning at a different character after such an error.
+ */
+public class LessCssScanner
+  implements TokenSource
+{
+  private static final int NAME_START = 1;
+  private static final int DIGIT = 2;
+  private static final int HEX = 4;
+  private static final int WHITESPACE = 8;
+  private static final int LETTER = 16;
+  /**
+   * Characters that end an unquoted url, in addition to whitespace.
+   */
+  private static final int URL_END = 32;
+
+  /**
+   * The classes of the ASCII characters.  All other characters are name characters.
+   */
+  private static final byte[] CHAR_CLASSES = new byte[ 128 ];
+  /**
+   * The types of the tokens made of a single ASCII character, or 0.
+   */
+  private static final byte[] CHAR_TOKEN_TYPES = new byte[ 128 ];
+
+  static
+  {
+    for ( char c = 'a'; c <= 'z'; c++ )
+    {
+      CHAR_CLASSES[ c ] = NAME_START | LETTER;
+      CHAR_CLASSES[ Character.toUpperCase( c ) ] = NAME_START | LETTER;
+    }
+    for ( char c = 'a'; c <= 'f'; c++ )
+    {
+      CHAR_CLASSES[ c ] |= HEX;
+      CHAR_CLASSES[ Character.toUpperCase( c ) ] |= HEX;
+    }
+    for ( char c = '0'; c <= '9'; c++ )
+    {
+      CHAR_CLASSES[ c ] = DIGIT | HEX;
+    }
+    CHAR_CLASSES[ '_' ] = NAME_START;
+    for ( final char c : " \t\r\n\f".toCharArray() )
+    {
+      CHAR_CLASSES[ c ] = WHITESPACE;
+    }
+    for ( final char c : "\r\n\f'\")".toCharArray() )
+    {
+      CHAR_CLASSES[ c ] |= URL_END;
+    }
+
+    CHAR_TOKEN_TYPES[ '>' ] = LessCssLexer.GREATER;
+    CHAR_TOKEN_TYPES[ '{' ] = LessCssLexer.LBRACE;
+    CHAR_TOKEN_TYPES[ '}' ] = LessCssLexer.RBRACE;
+    CHAR_TOKEN_TYPES[ '[' ] = LessCssLexer.LBRACKET;
+    CHAR_TOKEN_TYPES[ ']' ] = LessCssLexer.RBRACKET;
+    CHAR_TOKEN_TYPES[ '=' ] = LessCssLexer.OPEQ;
+    CHAR_TOKEN_TYPES[ ';' ] = LessCssLexer.SEMI;
+    CHAR_TOKEN_TYPES[ ':' ] = LessCssLexer.COLON;
+    CHAR_TOKEN_TYPES[ '+' ] = LessCssLexer.PLUS;
+    CHAR_TOKEN_TYPES[ '(' ] = LessCssLexer.LPAREN;
+    CHAR_TOKEN_TYPES[ ')' ] = LessCssLexer.RPAREN;
+    CHAR_TOKEN_TYPES[ ',' ] = LessCssLexer.COMMA;
+    CHAR_TOKEN_TYPES[ '%' ] = LessCssLexer.PERCENT;
+    CHAR_TOKEN_TYPES[ '@' ] = LessCssLexer.T__105;
+    CHAR_TOKEN_TYPES[ '&' ] = LessCssLexer.T__106;
+    CHAR_TOKEN_TYPES[ '?' ] = LessCssLexer.T__107;
+  }
+
+  private final CharStream _input;
+  private final char[] _data;
+  private final int _length;
+  /**
+   * The index of the next character to scan.
+   */
+  private int _index;
+  private int _line;
+  /**
+   * The index of the first character of the current line.
+   */
+  private int _lineStart;
+  /**
+   * The index following the last character of the token being scanned, or of the characters to skip after an error.
+   */
+  private int _end;
+
+  public LessCssScanner( @Nonnull final CharStream input )
+  {
+    _input = input;
+    _length = input.size();
+    _data = new char[ _length ];
+    if ( _length > 0 )
+    {
+      input.substring( 0, _length - 1 ).getChars( 0, _length, _data, 0 );
+    }
+    _index = input.index();
+    _line = input.getLine();
+    _lineStart = _index - input.getCharPositionInLine();
+  }
+
+  @Override
+  public Token nextToken()
+  {
+    while ( _index < _length )
+    {
+      final int start = _index;
+      final int type = scanToken( start );
+      if ( 0 == type )
+      {
+        skip( start, _end );
+      }
+      else
+      {
+        final CommonToken token = new CommonToken( _input, type, getChannel( type ), start, _end - 1 );
+        token.setLine( _line );
+        token.setCharPositionInLine( start - _lineStart );
+        if ( isInterned( type ) )
+        {
+          token.setText( StringTable.intern( _data, start, _end ) );
+        }
+        if ( isMultiLine( type ) )
+        {
+          skip( start, _end );
+        }
+        else
+        {
+          _index = _end;
+        }
+        return token;
+      }
+    }
+    final CommonToken eof = new CommonToken( _input, Token.EOF, Token.DEFAULT_CHANNEL, _index, _index );
+    eof.setLine( _line );
+    eof.setCharPositionInLine( _index - _lineStart );
+    return eof;
+  }
+
+  @Override
+  public String getSourceName()
+  {
+    return _input.getSourceName();
+  }
+
+  /**
+   * Reports an error found while scanning.  Writes it to standard error by default, as the generated lexer does.
+   *
+   * @param message The message, including the position of the error.
+   */
+  protected void emitErrorMessage( final String message )
+  {
+    System.err.println( message );
+  }
+
+  /**
+   * Scans the token starting at the given index, setting {@link #_end}.
+   *
+   * @return The type of the token, or 0 if the characters up to {@link #_end} do not form a token.
+   */
+  private int scanToken( final int start )
+  {
+    final char c = _data[ start ];
+    if ( c >= 128 )
+    {
+      return scanName( start );
+    }
+    final int type = CHAR_TOKEN_TYPES[ c ];
+    if ( 0 != type )
+    {
+      _end = start + 1;
+      return type;
+    }
+    switch ( c )
+    {
+      case ' ':
+      case '\t':
+      case '\r':
+      case '\n':
+      case '\f':
+        _end = skipWhitespace( start + 1 );
+        return LessCssLexer.WS;
+      case '/':
+        return scanSolidus( start );
+      case '-':
+        return scanMinus( start );
+      case '.':
+        if ( isClass( start + 1, DIGIT ) )
+        {
+          return scanNumber( start );
+        }
+        _end = start + 1;
+        return LessCssLexer.DOT;
+      case '*':
+        return scanMatch( start, LessCssLexer.STAR, LessCssLexer.SUBSTR_MATCH );
+      case '~':
+        return scanMatch( start, 0, LessCssLexer.INCLUDES );
+      case '|':
+        return scanMatch( start, 0, LessCssLexer.DASHMATCH );
+      case '^':
+        return scanMatch( start, 0, LessCssLexer.START_MATCH );
+      case '$':
+        return scanMatch( start, 0, LessCssLexer.END_MATCH );
+      case '\'':
+      case '"':
+        return scanString( start );
+      case '#':
+        _end = skipNameChars( start + 1 );
+        if ( _end == start + 1 )
+        {
+          return error( "required (...)+ loop did not match anything", start + 1, start + 1 );
+        }
+        return LessCssLexer.HASH;
+      case '!':
+        return scanImportant( start );
+      case '<':
+        return scanLiteral( start, "<!--", LessCssLexer.CDO );
+      default:
+        if ( isClass( start, DIGIT ) )
+        {
+          return scanNumber( start );
+        }
+        else if ( isClass( start, NAME_START ) || '\\' == c )
+        {
+          return scanName( start );
+        }
+        return error( "no viable alternative", start, start + 1 );
+    }
+  }
+
+  /**
+   * Scans an identifier or one of the keywords that look like identifiers.
+   */
+  private int scanName( final int start )
+  {
+    final int end = skipName( start );
+    if ( end < 0 )
+    {
+      return error( "no viable alternative", start + 1, start + 1 );
+    }
+    _end = end;
+    switch ( getLetter( start ) )
+    {
+      case '_':
+        return keyword( start, "_", LessCssLexer.UNDERSCORE );
+      case 'a':
+        final int alphaType = keyword( start, "alpha", LessCssLexer.ALPHA );
+        return LessCssLexer.IDENT == alphaType ? keyword( start, "and", LessCssLexer.AND ) : alphaType;
+      case 'c':
+        return 7 == end - start && regionMatches( start, "charset" ) && end < _length ?
+               LessCssLexer.CHARSET :
+               LessCssLexer.IDENT;
+      case 'e':
+        return keyword( start, "expression", LessCssLexer.EXPRESSION );
+      case 'f':
+        final int fontType = keyword( start, "font-face", LessCssLexer.FONT_FACE );
+        return LessCssLexer.IDENT == fontType ? keyword( start, "font", LessCssLexer.FONT ) : fontType;
+      case 'h':
+        return scanColor( start, "hsl", LessCssLexer.HSL_COLOR );
+      case 'i':
+        return keyword( start, "import", LessCssLexer.IMPORT_SYM );
+      case 'k':
+        return keyword( start, "keyframes", LessCssLexer.KEYFRAMES );
+      case '-':
+        return keyword( start, "-webkit-keyframes", LessCssLexer.KEYFRAMES );
+      case 'm':
+        return keyword( start, "media", LessCssLexer.MEDIA_SYM );
+      case 'n':
+        return keyword( start, "not", LessCssLexer.NOT );
+      case 'o':
+        return keyword( start, "only", LessCssLexer.ONLY );
+      case 'p':
+        return keyword( start, "page", LessCssLexer.PAGE_SYM );
+      case 'r':
+        return scanColor( start, "rgb", LessCssLexer.RGB_COLOR );
+      case 'u':
+        return skipWord( start, "url" ) == end && isChar( end, '(' ) ? scanUri( start, end ) : LessCssLexer.IDENT;
+      default:
+        return LessCssLexer.IDENT;
+    }
+  }
+
+  /**
+   * @return The type of the keyword if the identifier scanned up to {@link #_end} is the given keyword, otherwise
+   *         <code>IDENT</code>.  Like the generated lexer, an identifier at the end of the input is never a keyword.
+   */
+  private int keyword( final int start, final String keyword, final int type )
+  {
+    return _end < _length && skipWord( start, keyword ) == _end ? type : LessCssLexer.IDENT;
+  }
+
+  /**
+   * Scans an <code>RGB_COLOR</code> or <code>HSL_COLOR</code>.  The color is recognized as soon as its name is
+   * followed by whitespace or a parenthesis, as in the generated lexer, and its arguments must then be numbers.
+   */
+  private int scanColor( final int start, final String name, final int type )
+  {
+    final int nameEnd = skipWord( start, name );
+    final int count;
+    if ( nameEnd == _end )
+    {
+      count = 3;
+    }
+    else if ( nameEnd > 0 && skipLetter( nameEnd, 'a' ) == _end )
+    {
+      count = 4;
+    }
+    else
+    {
+      return LessCssLexer.IDENT;
+    }
+    if ( !isChar( _end, '(' ) && !isClass( _end, WHITESPACE ) )
+    {
+      return LessCssLexer.IDENT;
+    }
+
+    int index = skipWhitespace( _end );
+    if ( !isChar( index, '(' ) )
+    {
+      return error( "mismatched character", index, index + 1 );
+    }
+    index++;
+    for ( int i = 0; i < count; i++ )
+    {
+      if ( i > 0 )
+      {
+        index = skipWhitespace( index );
+        if ( !isChar( index, ',' ) )
+        {
+          return error( "mismatched character", index, index + 1 );
+        }
+        index++;
+      }
+      if ( LessCssLexer.RGB_COLOR == type )
+      {
+        final int minus = skipWhitespace( index );
+        if ( isChar( minus, '-' ) )
+        {
+          index = minus + 1;
+        }
+      }
+      index = skipWhitespace( index );
+      if ( !isClass( index, DIGIT ) && !( isChar( index, '.' ) && isClass( index + 1, DIGIT ) ) )
+      {
+        return error( "no viable alternative", index, index + 1 );
+      }
+      scanNumber( index );
+      index = _end;
+    }
+    index = skipWhitespace( index );
+    if ( !isChar( index, ')' ) )
+    {
+      return error( "mismatched character", index, index + 1 );
+    }
+    _end = index + 1;
+    return type;
+  }
+
+  /**
+   * Scans a <code>URI</code>, starting at the parenthesis following <code>url</code>.  An unterminated url is an
+   * <code>INVALID</code> token.
+   */
+  private int scanUri( final int start, final int lparen )
+  {
+    int index = skipWhitespace( lparen + 1 );
+    if ( isChar( index, '\'' ) || isChar( index, '"' ) )
+    {
+      scanString( index );
+      index = skipWhitespace( _end );
+      if ( !isChar( index, ')' ) )
+      {
+        return error( "mismatched character", index, index + 1 );
+      }
+      _end = index + 1;
+      return LessCssLexer.URI;
+    }
+    else if ( index >= _length || isClass( index, URL_END ) )
+    {
+      return error( "no viable alternative", index, lparen + 1 );
+    }
+
+    // The url ends at its last non whitespace character before any character that can not appear in it
+    int end = index + 1;
+    for ( int i = end; i < _length && !isClass( i, URL_END ); i++ )
+    {
+      if ( !isClass( i, WHITESPACE ) )
+      {
+        end = i + 1;
+      }
+    }
+    index = skipWhitespace( end );
+    if ( isChar( index, ')' ) )
+    {
+      _end = index + 1;
+      return LessCssLexer.URI;
+    }
+    _end = index;
+    return LessCssLexer.INVALID;
+  }
+
+  /**
+   * Scans a <code>NUMBER</code> and its optional unit.
+   */
+  private int scanNumber( final int start )
+  {
+    int index = skipDigits( start );
+    if ( isChar( index, '.' ) )
+    {
+      index = skipDigits( index + 1 );
+    }
+    if ( isChar( index, '%' ) )
+    {
+      index++;
+    }
+    else
+    {
+      while ( index < _length )
+      {
+        final char c = _data[ index ];
+        if ( c >= 128 || isClass( index, LETTER ) )
+        {
+          index++;
+        }
+        else if ( '\\' == c && skipEscape( index ) > 0 )
+        {
+          index = skipEscape( index );
+        }
+        else
+        {
+          break;
+        }
+      }
+    }
+    _end = index;
+    return LessCssLexer.NUMBER;
+  }
+
+  /**
+   * Scans a <code>STRING</code>.  An unterminated string is an <code>INVALID</code> token ending before the end of
+   * the line.
+   */
+  private int scanString( final int start )
+  {
+    final char quote = _data[ start ];
+    int index = start + 1;
+    while ( index < _length )
+    {
+      final char c = _data[ index ];
+      if ( quote == c )
+      {
+        _end = index + 1;
+        return LessCssLexer.STRING;
+      }
+      else if ( '\n' == c || '\r' == c || '\f' == c )
+      {
+        break;
+      }
+      index++;
+    }
+    _end = index;
+    return LessCssLexer.INVALID;
+  }
+
+  /**
+   * Scans a <code>SOLIDUS</code> or a <code>COMMENT</code>.  Line comments must be terminated by a new line.
+   */
+  private int scanSolidus( final int start )
+  {
+    if ( isChar( start + 1, '/' ) )
+    {
+      int index = start + 2;
+      while ( index < _length && '\n' != _data[ index ] && '\r' != _data[ index ] )
+      {
+        index++;
+      }
+      if ( isChar( index, '\r' ) )
+      {
+        index++;
+      }
+      if ( !isChar( index, '\n' ) )
+      {
+        return error( "mismatched character", index, index + 1 );
+      }
+      _end = index + 1;
+      return LessCssLexer.COMMENT;
+    }
+    else if ( isChar( start + 1, '*' ) )
+    {
+      for ( int index = start + 2; index < _length - 1; index++ )
+      {
+        if ( '*' == _data[ index ] && '/' == _data[ index + 1 ] )
+        {
+          _end = index + 2;
+          return LessCssLexer.COMMENT;
+        }
+      }
+      return error( "mismatched character", _length, _length );
+    }
+    _end = start + 1;
+    return LessCssLexer.SOLIDUS;
+  }
+
+  /**
+   * Scans a <code>MINUS</code>, a <code>CDC</code> or an identifier starting with a minus.
+   */
+  private int scanMinus( final int start )
+  {
+    if ( isChar( start + 1, '-' ) )
+    {
+      return scanLiteral( start, "-->", LessCssLexer.CDC );
+    }
+    else if ( start + 1 >= _length )
+    {
+      return error( "no viable alternative", start + 1, start + 1 );
+    }
+    else if ( skipName( start ) > 0 )
+    {
+      return scanName( start );
+    }
+    _end = start + 1;
+    return LessCssLexer.MINUS;
+  }
+
+  /**
+   * Scans an <code>IMPORTANT_SYM</code>, which may have whitespace between the exclamation mark and the keyword.
+   */
+  private int scanImportant( final int start )
+  {
+    final String keyword = "important";
+    int index = skipWhitespace( start + 1 );
+    for ( int i = 0; i < keyword.length(); i++ )
+    {
+      final int next = skipLetter( index, keyword.charAt( i ) );
+      if ( next < 0 )
+      {
+        return error( "no viable alternative", index, index + 1 );
+      }
+      index = next;
+    }
+    _end = index;
+    return LessCssLexer.IMPORTANT_SYM;
+  }
+
+  /**
+   * Scans a token that starts with the given character and is optionally followed by an equals sign.
+   *
+   * @param type      The type of the token without the equals sign, or 0 if it requires it.
+   * @param matchType The type of the token with the equals sign.
+   */
+  private int scanMatch( final int start, final int type, final int matchType )
+  {
+    if ( isChar( start + 1, '=' ) )
+    {
+      _end = start + 2;
+      return matchType;
+    }
+    else if ( 0 == type )
+    {
+      return error( "mismatched character", start + 1, start + 2 );
+    }
+    _end = start + 1;
+    return type;
+  }
+
+  private int scanLiteral( final int start, final String literal, final int type )
+  {
+    for ( int i = 1; i < literal.length(); i++ )
+    {
+      if ( !isChar( start + i, literal.charAt( i ) ) )
+      {
+        return error( "mismatched character", start + i, start + i + 1 );
+      }
+    }
+    _end = start + literal.length();
+    return type;
+  }
+
+  /**
+   * Reports an error and sets the characters to skip.
+   *
+   * @param message The description of the error.
+   * @param index   The index of the character in error.
+   * @param end     The index of the character to resume scanning at.
+   * @return 0
+   */
+  private int error( final String message, final int index, final int end )
+  {
+    int line = _line;
+    int lineStart = _lineStart;
+    for ( int i = _index; i < index && i < _length; i++ )
+    {
+      if ( '\n' == _data[ i ] )
+      {
+        line++;
+        lineStart = i + 1;
+      }
+    }
+    final String character;
+    if ( index >= _length )
+    {
+      character = "<EOF>";
+    }
+    else
+    {
+      character = "'" + _data[ index ] + "'";
+    }
+    emitErrorMessage( "line " + line + ":" + ( index - lineStart ) + " " + message + " at character " + character );
+    _end = Math.max( Math.min( end, _length ), _index + 1 );
+    return 0;
+  }
+
+  /**
+   * @return The index following the identifier starting at the given index, or -1 if there is none.
+   */
+  private int skipName( final int start )
+  {
+    final int index = isChar( start, '-' ) ? start + 1 : start;
+    final int nameStart = skipNameStart( index );
+    return nameStart < 0 ? -1 : skipNameChars( nameStart );
+  }
+
+  /**
+   * @return The index following the name character starting at the given index, or -1 if there is none.
+   */
+  private int skipNameStart( final int index )
+  {
+    if ( index >= _length )
+    {
+      return -1;
+    }
+    final char c = _data[ index ];
+    if ( c >= 128 || isClass( index, NAME_START ) )
+    {
+      return index + 1;
+    }
+    else if ( '\\' == c )
+    {
+      return skipEscape( index );
+    }
+    return -1;
+  }
+
+  private int skipNameChars( final int start )
+  {
+    int index = start;
+    while ( index < _length )
+    {
+      final char c = _data[ index ];
+      if ( c >= 128 || isClass( index, NAME_START | DIGIT ) || '-' == c )
+      {
+        index++;
+      }
+      else if ( '\\' == c )
+      {
+        final int end = skipEscape( index );
+        if ( end < 0 )
+        {
+          break;
+        }
+        index = end;
+      }
+      else
+      {
+        break;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * @return The index following the escape starting at the given backslash, or -1 if it is not an escape.
+   */
+  private int skipEscape( final int index )
+  {
+    if ( index + 1 >= _length )
+    {
+      return -1;
+    }
+    final char c = _data[ index + 1 ];
+    if ( isClass( index + 1, HEX ) )
+    {
+      int end = index + 2;
+      while ( end < index + 7 && isClass( end, HEX ) )
+      {
+        end++;
+      }
+      return end;
+    }
+    else if ( '\n' == c || '\r' == c || '\f' == c )
+    {
+      return -1;
+    }
+    return index + 2;
+  }
+
+  private int skipDigits( final int start )
+  {
+    int index = start;
+    while ( isClass( index, DIGIT ) )
+    {
+      index++;
+    }
+    return index;
+  }
+
+  private int skipWhitespace( final int start )
+  {
+    int index = start;
+    while ( isClass( index, WHITESPACE ) )
+    {
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * Advances past the given characters, counting lines.
+   */
+  private void skip( final int start, final int end )
+  {
+    for ( int i = start; i < end; i++ )
+    {
+      if ( '\n' == _data[ i ] )
+      {
+        _line++;
+        _lineStart = i + 1;
+      }
+    }
+    _index = end;
+  }
+
+  private boolean isClass( final int index, final int charClass )
+  {
+    if ( index < _length )
+    {
+      final char c = _data[ index ];
+      return c < 128 && 0 != ( CHAR_CLASSES[ c ] & charClass );
+    }
+    return false;
+  }
+
+  private boolean isChar( final int index, final char c )
+  {
+    return index < _length && c == _data[ index ];
+  }
+
+  private boolean regionMatches( final int start, final String text )
+  {
+    for ( int i = 0; i < text.length(); i++ )
+    {
+      if ( text.charAt( i ) != _data[ start + i ] )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return The lower case letter at the given index, or the letter escaped there, or the character itself.
+   */
+  private char getLetter( final int index )
+  {
+    final char c = _data[ index ];
+    if ( '\\' != c )
+    {
+      return toLowerCase( c );
+    }
+    for ( char letter = 'a'; letter <= 'z'; letter++ )
+    {
+      if ( skipLetter( index, letter ) > 0 )
+      {
+        return letter;
+      }
+    }
+    return c;
+  }
+
+  /**
+   * @return The index following the given word at the given index, or -1 if it is not there.
+   * @see #skipLetter
+   */
+  private int skipWord( final int start, final String word )
+  {
+    int index = start;
+    for ( int i = 0; i < word.length() && index >= 0; i++ )
+    {
+      index = skipLetter( index, word.charAt( i ) );
+    }
+    return index;
+  }
+
+  /**
+   * Matches a character of a keyword.  As in the A to Z fragments of LessCss.g, a letter may be in either case or be
+   * escaped with its code, or with itself if it is not a hexadecimal digit.
+   *
+   * @return The index following the given lower case letter at the given index, or -1 if it is not there.
+   */
+  private int skipLetter( final int index, final char letter )
+  {
+    if ( index >= _length )
+    {
+      return -1;
+    }
+    final char c = _data[ index ];
+    if ( letter == toLowerCase( c ) )
+    {
+      return index + 1;
+    }
+    else if ( '\\' != c || letter < 'a' || letter > 'z' )
+    {
+      return -1;
+    }
+    int i = index + 1;
+    if ( letter > 'f' && i < _length && letter == toLowerCase( _data[ i ] ) )
+    {
+      return i + 1;
+    }
+    for ( int zeros = 0; zeros < 4 && isChar( i, '0' ); zeros++ )
+    {
+      i++;
+    }
+    // The code of the letter in either case, e.g. 41 or 61 for 'a'
+    final int code = letter - 'a' + 1;
+    final char high = (char) ( '4' + ( code >> 4 ) );
+    if ( i + 1 < _length &&
+         ( high == _data[ i ] || high + 2 == _data[ i ] ) &&
+         Character.forDigit( code & 0xF, 16 ) == toLowerCase( _data[ i + 1 ] ) )
+    {
+      return i + 2;
+    }
+    return -1;
+  }
+
+  private static char toLowerCase( final char c )
+  {
+    return c >= 'A' && c <= 'Z' ? (char) ( c + ( 'a' - 'A' ) ) : c;
+  }
+
+  /**
+   * @return True if tokens of the given type may contain new lines.
+   */
+  private static boolean isMultiLine( final int type )
+  {
+    switch ( type )
+    {
+      case LessCssLexer.WS:
+      case LessCssLexer.COMMENT:
+      case LessCssLexer.RGB_COLOR:
+      case LessCssLexer.HSL_COLOR:
+      case LessCssLexer.URI:
+      case LessCssLexer.INVALID:
+      case LessCssLexer.IMPORTANT_SYM:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * @return True if the text of tokens of the given type is shared via the {@link StringTable}.
+   */
+  private static boolean isInterned( final int type )
+  {
+    switch ( type )
+    {
+      case LessCssLexer.IDENT:
+      case LessCssLexer.NUMBER:
+      case LessCssLexer.HASH:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static int getChannel( final int type )
+  {
+    switch ( type )
+    {
+      case LessCssLexer.COMMENT:
+      case LessCssLexer.CDO:
+      case LessCssLexer.CDC:
+        return Token.HIDDEN_CHANNEL;
+      default:
+        return Token.DEFAULT_CHANNEL;
+    }
+  }
+}
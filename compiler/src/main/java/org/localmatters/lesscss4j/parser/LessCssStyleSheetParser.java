@@ -18,12 +18,26 @@ package org.localmatters.lesscss4j.parser;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PushbackInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.antlr.runtime.ANTLRInputStream;
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CharStream;
 import org.antlr.runtime.CommonTokenStream;
 import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.TokenSource;
+import org.antlr.runtime.TokenStream;
 import org.antlr.runtime.tree.Tree;
+import org.localmatters.lesscss4j.compile.CompileStats;
+import org.localmatters.lesscss4j.compile.CompileTracer;
+import org.localmatters.lesscss4j.compile.CompileTracing;
 import org.localmatters.lesscss4j.error.ErrorHandler;
 import org.localmatters.lesscss4j.error.ErrorUtils;
 import org.localmatters.lesscss4j.error.LessCssException;
@@ -40,6 +54,12 @@ public class LessCssStyleSheetParser
   private int _initialBufferSize = ANTLRInputStream.INITIAL_BUFFER_SIZE;
   private int _readBufferSize = ANTLRInputStream.READ_BUFFER_SIZE;
   private ObjectFactory<StyleSheet> _styleSheetFactory;
+  private boolean _scannerEnabled;
+  /**
+   * The contexts not currently parsing a stylesheet.  They are held by the parser rather than by the threads that
+   * used them so that they are discarded along with the parser.
+   */
+  private final ConcurrentLinkedQueue<ParserContext> _contexts = new ConcurrentLinkedQueue<>();
 
   public static final String CHARSET_SYM = "@charset";
   public static final String NEWLINE_CHARS = "\n\r\f";
@@ -74,6 +94,22 @@ public class LessCssStyleSheetParser
     _readBufferSize = readBufferSize;
   }
 
+  public boolean isScannerEnabled()
+  {
+    return _scannerEnabled;
+  }
+
+  /**
+   * Sets whether stylesheets are tokenized by the hand written {@link LessCssScanner} rather than the lexer generated
+   * from the grammar.  Both produce the same tokens for valid stylesheets.  Defaults to false.
+   *
+   * @param scannerEnabled True to use the {@link LessCssScanner}.
+   */
+  public void setScannerEnabled( final boolean scannerEnabled )
+  {
+    _scannerEnabled = scannerEnabled;
+  }
+
   public ObjectFactory<StyleSheet> getStyleSheetFactory()
   {
     if ( null == _styleSheetFactory )
@@ -114,8 +150,91 @@ public class LessCssStyleSheetParser
   public Tree parseTree( @Nonnull final StyleSheetResource input, @Nullable final ErrorHandler errorHandler )
     throws IOException
   {
-    final LessCssLexer lexer = new LessCssLexer( createANTLRInputStream( input.getInputStream() ) );
-    final LessCssParser parser = new LessCssParser( new CommonTokenStream( lexer ) );
+    final CompileStats.Phase previousPhase = CompileStats.enter( CompileStats.Phase.PARSE );
+    try
+    {
+      return doParseTree( input, errorHandler );
+    }
+    finally
+    {
+      CompileStats.exit( previousPhase );
+    }
+  }
+
+  protected Tree doParseTree( @Nonnull final StyleSheetResource input, @Nullable final ErrorHandler errorHandler )
+    throws IOException
+  {
+    final CompileTracer.Span span = CompileTracing.start( CompileTracer.Operation.PARSE );
+    final CharStream stream = createCharStream( input );
+    try
+    {
+      return parseTree( stream, errorHandler );
+    }
+    finally
+    {
+      CompileTracing.end( span, CompileTracing.toString( input ), null, stream.size() );
+    }
+  }
+
+  /**
+   * Parses the stylesheet in the given stream, starting at the current position of the stream.
+   *
+   * @param stream       The content of the stylesheet.
+   * @param errorHandler The handler for any syntax errors.
+   * @return The tree of the stylesheet, or <code>null</code> if it has syntax errors.
+   */
+  @Nullable
+  protected Tree parseTree( @Nonnull final CharStream stream, @Nullable final ErrorHandler errorHandler )
+  {
+    final ParserContext context = acquireContext();
+    try
+    {
+      final TokenSource source = _scannerEnabled ? new LessCssScanner( stream ) : context.getLexer( stream );
+      return parseTree( context.getParser( source ), errorHandler );
+    }
+    finally
+    {
+      releaseContext( context );
+    }
+  }
+
+  /**
+   * @return A context that is not parsing a stylesheet, created if all of the contexts of the parser are in use.
+   */
+  @Nonnull
+  ParserContext acquireContext()
+  {
+    final ParserContext context = _contexts.poll();
+    return null != context ? context : new ParserContext();
+  }
+
+  /**
+   * Returns the context to the parser once a stylesheet has been parsed, unless it buffered a very large stylesheet.
+   */
+  void releaseContext( @Nonnull final ParserContext context )
+  {
+    if ( context.reset() <= ParserContext.MAX_RETAINED_TOKENS )
+    {
+      _contexts.offer( context );
+    }
+  }
+
+  /**
+   * Parses the stylesheet in the given token stream.
+   *
+   * @param tokens       The tokens of the stylesheet.
+   * @param errorHandler The handler for any syntax errors.
+   * @return The tree of the stylesheet, or <code>null</code> if it has syntax errors.
+   */
+  @Nullable
+  protected Tree parseTree( @Nonnull final TokenStream tokens, @Nullable final ErrorHandler errorHandler )
+  {
+    return parseTree( new LessCssParser( tokens ), errorHandler );
+  }
+
+  @Nullable
+  private Tree parseTree( @Nonnull final LessCssParser parser, @Nullable final ErrorHandler errorHandler )
+  {
     try
     {
       parser.setErrorHandler( errorHandler );
@@ -138,6 +257,72 @@ public class LessCssStyleSheetParser
     return null;
   }
 
+  /**
+   * Creates the lexer that tokenizes the stylesheet for the parser.
+   *
+   * @param stream The content of the stylesheet.
+   * @return The {@link LessCssScanner} if enabled, otherwise the generated {@link LessCssLexer}.
+   */
+  protected TokenSource createTokenSource( @Nonnull final CharStream stream )
+  {
+    return _scannerEnabled ? new LessCssScanner( stream ) : new LessCssLexer( stream );
+  }
+
+  protected CharStream createCharStream( @Nonnull final StyleSheetResource input )
+    throws IOException
+  {
+    if ( input instanceof ContentStyleSheetResource )
+    {
+      return createANTLRStringStream( ( (ContentStyleSheetResource) input ).readContent() );
+    }
+    else
+    {
+      return createANTLRInputStream( input.getInputStream() );
+    }
+  }
+
+  /**
+   * Decodes the content of a stylesheet into a character array sized from the length of the content, avoiding the
+   * buffer growth and copying of {@link ANTLRInputStream}.  The encoding is determined in the same way as in
+   * {@link #createANTLRInputStream(InputStream)}.
+   *
+   * @param content The content of the stylesheet.
+   * @return The stream to lex.
+   */
+  protected ANTLRStringStream createANTLRStringStream( final ByteBuffer content )
+    throws IOException
+  {
+    final int length = Math.min( content.remaining(), getReadBufferSize() );
+    final byte[] buf = new byte[ length ];
+    content.duplicate().get( buf );
+    String encoding = parseCharset( new String( buf, "ASCII" ) );
+    if ( null == encoding )
+    {
+      encoding = getDefaultEncoding();
+    }
+
+    final Charset charset;
+    try
+    {
+      charset = Charset.forName( encoding );
+    }
+    catch ( final IllegalArgumentException e )
+    {
+      throw new UnsupportedEncodingException( encoding );
+    }
+
+    // Replace malformed input like the InputStreamReader used by ANTLRInputStream.  The array holds the largest
+    // number of characters the content could decode to so the decoder never runs out of space.
+    final CharsetDecoder decoder = charset.newDecoder().
+      onMalformedInput( CodingErrorAction.REPLACE ).
+      onUnmappableCharacter( CodingErrorAction.REPLACE );
+    final char[] data = new char[ (int) Math.ceil( content.remaining() * (double) decoder.maxCharsPerByte() ) ];
+    final CharBuffer out = CharBuffer.wrap( data );
+    decoder.decode( content, out, true );
+    decoder.flush( out );
+    return new ANTLRStringStream( data, out.position() );
+  }
+
   protected ANTLRInputStream createANTLRInputStream( final InputStream input )
     throws IOException
   {
@@ -251,4 +436,53 @@ public class LessCssStyleSheetParser
     }
     return null;
   }
+
+  /**
+   * The lexer, token stream and parser used to parse a stylesheet, reset and reused for each stylesheet rather than
+   * created for each one, which saves building the DFAs of the parser and growing the token buffer again.  A context
+   * parses one stylesheet at a time, so threads parsing at the same time, or a stylesheet parsed while another is being
+   * parsed, each use a different context.  Once a stylesheet has been parsed the context drops its references to the
+   * stylesheet, and a context that buffered a very large stylesheet is discarded rather than holding on to its buffer.
+   */
+  static final class ParserContext
+  {
+    /**
+     * The number of tokens above which the context is discarded once the stylesheet has been parsed.
+     */
+    private static final int MAX_RETAINED_TOKENS = 64 * 1024;
+
+    private final LessCssLexer _lexer = new LessCssLexer();
+    private final CommonTokenStream _tokens = new CommonTokenStream();
+    private final LessCssParser _parser = new LessCssParser( _tokens );
+
+    @Nonnull
+    TokenSource getLexer( @Nonnull final CharStream stream )
+    {
+      _lexer.setCharStream( stream );
+      return _lexer;
+    }
+
+    @Nonnull
+    LessCssParser getParser( @Nonnull final TokenSource source )
+    {
+      _tokens.setTokenSource( source );
+      _parser.setTokenStream( _tokens );
+      return _parser;
+    }
+
+    /**
+     * Drops the references to the stylesheet that was parsed.
+     *
+     * @return The number of tokens that were buffered.
+     */
+    int reset()
+    {
+      final int tokenCount = _tokens.size();
+      _parser.setErrorHandler( null );
+      _parser.setTokenStream( _tokens );
+      _tokens.setTokenSource( null );
+      _lexer.setCharStream( null );
+      return tokenCount;
+    }
+  }
 }
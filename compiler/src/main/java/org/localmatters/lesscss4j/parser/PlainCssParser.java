@@ -0,0 +1,665 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.commons.io.IOUtils;
+import org.localmatters.lesscss4j.model.BodyElementContainer;
+import org.localmatters.lesscss4j.model.Declaration;
+import org.localmatters.lesscss4j.model.DeclarationContainer;
+import org.localmatters.lesscss4j.model.Keyframes;
+import org.localmatters.lesscss4j.model.Media;
+import org.localmatters.lesscss4j.model.Page;
+import org.localmatters.lesscss4j.model.PlainCss;
+import org.localmatters.lesscss4j.model.RuleSet;
+import org.localmatters.lesscss4j.model.Selector;
+
+/**
+ * Lightweight parser for stylesheets that contain only plain CSS, such as vendor stylesheets.  The stylesheet is
+ * split into rule sets, <code>@media</code>, <code>@font-face</code>, <code>@page</code> and
+ * <code>@keyframes</code> blocks and declarations without building an AST or evaluating anything.  Comments are
+ * dropped and whitespace is collapsed so that the writer can minify or pretty print the content.
+ * <p/>
+ * The parser gives up as soon as it finds anything that is not plain CSS or that it does not understand, such as
+ * variables, mixins, nested rule sets, line comments, escaped strings, <code>@import</code>,
+ * <code>@charset</code> or malformed CSS.  The stylesheet should then be compiled as LESS, which also reports any
+ * errors.
+ */
+public class PlainCssParser
+{
+  private static final String KEYFRAMES = "keyframes";
+
+  private String _defaultEncoding = "UTF-8";
+
+  public String getDefaultEncoding()
+  {
+    return _defaultEncoding;
+  }
+
+  public void setDefaultEncoding( final String defaultEncoding )
+  {
+    _defaultEncoding = defaultEncoding;
+  }
+
+  /**
+   * Reads and parses the given stylesheet.
+   *
+   * @param resource The stylesheet.
+   * @return The content of the stylesheet, <code>null</code> if it is not plain CSS.
+   */
+  @Nullable
+  public PlainCss parse( @Nonnull final StyleSheetResource resource )
+    throws IOException
+  {
+    final String css;
+    if ( resource instanceof ContentStyleSheetResource )
+    {
+      css = Charset.forName( getDefaultEncoding() ).
+        decode( ( (ContentStyleSheetResource) resource ).readContent() ).toString();
+    }
+    else
+    {
+      try ( final InputStream input = resource.getInputStream() )
+      {
+        css = IOUtils.toString( input, getDefaultEncoding() );
+      }
+    }
+    final PlainCss plainCss = parse( css );
+    if ( null != plainCss && null != resource.getUrl() )
+    {
+      plainCss.setSource( resource.getUrl().toExternalForm() );
+    }
+    return plainCss;
+  }
+
+  /**
+   * Parses the given stylesheet.
+   *
+   * @param css The content of the stylesheet.
+   * @return The content of the stylesheet, <code>null</code> if it is not plain CSS.
+   */
+  @Nullable
+  public PlainCss parse( @Nonnull final String css )
+  {
+    final String text = clean( css );
+    if ( null == text )
+    {
+      return null;
+    }
+    final PlainCss plainCss = new PlainCss();
+    final Scanner scanner = new Scanner( text );
+    return parseBody( scanner, plainCss, false ) ? plainCss : null;
+  }
+
+  /**
+   * Removes comments and collapses whitespace outside of strings.
+   *
+   * @return The cleaned up stylesheet, <code>null</code> if it contains constructs that are not plain CSS.
+   */
+  @Nullable
+  private String clean( final String css )
+  {
+    final StringBuilder buf = new StringBuilder( css.length() );
+    final int length = css.length();
+    int parenDepth = 0;
+    int idx = 0;
+    while ( idx < length )
+    {
+      final char ch = css.charAt( idx );
+      if ( '/' == ch && idx + 1 < length && '*' == css.charAt( idx + 1 ) )
+      {
+        final int end = css.indexOf( "*/", idx + 2 );
+        if ( -1 == end )
+        {
+          return null;
+        }
+        appendSpace( buf );
+        idx = end + 2;
+      }
+      else if ( '/' == ch && idx + 1 < length && '/' == css.charAt( idx + 1 ) && 0 == parenDepth )
+      {
+        // Line comments are LESS only
+        return null;
+      }
+      else if ( '"' == ch || '\'' == ch )
+      {
+        final int end = skipString( css, idx );
+        if ( -1 == end )
+        {
+          return null;
+        }
+        buf.append( css, idx, end );
+        idx = end;
+      }
+      else if ( Character.isWhitespace( ch ) )
+      {
+        appendSpace( buf );
+        idx++;
+      }
+      else if ( '~' == ch && idx + 1 < length && ( '"' == css.charAt( idx + 1 ) || '\'' == css.charAt( idx + 1 ) ) )
+      {
+        // Escaped strings are LESS only
+        return null;
+      }
+      else if ( '`' == ch )
+      {
+        return null;
+      }
+      else
+      {
+        if ( '(' == ch )
+        {
+          parenDepth++;
+        }
+        else if ( ')' == ch && parenDepth > 0 )
+        {
+          parenDepth--;
+        }
+        buf.append( ch );
+        idx++;
+      }
+    }
+    return buf.toString();
+  }
+
+  private void appendSpace( final StringBuilder buf )
+  {
+    if ( buf.length() > 0 && ' ' != buf.charAt( buf.length() - 1 ) )
+    {
+      buf.append( ' ' );
+    }
+  }
+
+  /**
+   * @return The index after the closing quote of the string starting at the given index, -1 if it is not closed.
+   */
+  private static int skipString( final CharSequence css, final int start )
+  {
+    final char quote = css.charAt( start );
+    int idx = start + 1;
+    while ( idx < css.length() )
+    {
+      final char ch = css.charAt( idx );
+      if ( '\\' == ch )
+      {
+        idx += 2;
+      }
+      else if ( quote == ch )
+      {
+        return idx + 1;
+      }
+      else if ( '\n' == ch || '\r' == ch || '\f' == ch )
+      {
+        return -1;
+      }
+      else
+      {
+        idx++;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Parses rule sets and at-rules until the end of the input or, if nested, the closing brace of the block.
+   *
+   * @return True if the body is plain CSS.
+   */
+  private boolean parseBody( final Scanner scanner, final BodyElementContainer container, final boolean nested )
+  {
+    while ( true )
+    {
+      scanner.skipSpace();
+      if ( scanner.atEnd() )
+      {
+        return !nested;
+      }
+      final char ch = scanner.peek();
+      if ( '}' == ch )
+      {
+        scanner.next();
+        return nested;
+      }
+      else if ( '@' == ch )
+      {
+        if ( nested || !parseAtRule( scanner, container ) )
+        {
+          return false;
+        }
+      }
+      else
+      {
+        final String prelude = scanner.readPrelude();
+        if ( null == prelude )
+        {
+          return false;
+        }
+        final RuleSet ruleSet = new RuleSet();
+        for ( final String selector : split( prelude ) )
+        {
+          if ( 0 == selector.length() || selector.indexOf( '&' ) >= 0 || isMixinMacroSelector( selector ) )
+          {
+            return false;
+          }
+          ruleSet.addSelector( new Selector( selector ) );
+        }
+        if ( !parseDeclarations( scanner, ruleSet ) )
+        {
+          return false;
+        }
+        container.addBodyElement( ruleSet );
+      }
+    }
+  }
+
+  private boolean parseAtRule( final Scanner scanner, final BodyElementContainer container )
+  {
+    final String prelude = scanner.readPrelude();
+    if ( null == prelude )
+    {
+      return false;
+    }
+    final int nameEnd = prelude.indexOf( ' ' );
+    final String name = -1 == nameEnd ? prelude : prelude.substring( 0, nameEnd );
+    final String lowerName = name.toLowerCase();
+    final String rest = -1 == nameEnd ? "" : prelude.substring( nameEnd + 1 ).trim();
+    if ( "@media".equals( lowerName ) && rest.length() > 0 )
+    {
+      final Media media = new Media();
+      for ( final String medium : split( rest ) )
+      {
+        media.addMedium( medium );
+      }
+      if ( !parseBody( scanner, media, true ) )
+      {
+        return false;
+      }
+      if ( media.getBodyElements().size() > 0 )
+      {
+        container.addBodyElement( media );
+      }
+      return true;
+    }
+    else if ( "@font-face".equals( lowerName ) && 0 == rest.length() )
+    {
+      final RuleSet ruleSet = new RuleSet();
+      ruleSet.addSelector( new Selector( "@font-face" ) );
+      if ( !parseDeclarations( scanner, ruleSet ) )
+      {
+        return false;
+      }
+      container.addBodyElement( ruleSet );
+      return true;
+    }
+    else if ( "@page".equals( lowerName ) && ( 0 == rest.length() || ':' == rest.charAt( 0 ) ) )
+    {
+      final Page page = new Page();
+      if ( rest.length() > 0 )
+      {
+        page.setPseudoPage( rest.substring( 1 ).trim() );
+      }
+      if ( !parseDeclarations( scanner, page ) )
+      {
+        return false;
+      }
+      container.addBodyElement( page );
+      return true;
+    }
+    else if ( isKeyframes( lowerName ) && rest.length() > 0 && -1 == rest.indexOf( ' ' ) )
+    {
+      final Keyframes keyframes = new Keyframes();
+      keyframes.setName( name + ' ' + rest );
+      if ( !parseBody( scanner, keyframes, true ) )
+      {
+        return false;
+      }
+      container.addBodyElement( keyframes );
+      return true;
+    }
+    else
+    {
+      return false;
+    }
+  }
+
+  /**
+   * @return True if the at-rule name is <code>@keyframes</code> or a vendor specific version of it.
+   */
+  private boolean isKeyframes( final String name )
+  {
+    final int prefixLength = name.length() - KEYFRAMES.length();
+    return name.endsWith( KEYFRAMES ) &&
+           ( 1 == prefixLength || ( prefixLength > 1 && '-' == name.charAt( prefixLength - 1 ) ) );
+  }
+
+  /**
+   * @return True if the selector is the name of a mixin with arguments. (e.g. <code>.mixin(</code>)
+   */
+  private boolean isMixinMacroSelector( final String selector )
+  {
+    if ( selector.length() < 2 || ( '.' != selector.charAt( 0 ) && '#' != selector.charAt( 0 ) ) )
+    {
+      return false;
+    }
+    int idx = 1;
+    while ( idx < selector.length() )
+    {
+      final char ch = selector.charAt( idx );
+      if ( !Character.isLetterOrDigit( ch ) && '-' != ch && '_' != ch )
+      {
+        break;
+      }
+      idx++;
+    }
+    return idx < selector.length() && '(' == selector.charAt( idx );
+  }
+
+  /**
+   * Parses declarations until the closing brace of the block.
+   *
+   * @return True if the declarations are plain CSS.
+   */
+  private boolean parseDeclarations( final Scanner scanner, final DeclarationContainer container )
+  {
+    while ( true )
+    {
+      scanner.skipSpace();
+      if ( scanner.atEnd() )
+      {
+        return false;
+      }
+      final char ch = scanner.peek();
+      if ( '}' == ch )
+      {
+        scanner.next();
+        return true;
+      }
+      else if ( ';' == ch )
+      {
+        scanner.next();
+      }
+      else
+      {
+        final String statement = scanner.readStatement();
+        if ( null == statement )
+        {
+          return false;
+        }
+        final Declaration declaration = parseDeclaration( statement );
+        if ( null == declaration )
+        {
+          return false;
+        }
+        container.addDeclaration( declaration );
+      }
+    }
+  }
+
+  @Nullable
+  private Declaration parseDeclaration( final String statement )
+  {
+    final int colon = statement.indexOf( ':' );
+    if ( colon <= 0 )
+    {
+      // Mixin call or garbage
+      return null;
+    }
+    final String property = statement.substring( 0, colon ).trim();
+    String value = statement.substring( colon + 1 ).trim();
+    if ( 0 == property.length() || property.indexOf( ' ' ) >= 0 || 0 == value.length() )
+    {
+      return null;
+    }
+
+    final Declaration declaration = new Declaration();
+    declaration.setProperty( property );
+    final int bang = value.lastIndexOf( '!' );
+    if ( bang >= 0 && "important".equalsIgnoreCase( value.substring( bang + 1 ).trim() ) )
+    {
+      declaration.setImportant( true );
+      value = value.substring( 0, bang ).trim();
+      if ( 0 == value.length() )
+      {
+        return null;
+      }
+    }
+    declaration.addValue( compactArguments( value ) );
+    return declaration;
+  }
+
+  /**
+   * Removes the whitespace around commas and just inside parentheses of function arguments, as the LESS compiler
+   * does.
+   */
+  private String compactArguments( final String value )
+  {
+    if ( value.indexOf( '(' ) < 0 )
+    {
+      return value;
+    }
+    final StringBuilder buf = new StringBuilder( value.length() );
+    int parenDepth = 0;
+    int idx = 0;
+    while ( idx < value.length() )
+    {
+      final char ch = value.charAt( idx );
+      if ( '"' == ch || '\'' == ch )
+      {
+        final int end = skipString( value, idx );
+        buf.append( value, idx, end );
+        idx = end;
+        continue;
+      }
+      if ( '(' == ch )
+      {
+        parenDepth++;
+      }
+      else if ( ')' == ch )
+      {
+        parenDepth--;
+      }
+      if ( parenDepth > 0 || ')' == ch )
+      {
+        if ( ' ' == ch && ( ',' == lastChar( buf ) || '(' == lastChar( buf ) ) )
+        {
+          idx++;
+          continue;
+        }
+        if ( ( ',' == ch || ')' == ch ) && ' ' == lastChar( buf ) )
+        {
+          buf.setLength( buf.length() - 1 );
+        }
+      }
+      buf.append( ch );
+      idx++;
+    }
+    return buf.toString();
+  }
+
+  private char lastChar( final StringBuilder buf )
+  {
+    return buf.length() > 0 ? buf.charAt( buf.length() - 1 ) : 0;
+  }
+
+  /**
+   * Splits a list on the commas that are not within strings, parentheses or brackets.
+   */
+  private List<String> split( final String list )
+  {
+    final List<String> items = new ArrayList<>();
+    int depth = 0;
+    int start = 0;
+    int idx = 0;
+    while ( idx < list.length() )
+    {
+      final char ch = list.charAt( idx );
+      if ( '"' == ch || '\'' == ch )
+      {
+        idx = skipString( list, idx );
+        continue;
+      }
+      if ( '(' == ch || '[' == ch )
+      {
+        depth++;
+      }
+      else if ( ')' == ch || ']' == ch )
+      {
+        depth--;
+      }
+      else if ( ',' == ch && 0 == depth )
+      {
+        items.add( list.substring( start, idx ).trim() );
+        start = idx + 1;
+      }
+      idx++;
+    }
+    items.add( list.substring( start ).trim() );
+    return items;
+  }
+
+  /**
+   * Walks the cleaned up stylesheet.  Strings in the cleaned up stylesheet are known to be closed.
+   */
+  private static final class Scanner
+  {
+    private final String _text;
+    private int _position;
+
+    Scanner( final String text )
+    {
+      _text = text;
+    }
+
+    boolean atEnd()
+    {
+      return _position >= _text.length();
+    }
+
+    char peek()
+    {
+      return _text.charAt( _position );
+    }
+
+    void next()
+    {
+      _position++;
+    }
+
+    void skipSpace()
+    {
+      while ( !atEnd() && ' ' == peek() )
+      {
+        _position++;
+      }
+    }
+
+    /**
+     * Reads the selectors or at-rule before an opening brace and consumes the brace.
+     *
+     * @return The prelude, <code>null</code> if a statement or block ends first.
+     */
+    @Nullable
+    String readPrelude()
+    {
+      final int end = find();
+      if ( -1 == end || '{' != _text.charAt( end ) )
+      {
+        return null;
+      }
+      final String prelude = _text.substring( _position, end ).trim();
+      _position = end + 1;
+      return prelude.indexOf( '@', 1 ) >= 0 ? null : prelude;
+    }
+
+    /**
+     * Reads a declaration up to but not including the semicolon or closing brace that ends it.
+     *
+     * @return The declaration, <code>null</code> if a block starts first or it refers to a variable.
+     */
+    @Nullable
+    String readStatement()
+    {
+      final int end = find();
+      if ( -1 == end || '{' == _text.charAt( end ) )
+      {
+        return null;
+      }
+      final String statement = _text.substring( _position, end );
+      _position = end;
+      return statement.indexOf( '@' ) >= 0 && !onlyInStrings( statement, '@' ) ? null : statement;
+    }
+
+    /**
+     * @return The index of the next brace or semicolon that is not within a string or parentheses, -1 if none.
+     */
+    private int find()
+    {
+      int parenDepth = 0;
+      int idx = _position;
+      while ( idx < _text.length() )
+      {
+        final char ch = _text.charAt( idx );
+        if ( '"' == ch || '\'' == ch )
+        {
+          idx = skipString( _text, idx );
+          continue;
+        }
+        else if ( '(' == ch )
+        {
+          parenDepth++;
+        }
+        else if ( ')' == ch )
+        {
+          parenDepth--;
+        }
+        else if ( 0 == parenDepth && ( '{' == ch || '}' == ch || ';' == ch ) )
+        {
+          return idx;
+        }
+        idx++;
+      }
+      return -1;
+    }
+
+    private static boolean onlyInStrings( final String text, final char ch )
+    {
+      int idx = 0;
+      while ( idx < text.length() )
+      {
+        final char c = text.charAt( idx );
+        if ( '"' == c || '\'' == c )
+        {
+          idx = skipString( text, idx );
+        }
+        else if ( ch == c )
+        {
+          return false;
+        }
+        else
+        {
+          idx++;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.IOException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.CommonTree;
+import org.antlr.runtime.tree.Tree;
+import org.localmatters.lesscss4j.compile.CompileStats;
+import org.localmatters.lesscss4j.compile.CompileTracer;
+import org.localmatters.lesscss4j.compile.CompileTracing;
+import org.localmatters.lesscss4j.error.AbstractErrorHandler;
+import org.localmatters.lesscss4j.error.BufferingErrorHandler;
+import org.localmatters.lesscss4j.error.ErrorHandler;
+import org.localmatters.lesscss4j.factory.ObjectFactory;
+import org.localmatters.lesscss4j.factory.StyleSheetFactory;
+import org.localmatters.lesscss4j.model.StyleSheet;
+import org.localmatters.lesscss4j.parser.antlr.LessCssParser;
+
+/**
+ * {@link LessCssStyleSheetParser} for very large stylesheets that hands each top level element of a stylesheet to the
+ * {@link StyleSheetFactory} as soon as it has been parsed, rather than building the tree of the whole stylesheet
+ * first.  Tokens are read from the lexer as they are needed and discarded once parsed, so the tokens and tree of an
+ * element become garbage as soon as the element has been added to the stylesheet.  Only the model of the stylesheet
+ * and the characters of the stylesheet are held for the whole parse.
+ * <p/>
+ * Errors building the elements are held back until the whole stylesheet has been parsed.  On the first syntax error
+ * they are dropped and the stylesheet is parsed again in full, so that the errors reported are those of a full parse
+ * and no stylesheet is returned.  Imported stylesheets and stylesheets parsed with
+ * {@link #parseTree(StyleSheetResource, ErrorHandler)} are parsed in full, as are all stylesheets when the
+ * {@link ObjectFactory} for stylesheets is not a {@link StyleSheetFactory}.
+ */
+public class StreamingStyleSheetParser
+  extends LessCssStyleSheetParser
+{
+  @Nullable
+  @Override
+  public StyleSheet parse( @Nonnull final StyleSheetResource input, @Nullable final ErrorHandler errorHandler )
+    throws IOException
+  {
+    final ObjectFactory<StyleSheet> styleSheetFactory = getStyleSheetFactory();
+    if ( !( styleSheetFactory instanceof StyleSheetFactory ) )
+    {
+      return super.parse( input, errorHandler );
+    }
+    final StyleSheetFactory factory = (StyleSheetFactory) styleSheetFactory;
+
+    final CompileTracer.Span span = CompileTracing.start( CompileTracer.Operation.PARSE );
+    final CompileStats.Phase previousPhase = CompileStats.enter( CompileStats.Phase.PARSE );
+    final CharStream stream = createCharStream( input );
+    final int start = stream.mark();
+    final StreamingTokenStream tokens = new StreamingTokenStream( createTokenSource( stream ) );
+    final LessCssParser parser = new LessCssParser( tokens );
+    final BufferingErrorHandler buildErrors = new BufferingErrorHandler();
+    if ( null != errorHandler )
+    {
+      buildErrors.setContext( errorHandler.getContext() );
+    }
+    try
+    {
+      try
+      {
+        // Syntax errors are reported by the full parse below
+        parser.setErrorHandler( new AbstractErrorHandler() );
+        skipWhitespace( tokens );
+        final CommonTree header = new CommonTree( new CommonToken( LessCssParser.STYLESHEET, "STYLESHEET" ) );
+        if ( isAtRule( tokens, LessCssParser.CHARSET ) )
+        {
+          header.addChild( (Tree) parser.charSet().getTree() );
+          skipWhitespace( tokens );
+        }
+        while ( 0 == parser.getErrorCount() && isAtRule( tokens, LessCssParser.IMPORT_SYM ) )
+        {
+          header.addChild( (Tree) parser.importFile().getTree() );
+          skipWhitespace( tokens );
+        }
+
+        StyleSheet styleSheet = null;
+        if ( 0 == parser.getErrorCount() )
+        {
+          CompileStats.exit( previousPhase );
+          styleSheet = factory.create( new StyleSheetTree( header, input ), buildErrors );
+          CompileStats.enter( CompileStats.Phase.PARSE );
+        }
+        while ( 0 == parser.getErrorCount() && Token.EOF != tokens.LA( 1 ) )
+        {
+          final Tree element = (Tree) parser.bodyset().getTree();
+          if ( 0 == parser.getErrorCount() )
+          {
+            CompileStats.exit( previousPhase );
+            factory.addElement( styleSheet, element, input, buildErrors );
+            CompileStats.enter( CompileStats.Phase.PARSE );
+          }
+          skipWhitespace( tokens );
+        }
+        if ( 0 == parser.getErrorCount() )
+        {
+          buildErrors.replay( errorHandler );
+          return styleSheet;
+        }
+      }
+      catch ( final RecognitionException e )
+      {
+        // Reported by the full parse below
+      }
+
+      stream.rewind( start );
+      parseTree( stream, errorHandler );
+      return null;
+    }
+    finally
+    {
+      CompileStats.exit( previousPhase );
+      CompileTracing.end( span, CompileTracing.toString( input ), null, stream.size() );
+    }
+  }
+
+  private static void skipWhitespace( @Nonnull final StreamingTokenStream tokens )
+  {
+    while ( LessCssParser.WS == tokens.LA( 1 ) )
+    {
+      tokens.consume();
+    }
+  }
+
+  /**
+   * @return True if the next tokens are '@' followed by the given keyword.
+   */
+  private static boolean isAtRule( @Nonnull final StreamingTokenStream tokens, final int keyword )
+  {
+    return keyword == tokens.LA( 2 ) && "@".equals( tokens.LT( 1 ).getText() );
+  }
+}
@@ -0,0 +1,206 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.util.ArrayList;
+import javax.annotation.Nonnull;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.TokenSource;
+import org.antlr.runtime.TokenStream;
+
+/**
+ * {@link TokenStream} that reads tokens from the lexer as the parser needs them and discards them once they have been
+ * consumed, unlike {@link org.antlr.runtime.CommonTokenStream} which reads every token of the stylesheet up front.
+ * Consumed tokens are kept while the parser has a marker set, so that it can backtrack.  Tokens that are not on the
+ * default channel are dropped as they are read.
+ */
+final class StreamingTokenStream
+  implements TokenStream
+{
+  /**
+   * The number of consumed tokens to accumulate before they are discarded.
+   */
+  private static final int DISCARD_THRESHOLD = 1024;
+
+  private final TokenSource _tokenSource;
+  private final ArrayList<Token> _tokens = new ArrayList<>();
+  /**
+   * The index of the first token in {@link #_tokens}.
+   */
+  private int _offset;
+  /**
+   * The index of the current token.
+   */
+  private int _index;
+  private int _markDepth;
+  private int _lastMarker;
+  private Token _eof;
+
+  StreamingTokenStream( @Nonnull final TokenSource tokenSource )
+  {
+    _tokenSource = tokenSource;
+  }
+
+  @Override
+  public Token LT( final int k )
+  {
+    if ( 0 == k )
+    {
+      return null;
+    }
+    else if ( k < 0 )
+    {
+      final int i = _index + k;
+      return i < _offset ? null : _tokens.get( i - _offset );
+    }
+    else
+    {
+      final int i = _index + k - 1;
+      fill( i );
+      return i - _offset < _tokens.size() ? _tokens.get( i - _offset ) : _eof;
+    }
+  }
+
+  @Override
+  public int LA( final int i )
+  {
+    final Token token = LT( i );
+    return null != token ? token.getType() : Token.INVALID_TOKEN_TYPE;
+  }
+
+  @Override
+  public Token get( final int i )
+  {
+    if ( i < _offset )
+    {
+      throw new IllegalStateException( "Token " + i + " has been discarded" );
+    }
+    return LT( i - _index + 1 );
+  }
+
+  @Override
+  public void consume()
+  {
+    if ( LA( 1 ) != Token.EOF )
+    {
+      _index++;
+      if ( 0 == _markDepth && _index - _offset > DISCARD_THRESHOLD )
+      {
+        // Keep the last consumed token, which the parser uses as the stop token of rules
+        _tokens.subList( 0, _index - _offset - 1 ).clear();
+        _offset = _index - 1;
+      }
+    }
+  }
+
+  @Override
+  public int mark()
+  {
+    _markDepth++;
+    _lastMarker = _index;
+    return _lastMarker;
+  }
+
+  /**
+   * The generated parser rewinds to every marker it sets rather than releasing it, so markers are released when
+   * rewound to.
+   */
+  @Override
+  public void release( final int marker )
+  {
+  }
+
+  @Override
+  public void rewind( final int marker )
+  {
+    _markDepth--;
+    seek( marker );
+  }
+
+  @Override
+  public void rewind()
+  {
+    seek( _lastMarker );
+  }
+
+  @Override
+  public void seek( final int index )
+  {
+    _index = index;
+  }
+
+  @Override
+  public int index()
+  {
+    return _index;
+  }
+
+  @Override
+  public int size()
+  {
+    return _offset + _tokens.size();
+  }
+
+  @Override
+  public TokenSource getTokenSource()
+  {
+    return _tokenSource;
+  }
+
+  @Override
+  public String getSourceName()
+  {
+    return _tokenSource.getSourceName();
+  }
+
+  @Override
+  public String toString( final int start, final int stop )
+  {
+    final StringBuilder sb = new StringBuilder();
+    for ( int i = Math.max( start, _offset ); i <= stop && i - _offset < _tokens.size(); i++ )
+    {
+      sb.append( _tokens.get( i - _offset ).getText() );
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String toString( final Token start, final Token stop )
+  {
+    return null != start && null != stop ? toString( start.getTokenIndex(), stop.getTokenIndex() ) : null;
+  }
+
+  /**
+   * Reads tokens from the lexer until the token with the given index has been read or the end of the input.
+   */
+  private void fill( final int index )
+  {
+    while ( null == _eof && index - _offset >= _tokens.size() )
+    {
+      final Token token = _tokenSource.nextToken();
+      if ( Token.EOF == token.getType() )
+      {
+        token.setTokenIndex( size() );
+        _eof = token;
+      }
+      else if ( Token.DEFAULT_CHANNEL == token.getChannel() )
+      {
+        token.setTokenIndex( size() );
+        _tokens.add( token );
+      }
+    }
+  }
+}
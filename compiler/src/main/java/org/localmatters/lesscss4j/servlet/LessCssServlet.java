@@ -17,9 +17,15 @@ package org.localmatters.lesscss4j.servlet;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
+import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -60,6 +66,23 @@ public class LessCssServlet
    */
   public static final String PRETTY_PRINT_PARAM_NAME = "prettyPrint";
 
+  /**
+   * Init parameter name for the number of times to compile a representative stylesheet during initialization, so
+   * that the first request does not pay the one-off costs of compilation
+   */
+  public static final String WARM_UP_ITERATIONS_PARAM_NAME = "warmUpIterations";
+
+  /**
+   * Init parameter name indicating whether the parsed form of imported stylesheets is cached between compiles
+   */
+  public static final String IMPORT_CACHE_ENABLED_PARAM_NAME = "importCacheEnabled";
+
+  /**
+   * Init parameter name indicating whether imported stylesheets containing only plain CSS are passed through without
+   * being compiled
+   */
+  public static final String PLAIN_CSS_PASS_THROUGH_PARAM_NAME = "plainCssPassThrough";
+
   /**
    * Request parameter name specifying that the cache should be cleared
    */
@@ -67,8 +90,25 @@ public class LessCssServlet
 
   public static final String USE_ETAG = "etagEnabled";
 
+  /**
+   * Init parameter name indicating whether to register the servlet's statistics MBean.  Defaults to true.
+   */
+  public static final String JMX_ENABLED = "jmxEnabled";
+
+  /**
+   * JMX domain under which the statistics MBean is registered
+   */
+  public static final String JMX_DOMAIN = "org.localmatters.lesscss4j";
+
   private final ConcurrentMap<String, CacheEntry> _cache = new ConcurrentHashMap<>();
 
+  private final LessCssServletStatistics _statistics = new LessCssServletStatistics( this );
+
+  /**
+   * Name the statistics MBean was registered under, null if not registered
+   */
+  private ObjectName _objectName;
+
   /**
    * Amount of time to wait before checking if a LESS file needs to be recompiled
    */
@@ -130,7 +170,103 @@ public class LessCssServlet
       factory.setPrettyPrintEnabled( prettyPrint );
     }
 
+    final Integer warmUpIterations = getInitParameterInteger( config, WARM_UP_ITERATIONS_PARAM_NAME );
+    if ( null != warmUpIterations )
+    {
+      factory.setWarmUpIterations( warmUpIterations );
+    }
+
+    final Boolean importCacheEnabled = getInitParameterBoolean( config, IMPORT_CACHE_ENABLED_PARAM_NAME );
+    if ( null != importCacheEnabled )
+    {
+      factory.setImportCacheEnabled( importCacheEnabled );
+    }
+
+    final Boolean plainCssPassThrough = getInitParameterBoolean( config, PLAIN_CSS_PASS_THROUGH_PARAM_NAME );
+    if ( null != plainCssPassThrough )
+    {
+      factory.setPlainCssPassThroughEnabled( plainCssPassThrough );
+    }
+
     _lessCompiler = factory.create();
+
+    unregisterMBean();
+    final Boolean jmxEnabled = getInitParameterBoolean( config, JMX_ENABLED );
+    if ( null == jmxEnabled || jmxEnabled )
+    {
+      registerMBean( config );
+    }
+  }
+
+  @Override
+  public void destroy()
+  {
+    unregisterMBean();
+    super.destroy();
+  }
+
+  /**
+   * Registers the statistics MBean with the platform MBean server.  Failure to register is logged and otherwise
+   * ignored so that it never prevents the servlet from serving requests.
+   */
+  protected void registerMBean( final ServletConfig config )
+  {
+    try
+    {
+      final ObjectName objectName = getObjectName( config );
+      ManagementFactory.getPlatformMBeanServer().registerMBean( _statistics, objectName );
+      _objectName = objectName;
+    }
+    catch ( final JMException ex )
+    {
+      getServletContext().log( "Unable to register MBean for servlet " + config.getServletName(), ex );
+    }
+  }
+
+  protected void unregisterMBean()
+  {
+    if ( null != _objectName )
+    {
+      try
+      {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if ( server.isRegistered( _objectName ) )
+        {
+          server.unregisterMBean( _objectName );
+        }
+      }
+      catch ( final JMException ex )
+      {
+        getServletContext().log( "Unable to unregister MBean " + _objectName, ex );
+      }
+      _objectName = null;
+    }
+  }
+
+  /**
+   * Returns the name to register the statistics MBean under.  The name includes the context path and servlet name so
+   * that each servlet instance in the JVM is registered separately.
+   */
+  protected ObjectName getObjectName( final ServletConfig config )
+    throws JMException
+  {
+    final String contextPath = config.getServletContext().getContextPath();
+    return new ObjectName( JMX_DOMAIN + ":type=LessCssServlet" +
+                           ",context=" + ObjectName.quote( null == contextPath ? "" : contextPath ) +
+                           ",name=" + ObjectName.quote( String.valueOf( config.getServletName() ) ) );
+  }
+
+  /**
+   * @return The registered name of the statistics MBean, null if not registered.
+   */
+  public ObjectName getRegisteredObjectName()
+  {
+    return _objectName;
+  }
+
+  public LessCssServletStatistics getStatistics()
+  {
+    return _statistics;
   }
 
   protected Boolean getInitParameterBoolean( final ServletConfig config, final String name )
@@ -257,6 +393,25 @@ public class LessCssServlet
     _cache.clear();
   }
 
+  /**
+   * Removes a single entry from the cache.
+   *
+   * @param resource The path of the cached resource
+   * @return True if an entry was removed
+   */
+  public boolean evictCacheEntry( final String resource )
+  {
+    return null != _cache.remove( resource );
+  }
+
+  /**
+   * @return A view of the entries currently in the cache.
+   */
+  protected Collection<CacheEntry> getCacheEntries()
+  {
+    return _cache.values();
+  }
+
   public void setCacheEnabled( final boolean enabled )
   {
     _cacheEnabled = enabled;
@@ -283,10 +438,20 @@ public class LessCssServlet
         // We'll also do the more expensive check on the file timestamp at this time
         if ( shouldRefresh( cacheEntry, time, true ) )
         {
+          if ( null == cacheEntry.getValue() )
+          {
+            _statistics.recordMiss();
+          }
+          else
+          {
+            _statistics.recordRefresh();
+          }
           refreshCacheEntry( time, cacheEntry );
+          return;
         }
       }
     }
+    _statistics.recordHit();
   }
 
   /**
@@ -294,8 +459,12 @@ public class LessCssServlet
    */
   protected void refreshCacheEntry( final long time, final CacheEntry cacheEntry )
   {
+    final long start = System.nanoTime();
     cacheEntry.setValue( compileResource( cacheEntry.getPath() ) );
+    final long duration = System.nanoTime() - start;
     cacheEntry.setLastUpdate( time );
+    cacheEntry.setCompileMillis( TimeUnit.NANOSECONDS.toMillis( duration ) );
+    _statistics.recordCompileLatency( duration );
   }
 
   /**
@@ -318,7 +487,7 @@ public class LessCssServlet
 
     if ( cacheEntry.getLastUpdate() != time &&
          getCacheMillis() != CACHE_FOREVER &&
-         cacheEntry.getLastUpdate() + getCacheMillis() > time )
+         cacheEntry.getLastUpdate() + getCacheMillis() <= time )
     {
       // Try to see if we can get the timestamp off the resource to see if it's *really* changed
       // todo: this doesn't handle the case of @import-ed files that have changed.
@@ -368,6 +537,7 @@ public class LessCssServlet
     }
     catch ( final Exception ex )
     {
+      _statistics.recordFailedCompile();
       getServletContext().log( "Unable to compile resource: " + resource, ex );
     }
     return null;
@@ -432,6 +602,7 @@ public class LessCssServlet
   {
     private byte[] _value;
     private long _lastUpdate;
+    private long _compileMillis;
     private String _path;
     private String _md5Sum;
 
@@ -475,5 +646,18 @@ public class LessCssServlet
     {
       _lastUpdate = lastUpdate;
     }
+
+    /**
+     * @return The time, in milliseconds, the last compile of this entry took.
+     */
+    public long getCompileMillis()
+    {
+      return _compileMillis;
+    }
+
+    public void setCompileMillis( final long compileMillis )
+    {
+      _compileMillis = compileMillis;
+    }
   }
 }
@@ -0,0 +1,104 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.servlet;
+
+import java.util.Map;
+
+/**
+ * Management interface exposing the cache and compile metrics of a {@link LessCssServlet}.  An instance is registered
+ * with the platform MBean server for each servlet unless disabled via the {@link LessCssServlet#JMX_ENABLED}
+ * init parameter.
+ */
+public interface LessCssServletMXBean
+{
+  /**
+   * @return The number of requests served from the cache without compiling.
+   */
+  long getHitCount();
+
+  /**
+   * @return The number of requests for which no compiled result was available, requiring a compile.
+   */
+  long getMissCount();
+
+  /**
+   * @return The number of requests that recompiled a cached result because it had expired or changed.
+   */
+  long getRefreshCount();
+
+  /**
+   * @return The number of compiles that failed with an error.
+   */
+  long getFailedCompileCount();
+
+  /**
+   * @return The number of entries in the cache.
+   */
+  int getEntryCount();
+
+  /**
+   * @return The number of bytes of compiled CSS held in the cache.
+   */
+  long getCachedBytes();
+
+  /**
+   * @return The median compile time in milliseconds over the most recent compiles.
+   */
+  double getCompileLatency50thPercentile();
+
+  /**
+   * @return The 95th percentile compile time in milliseconds over the most recent compiles.
+   */
+  double getCompileLatency95thPercentile();
+
+  /**
+   * @return The 99th percentile compile time in milliseconds over the most recent compiles.
+   */
+  double getCompileLatency99thPercentile();
+
+  /**
+   * @return The longest compile time in milliseconds over the most recent compiles.
+   */
+  double getCompileLatencyMax();
+
+  /**
+   * @return The time, in milliseconds since the epoch, that each cached resource was last compiled.
+   */
+  Map<String, Long> getLastCompileTimes();
+
+  /**
+   * @return The time, in milliseconds, the last compile of each cached resource took.
+   */
+  Map<String, Long> getLastCompileDurations();
+
+  /**
+   * Removes a single resource from the cache so that it is compiled again on the next request.
+   *
+   * @param resource The path of the resource as requested. (e.g. /path/to/file.less)
+   * @return True if the resource was in the cache.
+   */
+  boolean evict( String resource );
+
+  /**
+   * Removes all entries from the cache.
+   */
+  void clearCache();
+
+  /**
+   * Resets the hit, miss, refresh and failure counts and the compile latency samples.
+   */
+  void resetStatistics();
+}
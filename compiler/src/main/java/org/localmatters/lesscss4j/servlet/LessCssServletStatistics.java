@@ -0,0 +1,199 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.servlet;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+
+/**
+ * Collects the metrics of a {@link LessCssServlet} and exposes them via JMX.  Compile latency percentiles are
+ * calculated over a window of the most recent compiles.
+ */
+public class LessCssServletStatistics
+  implements LessCssServletMXBean
+{
+  /**
+   * The number of compile latency samples retained.
+   */
+  public static final int LATENCY_SAMPLE_SIZE = 1024;
+
+  @Nonnull
+  private final LessCssServlet _servlet;
+  private final AtomicLong _hitCount = new AtomicLong();
+  private final AtomicLong _missCount = new AtomicLong();
+  private final AtomicLong _refreshCount = new AtomicLong();
+  private final AtomicLong _failedCompileCount = new AtomicLong();
+  private final long[] _latencySamples = new long[ LATENCY_SAMPLE_SIZE ];
+  private long _latencySampleCount;
+
+  public LessCssServletStatistics( @Nonnull final LessCssServlet servlet )
+  {
+    _servlet = servlet;
+  }
+
+  void recordHit()
+  {
+    _hitCount.incrementAndGet();
+  }
+
+  void recordMiss()
+  {
+    _missCount.incrementAndGet();
+  }
+
+  void recordRefresh()
+  {
+    _refreshCount.incrementAndGet();
+  }
+
+  void recordFailedCompile()
+  {
+    _failedCompileCount.incrementAndGet();
+  }
+
+  synchronized void recordCompileLatency( final long nanos )
+  {
+    _latencySamples[ (int) ( _latencySampleCount++ % LATENCY_SAMPLE_SIZE ) ] = nanos;
+  }
+
+  public long getHitCount()
+  {
+    return _hitCount.get();
+  }
+
+  public long getMissCount()
+  {
+    return _missCount.get();
+  }
+
+  public long getRefreshCount()
+  {
+    return _refreshCount.get();
+  }
+
+  public long getFailedCompileCount()
+  {
+    return _failedCompileCount.get();
+  }
+
+  public int getEntryCount()
+  {
+    return _servlet.getCacheEntries().size();
+  }
+
+  public long getCachedBytes()
+  {
+    long bytes = 0;
+    for ( final LessCssServlet.CacheEntry entry : _servlet.getCacheEntries() )
+    {
+      final byte[] value = entry.getValue();
+      if ( null != value )
+      {
+        bytes += value.length;
+      }
+    }
+    return bytes;
+  }
+
+  public double getCompileLatency50thPercentile()
+  {
+    return getCompileLatencyPercentile( 50 );
+  }
+
+  public double getCompileLatency95thPercentile()
+  {
+    return getCompileLatencyPercentile( 95 );
+  }
+
+  public double getCompileLatency99thPercentile()
+  {
+    return getCompileLatencyPercentile( 99 );
+  }
+
+  public double getCompileLatencyMax()
+  {
+    return getCompileLatencyPercentile( 100 );
+  }
+
+  /**
+   * Calculates a compile latency percentile using the nearest-rank method.
+   *
+   * @param percentile The percentile, between 0 and 100.
+   * @return The latency in milliseconds, 0 if there have been no compiles.
+   */
+  public double getCompileLatencyPercentile( final double percentile )
+  {
+    final long[] samples;
+    synchronized ( this )
+    {
+      samples = Arrays.copyOf( _latencySamples, (int) Math.min( _latencySampleCount, LATENCY_SAMPLE_SIZE ) );
+    }
+    if ( 0 == samples.length )
+    {
+      return 0;
+    }
+    Arrays.sort( samples );
+    final int rank = (int) Math.ceil( percentile / 100 * samples.length );
+    final long nanos = samples[ Math.max( 0, Math.min( samples.length, rank ) - 1 ) ];
+    return (double) nanos / TimeUnit.MILLISECONDS.toNanos( 1 );
+  }
+
+  public Map<String, Long> getLastCompileTimes()
+  {
+    final Map<String, Long> times = new TreeMap<>();
+    for ( final LessCssServlet.CacheEntry entry : _servlet.getCacheEntries() )
+    {
+      times.put( entry.getPath(), entry.getLastUpdate() );
+    }
+    return times;
+  }
+
+  public Map<String, Long> getLastCompileDurations()
+  {
+    final Map<String, Long> durations = new TreeMap<>();
+    for ( final LessCssServlet.CacheEntry entry : _servlet.getCacheEntries() )
+    {
+      durations.put( entry.getPath(), entry.getCompileMillis() );
+    }
+    return durations;
+  }
+
+  public boolean evict( final String resource )
+  {
+    return _servlet.evictCacheEntry( resource );
+  }
+
+  public void clearCache()
+  {
+    _servlet.clearCache();
+  }
+
+  public void resetStatistics()
+  {
+    _hitCount.set( 0 );
+    _missCount.set( 0 );
+    _refreshCount.set( 0 );
+    _failedCompileCount.set( 0 );
+    synchronized ( this )
+    {
+      _latencySampleCount = 0;
+    }
+  }
+}
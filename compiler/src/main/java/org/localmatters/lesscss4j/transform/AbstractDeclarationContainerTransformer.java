@@ -20,6 +20,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nonnull;
+import org.localmatters.lesscss4j.compile.CompileStats;
+import org.localmatters.lesscss4j.compile.CompileTracer;
+import org.localmatters.lesscss4j.compile.CompileTracing;
 import org.localmatters.lesscss4j.error.ErrorUtils;
 import org.localmatters.lesscss4j.error.LessCssException;
 import org.localmatters.lesscss4j.error.MixinArgumentMismatchException;
@@ -32,6 +35,7 @@ import org.localmatters.lesscss4j.model.MixinReference;
 import org.localmatters.lesscss4j.model.RuleSet;
 import org.localmatters.lesscss4j.model.Selector;
 import org.localmatters.lesscss4j.model.expression.Expression;
+import org.localmatters.lesscss4j.transform.manager.ProfilingTransformerManager;
 import org.localmatters.lesscss4j.transform.manager.TransformerManager;
 
 public abstract class AbstractDeclarationContainerTransformer<T extends DeclarationContainer>
@@ -77,6 +81,8 @@ public abstract class AbstractDeclarationContainerTransformer<T extends Declarat
     declContext.setVariableContainer( transformed );
     declContext.setRuleSetContainer( transformed );
 
+    final ProfilingTransformerManager profiler = ProfilingTransformerManager.asProfiler( transformerManager );
+
     // Mixins might define additional variables referenced by declaration values.
     // So we need to process all of the mixins before we transform the declarations.
     final List<Declaration> declarationList = new ArrayList<>( container.getDeclarations().size() );
@@ -97,6 +103,9 @@ public abstract class AbstractDeclarationContainerTransformer<T extends Declarat
           {
             for ( RuleSet ruleSet : ruleSetList )
             {
+              CompileStats.increment( CompileStats.Counter.MIXIN_EXPANSIONS );
+              final long start = null != profiler ? System.nanoTime() : 0;
+              final CompileTracer.Span span = CompileTracing.start( CompileTracer.Operation.MIXIN_EXPANSION );
               ruleSet = ruleSet.clone();
 
               updateMixinArguments( ruleSet, mixin );
@@ -125,6 +134,18 @@ public abstract class AbstractDeclarationContainerTransformer<T extends Declarat
                 // todo: check for collisions with selector names
                 transformed.addBodyElement( bodyElement );
               }
+
+              if ( null != profiler )
+              {
+                profiler.recordMixinExpansion( selector.getText(), System.nanoTime() - start );
+              }
+              if ( null != span )
+              {
+                CompileTracing.end( span,
+                                    CompileTracing.toString( context.getResource() ),
+                                    selector.getText(),
+                                    ruleSet.getDeclarations().size() );
+              }
             }
           }
           else
@@ -177,7 +198,7 @@ public abstract class AbstractDeclarationContainerTransformer<T extends Declarat
         }
       }
 
-      ruleSet.getArguments().clear();
+      ruleSet.clearArguments();
     }
   }
 
@@ -22,6 +22,7 @@ import org.localmatters.lesscss4j.model.RuleSetContainer;
 import org.localmatters.lesscss4j.model.Selector;
 import org.localmatters.lesscss4j.model.VariableContainer;
 import org.localmatters.lesscss4j.model.expression.Expression;
+import org.localmatters.lesscss4j.parser.StyleSheetResource;
 
 public class EvaluationContext
 {
@@ -124,4 +125,12 @@ public class EvaluationContext
   {
     _errorHandler = errorHandler;
   }
+
+  /**
+   * @return The resource being compiled, as provided by the root context.
+   */
+  public StyleSheetResource getResource()
+  {
+    return null != getParentContext() ? getParentContext().getResource() : null;
+  }
 }
@@ -21,10 +21,14 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nonnull;
+import org.localmatters.lesscss4j.compile.CompileStats;
+import org.localmatters.lesscss4j.compile.CompileTracer;
+import org.localmatters.lesscss4j.compile.CompileTracing;
 import org.localmatters.lesscss4j.model.expression.Expression;
 import org.localmatters.lesscss4j.model.expression.FunctionExpression;
 import org.localmatters.lesscss4j.model.expression.LiteralExpression;
 import org.localmatters.lesscss4j.transform.function.Function;
+import org.localmatters.lesscss4j.transform.manager.ProfilingTransformerManager;
 import org.localmatters.lesscss4j.transform.manager.TransformerManager;
 
 public class FunctionTransformer
@@ -67,6 +71,10 @@ public class FunctionTransformer
     final Function func = getFunctionMap().get( functionName );
     if ( null != func )
     {
+      CompileStats.increment( CompileStats.Counter.FUNCTION_CALLS );
+      final ProfilingTransformerManager profiler = ProfilingTransformerManager.asProfiler( transformerManager );
+      final long start = null != profiler ? System.nanoTime() : 0;
+      final CompileTracer.Span span = CompileTracing.start( CompileTracer.Operation.FUNCTION_CALL );
       final List<Expression> args = new ArrayList<>( function.getArguments().size() );
 
       // Evaluate each of the argument expressions before calling the function.
@@ -86,6 +94,15 @@ public class FunctionTransformer
       }
 
       result = func.evaluate( functionName, args.toArray( new Expression[ args.size() ] ) );
+
+      if ( null != profiler )
+      {
+        profiler.recordFunctionCall( functionName, System.nanoTime() - start );
+      }
+      if ( null != span )
+      {
+        CompileTracing.end( span, CompileTracing.toString( context.getResource() ), functionName, args.size() );
+      }
     }
 
     return Arrays.asList( result );
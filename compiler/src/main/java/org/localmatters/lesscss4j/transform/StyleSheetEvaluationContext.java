@@ -22,6 +22,7 @@ public class StyleSheetEvaluationContext
 {
   private StyleSheetResource _resource;
 
+  @Override
   public StyleSheetResource getResource()
   {
     return _resource;
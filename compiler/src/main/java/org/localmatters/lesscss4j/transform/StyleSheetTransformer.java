@@ -16,9 +16,11 @@
 package org.localmatters.lesscss4j.transform;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import javax.annotation.Nonnull;
 import org.localmatters.lesscss4j.model.BodyElement;
+import org.localmatters.lesscss4j.model.PlainCss;
 import org.localmatters.lesscss4j.model.StyleSheet;
 import org.localmatters.lesscss4j.transform.manager.TransformerManager;
 
@@ -76,6 +78,11 @@ public class StyleSheetTransformer
                                                             final EvaluationContext styleContext,
                                                             final TransformerManager transformerManager )
   {
+    if ( element instanceof PlainCss )
+    {
+      // Plain CSS is passed through untouched
+      return Collections.singletonList( element );
+    }
     return performTransform( element, styleContext, transformerManager );
   }
 }
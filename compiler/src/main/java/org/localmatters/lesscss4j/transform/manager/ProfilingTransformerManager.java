@@ -0,0 +1,341 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.transform.manager;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.localmatters.lesscss4j.transform.EvaluationContext;
+import org.localmatters.lesscss4j.transform.Transformer;
+
+/**
+ * A {@link TransformerManager} that decorates another manager and records the time spent in, and the number of
+ * invocations of, each {@link Transformer}.  Transformers pass the manager they were invoked with to the
+ * transformers of nested elements so every transformation performed during a compile is recorded.  Transformers
+ * also report the expansion of each mixin and the evaluation of each function to this manager when it is in use.
+ * <p/>
+ * The time recorded for a transformer includes the time spent in the transformers it invokes, the self time does
+ * not.  Likewise the time recorded for a mixin includes the expansion of any mixins it includes.  Statistics are
+ * accumulated across compiles until {@link #reset()} is invoked.  This class is thread safe.
+ * <p/>
+ * Usage:
+ * <pre>
+ *   final ProfilingTransformerManager profiler = new ProfilingTransformerManager( compiler.getTransformerManager() );
+ *   compiler.setTransformerManager( profiler );
+ *   compiler.compile( ... );
+ *   System.out.println( profiler.getReport() );
+ * </pre>
+ */
+public class ProfilingTransformerManager
+  implements TransformerManager
+{
+  /**
+   * The time spent in the transformers invoked by the current transformer on the current thread.  Only set while a
+   * transformer is running so that no value is left on the thread once the compile has finished.
+   */
+  private static final ThreadLocal<long[]> CHILD_NANOS = new ThreadLocal<>();
+
+  @Nonnull
+  private final TransformerManager _transformerManager;
+  private final ConcurrentMap<Transformer<?>, Transformer<?>> _transformers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Entry> _transformerEntries = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Entry> _mixinEntries = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Entry> _functionEntries = new ConcurrentHashMap<>();
+
+  public ProfilingTransformerManager( @Nonnull final TransformerManager transformerManager )
+  {
+    _transformerManager = transformerManager;
+  }
+
+  /**
+   * Returns the profiling manager if the given manager is one.  Used by transformers to report mixin expansions and
+   * function evaluations without cost when profiling is not enabled.
+   */
+  @Nullable
+  public static ProfilingTransformerManager asProfiler( @Nonnull final TransformerManager transformerManager )
+  {
+    return transformerManager instanceof ProfilingTransformerManager ?
+           (ProfilingTransformerManager) transformerManager :
+           null;
+  }
+
+  @Nonnull
+  public TransformerManager getTransformerManager()
+  {
+    return _transformerManager;
+  }
+
+  @SuppressWarnings( "unchecked" )
+  @Nullable
+  public <T> Transformer<T> getTransformer( @Nonnull final T object )
+  {
+    final Transformer<T> transformer = _transformerManager.getTransformer( object );
+    if ( null == transformer )
+    {
+      return null;
+    }
+    Transformer<T> profilingTransformer = (Transformer<T>) _transformers.get( transformer );
+    if ( null == profilingTransformer )
+    {
+      final Entry entry = getEntry( _transformerEntries, transformer.getClass().getName() );
+      profilingTransformer = new ProfilingTransformer<>( transformer, entry );
+      final Transformer<T> existing = (Transformer<T>) _transformers.putIfAbsent( transformer, profilingTransformer );
+      if ( null != existing )
+      {
+        profilingTransformer = existing;
+      }
+    }
+    return profilingTransformer;
+  }
+
+  /**
+   * Records the expansion of a mixin.
+   *
+   * @param selector The selector of the mixin reference.
+   * @param nanos    The time taken to expand the mixin, in nanoseconds.
+   */
+  public void recordMixinExpansion( @Nonnull final String selector, final long nanos )
+  {
+    getEntry( _mixinEntries, selector ).record( nanos, nanos );
+  }
+
+  /**
+   * Records the evaluation of a function.
+   *
+   * @param name  The name of the function.
+   * @param nanos The time taken to evaluate the function, including its arguments, in nanoseconds.
+   */
+  public void recordFunctionCall( @Nonnull final String name, final long nanos )
+  {
+    getEntry( _functionEntries, name ).record( nanos, nanos );
+  }
+
+  /**
+   * @return The statistics for each transformer, keyed by class name, hottest first.
+   */
+  @Nonnull
+  public List<Entry> getTransformerEntries()
+  {
+    return sort( _transformerEntries );
+  }
+
+  /**
+   * @return The statistics for each mixin, keyed by selector, hottest first.
+   */
+  @Nonnull
+  public List<Entry> getMixinEntries()
+  {
+    return sort( _mixinEntries );
+  }
+
+  /**
+   * @return The statistics for each function, keyed by name, hottest first.
+   */
+  @Nonnull
+  public List<Entry> getFunctionEntries()
+  {
+    return sort( _functionEntries );
+  }
+
+  /**
+   * Discards all recorded statistics.
+   */
+  public void reset()
+  {
+    _transformerEntries.clear();
+    _mixinEntries.clear();
+    _functionEntries.clear();
+    _transformers.clear();
+  }
+
+  /**
+   * @return A report of the transformers, mixins and functions, each sorted hottest first.
+   */
+  @Nonnull
+  public String getReport()
+  {
+    final StringWriter writer = new StringWriter();
+    writeReport( new PrintWriter( writer ) );
+    return writer.toString();
+  }
+
+  public void writeReport( @Nonnull final PrintWriter writer )
+  {
+    writeSection( writer, "Transformers", getTransformerEntries() );
+    writeSection( writer, "Mixins", getMixinEntries() );
+    writeSection( writer, "Functions", getFunctionEntries() );
+    writer.flush();
+  }
+
+  protected void writeSection( @Nonnull final PrintWriter writer,
+                               @Nonnull final String title,
+                               @Nonnull final List<Entry> entries )
+  {
+    writer.println( title );
+    writer.println( String.format( "%12s %12s %12s %12s  %s", "count", "total ms", "self ms", "mean us", "name" ) );
+    for ( final Entry entry : entries )
+    {
+      writer.println( String.format( "%12d %12.3f %12.3f %12.3f  %s",
+                                     entry.getCount(),
+                                     entry.getTotalNanos() / 1e6,
+                                     entry.getSelfNanos() / 1e6,
+                                     entry.getMeanNanos() / 1e3,
+                                     entry.getName() ) );
+    }
+    writer.println();
+  }
+
+  @Nonnull
+  private Entry getEntry( @Nonnull final ConcurrentMap<String, Entry> entries, @Nonnull final String name )
+  {
+    final Entry entry = entries.get( name );
+    if ( null != entry )
+    {
+      return entry;
+    }
+    final Entry newEntry = new Entry( name );
+    final Entry existing = entries.putIfAbsent( name, newEntry );
+    return null != existing ? existing : newEntry;
+  }
+
+  @Nonnull
+  private List<Entry> sort( @Nonnull final ConcurrentMap<String, Entry> entries )
+  {
+    final List<Entry> sorted = new ArrayList<>( entries.values() );
+    Collections.sort( sorted, new Comparator<Entry>()
+    {
+      public int compare( final Entry o1, final Entry o2 )
+      {
+        final int result = Long.compare( o2.getTotalNanos(), o1.getTotalNanos() );
+        return 0 != result ? result : o1.getName().compareTo( o2.getName() );
+      }
+    } );
+    return sorted;
+  }
+
+  /**
+   * The statistics recorded for a transformer, mixin or function.
+   */
+  public static final class Entry
+  {
+    @Nonnull
+    private final String _name;
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _totalNanos = new AtomicLong();
+    private final AtomicLong _selfNanos = new AtomicLong();
+
+    Entry( @Nonnull final String name )
+    {
+      _name = name;
+    }
+
+    void record( final long totalNanos, final long selfNanos )
+    {
+      _count.incrementAndGet();
+      _totalNanos.addAndGet( totalNanos );
+      _selfNanos.addAndGet( selfNanos );
+    }
+
+    @Nonnull
+    public String getName()
+    {
+      return _name;
+    }
+
+    public long getCount()
+    {
+      return _count.get();
+    }
+
+    public long getTotalNanos()
+    {
+      return _totalNanos.get();
+    }
+
+    public long getSelfNanos()
+    {
+      return _selfNanos.get();
+    }
+
+    public double getMeanNanos()
+    {
+      final long count = getCount();
+      return 0 == count ? 0 : (double) getTotalNanos() / count;
+    }
+
+    @Override
+    public String toString()
+    {
+      return _name + "[count=" + getCount() + ", total=" + TimeUnit.NANOSECONDS.toMicros( getTotalNanos() ) + "us]";
+    }
+  }
+
+  private static final class ProfilingTransformer<T>
+    implements Transformer<T>
+  {
+    @Nonnull
+    private final Transformer<T> _transformer;
+    @Nonnull
+    private final Entry _entry;
+
+    ProfilingTransformer( @Nonnull final Transformer<T> transformer, @Nonnull final Entry entry )
+    {
+      _transformer = transformer;
+      _entry = entry;
+    }
+
+    public List<T> transform( @Nonnull final T value,
+                              @Nonnull final EvaluationContext context,
+                              @Nonnull final TransformerManager transformerManager )
+    {
+      final long[] current = CHILD_NANOS.get();
+      final long[] childNanos = null == current ? new long[ 1 ] : current;
+      if ( null == current )
+      {
+        CHILD_NANOS.set( childNanos );
+      }
+      final long parentChildNanos = childNanos[ 0 ];
+      childNanos[ 0 ] = 0;
+      final long start = System.nanoTime();
+      try
+      {
+        return _transformer.transform( value, context, transformerManager );
+      }
+      finally
+      {
+        final long elapsed = System.nanoTime() - start;
+        _entry.record( elapsed, elapsed - childNanos[ 0 ] );
+        if ( null == current )
+        {
+          CHILD_NANOS.remove();
+        }
+        else
+        {
+          childNanos[ 0 ] = parentChildNanos + elapsed;
+        }
+      }
+    }
+  }
+}
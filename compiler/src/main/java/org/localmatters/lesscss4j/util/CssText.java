@@ -0,0 +1,372 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Hand written scanners for the bits of text that the factories and the model pick apart, each giving exactly the
+ * result of the regular expression documented on the method.  Regular expressions are compiled into a graph of nodes
+ * that is walked, with backtracking, for every match and allocate a matcher and groups along the way, which showed up
+ * as a cost on every colour function and import.
+ * <p/>
+ * As in the regular expressions, whitespace is the characters matched by <code>\s</code>, case is ignored for ASCII
+ * letters only and <code>.</code> does not match line terminators.
+ */
+public final class CssText
+{
+  private static final String IE_ALPHA_PREFIX = "progid:DXImageTransform.Microsoft.";
+  private static final String IE_ALPHA_FUNCTION = "Alpha(";
+
+  private CssText()
+  {
+  }
+
+  /**
+   * Extracts the components of a colour function, matching the whole value against
+   * <pre>
+   * (?i)(?:rgb|hsl)a?\s*\(\s*C\s*,\s*C\s*,\s*C(?:\s*,\s*C)?\s*\)
+   * </pre>
+   * where each component <code>C</code> is <code>(-?\d+(\.\d+)?||\d+%?)</code>.
+   *
+   * @param value The colour function.
+   * @return The four components, the last of which is <code>null</code> when there are only three, or
+   *         <code>null</code> if the value does not match.
+   */
+  @Nullable
+  public static String[] parseColorFunction( @Nonnull final String value )
+  {
+    final int length = value.length();
+    if ( !regionMatchesIgnoreCase( value, 0, "rgb" ) && !regionMatchesIgnoreCase( value, 0, "hsl" ) )
+    {
+      return null;
+    }
+    int index = 3;
+    if ( index < length && ( 'a' == value.charAt( index ) || 'A' == value.charAt( index ) ) )
+    {
+      index++;
+    }
+    index = skipWhitespace( value, index );
+    if ( index >= length || '(' != value.charAt( index ) || ')' != value.charAt( length - 1 ) )
+    {
+      return null;
+    }
+
+    // Components can not contain commas or parentheses so they are the text between the commas, less whitespace
+    final int end = length - 1;
+    final String[] components = new String[ 4 ];
+    int count = 0;
+    int start = index + 1;
+    while ( true )
+    {
+      int separator = value.indexOf( ',', start );
+      if ( -1 == separator || separator > end )
+      {
+        separator = end;
+      }
+      if ( 4 == count )
+      {
+        return null;
+      }
+      final int componentStart = skipWhitespace( value, start );
+      int componentEnd = separator;
+      while ( componentEnd > componentStart && isWhitespace( value.charAt( componentEnd - 1 ) ) )
+      {
+        componentEnd--;
+      }
+      if ( !isColorComponent( value, componentStart, componentEnd ) )
+      {
+        return null;
+      }
+      components[ count++ ] = value.substring( componentStart, componentEnd );
+      if ( separator == end )
+      {
+        return count >= 3 ? components : null;
+      }
+      start = separator + 1;
+    }
+  }
+
+  /**
+   * Extracts the path from the text of an <code>@import</code>, i.e. the first group of the whole value matched
+   * against
+   * <pre>
+   * (?i:u\s*r\s*l\(\s*['"]?|['"])(.*?)(?:['"]?\s*\)|['"])
+   * </pre>
+   *
+   * @param value The <code>url()</code> or string naming the imported stylesheet.
+   * @return The path, or <code>null</code> if the value does not match.
+   */
+  @Nullable
+  public static String parseImportPath( @Nonnull final String value )
+  {
+    final int length = value.length();
+    if ( length > 0 && ( 'u' == value.charAt( 0 ) || 'U' == value.charAt( 0 ) ) )
+    {
+      int index = skipWhitespace( value, 1 );
+      if ( index < length && ( 'r' == value.charAt( index ) || 'R' == value.charAt( index ) ) )
+      {
+        index = skipWhitespace( value, index + 1 );
+        if ( index + 1 < length &&
+             ( 'l' == value.charAt( index ) || 'L' == value.charAt( index ) ) &&
+             '(' == value.charAt( index + 1 ) )
+        {
+          index = skipWhitespace( value, index + 2 );
+          if ( index < length && isQuote( value.charAt( index ) ) )
+          {
+            // The quote is optional so it is left for the end of the value if that is the only way to match
+            final String path = parsePath( value, index + 1 );
+            return null != path ? path : parsePath( value, index );
+          }
+          else
+          {
+            return parsePath( value, index );
+          }
+        }
+      }
+      return null;
+    }
+    else if ( length > 0 && isQuote( value.charAt( 0 ) ) )
+    {
+      return parsePath( value, 1 );
+    }
+    else
+    {
+      return null;
+    }
+  }
+
+  /**
+   * Removes the quotes, and any whitespace within them, from the string naming a character set.  Gives the same
+   * result as
+   * <pre>
+   * value.replaceFirst( "['\"]\\s*(\\S*)\\s*['\"]", "$1" )
+   * </pre>
+   *
+   * @param value The text of the string.
+   * @return The text with the first quoted run of characters unquoted.
+   */
+  @Nonnull
+  public static String unquoteCharset( @Nonnull final String value )
+  {
+    final int length = value.length();
+    for ( int quote = 0; quote < length; quote++ )
+    {
+      if ( isQuote( value.charAt( quote ) ) )
+      {
+        final int start = skipWhitespace( value, quote + 1 );
+        int end = start;
+        while ( end < length && !isWhitespace( value.charAt( end ) ) )
+        {
+          end++;
+        }
+        final int close = skipWhitespace( value, end );
+        if ( close < length && isQuote( value.charAt( close ) ) )
+        {
+          return value.substring( 0, quote ) + value.substring( start, end ) + value.substring( close + 1 );
+        }
+        // The run of characters may itself end with the closing quote
+        for ( int i = end - 1; i >= start; i-- )
+        {
+          if ( isQuote( value.charAt( i ) ) )
+          {
+            return value.substring( 0, quote ) + value.substring( start, i ) + value.substring( i + 1 );
+          }
+        }
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Extracts the alpha function from a quoted IE filter, i.e. the first group of the whole value matched against
+   * <pre>
+   * (?i)['"]progid:DXImageTransform\.Microsoft\.(Alpha\(.*\))['"]
+   * </pre>
+   *
+   * @param value The text of the string.
+   * @return The function, from <code>Alpha(</code> to the closing parenthesis, or <code>null</code> if the value does
+   *         not match.
+   */
+  @Nullable
+  public static String parseIEAlphaFilter( @Nonnull final String value )
+  {
+    final int length = value.length();
+    final int functionStart = 1 + IE_ALPHA_PREFIX.length();
+    final int argumentsStart = functionStart + IE_ALPHA_FUNCTION.length();
+    if ( length < argumentsStart + 2 ||
+         !isQuote( value.charAt( 0 ) ) ||
+         !isQuote( value.charAt( length - 1 ) ) ||
+         ')' != value.charAt( length - 2 ) ||
+         !regionMatchesIgnoreCase( value, 1, IE_ALPHA_PREFIX ) ||
+         !regionMatchesIgnoreCase( value, functionStart, IE_ALPHA_FUNCTION ) ||
+         containsLineTerminator( value, argumentsStart, length - 2 ) )
+    {
+      return null;
+    }
+    return value.substring( functionStart, length - 1 );
+  }
+
+  /**
+   * @return The text from the given index to the end of the value, less the <code>['"]?\s*\)</code> or
+   *         <code>['"]</code> that must end it, or <code>null</code> if there is no such ending or the text contains a
+   *         line terminator.
+   */
+  @Nullable
+  private static String parsePath( @Nonnull final String value, final int start )
+  {
+    final int length = value.length();
+    if ( 0 == length )
+    {
+      return null;
+    }
+    int end = length - 1;
+    final char last = value.charAt( end );
+    if ( ')' == last )
+    {
+      // The path is as short as possible so the ending takes all the whitespace and the quote that it can
+      while ( end > start && isWhitespace( value.charAt( end - 1 ) ) )
+      {
+        end--;
+      }
+      if ( end > start && isQuote( value.charAt( end - 1 ) ) )
+      {
+        end--;
+      }
+    }
+    else if ( !isQuote( last ) )
+    {
+      return null;
+    }
+    if ( end < start || containsLineTerminator( value, start, end ) )
+    {
+      return null;
+    }
+    return value.substring( start, end );
+  }
+
+  /**
+   * @return True if the characters between the given indices match <code>(-?\d+(\.\d+)?||\d+%?)</code>.
+   */
+  private static boolean isColorComponent( @Nonnull final String value, final int start, final int end )
+  {
+    if ( start == end )
+    {
+      return true;
+    }
+    int index = start;
+    final boolean negative = '-' == value.charAt( index );
+    if ( negative )
+    {
+      index++;
+    }
+    final int integerStart = index;
+    index = skipDigits( value, index, end );
+    if ( index == integerStart )
+    {
+      return false;
+    }
+    else if ( index == end )
+    {
+      return true;
+    }
+    else if ( '.' == value.charAt( index ) )
+    {
+      final int fractionStart = index + 1;
+      return fractionStart < end && skipDigits( value, fractionStart, end ) == end;
+    }
+    else
+    {
+      return !negative && '%' == value.charAt( index ) && index + 1 == end;
+    }
+  }
+
+  private static int skipDigits( @Nonnull final String value, final int start, final int end )
+  {
+    int index = start;
+    while ( index < end && value.charAt( index ) >= '0' && value.charAt( index ) <= '9' )
+    {
+      index++;
+    }
+    return index;
+  }
+
+  private static int skipWhitespace( @Nonnull final String value, final int start )
+  {
+    int index = start;
+    while ( index < value.length() && isWhitespace( value.charAt( index ) ) )
+    {
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * @return True if the character is matched by <code>\s</code>.
+   */
+  private static boolean isWhitespace( final char c )
+  {
+    return ' ' == c || '\t' == c || '\n' == c || '\u000B' == c || '\f' == c || '\r' == c;
+  }
+
+  private static boolean isQuote( final char c )
+  {
+    return '\'' == c || '"' == c;
+  }
+
+  /**
+   * @return True if any of the characters between the given indices is not matched by <code>.</code>.
+   */
+  private static boolean containsLineTerminator( @Nonnull final String value, final int start, final int end )
+  {
+    for ( int i = start; i < end; i++ )
+    {
+      final char c = value.charAt( i );
+      if ( '\n' == c || '\r' == c || '\u0085' == c || '\u2028' == c || '\u2029' == c )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return True if the value contains the given text at the given index, ignoring the case of ASCII letters only.
+   */
+  private static boolean regionMatchesIgnoreCase( @Nonnull final String value,
+                                                  final int start,
+                                                  @Nonnull final String text )
+  {
+    if ( start + text.length() > value.length() )
+    {
+      return false;
+    }
+    for ( int i = 0; i < text.length(); i++ )
+    {
+      if ( toLowerCase( value.charAt( start + i ) ) != toLowerCase( text.charAt( i ) ) )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static char toLowerCase( final char c )
+  {
+    return c >= 'A' && c <= 'Z' ? (char) ( c + ( 'a' - 'A' ) ) : c;
+  }
+}
@@ -0,0 +1,230 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.antlr.runtime.CharStream;
+
+/**
+ * Table used to share a single instance of the identifiers, property names, numbers and selectors that are repeated
+ * throughout a stylesheet, so that the model of a large stylesheet does not hold thousands of copies of
+ * <code>"color"</code> and <code>"0"</code>, and so that comparing the repeated strings usually stops at the identity
+ * check.  Strings are looked up by their characters, so no string is created when the characters are already in the
+ * table.
+ * <p/>
+ * The compiler binds a table to the thread compiling a stylesheet for the duration of the compile, and to the threads
+ * parsing its imports ahead of time, and strings are returned as they are when no table is bound.  No synchronization
+ * is needed as strings are safely published and a lookup that races with a replacement simply misses.  The table has a
+ * fixed number of entries and a string simply replaces whatever string was in its entry, so the table never grows,
+ * holding well under a megabyte no matter how many stylesheets are compiled with it.  Long strings are never added to
+ * the table as they are rarely repeated.
+ */
+public final class StringTable
+{
+  /**
+   * The number of entries in each table.  Must be a power of two.
+   */
+  private static final int SIZE = 4096;
+  /**
+   * The length of the longest string added to the table.
+   */
+  private static final int MAX_LENGTH = 64;
+
+  private static final ThreadLocal<StringTable> CURRENT = new ThreadLocal<>();
+
+  private final String[] _strings = new String[ SIZE ];
+
+  /**
+   * Returns the table bound to the current thread.
+   *
+   * @return The table, <code>null</code> if strings are not being shared.
+   */
+  @Nullable
+  public static StringTable current()
+  {
+    return CURRENT.get();
+  }
+
+  /**
+   * Binds the table to the current thread.
+   *
+   * @param table The table to bind.  <code>null</code> to stop sharing strings.
+   * @return The table previously bound to the current thread, so that it can be restored.
+   */
+  @Nullable
+  public static StringTable bind( @Nullable final StringTable table )
+  {
+    final StringTable previous = CURRENT.get();
+    if ( null == table )
+    {
+      CURRENT.remove();
+    }
+    else
+    {
+      CURRENT.set( table );
+    }
+    return previous;
+  }
+
+  /**
+   * @return The string in the table equal to the given string, or the given string once it has been added to the
+   *         table.  The given string if no table is bound to the current thread.
+   */
+  @Nonnull
+  public static String intern( @Nonnull final String string )
+  {
+    final StringTable table = CURRENT.get();
+    final int length = string.length();
+    if ( null == table || 0 == length || length > MAX_LENGTH )
+    {
+      return string;
+    }
+    final String[] strings = table._strings;
+    final int index = indexOf( string.hashCode() );
+    final String existing = strings[ index ];
+    if ( string.equals( existing ) )
+    {
+      return existing;
+    }
+    strings[ index ] = string;
+    return string;
+  }
+
+  /**
+   * @return The string in the table with the given characters, added to the table if not already present.
+   */
+  @Nonnull
+  public static String intern( @Nonnull final char[] chars, final int start, final int end )
+  {
+    final StringTable table = CURRENT.get();
+    final int length = end - start;
+    if ( null == table || 0 == length || length > MAX_LENGTH )
+    {
+      return new String( chars, start, length );
+    }
+    int hash = 0;
+    for ( int i = start; i < end; i++ )
+    {
+      hash = 31 * hash + chars[ i ];
+    }
+    final String[] strings = table._strings;
+    final int index = indexOf( hash );
+    final String existing = strings[ index ];
+    if ( null != existing && existing.length() == length && regionMatches( existing, chars, start ) )
+    {
+      return existing;
+    }
+    final String string = new String( chars, start, length );
+    strings[ index ] = string;
+    return string;
+  }
+
+  /**
+   * Interns the text of a token as it is emitted by a lexer, reading the characters back from the input rather than
+   * creating the text of the token first.
+   *
+   * @param input  The input of the lexer.
+   * @param length The number of characters just consumed from the input.
+   * @return The string in the table with the last <code>length</code> characters consumed from the input, added to
+   *         the table if not already present.
+   */
+  @Nonnull
+  public static String intern( @Nonnull final CharStream input, final int length )
+  {
+    final StringTable table = CURRENT.get();
+    final int end = input.index();
+    if ( null == table || 0 == length || length > MAX_LENGTH )
+    {
+      return input.substring( end - length, end - 1 );
+    }
+    // LA(-1) is the last character consumed
+    int hash = 0;
+    for ( int i = -length; i < 0; i++ )
+    {
+      hash = 31 * hash + input.LA( i );
+    }
+    final String[] strings = table._strings;
+    final int index = indexOf( hash );
+    final String existing = strings[ index ];
+    if ( null != existing && existing.length() == length && regionMatches( existing, input ) )
+    {
+      return existing;
+    }
+    final String string = input.substring( end - length, end - 1 );
+    strings[ index ] = string;
+    return string;
+  }
+
+  /**
+   * @return The string in the table with the characters of the given builder, added to the table if not already
+   *         present.
+   */
+  @Nonnull
+  public static String intern( @Nonnull final StringBuilder builder )
+  {
+    final StringTable table = CURRENT.get();
+    final int length = builder.length();
+    if ( null == table || 0 == length || length > MAX_LENGTH )
+    {
+      return builder.toString();
+    }
+    int hash = 0;
+    for ( int i = 0; i < length; i++ )
+    {
+      hash = 31 * hash + builder.charAt( i );
+    }
+    final String[] strings = table._strings;
+    final int index = indexOf( hash );
+    final String existing = strings[ index ];
+    if ( null != existing && existing.contentEquals( builder ) )
+    {
+      return existing;
+    }
+    final String string = builder.toString();
+    strings[ index ] = string;
+    return string;
+  }
+
+  private static int indexOf( final int hash )
+  {
+    return ( hash ^ ( hash >>> 16 ) ) & ( SIZE - 1 );
+  }
+
+  private static boolean regionMatches( final String string, final char[] chars, final int start )
+  {
+    for ( int i = 0, length = string.length(); i < length; i++ )
+    {
+      if ( string.charAt( i ) != chars[ start + i ] )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean regionMatches( final String string, final CharStream input )
+  {
+    for ( int i = 0, length = string.length(); i < length; i++ )
+    {
+      if ( string.charAt( i ) != input.LA( i - length ) )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,267 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.antlr.runtime.ANTLRFileStream;
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.debug.Profiler;
+import org.localmatters.lesscss4j.parser.antlr.LessCssLexer;
+import org.localmatters.lesscss4j.parser.antlr.LessCssParser;
+
+/**
+ * Parses stylesheets with a build of the grammar generated using the ANTLR <code>-profile</code> option and reports
+ * the lookahead and backtracking performed by each decision.  Used to find the decisions worth restructuring when
+ * tuning the grammar.  This class only compiles against the profiling build of the parser, it is not part of the
+ * compiler.
+ * <p/>
+ * Arguments are stylesheets or directories to search for <code>.less</code> and <code>.css</code> files.
+ */
+public final class GrammarProfiler
+  extends Profiler
+{
+  private static final int REPORT_SIZE = 25;
+
+  private final Map<String, DecisionStats> _decisions = new LinkedHashMap<>();
+  private final List<String> _rules = new ArrayList<>();
+  private final List<DecisionStats> _openDecisions = new ArrayList<>();
+  private final List<Integer> _decisionStarts = new ArrayList<>();
+  private final List<Integer> _lookaheads = new ArrayList<>();
+  private int _backtrackDepth;
+  private long _tokenCount;
+  private long _backtrackTokenCount;
+
+  public static void main( final String[] args )
+    throws IOException
+  {
+    final List<File> files = new ArrayList<>();
+    for ( final String arg : args )
+    {
+      collect( new File( arg ), files );
+    }
+
+    final GrammarProfiler profiler = new GrammarProfiler();
+    for ( final File file : files )
+    {
+      profiler.profile( file );
+    }
+    profiler.report( files.size() );
+  }
+
+  private static void collect( final File file, final List<File> files )
+  {
+    if ( file.isDirectory() )
+    {
+      final File[] children = file.listFiles();
+      if ( null != children )
+      {
+        for ( final File child : children )
+        {
+          collect( child, files );
+        }
+      }
+    }
+    else if ( file.getName().endsWith( ".less" ) || file.getName().endsWith( ".css" ) )
+    {
+      files.add( file );
+    }
+  }
+
+  private void profile( final File file )
+    throws IOException
+  {
+    final LessCssLexer lexer = new LessCssLexer( new ANTLRFileStream( file.getPath(), "UTF-8" ) );
+    final LessCssParser parser = new LessCssParser( new CommonTokenStream( lexer ), this );
+    try
+    {
+      parser.styleSheet();
+    }
+    catch ( final RecognitionException e )
+    {
+      System.err.println( file + ": " + e );
+    }
+  }
+
+  @Override
+  public void enterRule( final String grammarFileName, final String ruleName )
+  {
+    super.enterRule( grammarFileName, ruleName );
+    _rules.add( ruleName );
+  }
+
+  @Override
+  public void exitRule( final String grammarFileName, final String ruleName )
+  {
+    super.exitRule( grammarFileName, ruleName );
+    _rules.remove( _rules.size() - 1 );
+  }
+
+  @Override
+  public void enterDecision( final int decisionNumber )
+  {
+    super.enterDecision( decisionNumber );
+    final String rule = _rules.isEmpty() ? "?" : _rules.get( _rules.size() - 1 );
+    final String key = rule + ":" + decisionNumber;
+    DecisionStats stats = _decisions.get( key );
+    if ( null == stats )
+    {
+      stats = new DecisionStats( key );
+      _decisions.put( key, stats );
+    }
+    stats._invocations++;
+    _openDecisions.add( stats );
+    _decisionStarts.add( parser.getTokenStream().index() );
+    _lookaheads.add( 0 );
+  }
+
+  @Override
+  public void exitDecision( final int decisionNumber )
+  {
+    super.exitDecision( decisionNumber );
+    final DecisionStats stats = _openDecisions.remove( _openDecisions.size() - 1 );
+    _decisionStarts.remove( _decisionStarts.size() - 1 );
+    final int lookahead = _lookaheads.remove( _lookaheads.size() - 1 );
+    stats._lookaheadTotal += lookahead;
+    stats._lookaheadMax = Math.max( stats._lookaheadMax, lookahead );
+  }
+
+  @Override
+  public void LT( final int i, final Token t )
+  {
+    super.LT( i, t );
+    recordLookahead( t );
+  }
+
+  /**
+   * Records how far ahead of its starting position the innermost open decision has looked.  Decisions predicted by
+   * a DFA consume tokens and rewind rather than calling LT, so consumed tokens are recorded too.
+   */
+  private void recordLookahead( final Token t )
+  {
+    final int last = _lookaheads.size() - 1;
+    if ( last >= 0 && t.getTokenIndex() >= 0 )
+    {
+      final int depth = t.getTokenIndex() - _decisionStarts.get( last ) + 1;
+      if ( depth > _lookaheads.get( last ) )
+      {
+        _lookaheads.set( last, depth );
+      }
+    }
+  }
+
+  @Override
+  public void consumeToken( final Token token )
+  {
+    super.consumeToken( token );
+    recordLookahead( token );
+    if ( _backtrackDepth > 0 )
+    {
+      _backtrackTokenCount++;
+      if ( !_openDecisions.isEmpty() )
+      {
+        _openDecisions.get( 0 )._backtrackTokens++;
+      }
+    }
+    else
+    {
+      _tokenCount++;
+    }
+  }
+
+  @Override
+  public void beginBacktrack( final int level )
+  {
+    super.beginBacktrack( level );
+    if ( 0 == _backtrackDepth && !_openDecisions.isEmpty() )
+    {
+      _openDecisions.get( _openDecisions.size() - 1 )._backtracks++;
+    }
+    _backtrackDepth++;
+  }
+
+  @Override
+  public void endBacktrack( final int level, final boolean successful )
+  {
+    super.endBacktrack( level, successful );
+    _backtrackDepth--;
+  }
+
+  private void report( final int fileCount )
+  {
+    System.out.println( "Files parsed:                " + fileCount );
+    System.out.println( "Tokens consumed:             " + _tokenCount );
+    System.out.println( "Tokens consumed backtracking: " + _backtrackTokenCount );
+    System.out.println( "Rule invocations:            " + numRuleInvocations );
+    System.out.println( "Fixed decisions:             " + numFixedDecisions );
+    System.out.println( "Cyclic decisions:            " + numCyclicDecisions );
+    System.out.println( "Backtracking decisions:      " + numBacktrackDecisions );
+    System.out.println();
+
+    final List<DecisionStats> decisions = new ArrayList<>( _decisions.values() );
+    Collections.sort( decisions, new Comparator<DecisionStats>()
+    {
+      @Override
+      public int compare( final DecisionStats o1, final DecisionStats o2 )
+      {
+        return Long.compare( o2.getCost(), o1.getCost() );
+      }
+    } );
+    System.out.println( String.format( "%-36s %10s %10s %8s %10s %12s",
+                                       "Decision", "Count", "Lookahead", "Max k", "Backtracks", "BT tokens" ) );
+    for ( final DecisionStats stats : decisions.subList( 0, Math.min( REPORT_SIZE, decisions.size() ) ) )
+    {
+      System.out.println( String.format( "%-36s %10d %10d %8d %10d %12d",
+                                         stats._key,
+                                         stats._invocations,
+                                         stats._lookaheadTotal,
+                                         stats._lookaheadMax,
+                                         stats._backtracks,
+                                         stats._backtrackTokens ) );
+    }
+  }
+
+  private static final class DecisionStats
+  {
+    private final String _key;
+    private long _invocations;
+    private long _lookaheadTotal;
+    private int _lookaheadMax;
+    private long _backtracks;
+    private long _backtrackTokens;
+
+    DecisionStats( final String key )
+    {
+      _key = key;
+    }
+
+    /**
+     * @return The number of tokens examined to make the decision, including those consumed while backtracking.
+     */
+    long getCost()
+    {
+      return _lookaheadTotal + _backtrackTokens;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.localmatters.lesscss4j.compile.DefaultLessCssCompilerFactory;
+import org.localmatters.lesscss4j.compile.LessCssCompiler;
+import org.localmatters.lesscss4j.error.ErrorHandler;
+import org.localmatters.lesscss4j.parser.StyleSheetResource;
+import org.testng.annotations.DataProvider;
+import static org.testng.Assert.*;
+
+/**
+ * Utility class for tests that check a parser or compiler option against every stylesheet in the test fixtures.
+ */
+public final class FixtureTestUtil
+{
+  /**
+   * The directories of the test resources containing the fixture stylesheets.
+   */
+  private static final String[] FIXTURE_DIRECTORIES = { "less", "less/import", "less/exceptions", "css" };
+  public static final String ENCODING = "UTF-8";
+
+  private FixtureTestUtil()
+  {
+  }
+
+  /**
+   * Provides each fixture stylesheet as a {@link File}.  Used with
+   * <code>dataProviderClass = FixtureTestUtil.class</code>.
+   */
+  @DataProvider( name = "styleSheets" )
+  public static Object[][] styleSheets()
+    throws Exception
+  {
+    final List<File> files = listStyleSheets();
+    final Object[][] styleSheets = new Object[ files.size() ][];
+    for ( int i = 0; i < styleSheets.length; i++ )
+    {
+      styleSheets[ i ] = new Object[]{ files.get( i ) };
+    }
+    return styleSheets;
+  }
+
+  /**
+   * @return The .less and .css files in each of the fixture directories.
+   */
+  public static List<File> listStyleSheets()
+    throws Exception
+  {
+    final List<File> styleSheets = new ArrayList<>();
+    for ( final String dir : FIXTURE_DIRECTORIES )
+    {
+      final File[] files = new File( FixtureTestUtil.class.getClassLoader().getResource( dir ).toURI() ).listFiles();
+      assertNotNull( files, "Unable to list " + dir );
+      for ( final File file : files )
+      {
+        if ( file.isFile() && ( file.getName().endsWith( ".less" ) || file.getName().endsWith( ".css" ) ) )
+        {
+          styleSheets.add( file );
+        }
+      }
+    }
+    return styleSheets;
+  }
+
+  /**
+   * @return The stylesheet compiled by a compiler created by the given factory.
+   */
+  public static String compile( final DefaultLessCssCompilerFactory factory,
+                                final StyleSheetResource resource,
+                                final ErrorHandler errorHandler )
+    throws IOException
+  {
+    return compile( factory.create(), resource, errorHandler );
+  }
+
+  /**
+   * @return The stylesheet compiled by the given compiler.
+   */
+  public static String compile( final LessCssCompiler compiler,
+                                final StyleSheetResource resource,
+                                final ErrorHandler errorHandler )
+    throws IOException
+  {
+    try ( final ByteArrayOutputStream output = new ByteArrayOutputStream() )
+    {
+      compiler.compile( resource, output, errorHandler );
+      return output.toString( ENCODING );
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URL;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.localmatters.lesscss4j.compile.DefaultLessCssCompilerFactory;
+import org.localmatters.lesscss4j.parser.UrlStyleSheetResource;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class ProfileReportTest
+{
+  @Test
+  public void report()
+    throws IOException
+  {
+    final ByteArrayOutputStream report = new ByteArrayOutputStream();
+    final DefaultLessCssCompilerFactory factory = new DefaultLessCssCompilerFactory();
+    factory.setCompileListener( new ProfileReport( new PrintStream( report, true, "UTF-8" ) ) );
+
+    final URL url = getClass().getClassLoader().getResource( "less/import.less" );
+    assertNotNull( url );
+    factory.create().compile( new UrlStyleSheetResource( url ), new ByteArrayOutputStream(), null );
+
+    final String text = report.toString( "UTF-8" );
+    for ( final String phase : new String[]{ "parse", "import", "build", "transform", "write", "total" } )
+    {
+      assertTrue( text.contains( "  " + phase + " " ), text );
+    }
+    assertTrue( text.contains( "import.less" ), text );
+    assertTrue( text.contains( "import-test-b.less" ), text );
+    assertTrue( text.contains( "rule sets" ), text );
+    assertTrue( text.contains( "mixin expansions" ), text );
+    assertTrue( text.contains( "variable lookups" ), text );
+  }
+}
@@ -0,0 +1,137 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.compile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import org.apache.commons.io.output.NullOutputStream;
+import org.localmatters.lesscss4j.error.WriterErrorHandler;
+import org.localmatters.lesscss4j.parser.UrlStyleSheetResource;
+import org.testng.SkipException;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ * Verifies that compiling each fixture allocates no more than the budget recorded in
+ * <code>allocation-budgets.properties</code>.  The budgets include headroom over the measured allocation so that
+ * only significant regressions fail the build.  When an allocation is reduced the budget should be lowered so that
+ * the improvement is retained.
+ */
+public class AllocationBudgetTest
+{
+  private static final String BUDGETS = "allocation-budgets.properties";
+  private static final String FIXTURE_DIR = "less";
+
+  /**
+   * The number of compiles performed before measuring so that classes are loaded and hot paths are compiled.
+   */
+  private static final int WARMUP_COMPILES = 10;
+
+  /**
+   * The number of compiles measured. The smallest allocation is used to exclude allocations by the JIT.
+   */
+  private static final int MEASURED_COMPILES = 5;
+
+  @DataProvider( name = "fixtures" )
+  public Object[][] fixtures()
+    throws URISyntaxException
+  {
+    final URL url = getClass().getClassLoader().getResource( FIXTURE_DIR );
+    assertNotNull( url, "Unable to locate " + FIXTURE_DIR );
+    final String[] names = new File( url.toURI() ).list();
+    assertNotNull( names );
+    Arrays.sort( names );
+
+    final List<Object[]> fixtures = new ArrayList<>();
+    for ( final String name : names )
+    {
+      if ( name.endsWith( ".less" ) )
+      {
+        fixtures.add( new Object[]{ FIXTURE_DIR + "/" + name } );
+      }
+    }
+    return fixtures.toArray( new Object[ fixtures.size() ][] );
+  }
+
+  @Test( dataProvider = "fixtures" )
+  public void allocationWithinBudget( final String fixture )
+    throws IOException
+  {
+    if ( CompileStats.getCurrentThreadAllocatedBytes() < 0 )
+    {
+      throw new SkipException( "Thread allocation measurement is not supported by this JVM" );
+    }
+
+    final long allocated = measureAllocation( fixture );
+    final String budget = loadBudgets().getProperty( fixture );
+    assertNotNull( budget, "No allocation budget for " + fixture + ". Measured " + allocated + " bytes." );
+    assertTrue( allocated <= Long.parseLong( budget ),
+                fixture + " allocated " + allocated + " bytes, exceeding its budget of " + budget + " bytes." );
+  }
+
+  private long measureAllocation( final String fixture )
+    throws IOException
+  {
+    final LessCssCompiler compiler = new DefaultLessCssCompilerFactory().create();
+    final URL url = getClass().getClassLoader().getResource( fixture );
+    assertNotNull( url, "Unable to locate " + fixture );
+
+    for ( int i = 0; i < WARMUP_COMPILES; i++ )
+    {
+      compile( compiler, url );
+    }
+
+    long allocated = Long.MAX_VALUE;
+    for ( int i = 0; i < MEASURED_COMPILES; i++ )
+    {
+      final long start = CompileStats.getCurrentThreadAllocatedBytes();
+      compile( compiler, url );
+      allocated = Math.min( allocated, CompileStats.getCurrentThreadAllocatedBytes() - start );
+    }
+    return allocated;
+  }
+
+  private void compile( final LessCssCompiler compiler, final URL url )
+    throws IOException
+  {
+    // Some fixtures intentionally contain errors so they are collected rather than thrown
+    final WriterErrorHandler errorHandler = new WriterErrorHandler();
+    errorHandler.setWriter( new PrintWriter( new StringWriter() ) );
+    compiler.compile( new UrlStyleSheetResource( url ), new NullOutputStream(), errorHandler );
+  }
+
+  private Properties loadBudgets()
+    throws IOException
+  {
+    final Properties budgets = new Properties();
+    try ( final InputStream input = getClass().getClassLoader().getResourceAsStream( BUDGETS ) )
+    {
+      assertNotNull( input, "Unable to open " + BUDGETS );
+      budgets.load( input );
+    }
+    return budgets;
+  }
+}
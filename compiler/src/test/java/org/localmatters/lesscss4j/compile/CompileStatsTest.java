@@ -0,0 +1,120 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.compile;
+
+import java.io.IOException;
+import java.net.URL;
+import javax.annotation.Nonnull;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.localmatters.lesscss4j.parser.StyleSheetResource;
+import org.localmatters.lesscss4j.parser.UrlStyleSheetResource;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class CompileStatsTest
+{
+  @Test
+  public void statsReportedToListener()
+    throws IOException
+  {
+    final RecordingListener listener = new RecordingListener();
+    compile( "less/mixins-args.less", listener );
+
+    final CompileStats stats = listener._stats;
+    assertNotNull( stats );
+    assertNull( CompileStats.current() );
+
+    assertTrue( stats.getTime( CompileStats.Phase.PARSE ) > 0 );
+    assertTrue( stats.getTime( CompileStats.Phase.BUILD ) > 0 );
+    assertTrue( stats.getTime( CompileStats.Phase.TRANSFORM ) > 0 );
+    assertTrue( stats.getTime( CompileStats.Phase.WRITE ) > 0 );
+    assertEquals( stats.getTime( CompileStats.Phase.IMPORT ), 0 );
+
+    long totalTime = 0;
+    for ( final CompileStats.Phase phase : CompileStats.Phase.values() )
+    {
+      totalTime += stats.getTime( phase );
+    }
+    assertEquals( stats.getTotalTime(), totalTime );
+
+    assertTrue( stats.getCount( CompileStats.Counter.RULE_SETS ) > 0 );
+    assertTrue( stats.getCount( CompileStats.Counter.DECLARATIONS ) > 0 );
+    assertTrue( stats.getCount( CompileStats.Counter.MIXIN_EXPANSIONS ) > 0 );
+    assertTrue( stats.getCount( CompileStats.Counter.VARIABLE_LOOKUPS ) > 0 );
+  }
+
+  @Test
+  public void importTimeRecorded()
+    throws IOException
+  {
+    final RecordingListener listener = new RecordingListener();
+    compile( "less/import.less", listener );
+
+    assertTrue( listener._stats.getTime( CompileStats.Phase.IMPORT ) > 0 );
+
+    final CompileStats.ResourceStats root = listener._stats.getRootResource();
+    assertNotNull( root );
+    assertTrue( root.getUrl().endsWith( "less/import.less" ) );
+    assertTrue( root.getParseTime() > 0 );
+    final CompileStats.ResourceStats imported = root.getImports().get( 0 );
+    assertTrue( imported.getUrl().endsWith( "import/import-test-a.less" ) );
+    assertTrue( imported.getParseTime() > 0 );
+    assertTrue( imported.getImports().get( 0 ).getUrl().endsWith( "import/import-test-b.less" ) );
+  }
+
+  @Test
+  public void noStatsWithoutListener()
+  {
+    assertNull( CompileStats.enter( CompileStats.Phase.PARSE ) );
+    CompileStats.increment( CompileStats.Counter.RULE_SETS );
+    assertNull( CompileStats.current() );
+  }
+
+  @Test
+  public void warmUpDoesNotNotifyListener()
+  {
+    final RecordingListener listener = new RecordingListener();
+    final DefaultLessCssCompilerFactory factory = new DefaultLessCssCompilerFactory();
+    factory.setCompileListener( listener );
+    factory.setWarmUpIterations( 2 );
+    assertNotNull( factory.create() );
+    assertNull( listener._stats );
+  }
+
+  private void compile( final String lessFile, final CompileListener listener )
+    throws IOException
+  {
+    final DefaultLessCssCompilerFactory factory = new DefaultLessCssCompilerFactory();
+    factory.setCompileListener( listener );
+    final URL url = getClass().getClassLoader().getResource( lessFile );
+    assertNotNull( url );
+    try ( final ByteArrayOutputStream output = new ByteArrayOutputStream() )
+    {
+      factory.create().compile( new UrlStyleSheetResource( url ), output, null );
+    }
+  }
+
+  static final class RecordingListener
+    implements CompileListener
+  {
+    CompileStats _stats;
+
+    public void compileCompleted( @Nonnull final StyleSheetResource resource, @Nonnull final CompileStats stats )
+    {
+      _stats = stats;
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.compile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.localmatters.lesscss4j.FixtureTestUtil;
+import org.localmatters.lesscss4j.error.WriterErrorHandler;
+import org.localmatters.lesscss4j.parser.FileStyleSheetResource;
+import org.testng.SkipException;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ * Checks that each of the alternative parsing modes of {@link DefaultLessCssCompilerFactory} compiles every fixture
+ * to the same output, with the same errors, as the mode it replaces.
+ */
+public class CompilerModeEquivalenceTest
+{
+  enum Mode
+  {
+    DEFAULT( null, true )
+      {
+        @Override
+        void configure( final DefaultLessCssCompilerFactory factory )
+        {
+        }
+      },
+    /**
+     * ANTLR 4 recovers from syntax errors differently and accepts some values that the ANTLR 3 grammar rejects.
+     */
+    ANTLR4( DEFAULT, false )
+      {
+        @Override
+        void configure( final DefaultLessCssCompilerFactory factory )
+        {
+          factory.setAntlr4ParserEnabled( true );
+        }
+      },
+    DIRECT_MODEL( ANTLR4, true )
+      {
+        @Override
+        void configure( final DefaultLessCssCompilerFactory factory )
+        {
+          factory.setDirectModelEnabled( true );
+        }
+      },
+    SCANNER( DEFAULT, true )
+      {
+        @Override
+        void configure( final DefaultLessCssCompilerFactory factory )
+        {
+          factory.setScannerEnabled( true );
+        }
+      },
+    STREAMING( DEFAULT, true )
+      {
+        @Override
+        void configure( final DefaultLessCssCompilerFactory factory )
+        {
+          factory.setStreamingParseEnabled( true );
+        }
+      },
+    PLAIN_CSS( DEFAULT, true )
+      {
+        @Override
+        void configure( final DefaultLessCssCompilerFactory factory )
+        {
+          factory.setPlainCssPassThroughEnabled( true );
+        }
+      },
+    INCREMENTAL( DEFAULT, true )
+      {
+        @Override
+        void configure( final DefaultLessCssCompilerFactory factory )
+        {
+          factory.setIncrementalParseEnabled( true );
+        }
+      },
+    IMPORT_CACHE( DEFAULT, true )
+      {
+        @Override
+        void configure( final DefaultLessCssCompilerFactory factory )
+        {
+          factory.setImportCacheEnabled( true );
+        }
+      };
+
+    private final Mode _baseline;
+    /**
+     * True if stylesheets with syntax errors are compiled with the same errors as the baseline.  Otherwise only the
+     * stylesheets that the baseline compiles without errors are compared.
+     */
+    private final boolean _errorsCompared;
+
+    Mode( final Mode baseline, final boolean errorsCompared )
+    {
+      _baseline = baseline;
+      _errorsCompared = errorsCompared;
+    }
+
+    abstract void configure( DefaultLessCssCompilerFactory factory );
+  }
+
+  @DataProvider( name = "modes" )
+  public Object[][] modes()
+    throws Exception
+  {
+    final List<Object[]> data = new ArrayList<>();
+    for ( final Mode mode : Mode.values() )
+    {
+      if ( null != mode._baseline )
+      {
+        for ( final File file : FixtureTestUtil.listStyleSheets() )
+        {
+          data.add( new Object[]{ mode, file } );
+        }
+      }
+    }
+    return data.toArray( new Object[ data.size() ][] );
+  }
+
+  @Test( dataProvider = "modes" )
+  public void compilesAsBaseline( final Mode mode, final File file )
+    throws IOException
+  {
+    final StringWriter expectedMessages = new StringWriter();
+    final WriterErrorHandler expectedErrors = createErrorHandler( expectedMessages );
+    final String expected = compile( mode._baseline, file, expectedErrors );
+    if ( !mode._errorsCompared && 0 != expectedErrors.getErrorCount() )
+    {
+      throw new SkipException( file.getName() + " has errors that " + mode + " does not report the same way" );
+    }
+
+    final StringWriter messages = new StringWriter();
+    final WriterErrorHandler errors = createErrorHandler( messages );
+    assertEquals( compile( mode, file, errors ), expected );
+    assertEquals( messages.toString(), expectedMessages.toString() );
+    assertEquals( errors.getErrorCount(), expectedErrors.getErrorCount() );
+  }
+
+  private String compile( final Mode mode, final File file, final WriterErrorHandler errorHandler )
+    throws IOException
+  {
+    final DefaultLessCssCompilerFactory factory = new DefaultLessCssCompilerFactory();
+    mode.configure( factory );
+    return FixtureTestUtil.compile( factory, new FileStyleSheetResource( file ), errorHandler );
+  }
+
+  private WriterErrorHandler createErrorHandler( final StringWriter writer )
+  {
+    final WriterErrorHandler errorHandler = new WriterErrorHandler();
+    errorHandler.setLogStackTrace( false );
+    errorHandler.setWriter( new PrintWriter( writer, true ) );
+    return errorHandler;
+  }
+}
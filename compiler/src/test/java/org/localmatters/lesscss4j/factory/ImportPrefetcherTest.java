@@ -0,0 +1,165 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.factory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.localmatters.lesscss4j.compile.DefaultLessCssCompilerFactory;
+import org.localmatters.lesscss4j.error.WriterErrorHandler;
+import org.localmatters.lesscss4j.parser.StyleSheetResource;
+import org.localmatters.lesscss4j.parser.UrlStyleSheetResource;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class ImportPrefetcherTest
+{
+  private ExecutorService _executorService;
+  private AtomicInteger _taskCount;
+  private Executor _executor;
+  private File _dir;
+
+  @BeforeMethod
+  public void setUp()
+    throws Exception
+  {
+    _executorService = Executors.newFixedThreadPool( 4 );
+    _taskCount = new AtomicInteger();
+    _executor = new Executor()
+    {
+      public void execute( final Runnable command )
+      {
+        _taskCount.incrementAndGet();
+        _executorService.execute( command );
+      }
+    };
+    _dir = File.createTempFile( "imports", "" );
+    assertTrue( _dir.delete() && _dir.mkdir() );
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    _executorService.shutdownNow();
+    FileUtils.deleteQuietly( _dir );
+  }
+
+  @Test
+  public void outputMatchesSequentialParse()
+    throws IOException
+  {
+    final StyleSheetResource input =
+      new UrlStyleSheetResource( getClass().getClassLoader().getResource( "less/import.less" ) );
+    final WriterErrorHandler errors = createErrorHandler( new StringWriter() );
+
+    final String expected = compile( input, null, errors );
+    assertEquals( compile( input, _executor, errors ), expected );
+    assertEquals( errors.getErrorCount(), 0 );
+    // import-test-a, b, c and d are each parsed once even though a is imported twice
+    assertEquals( _taskCount.get(), 4 );
+  }
+
+  @Test
+  public void errorsReportedInImportOrderWithContext()
+    throws IOException
+  {
+    write( "main.less", "@import \"a.less\";\n@import \"b.less\";\n@import \"missing.less\";\n.main { color: red; }\n" );
+    write( "a.less", "@import \"b.less\";\n.a { : red; }\n" );
+    write( "b.less", ".b { color: blue;\n" );
+    final StyleSheetResource input = new UrlStyleSheetResource( new File( _dir, "main.less" ).toURI().toURL() );
+
+    final StringWriter sequentialErrors = new StringWriter();
+    final WriterErrorHandler sequentialHandler = createErrorHandler( sequentialErrors );
+    final String expected = compile( input, null, sequentialHandler );
+
+    final StringWriter parallelErrors = new StringWriter();
+    final WriterErrorHandler parallelHandler = createErrorHandler( parallelErrors );
+    assertEquals( compile( input, _executor, parallelHandler ), expected );
+
+    assertTrue( sequentialHandler.getErrorCount() >= 3, sequentialErrors.toString() );
+    assertEquals( parallelHandler.getErrorCount(), sequentialHandler.getErrorCount() );
+    assertEquals( parallelErrors.toString(), sequentialErrors.toString() );
+    assertTrue( parallelErrors.toString().startsWith( "a.less " ), parallelErrors.toString() );
+  }
+
+  @Test( timeOut = 30000 )
+  public void compileOnImportExecutorThread()
+    throws Exception
+  {
+    final StyleSheetResource input =
+      new UrlStyleSheetResource( getClass().getClassLoader().getResource( "less/import.less" ) );
+    final WriterErrorHandler errors = createErrorHandler( new StringWriter() );
+    final String expected = compile( input, null, errors );
+
+    // The only thread of the executor is busy compiling so the imports must be parsed by the compile itself
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try
+    {
+      final Future<String> output = executor.submit( new Callable<String>()
+      {
+        public String call()
+          throws IOException
+        {
+          return compile( input, executor, errors );
+        }
+      } );
+      assertEquals( output.get(), expected );
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+    assertEquals( errors.getErrorCount(), 0 );
+  }
+
+  private void write( final String filename, final String content )
+    throws IOException
+  {
+    FileUtils.writeStringToFile( new File( _dir, filename ), content, "UTF-8" );
+  }
+
+  private WriterErrorHandler createErrorHandler( final StringWriter writer )
+  {
+    final WriterErrorHandler errorHandler = new WriterErrorHandler();
+    errorHandler.setWriter( new PrintWriter( writer, true ) );
+    return errorHandler;
+  }
+
+  private String compile( final StyleSheetResource input,
+                          final Executor executor,
+                          final WriterErrorHandler errorHandler )
+    throws IOException
+  {
+    final DefaultLessCssCompilerFactory factory = new DefaultLessCssCompilerFactory();
+    factory.setImportExecutor( executor );
+    try ( final ByteArrayOutputStream output = new ByteArrayOutputStream() )
+    {
+      factory.create().compile( input, output, errorHandler );
+      return output.toString( "UTF-8" );
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.model;
+
+import java.util.Arrays;
+import org.localmatters.lesscss4j.model.expression.LiteralExpression;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class RuleSetTest
+{
+  private RuleSet createRuleSet()
+  {
+    final RuleSet ruleSet = new RuleSet();
+    ruleSet.addSelector( new Selector( ".mixin" ) );
+    ruleSet.addArgument( "@width", new LiteralExpression( "1px" ) );
+    ruleSet.setVariable( "@color", new LiteralExpression( "red" ) );
+    ruleSet.addDeclaration( createDeclaration( "color" ) );
+
+    final RuleSet child = new RuleSet();
+    child.addSelector( new Selector( ".child" ) );
+    child.addDeclaration( createDeclaration( "width" ) );
+    ruleSet.addBodyElement( child );
+    return ruleSet;
+  }
+
+  private Declaration createDeclaration( final String property )
+  {
+    final Declaration declaration = new Declaration();
+    declaration.setProperty( property );
+    declaration.addValue( new LiteralExpression( "1" ) );
+    return declaration;
+  }
+
+  @Test
+  public void cloneSharesContent()
+  {
+    final RuleSet ruleSet = createRuleSet();
+    final RuleSet clone = ruleSet.clone();
+
+    assertSame( clone.getSelectors().get( 0 ), ruleSet.getSelectors().get( 0 ) );
+    assertSame( clone.getDeclarations().get( 0 ), ruleSet.getDeclarations().get( 0 ) );
+    assertSame( clone.getBodyElements().get( 0 ), ruleSet.getBodyElements().get( 0 ) );
+    assertSame( clone.getVariable( "@color" ), ruleSet.getVariable( "@color" ) );
+    assertSame( clone.getArguments().get( "@width" ), ruleSet.getArguments().get( "@width" ) );
+    assertSame( clone.getDeclaration( "color" ), ruleSet.getDeclaration( "color" ) );
+    assertEquals( clone.getRuleSet( new Selector( ".child" ) ), ruleSet.getRuleSet( new Selector( ".child" ) ) );
+    assertEquals( clone.getRuleSetCount(), 1 );
+  }
+
+  @Test
+  public void modifyingCloneLeavesOriginalUnchanged()
+  {
+    final RuleSet ruleSet = createRuleSet();
+    final RuleSet clone = ruleSet.clone();
+
+    clone.addSelector( new Selector( ".other" ) );
+    clone.addArgument( "@height", new LiteralExpression( "2px" ) );
+    clone.setVariable( "@color", new LiteralExpression( "blue" ) );
+    clone.addDeclaration( createDeclaration( "height" ) );
+    clone.addDeclaration( new MixinReference() );
+    final RuleSet child = new RuleSet();
+    child.addSelector( new Selector( ".child" ) );
+    clone.addBodyElement( child );
+
+    assertEquals( ruleSet.getSelectors(), Arrays.asList( new Selector( ".mixin" ) ) );
+    assertEquals( ruleSet.getArguments().size(), 1 );
+    assertEquals( ruleSet.getVariable( "@color" ).toString(), "red" );
+    assertEquals( ruleSet.getDeclarations().size(), 1 );
+    assertNull( ruleSet.getDeclaration( "height" ) );
+    assertFalse( ruleSet.isMixinReferenceUsed() );
+    assertEquals( ruleSet.getBodyElements().size(), 1 );
+    assertEquals( ruleSet.getRuleSet( new Selector( ".child" ) ).size(), 1 );
+    assertEquals( ruleSet.getRuleSetCount(), 1 );
+
+    assertEquals( clone.getSelectors().size(), 2 );
+    assertEquals( clone.getArguments().size(), 2 );
+    assertEquals( clone.getVariable( "@color" ).toString(), "blue" );
+    assertEquals( clone.getDeclarations().size(), 3 );
+    assertTrue( clone.isMixinReferenceUsed() );
+    assertEquals( clone.getRuleSet( new Selector( ".child" ) ).size(), 2 );
+    assertEquals( clone.getRuleSetCount(), 2 );
+  }
+
+  @Test
+  public void modifyingOriginalLeavesCloneUnchanged()
+  {
+    final RuleSet ruleSet = createRuleSet();
+    final RuleSet clone = ruleSet.clone();
+
+    ruleSet.clearArguments();
+    ruleSet.clearDeclarations();
+    ruleSet.clearBodyElements();
+    ruleSet.setVariable( "@color", new LiteralExpression( "blue" ) );
+
+    assertEquals( clone.getArguments().size(), 1 );
+    assertEquals( clone.getDeclarations().size(), 1 );
+    assertNotNull( clone.getDeclaration( "color" ) );
+    assertEquals( clone.getBodyElements().size(), 1 );
+    assertEquals( clone.getRuleSetCount(), 1 );
+    assertEquals( clone.getVariable( "@color" ).toString(), "red" );
+  }
+
+  @Test( expectedExceptions = UnsupportedOperationException.class )
+  public void declarationsCanNotBeModifiedThroughList()
+  {
+    createRuleSet().clone().getDeclarations().clear();
+  }
+}
@@ -0,0 +1,63 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.model;
+
+import java.io.StringWriter;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class SelectorTest
+{
+  @Test
+  public void combinedSelector()
+    throws Exception
+  {
+    final Selector block = new Selector( ".block, .block--alt" );
+    final Selector element = new Selector( block, new Selector( ".block__element" ) );
+    final Selector selector = new Selector( element, new Selector( ":hover" ), new Selector( "span" ) );
+
+    final String expected = ".block, .block--alt .block__element:hover span";
+    final StringWriter writer = new StringWriter();
+    selector.appendTo( writer );
+    assertEquals( writer.toString(), expected );
+    assertEquals( selector.hashCode(), expected.hashCode() );
+    assertEquals( selector.getText(), expected );
+    assertEquals( selector.toString(), expected );
+  }
+
+  @Test
+  public void combinedSelectorEqualsSelectorWithSameText()
+  {
+    final Selector nested = new Selector( new Selector( ".b" ), new Selector( ".c" ) );
+    final Selector selector = new Selector( new Selector( ".a" ), nested );
+    final Selector other = new Selector( new Selector( ".a .b" ), new Selector( ".c" ) );
+    final Selector text = new Selector( ".a .b .c" );
+
+    assertEquals( selector, text );
+    assertEquals( text, selector );
+    assertEquals( selector, other );
+    assertEquals( selector.hashCode(), text.hashCode() );
+    assertEquals( selector.clone(), text );
+    assertNotEquals( selector, new Selector( ".a .b .d" ) );
+    assertNotEquals( selector, new Selector( new Selector( ".a" ), new Selector( ".b" ) ) );
+  }
+
+  @Test
+  public void emptySelectorIsNotSeparated()
+  {
+    assertEquals( new Selector( new Selector( "" ), new Selector( ".a" ) ).getText(), ".a" );
+  }
+}
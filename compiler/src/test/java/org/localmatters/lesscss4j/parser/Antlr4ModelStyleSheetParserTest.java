@@ -0,0 +1,126 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.localmatters.lesscss4j.error.AbstractErrorHandler;
+import org.localmatters.lesscss4j.factory.DeclarationFactory;
+import org.localmatters.lesscss4j.factory.ExpressionFactory;
+import org.localmatters.lesscss4j.factory.RuleSetFactory;
+import org.localmatters.lesscss4j.factory.StyleSheetFactory;
+import org.localmatters.lesscss4j.model.AbstractElement;
+import org.localmatters.lesscss4j.model.RuleSet;
+import org.localmatters.lesscss4j.model.StyleSheet;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class Antlr4ModelStyleSheetParserTest
+{
+  @Test
+  public void elementsPositionedAsTreeParse()
+    throws IOException
+  {
+    final StringBuilder content = new StringBuilder( "@charset \"UTF-8\";\n@import \"a.css\";\n" );
+    for ( int i = 0; i < 5000; i++ )
+    {
+      content.append( ".rule" ).append( i ).append( " {\n  width: " ).append( i ).append( "px; /* comment */\n}\n" );
+    }
+    final StyleSheet expected = parse( new Antlr4StyleSheetParser(), content.toString(), new AbstractErrorHandler() );
+    final StyleSheet actual = parse( new Antlr4ModelStyleSheetParser(), content.toString(), new AbstractErrorHandler() );
+    assertNotNull( expected );
+    assertNotNull( actual );
+    assertEquals( actual.getCharset(), expected.getCharset() );
+    assertEquals( actual.getImports(), expected.getImports() );
+    assertEquals( actual.getBodyElements().size(), 5000 );
+    for ( int i = 0; i < 5000; i++ )
+    {
+      final RuleSet actualRuleSet = (RuleSet) actual.getBodyElements().get( i );
+      final RuleSet expectedRuleSet = (RuleSet) expected.getBodyElements().get( i );
+      assertEquals( actualRuleSet.toString(), expectedRuleSet.toString() );
+      assertEquals( actualRuleSet.getLine(), expectedRuleSet.getLine() );
+      assertEquals( actualRuleSet.getChar(), expectedRuleSet.getChar() );
+    }
+    assertEquals( actual.getLine(), expected.getLine() );
+    assertEquals( actual.getChar(), expected.getChar() );
+  }
+
+  @Test
+  public void syntaxErrorsReported()
+    throws IOException
+  {
+    final AbstractErrorHandler errors = new AbstractErrorHandler();
+    final String content = ".a { b: c; }\n.d { e }\n.f { g: h; }\n.i { j }\n";
+    assertNull( parse( new Antlr4ModelStyleSheetParser(), content, errors ) );
+    final AbstractErrorHandler expectedErrors = new AbstractErrorHandler();
+    assertNull( parse( new Antlr4StyleSheetParser(), content, expectedErrors ) );
+    assertEquals( errors.getErrorCount(), expectedErrors.getErrorCount() );
+  }
+
+  @Test
+  public void rulesWithoutModelBuiltAsTreeParse()
+    throws IOException
+  {
+    final String content =
+      "@a: 1px;\n.b { width: @a; }\n@media print {\n  .c { width: 2px; }\n}\n" +
+      "@keyframes d {\n  from { width: 3px; }\n}\n@page :first {\n  margin: 4px;\n}\n.e { width: 5px; }\n";
+    final StyleSheet expected = parse( new Antlr4StyleSheetParser(), content, new AbstractErrorHandler() );
+    final StyleSheet actual = parse( new Antlr4ModelStyleSheetParser(), content, new AbstractErrorHandler() );
+    assertNotNull( expected );
+    assertNotNull( actual );
+    assertEquals( actual.getBodyElements().size(), 5 );
+    for ( int i = 0; i < 5; i++ )
+    {
+      final AbstractElement actualElement = (AbstractElement) actual.getBodyElements().get( i );
+      final AbstractElement expectedElement = (AbstractElement) expected.getBodyElements().get( i );
+      assertEquals( actualElement.getClass(), expectedElement.getClass() );
+      assertEquals( actualElement.getLine(), expectedElement.getLine() );
+      assertEquals( actualElement.getChar(), expectedElement.getChar() );
+    }
+    assertEquals( actual.getVariable( "a" ).toString(), expected.getVariable( "a" ).toString() );
+  }
+
+  @Test
+  public void defaultFactoryRequiresDefaultWiring()
+  {
+    assertTrue( Antlr4ModelStyleSheetParser.isDefaultFactory( StyleSheetFactory.createDefaultObjectFactory() ) );
+
+    final StyleSheetFactory subclassed = (StyleSheetFactory) StyleSheetFactory.createDefaultObjectFactory();
+    subclassed.setExpressionFactory( new ExpressionFactory()
+    {
+    } );
+    assertFalse( Antlr4ModelStyleSheetParser.isDefaultFactory( subclassed ) );
+
+    final StyleSheetFactory rewired = (StyleSheetFactory) StyleSheetFactory.createDefaultObjectFactory();
+    final RuleSetFactory ruleSetFactory = (RuleSetFactory) rewired.getRuleSetFactory();
+    ( (DeclarationFactory) ruleSetFactory.getDeclarationFactory() ).setExpressionFactory( new ExpressionFactory() );
+    assertFalse( Antlr4ModelStyleSheetParser.isDefaultFactory( rewired ) );
+
+    final StyleSheetFactory missing = (StyleSheetFactory) StyleSheetFactory.createDefaultObjectFactory();
+    ( (RuleSetFactory) missing.getRuleSetFactory() ).setSelectorFactory( null );
+    assertFalse( Antlr4ModelStyleSheetParser.isDefaultFactory( missing ) );
+  }
+
+  private StyleSheet parse( final LessCssStyleSheetParser parser,
+                            final String content,
+                            final AbstractErrorHandler errors )
+    throws IOException
+  {
+    final byte[] bytes = content.getBytes( "UTF-8" );
+    return parser.parse( new InputStreamStyleSheetResource( new ByteArrayInputStream( bytes ) ), errors );
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import org.antlr.runtime.tree.Tree;
+import org.localmatters.lesscss4j.FixtureTestUtil;
+import org.localmatters.lesscss4j.error.AbstractErrorHandler;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class Antlr4StyleSheetParserTest
+{
+  @Test( dataProvider = "styleSheets", dataProviderClass = FixtureTestUtil.class )
+  public void sameTreeAsAntlr3Parser( final File file )
+    throws IOException
+  {
+    final Tree expected = new LessCssStyleSheetParser().parseTree( new FileStyleSheetResource( file ), new Errors() );
+    final Errors errors = new Errors();
+    final Tree actual = new Antlr4StyleSheetParser().parseTree( new FileStyleSheetResource( file ), errors );
+    if ( null != expected )
+    {
+      assertNotNull( actual, errors.toString() );
+      assertEquals( toString( actual ), toString( expected ) );
+    }
+  }
+
+  @Test
+  public void syntaxErrorsReported()
+    throws IOException
+  {
+    final Errors errors = new Errors();
+    final byte[] content = "a { b }\n.c { d: e; }".getBytes( "UTF-8" );
+    final StyleSheetResource resource = new InputStreamStyleSheetResource( new ByteArrayInputStream( content ) );
+    assertNull( new Antlr4StyleSheetParser().parseTree( resource, errors ) );
+    assertTrue( errors.getErrorCount() > 0 );
+    assertTrue( errors.toString().startsWith( "[1:6] - " ), errors.toString() );
+  }
+
+  /**
+   * Like {@link Tree#toStringTree()} but including the type and position of each node.
+   */
+  private static String toString( final Tree tree )
+  {
+    final StringBuilder buf = new StringBuilder();
+    buf.append( '(' ).append( tree.getType() ).append( ' ' ).append( tree.getText() );
+    buf.append( '@' ).append( tree.getLine() ).append( ':' ).append( tree.getCharPositionInLine() );
+    for ( int i = 0; i < tree.getChildCount(); i++ )
+    {
+      buf.append( ' ' ).append( toString( tree.getChild( i ) ) );
+    }
+    return buf.append( ')' ).toString();
+  }
+
+  private static final class Errors
+    extends AbstractErrorHandler
+  {
+    private final StringBuilder _messages = new StringBuilder();
+
+    @Override
+    public void handleError( final String message, final Throwable exception )
+    {
+      super.handleError( message, exception );
+      _messages.append( exception.getMessage() ).append( '\n' );
+    }
+
+    @Override
+    public String toString()
+    {
+      return _messages.toString();
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import javax.annotation.Nonnull;
+import org.antlr.runtime.tree.Tree;
+import org.apache.commons.io.FileUtils;
+import org.localmatters.lesscss4j.FixtureTestUtil;
+import org.localmatters.lesscss4j.compile.DefaultLessCssCompilerFactory;
+import org.localmatters.lesscss4j.compile.LessCssCompiler;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class CachingStyleSheetTreeParserTest
+{
+  private CachingStyleSheetTreeParser _parser;
+  private File _file;
+
+  @BeforeMethod
+  public void setUp()
+    throws Exception
+  {
+    _parser = new CachingStyleSheetTreeParser( new LessCssStyleSheetParser() );
+    _file = File.createTempFile( "cache-test", ".less" );
+    FileUtils.writeStringToFile( _file, ".a { color: red; }", "UTF-8" );
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    FileUtils.deleteQuietly( _file );
+  }
+
+  @Test
+  public void fileResourceReparsedWhenModified()
+    throws IOException
+  {
+    final StyleSheetResource resource = new FileStyleSheetResource( _file );
+    final Tree tree = _parser.parseTree( resource, null );
+    assertNotNull( tree );
+    assertSame( _parser.parseTree( resource, null ), tree );
+    assertEquals( _parser.getHitCount(), 1 );
+    assertEquals( _parser.getMissCount(), 1 );
+    assertEquals( _parser.getEntryCount(), 1 );
+
+    FileUtils.writeStringToFile( _file, ".a { color: blue; }", "UTF-8" );
+    final Tree modified = _parser.parseTree( resource, null );
+    assertNotSame( modified, tree );
+    assertEquals( _parser.getMissCount(), 2 );
+    assertEquals( _parser.getEntryCount(), 1 );
+
+    _parser.clear();
+    assertEquals( _parser.getEntryCount(), 0 );
+  }
+
+  @Test
+  public void urlResourceReparsedWhenContentChanges()
+    throws IOException
+  {
+    final StyleSheetResource resource = new UrlStyleSheetResource( _file.toURI().toURL() );
+    final Tree tree = _parser.parseTree( resource, null );
+    assertSame( _parser.parseTree( resource, null ), tree );
+
+    // Same length and possibly the same modification time, only the content differs.
+    FileUtils.writeStringToFile( _file, ".b { color: red; }", "UTF-8" );
+    assertNotSame( _parser.parseTree( resource, null ), tree );
+    assertEquals( _parser.getHitCount(), 1 );
+    assertEquals( _parser.getMissCount(), 2 );
+  }
+
+  @Test
+  public void stylesheetReadOncePerParse()
+    throws IOException
+  {
+    final int[] readCount = new int[ 1 ];
+    final StyleSheetResource resource = new UrlStyleSheetResource( _file.toURI().toURL() )
+    {
+      @Nonnull
+      @Override
+      public InputStream getInputStream()
+        throws IOException
+      {
+        readCount[ 0 ]++;
+        return super.getInputStream();
+      }
+    };
+
+    // Just modified, so the content is hashed
+    final Tree tree = _parser.parseTree( resource, null );
+    assertEquals( readCount[ 0 ], 1 );
+    assertSame( _parser.parseTree( resource, null ), tree );
+    assertEquals( readCount[ 0 ], 2 );
+
+    // Modified long enough ago that the last modified time and length identify the content
+    assertTrue( _file.setLastModified( System.currentTimeMillis() - 10000 ) );
+    final Tree settled = _parser.parseTree( resource, null );
+    assertEquals( readCount[ 0 ], 3 );
+    assertSame( _parser.parseTree( resource, null ), settled );
+    assertEquals( readCount[ 0 ], 3 );
+    assertEquals( _parser.getMissCount(), 2 );
+    assertEquals( _parser.getHitCount(), 2 );
+  }
+
+  @Test
+  public void importsParsedOncePerCompiler()
+    throws IOException
+  {
+    final URL url = getClass().getClassLoader().getResource( "less/import.less" );
+    assertNotNull( url );
+    final String expected =
+      FixtureTestUtil.compile( new DefaultLessCssCompilerFactory(), new UrlStyleSheetResource( url ), null );
+
+    final CachingStyleSheetTreeParser[] cache = new CachingStyleSheetTreeParser[ 1 ];
+    final DefaultLessCssCompilerFactory factory = new DefaultLessCssCompilerFactory()
+    {
+      @Override
+      protected StyleSheetTreeParser createImportTreeParser( final StyleSheetTreeParser delegate )
+      {
+        cache[ 0 ] = (CachingStyleSheetTreeParser) super.createImportTreeParser( delegate );
+        return cache[ 0 ];
+      }
+    };
+    factory.setImportCacheEnabled( true );
+    final LessCssCompiler compiler = factory.create();
+    assertNotNull( cache[ 0 ] );
+
+    assertEquals( FixtureTestUtil.compile( compiler, new UrlStyleSheetResource( url ), null ), expected );
+    final long missCount = cache[ 0 ].getMissCount();
+    assertTrue( missCount > 0 );
+    assertEquals( FixtureTestUtil.compile( compiler, new UrlStyleSheetResource( url ), null ), expected );
+    assertEquals( cache[ 0 ].getMissCount(), missCount );
+    assertTrue( cache[ 0 ].getHitCount() >= missCount );
+  }
+
+}
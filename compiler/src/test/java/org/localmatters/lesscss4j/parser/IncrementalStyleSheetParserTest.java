@@ -0,0 +1,176 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.File;
+import java.io.IOException;
+import org.antlr.runtime.tree.Tree;
+import org.apache.commons.io.FileUtils;
+import org.localmatters.lesscss4j.FixtureTestUtil;
+import org.localmatters.lesscss4j.error.AbstractErrorHandler;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class IncrementalStyleSheetParserTest
+{
+  private IncrementalStyleSheetParser _parser;
+  private File _file;
+
+  @BeforeMethod
+  public void setUp()
+    throws Exception
+  {
+    _parser = new IncrementalStyleSheetParser();
+    _file = File.createTempFile( "incremental-test", ".less" );
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    FileUtils.deleteQuietly( _file );
+  }
+
+  @Test( dataProvider = "styleSheets", dataProviderClass = FixtureTestUtil.class )
+  public void sameTreeAsFullParseAfterEdits( final File file )
+    throws IOException
+  {
+    String content = FileUtils.readFileToString( file, "UTF-8" );
+    assertSameTreeAsFullParse( content );
+
+    final int middle = content.lastIndexOf( '\n', content.length() / 2 ) + 1;
+    content = content.substring( 0, middle ) + ".inserted {\n  color: red;\n}\n" + content.substring( middle );
+    assertSameTreeAsFullParse( content );
+
+    final int colon = content.indexOf( ':', content.length() / 3 );
+    if ( -1 != colon )
+    {
+      content = content.substring( 0, colon ) + " : " + content.substring( colon + 1 );
+      assertSameTreeAsFullParse( content );
+    }
+
+    final int lineStart = content.lastIndexOf( '\n', content.length() * 2 / 3 ) + 1;
+    final int lineEnd = content.indexOf( '\n', lineStart );
+    if ( -1 != lineEnd )
+    {
+      content = content.substring( 0, lineStart ) + content.substring( lineEnd + 1 );
+      assertSameTreeAsFullParse( content );
+    }
+
+    content = content + "\n.appended { color: blue; }\n";
+    assertSameTreeAsFullParse( content );
+  }
+
+  @Test
+  public void onlyEditedElementsParsed()
+    throws IOException
+  {
+    assertSameTreeAsFullParse( "@a: 1px;\n.a { width: @a; }\n.b { width: 2px; }\n.c { width: 3px; }\n" );
+    assertEquals( _parser.getFullParseCount(), 1 );
+
+    assertSameTreeAsFullParse( "@a: 1px;\n.a { width: @a; }\n.b {\n  width: 20px;\n}\n.c { width: 3px; }\n" );
+    assertSameTreeAsFullParse( "@a: 1px;\n.a { width: @a; }\n.c { width: 3px; }\n" );
+    assertSameTreeAsFullParse( "@b: 2px;\n@a: 1px;\n.a { width: @a; }\n.c { width: 3px; }\n" );
+    assertEquals( _parser.getFullParseCount(), 1 );
+    assertEquals( _parser.getIncrementalParseCount(), 3 );
+
+    final Tree tree = _parser.parseTree( new FileStyleSheetResource( _file ), null );
+    assertSame( _parser.parseTree( new FileStyleSheetResource( _file ), null ), tree );
+    assertEquals( _parser.getIncrementalParseCount(), 3 );
+  }
+
+  @Test
+  public void syntaxErrorsAndImportsParsedInFull()
+    throws IOException
+  {
+    assertSameTreeAsFullParse( ".a { width: 1px; }\n.b { width: 2px; }\n" );
+    assertSameTreeAsFullParse( ".a { width: 1px; }\n.b { width: 2px;\n" );
+    assertSameTreeAsFullParse( ".a { width: 1px; }\n.b { width: 2px; }\n" );
+    assertSameTreeAsFullParse( ".a { width: 1px; }\n@import \"b.less\";\n.b { width: 2px; }\n" );
+    assertEquals( _parser.getFullParseCount(), 4 );
+    assertEquals( _parser.getIncrementalParseCount(), 0 );
+  }
+
+  @Test
+  public void lexerErrorsParsedInFull()
+    throws IOException
+  {
+    final String content = "a{x:1;}\nb{y:2;}\nc{ /* k */ color: red; }";
+    assertSameTreeAsFullParse( content );
+
+    // The comment runs on into the following rule set
+    assertSameTreeAsFullParse( "a{x:1;}\nb{y:2;} /*\nc{ /* k */ color: red; }" );
+    assertSameTreeAsFullParse( content );
+    assertSameTreeAsFullParse( "a{x:1;}\nb{y:2;} \"\nc{ /* k */ color: red; }" );
+    assertSameTreeAsFullParse( content );
+    assertSameTreeAsFullParse( "a{x:1;}\nb{y:2; \u0001}\nc{ /* k */ color: red; }" );
+    assertEquals( _parser.getIncrementalParseCount(), 0 );
+    // The unmatched character is skipped without an error so the tree is kept and the next edit is incremental
+    assertSameTreeAsFullParse( content );
+    assertEquals( _parser.getIncrementalParseCount(), 1 );
+  }
+
+  @Test
+  public void errorsCorrectedByLaterEdits()
+    throws IOException
+  {
+    assertSameTreeAsFullParse( ".a { width: 1px; }\n.b { width: 2px; }\n.c { width: 3px; }\n" );
+    assertSameTreeAsFullParse( ".a { width: 1px; }\n.b { width 2px; }\n.c { width: 3px; }\n" );
+    assertSameTreeAsFullParse( ".a { width: 1px; }\n.b { width: 2px; }\n.c { width: 3px; }\n" );
+    assertSameTreeAsFullParse( ".a { width: 1px; }\n.b { width: 2px; }\n.c { width: 3px; }\n}\n" );
+    assertSameTreeAsFullParse( ".a { width: 1px; }\n.b { width: 2px; }\n.c { width: 3px; }\n" );
+    assertEquals( _parser.getIncrementalParseCount(), 0 );
+    assertSameTreeAsFullParse( ".a { width: 1px; }\n.b { width: 20px; }\n.c { width: 3px; }\n" );
+    assertEquals( _parser.getIncrementalParseCount(), 1 );
+  }
+
+  private void assertSameTreeAsFullParse( final String content )
+    throws IOException
+  {
+    FileUtils.writeStringToFile( _file, content, "UTF-8" );
+    final StyleSheetResource resource = new FileStyleSheetResource( _file );
+    final AbstractErrorHandler expectedErrors = new AbstractErrorHandler();
+    final Tree expected = new LessCssStyleSheetParser().parseTree( resource, expectedErrors );
+    final AbstractErrorHandler errors = new AbstractErrorHandler();
+    final Tree actual = _parser.parseTree( resource, errors );
+    assertEquals( errors.getErrorCount(), expectedErrors.getErrorCount(), content );
+    if ( null == expected )
+    {
+      assertNull( actual, content );
+    }
+    else
+    {
+      assertNotNull( actual, content );
+      assertEquals( toString( actual ), toString( expected ), content );
+    }
+  }
+
+  /**
+   * Like {@link Tree#toStringTree()} but including the type and position of each node.
+   */
+  private static String toString( final Tree tree )
+  {
+    final StringBuilder buf = new StringBuilder();
+    buf.append( '(' ).append( tree.getType() ).append( ' ' ).append( tree.getText() );
+    buf.append( '@' ).append( tree.getLine() ).append( ':' ).append( tree.getCharPositionInLine() );
+    for ( int i = 0; i < tree.getChildCount(); i++ )
+    {
+      buf.append( ' ' ).append( toString( tree.getChild( i ) ) );
+    }
+    return buf.append( ')' ).toString();
+  }
+}
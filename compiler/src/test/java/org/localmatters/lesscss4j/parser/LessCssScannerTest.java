@@ -0,0 +1,112 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.antlr.runtime.ANTLRFileStream;
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.TokenSource;
+import org.localmatters.lesscss4j.FixtureTestUtil;
+import org.localmatters.lesscss4j.parser.antlr.LessCssLexer;
+import org.localmatters.lesscss4j.parser.antlr.LessCssParser;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class LessCssScannerTest
+{
+  @Test( dataProvider = "styleSheets", dataProviderClass = FixtureTestUtil.class )
+  public void sameTokensAsLexer( final File file )
+    throws IOException
+  {
+    final String expected = toString( new LessCssLexer( new ANTLRFileStream( file.getPath(), "UTF-8" ) ) );
+    assertEquals( toString( new LessCssScanner( new ANTLRFileStream( file.getPath(), "UTF-8" ) ) ), expected );
+  }
+
+  @DataProvider( name = "tokens" )
+  public Object[][] tokens()
+  {
+    return new Object[][]{
+      { "font-face {", "FONT_FACE[0,8 1:0] WS[9,9 1:9] LBRACE[10,10 1:10]" },
+      { "font-face", "IDENT[0,8 1:0]" },
+      { "\\70 age;", "IDENT[0,2 1:0] WS[3,3 1:3] IDENT[4,6 1:4] SEMI[7,7 1:7]" },
+      { "\\page;", "PAGE_SYM[0,4 1:0] SEMI[5,5 1:5]" },
+      { "\\000050age;", "PAGE_SYM[0,9 1:0] SEMI[10,10 1:10]" },
+      { "color: rgba( 1, -2, 3%, .5 );", "IDENT[0,4 1:0] COLON[5,5 1:5] WS[6,6 1:6] RGB_COLOR[7,27 1:7] SEMI[28,28 1:28]" },
+      { "rgba;", "IDENT[0,3 1:0] SEMI[4,4 1:4]" },
+      { "url( a b )\nurl(c", "URI[0,9 1:0] WS[10,10 1:10] INVALID[11,15 2:0]" },
+      { "-webkit-keyframes -moz-keyframes", "KEYFRAMES[0,16 1:0] WS[17,17 1:17] IDENT[18,31 1:18]" },
+      { "1.5em .5% 2.x", "NUMBER[0,4 1:0] WS[5,5 1:5] NUMBER[6,8 1:6] WS[9,9 1:9] NUMBER[10,12 1:10]" },
+      { "a/* b\n*/c//d\r\n-->", "IDENT[0,0 1:0] COMMENT[1,7 1:1 hidden] IDENT[8,8 2:2] COMMENT[9,13 2:3 hidden] CDC[14,16 3:0 hidden]" },
+      { "'a\n\"b\"", "INVALID[0,1 1:0] WS[2,2 1:2] STRING[3,5 2:0]" },
+      { "! IMPORTANT", "IMPORTANT_SYM[0,10 1:0]" },
+    };
+  }
+
+  @Test( dataProvider = "tokens" )
+  public void scan( final String input, final String expected )
+  {
+    assertEquals( toString( new LessCssScanner( new ANTLRStringStream( input ) ) ), expected );
+    assertEquals( toString( new LessCssLexer( new ANTLRStringStream( input ) ) ), expected );
+  }
+
+  @Test
+  public void invalidCharactersSkipped()
+  {
+    final List<String> errors = new ArrayList<>();
+    final CharStream input = new ANTLRStringStream( "a `b\n#;" );
+    final LessCssScanner scanner = new LessCssScanner( input )
+    {
+      @Override
+      protected void emitErrorMessage( final String message )
+      {
+        errors.add( message );
+      }
+    };
+    assertEquals( toString( scanner ), "IDENT[0,0 1:0] WS[1,1 1:1] IDENT[3,3 1:3] WS[4,4 1:4] SEMI[6,6 2:1]" );
+    assertEquals( errors.size(), 2 );
+    assertEquals( errors.get( 0 ), "line 1:2 no viable alternative at character '`'" );
+    assertTrue( errors.get( 1 ).startsWith( "line 2:1 " ), errors.get( 1 ) );
+  }
+
+  private static String toString( final TokenSource tokens )
+  {
+    final StringBuilder buf = new StringBuilder();
+    for ( Token token = tokens.nextToken(); Token.EOF != token.getType(); token = tokens.nextToken() )
+    {
+      final CommonToken commonToken = (CommonToken) token;
+      if ( buf.length() > 0 )
+      {
+        buf.append( ' ' );
+      }
+      buf.append( LessCssParser.tokenNames[ token.getType() ] );
+      buf.append( '[' ).append( commonToken.getStartIndex() ).append( ',' ).append( commonToken.getStopIndex() );
+      buf.append( ' ' ).append( token.getLine() ).append( ':' ).append( token.getCharPositionInLine() );
+      if ( Token.HIDDEN_CHANNEL == token.getChannel() )
+      {
+        buf.append( " hidden" );
+      }
+      buf.append( ']' );
+    }
+    return buf.toString();
+  }
+}
@@ -15,7 +15,20 @@
 */
 package org.localmatters.lesscss4j.parser;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.tree.Tree;
+import org.apache.commons.io.FileUtils;
+import org.localmatters.lesscss4j.error.AbstractErrorHandler;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import static org.testng.Assert.*;
@@ -67,4 +80,142 @@ public class LessCssStyleSheetParserTest
     assertEquals( null, _parser.parseCharset( " " ) );
     assertEquals( null, _parser.parseCharset( "" ) );
   }
+
+  @Test
+  public void CreateCharStreamFromFileContent()
+    throws Exception
+  {
+    final File file = new File( getClass().getClassLoader().getResource( "less/mixins.less" ).toURI() );
+    final CharStream stream = _parser.createCharStream( new FileStyleSheetResource( file ) );
+    final CharStream expected = _parser.createANTLRInputStream( FileUtils.openInputStream( file ) );
+    assertEquals( stream.size(), expected.size() );
+    assertEquals( stream.substring( 0, stream.size() - 1 ), expected.substring( 0, expected.size() - 1 ) );
+  }
+
+  @Test
+  public void CreateANTLRStringStreamHonoursCharset()
+    throws IOException
+  {
+    final String css = "@charset 'ISO-8859-1';\n.a { content: \"\u00e9\"; }";
+    final byte[] content = css.getBytes( "ISO-8859-1" );
+    final CharStream stream = _parser.createANTLRStringStream( ByteBuffer.wrap( content ) );
+    assertEquals( stream.substring( 0, stream.size() - 1 ), css );
+    assertEquals( stream.substring( 0, stream.size() - 1 ),
+                  _parser.createANTLRInputStream( new ByteArrayInputStream( content ) ).substring( 0, css.length() - 1 ) );
+  }
+
+  @Test
+  public void CreateANTLRStringStreamUsesDefaultEncoding()
+    throws IOException
+  {
+    final String css = ".a { content: \"\u00e9\u4e2d\"; }";
+    final CharStream stream = _parser.createANTLRStringStream( ByteBuffer.wrap( css.getBytes( "UTF-8" ) ) );
+    assertEquals( stream.size(), css.length() );
+    assertEquals( stream.substring( 0, stream.size() - 1 ), css );
+  }
+
+  @Test
+  public void ReusedParserStartsWithoutErrors()
+    throws IOException
+  {
+    final AbstractErrorHandler errors = new AbstractErrorHandler();
+    assertNull( parseTree( ".a { b }", errors ) );
+    assertTrue( errors.getErrorCount() > 0 );
+
+    final AbstractErrorHandler nextErrors = new AbstractErrorHandler();
+    final Tree tree = parseTree( ".a { b: c; }", nextErrors );
+    assertNotNull( tree );
+    assertEquals( nextErrors.getErrorCount(), 0 );
+    assertEquals( tree.toStringTree(), parseTree( ".a { b: c; }", null ).toStringTree() );
+  }
+
+  @Test
+  public void ParsesOnManyThreads()
+    throws Exception
+  {
+    final String expected = parseTree( ".a { b: c; }\n.d { e: f; }\n", null ).toStringTree();
+    final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+    try
+    {
+      final List<Future<String>> results = new ArrayList<>();
+      for ( int i = 0; i < 200; i++ )
+      {
+        results.add( executor.submit( new Callable<String>()
+        {
+          @Override
+          public String call()
+            throws Exception
+          {
+            return parseTree( ".a { b: c; }\n.d { e: f; }\n", null ).toStringTree();
+          }
+        } ) );
+      }
+      for ( final Future<String> result : results )
+      {
+        assertEquals( result.get(), expected );
+      }
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void ContextIsReused()
+  {
+    final LessCssStyleSheetParser.ParserContext context = _parser.acquireContext();
+    _parser.releaseContext( context );
+    assertSame( _parser.acquireContext(), context );
+  }
+
+  @Test
+  public void ReentrantParseUsesNewContext()
+    throws IOException
+  {
+    final LessCssStyleSheetParser.ParserContext context = _parser.acquireContext();
+    _parser.releaseContext( context );
+
+    final List<Tree> nestedTrees = new ArrayList<>();
+    final AbstractErrorHandler errors = new AbstractErrorHandler()
+    {
+      @Override
+      public void handleError( final String message, final Throwable exception )
+      {
+        super.handleError( message, exception );
+        final LessCssStyleSheetParser.ParserContext nested = _parser.acquireContext();
+        assertNotSame( nested, context, "The context of the outer stylesheet is in use" );
+        _parser.releaseContext( nested );
+        try
+        {
+          // Parsing from the error handler parses while the context of the outer stylesheet is in use
+          nestedTrees.add( parseTree( ".a { b: c; }", null ) );
+        }
+        catch ( final IOException ioe )
+        {
+          throw new IllegalStateException( ioe );
+        }
+      }
+    };
+    assertNull( parseTree( ".a { b }", errors ) );
+    assertTrue( errors.getErrorCount() > 0 );
+    assertFalse( nestedTrees.isEmpty() );
+    for ( final Tree tree : nestedTrees )
+    {
+      assertNotNull( tree );
+    }
+
+    // The outer stylesheet reused the context and the nested stylesheet used a new one, both returned to the parser
+    final LessCssStyleSheetParser.ParserContext first = _parser.acquireContext();
+    final LessCssStyleSheetParser.ParserContext second = _parser.acquireContext();
+    assertNotSame( first, second );
+    assertTrue( context == first || context == second );
+  }
+
+  private Tree parseTree( final String css, final AbstractErrorHandler errors )
+    throws IOException
+  {
+    final byte[] content = css.getBytes( "UTF-8" );
+    return _parser.parseTree( new InputStreamStyleSheetResource( new ByteArrayInputStream( content ) ), errors );
+  }
 }
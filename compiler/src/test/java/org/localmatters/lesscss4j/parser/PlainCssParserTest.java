@@ -0,0 +1,138 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.localmatters.lesscss4j.FixtureTestUtil;
+import org.localmatters.lesscss4j.compile.DefaultLessCssCompilerFactory;
+import org.localmatters.lesscss4j.model.PlainCss;
+import org.localmatters.lesscss4j.model.StyleSheet;
+import org.localmatters.lesscss4j.output.PrettyPrintOptions;
+import org.localmatters.lesscss4j.output.StyleSheetWriterImpl;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class PlainCssParserTest
+{
+  @Test
+  public void plainCssWrittenAsCompiled()
+    throws IOException
+  {
+    final PlainCss css = new PlainCssParser().parse( readResource( "less/css.less" ) );
+    assertNotNull( css );
+    assertEquals( write( css, true ).replaceAll( "[ \n\t]+", " " ),
+                  readResource( "css/css.css" ).replaceAll( "[ \n\t]+", " " ) );
+  }
+
+  @Test
+  public void minified()
+    throws IOException
+  {
+    final PlainCss css =
+      new PlainCssParser().parse( "/* c */ a , b > i { color : red ; margin: 0 1px }\n@media print { p { x: y } }" );
+    assertNotNull( css );
+    assertEquals( write( css, false ), "a,b > i{color:red;margin:0 1px;}@media print{p{x:y;}}" );
+  }
+
+  @Test
+  public void lessConstructsRejected()
+  {
+    final PlainCssParser parser = new PlainCssParser();
+    assertNull( parser.parse( "@color: red;" ) );
+    assertNull( parser.parse( "a { color: @color; }" ) );
+    assertNull( parser.parse( "a { .mixin; }" ) );
+    assertNull( parser.parse( ".mixin(@a: 1) { width: @a; }" ) );
+    assertNull( parser.parse( "a { b { color: red; } }" ) );
+    assertNull( parser.parse( "a { &:hover { color: red; } }" ) );
+    assertNull( parser.parse( "// comment\na { color: red; }" ) );
+    assertNull( parser.parse( "a { width: ~\"calc(1px)\"; }" ) );
+    assertNull( parser.parse( "@import \"other.css\";" ) );
+    assertNull( parser.parse( "@charset \"UTF-8\";" ) );
+    assertNull( parser.parse( "a { color: red; " ) );
+    assertNull( parser.parse( "/* unclosed" ) );
+  }
+
+  @Test
+  public void importPassedThrough()
+    throws IOException
+  {
+    final URL url = getClass().getClassLoader().getResource( "less/import.less" );
+    assertNotNull( url );
+    final String expected =
+      FixtureTestUtil.compile( new DefaultLessCssCompilerFactory(), new UrlStyleSheetResource( url ), null );
+
+    final int[] passedThrough = new int[ 1 ];
+    final DefaultLessCssCompilerFactory factory = new DefaultLessCssCompilerFactory()
+    {
+      @Override
+      protected PlainCssParser createPlainCssParser()
+      {
+        return new PlainCssParser()
+        {
+          @Override
+          public PlainCss parse( final String source )
+          {
+            final PlainCss css = super.parse( source );
+            if ( null != css )
+            {
+              passedThrough[ 0 ]++;
+            }
+            return css;
+          }
+        };
+      }
+    };
+    factory.setPlainCssPassThroughEnabled( true );
+    assertEquals( FixtureTestUtil.compile( factory, new UrlStyleSheetResource( url ), null ), expected );
+    assertTrue( passedThrough[ 0 ] > 0 );
+  }
+
+  private String write( final PlainCss css, final boolean prettyPrint )
+    throws IOException
+  {
+    final StyleSheet styleSheet = new StyleSheet();
+    styleSheet.addBodyElement( css );
+
+    final PrettyPrintOptions prettyPrintOptions = new PrettyPrintOptions();
+    prettyPrintOptions.setSingleDeclarationOnOneLine( true );
+    prettyPrintOptions.setLineBetweenRuleSets( false );
+    prettyPrintOptions.setOpeningBraceOnNewLine( false );
+    prettyPrintOptions.setIndentSize( 2 );
+
+    final StyleSheetWriterImpl writer = new StyleSheetWriterImpl();
+    writer.setPrettyPrintEnabled( prettyPrint );
+    writer.setPrettyPrintOptions( prettyPrintOptions );
+    try ( final ByteArrayOutputStream output = new ByteArrayOutputStream() )
+    {
+      writer.write( output, styleSheet, null );
+      return output.toString( "UTF-8" );
+    }
+  }
+
+  private String readResource( final String name )
+    throws IOException
+  {
+    try ( final InputStream input = getClass().getClassLoader().getResourceAsStream( name ) )
+    {
+      assertNotNull( input, "Unable to open " + name );
+      return IOUtils.toString( input, "UTF-8" );
+    }
+  }
+}
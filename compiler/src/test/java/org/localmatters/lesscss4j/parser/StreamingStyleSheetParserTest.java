@@ -0,0 +1,101 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import org.localmatters.lesscss4j.error.AbstractErrorHandler;
+import org.localmatters.lesscss4j.error.ErrorHandler;
+import org.localmatters.lesscss4j.error.WriterErrorHandler;
+import org.localmatters.lesscss4j.model.RuleSet;
+import org.localmatters.lesscss4j.model.StyleSheet;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class StreamingStyleSheetParserTest
+{
+  @Test
+  public void elementsPositionedAsFullParse()
+    throws IOException
+  {
+    final StringBuilder content = new StringBuilder( "@charset \"UTF-8\";\n@import \"a.css\";\n" );
+    for ( int i = 0; i < 5000; i++ )
+    {
+      content.append( ".rule" ).append( i ).append( " {\n  width: " ).append( i ).append( "px; /* comment */\n}\n" );
+    }
+    final StyleSheet expected = parse( new LessCssStyleSheetParser(), content.toString(), new AbstractErrorHandler() );
+    final StyleSheet actual = parse( new StreamingStyleSheetParser(), content.toString(), new AbstractErrorHandler() );
+    assertNotNull( expected );
+    assertNotNull( actual );
+    assertEquals( actual.getCharset(), expected.getCharset() );
+    assertEquals( actual.getImports(), expected.getImports() );
+    assertEquals( actual.getBodyElements().size(), 5000 );
+    for ( int i = 0; i < 5000; i++ )
+    {
+      final RuleSet actualRuleSet = (RuleSet) actual.getBodyElements().get( i );
+      final RuleSet expectedRuleSet = (RuleSet) expected.getBodyElements().get( i );
+      assertEquals( actualRuleSet.toString(), expectedRuleSet.toString() );
+      assertEquals( actualRuleSet.getLine(), expectedRuleSet.getLine() );
+      assertEquals( actualRuleSet.getChar(), expectedRuleSet.getChar() );
+    }
+    assertEquals( actual.getLine(), expected.getLine() );
+    assertEquals( actual.getChar(), expected.getChar() );
+  }
+
+  @Test
+  public void syntaxErrorsReported()
+    throws IOException
+  {
+    final AbstractErrorHandler errors = new AbstractErrorHandler();
+    final String content = ".a { b: c; }\n.d { e }\n.f { g: h; }\n.i { j }\n";
+    assertNull( parse( new StreamingStyleSheetParser(), content, errors ) );
+    final AbstractErrorHandler expectedErrors = new AbstractErrorHandler();
+    assertNull( parse( new LessCssStyleSheetParser(), content, expectedErrors ) );
+    assertEquals( errors.getErrorCount(), expectedErrors.getErrorCount() );
+  }
+
+  @Test
+  public void buildErrorsBeforeSyntaxErrorDropped()
+    throws IOException
+  {
+    final String content = "@import \"missing.less\";\n.a { b: c; }\n.d { e }\n";
+    final StringWriter messages = new StringWriter();
+    assertNull( parse( new StreamingStyleSheetParser(), content, createErrorHandler( messages ) ) );
+    final StringWriter expectedMessages = new StringWriter();
+    assertNull( parse( new LessCssStyleSheetParser(), content, createErrorHandler( expectedMessages ) ) );
+    assertEquals( messages.toString(), expectedMessages.toString() );
+    assertFalse( messages.toString().contains( "missing.less" ), messages.toString() );
+  }
+
+  private StyleSheet parse( final LessCssStyleSheetParser parser,
+                            final String content,
+                            final ErrorHandler errors )
+    throws IOException
+  {
+    final byte[] bytes = content.getBytes( "UTF-8" );
+    return parser.parse( new InputStreamStyleSheetResource( new ByteArrayInputStream( bytes ) ), errors );
+  }
+
+  private WriterErrorHandler createErrorHandler( final StringWriter writer )
+  {
+    final WriterErrorHandler errorHandler = new WriterErrorHandler();
+    errorHandler.setLogStackTrace( false );
+    errorHandler.setWriter( new PrintWriter( writer, true ) );
+    return errorHandler;
+  }
+}
\ No newline at end of file
@@ -18,12 +18,15 @@ package org.localmatters.lesscss4j.servlet;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import javax.annotation.Nonnull;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -34,6 +37,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.localmatters.lesscss4j.util.Hex;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import static org.mockito.Mockito.*;
@@ -87,6 +91,12 @@ public class LessCssServletTest
     }
   }
 
+  @AfterMethod
+  protected void tearDown()
+  {
+    _servlet.destroy();
+  }
+
   @Test
   public void emptyCacheValidResource()
     throws IOException, ServletException
@@ -167,7 +177,7 @@ public class LessCssServletTest
 
     emptyCacheValidResource();
 
-    _systemMillis = _systemMillis - 20;
+    _systemMillis = _systemMillis + 20;
 
     when( _request.getPathInfo() ).thenReturn( _path );
     when( _request.getMethod() ).thenReturn( "GET" );
@@ -200,7 +210,7 @@ public class LessCssServletTest
 
     emptyCacheValidResource();
 
-    _systemMillis = _systemMillis - 20;
+    _systemMillis = _systemMillis + 20;
 
     when( _request.getPathInfo() ).thenReturn( _path );
     when( _request.getMethod() ).thenReturn( "GET" );
@@ -224,6 +234,7 @@ public class LessCssServletTest
     _servlet.service( _request, _response );
 
     assertEquals( responseStream.asString(), _cssStr );
+    assertEquals( _servlet.getStatistics().getRefreshCount(), 1 );
 }
 
   @Test
@@ -265,6 +276,57 @@ public class LessCssServletTest
     _servlet.service( _request, _response );
 }
 
+  @Test
+  public void statistics()
+    throws IOException, ServletException
+  {
+    cachedResource();
+
+    final LessCssServletStatistics statistics = _servlet.getStatistics();
+    assertEquals( statistics.getMissCount(), 1 );
+    assertEquals( statistics.getHitCount(), 1 );
+    assertEquals( statistics.getRefreshCount(), 0 );
+    assertEquals( statistics.getFailedCompileCount(), 0 );
+    assertEquals( statistics.getEntryCount(), 1 );
+    assertEquals( statistics.getCachedBytes(), _cssBytes.length );
+    assertEquals( statistics.getLastCompileTimes().get( _path ), Long.valueOf( _systemMillis ) );
+    assertTrue( statistics.getCompileLatencyMax() >= statistics.getCompileLatency50thPercentile() );
+
+    assertTrue( statistics.evict( _path ) );
+    assertFalse( statistics.evict( _path ) );
+    assertEquals( statistics.getEntryCount(), 0 );
+  }
+
+  @Test
+  public void mbeanRegistration()
+    throws Exception
+  {
+    _servlet.init( _servletConfig );
+
+    final ObjectName objectName = _servlet.getRegisteredObjectName();
+    assertNotNull( objectName );
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    assertTrue( server.isRegistered( objectName ) );
+    assertEquals( server.getAttribute( objectName, "EntryCount" ), 0 );
+
+    // Re-initializing replaces the existing registration
+    _servlet.init( _servletConfig );
+    assertTrue( server.isRegistered( _servlet.getRegisteredObjectName() ) );
+
+    _servlet.destroy();
+    assertNull( _servlet.getRegisteredObjectName() );
+    assertFalse( server.isRegistered( objectName ) );
+  }
+
+  @Test
+  public void mbeanDisabled()
+    throws Exception
+  {
+    _servletConfig._initParameters.put( LessCssServlet.JMX_ENABLED, "false" );
+    _servlet.init( _servletConfig );
+    assertNull( _servlet.getRegisteredObjectName() );
+  }
+
   @Test
   public void NullPath()
     throws IOException, ServletException
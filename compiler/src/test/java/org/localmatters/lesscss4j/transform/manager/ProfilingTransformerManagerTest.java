@@ -0,0 +1,101 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.transform.manager;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import org.apache.commons.io.output.NullOutputStream;
+import org.localmatters.lesscss4j.compile.DefaultLessCssCompilerFactory;
+import org.localmatters.lesscss4j.compile.LessCssCompilerImpl;
+import org.localmatters.lesscss4j.parser.UrlStyleSheetResource;
+import org.localmatters.lesscss4j.transform.RuleSetTransformer;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class ProfilingTransformerManagerTest
+{
+  @Test
+  public void mixinsAndFunctionsRecorded()
+    throws IOException
+  {
+    final LessCssCompilerImpl compiler = (LessCssCompilerImpl) new DefaultLessCssCompilerFactory().create();
+    final ProfilingTransformerManager profiler = new ProfilingTransformerManager( compiler.getTransformerManager() );
+    compiler.setTransformerManager( profiler );
+
+    compile( compiler, "less/mixins-args.less" );
+    compile( compiler, "less/functions.less" );
+
+    final List<ProfilingTransformerManager.Entry> transformers = profiler.getTransformerEntries();
+    assertNotNull( find( transformers, RuleSetTransformer.class.getName() ) );
+    assertSorted( transformers );
+    for ( final ProfilingTransformerManager.Entry entry : transformers )
+    {
+      assertTrue( entry.getSelfNanos() >= 0 && entry.getSelfNanos() <= entry.getTotalNanos(), entry.toString() );
+    }
+
+    final List<ProfilingTransformerManager.Entry> mixins = profiler.getMixinEntries();
+    final ProfilingTransformerManager.Entry mixin = find( mixins, ".mixin" );
+    assertNotNull( mixin );
+    assertEquals( mixin.getCount(), 6 );
+    assertNotNull( find( mixins, ".mixiny" ) );
+    assertSorted( mixins );
+
+    final List<ProfilingTransformerManager.Entry> functions = profiler.getFunctionEntries();
+    assertEquals( find( functions, "spin" ).getCount(), 2 );
+    assertEquals( find( functions, "darken" ).getCount(), 1 );
+    assertSorted( functions );
+
+    final String report = profiler.getReport();
+    assertTrue( report.contains( "Transformers" ) );
+    assertTrue( report.contains( ".mixiny" ) );
+    assertTrue( report.contains( "darken" ) );
+
+    profiler.reset();
+    assertTrue( profiler.getTransformerEntries().isEmpty() );
+    assertTrue( profiler.getMixinEntries().isEmpty() );
+    assertTrue( profiler.getFunctionEntries().isEmpty() );
+  }
+
+  private void compile( final LessCssCompilerImpl compiler, final String lessFile )
+    throws IOException
+  {
+    final URL url = getClass().getClassLoader().getResource( lessFile );
+    assertNotNull( url );
+    compiler.compile( new UrlStyleSheetResource( url ), new NullOutputStream(), null );
+  }
+
+  private ProfilingTransformerManager.Entry find( final List<ProfilingTransformerManager.Entry> entries,
+                                                  final String name )
+  {
+    for ( final ProfilingTransformerManager.Entry entry : entries )
+    {
+      if ( entry.getName().equals( name ) )
+      {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  private void assertSorted( final List<ProfilingTransformerManager.Entry> entries )
+  {
+    for ( int i = 1; i < entries.size(); i++ )
+    {
+      assertTrue( entries.get( i - 1 ).getTotalNanos() >= entries.get( i ).getTotalNanos() );
+    }
+  }
+}
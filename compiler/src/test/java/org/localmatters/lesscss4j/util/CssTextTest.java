@@ -0,0 +1,133 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.antlr.runtime.ANTLRFileStream;
+import org.antlr.runtime.Token;
+import org.localmatters.lesscss4j.FixtureTestUtil;
+import org.localmatters.lesscss4j.parser.antlr.LessCssLexer;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ * Checks the scanners give the same results as the regular expressions they replaced, for the text of every token in
+ * the test fixtures and for random text made of the characters the regular expressions are sensitive to.
+ */
+public class CssTextTest
+{
+  private static final String COLOR_COMPONENT = "(-?\\d+(\\.\\d+)?||\\d+%?)";
+  private static final Pattern COLOR_FUNCTION = Pattern.compile(
+    "(?i)(?:rgb|hsl)a?\\s*\\(\\s*" + COLOR_COMPONENT + "\\s*,\\s*" + COLOR_COMPONENT + "\\s*,\\s*" +
+    COLOR_COMPONENT + "(?:\\s*,\\s*" + COLOR_COMPONENT + ")?\\s*\\)" );
+  private static final Pattern IMPORT_PATH =
+    Pattern.compile( "(?i:u\\s*r\\s*l\\(\\s*['\"]?|['\"])(.*?)(?:['\"]?\\s*\\)|['\"])" );
+  private static final String CHARSET_REGEX = "['\"]\\s*(\\S*)\\s*['\"]";
+  private static final Pattern IE_ALPHA_FILTER =
+    Pattern.compile( "(?i)['\"]progid:DXImageTransform\\.Microsoft\\.(Alpha\\(.*\\))['\"]" );
+
+  @DataProvider( name = "fixtureText" )
+  public Object[][] fixtureText()
+    throws Exception
+  {
+    final Set<String> texts = new LinkedHashSet<>();
+    for ( final File file : FixtureTestUtil.listStyleSheets() )
+    {
+      final LessCssLexer lexer = new LessCssLexer( new ANTLRFileStream( file.getPath(), FixtureTestUtil.ENCODING ) );
+      for ( Token token = lexer.nextToken(); Token.EOF != token.getType(); token = lexer.nextToken() )
+      {
+        texts.add( token.getText() );
+      }
+    }
+    final List<Object[]> data = new ArrayList<>();
+    for ( final String text : texts )
+    {
+      data.add( new Object[]{ text } );
+    }
+    return data.toArray( new Object[ data.size() ][] );
+  }
+
+  @Test( dataProvider = "fixtureText" )
+  public void fixtureTextMatchesRegex( final String text )
+  {
+    assertMatchesRegex( text );
+  }
+
+  @Test
+  public void examples()
+  {
+    assertEquals( CssText.parseColorFunction( "rgba( 10%, 20 ,30,0.5 )" ), new String[]{ "10%", "20", "30", "0.5" } );
+    assertEquals( CssText.parseColorFunction( "HSL(120,50%,50%)" ), new String[]{ "120", "50%", "50%", null } );
+    assertNull( CssText.parseColorFunction( "rgb(1,2)" ) );
+    assertNull( CssText.parseColorFunction( "rgb(-1%,2,3)" ) );
+    assertEquals( CssText.parseImportPath( "url( 'a.css' )" ), "a.css" );
+    assertEquals( CssText.parseImportPath( "U R L(b.less)" ), "b.less" );
+    assertEquals( CssText.parseImportPath( "\"c.less\"" ), "c.less" );
+    assertNull( CssText.parseImportPath( "d.less" ) );
+    assertEquals( CssText.unquoteCharset( "\" UTF-8 \"" ), "UTF-8" );
+    assertEquals( CssText.unquoteCharset( "'ISO-8859-1'" ), "ISO-8859-1" );
+    assertEquals( CssText.parseIEAlphaFilter( "\"progid:DXImageTransform.Microsoft.Alpha(Opacity=30)\"" ),
+                  "Alpha(Opacity=30)" );
+    assertNull( CssText.parseIEAlphaFilter( "\"progid:DXImageTransform.Microsoft.AlphaImageLoader(src='a')\"" ) );
+  }
+
+  @Test
+  public void randomTextMatchesRegex()
+  {
+    final String[] fragments = {
+      "rgb", "RGBa", "hsl", "hsla", "url", "U", "r", "l", "(", ")", ",", " ", "\t", "\n", "\u2028", "'", "\"", "-",
+      ".", "%", "0", "12", "3.5", "a", "x", "/", "progid:DXImageTransform.Microsoft.", "Alpha(", "ALPHA(", "=",
+      "\u0131"
+    };
+    final Random random = new Random( 42 );
+    for ( int i = 0; i < 200000; i++ )
+    {
+      final StringBuilder text = new StringBuilder();
+      for ( int j = random.nextInt( 12 ); j >= 0; j-- )
+      {
+        text.append( fragments[ random.nextInt( fragments.length ) ] );
+      }
+      assertMatchesRegex( text.toString() );
+    }
+  }
+
+  private void assertMatchesRegex( final String text )
+  {
+    final Matcher color = COLOR_FUNCTION.matcher( text );
+    final String[] expectedColor =
+      color.matches() ? new String[]{ color.group( 1 ), color.group( 3 ), color.group( 5 ), color.group( 7 ) } : null;
+    assertEquals( CssText.parseColorFunction( text ), expectedColor, "Color function: " + text );
+
+    final Matcher path = IMPORT_PATH.matcher( text );
+    assertEquals( CssText.parseImportPath( text ), path.matches() ? path.group( 1 ) : null, "Import: " + text );
+
+    assertEquals( CssText.unquoteCharset( text ), text.replaceFirst( CHARSET_REGEX, "$1" ), "Charset: " + text );
+
+    final Matcher alpha = IE_ALPHA_FILTER.matcher( text );
+    assertEquals( CssText.parseIEAlphaFilter( text ),
+                  alpha.matches() ? alpha.group( 1 ) : null,
+                  "Alpha filter: " + Arrays.toString( text.toCharArray() ) );
+  }
+}
@@ -0,0 +1,95 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.util;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CharStream;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class StringTableTest
+{
+  @BeforeMethod
+  public void setUp()
+  {
+    StringTable.bind( new StringTable() );
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    StringTable.bind( null );
+  }
+
+  @Test
+  public void sameCharactersShareInstance()
+  {
+    final String color = StringTable.intern( new String( "color" ) );
+    assertSame( StringTable.intern( new String( "color" ) ), color );
+    assertSame( StringTable.intern( "a color:".toCharArray(), 2, 7 ), color );
+    assertSame( StringTable.intern( new StringBuilder( "col" ).append( "or" ) ), color );
+  }
+
+  @Test
+  public void charactersInterned()
+  {
+    final char[] chars = "margin: 0".toCharArray();
+    final String margin = StringTable.intern( chars, 0, 6 );
+    assertEquals( margin, "margin" );
+    assertSame( StringTable.intern( chars, 0, 6 ), margin );
+    assertSame( StringTable.intern( "margin" ), margin );
+  }
+
+  @Test
+  public void consumedCharactersInterned()
+  {
+    final CharStream input = new ANTLRStringStream( "a color:" );
+    final String color = StringTable.intern( "color" );
+    input.seek( 7 );
+    assertSame( StringTable.intern( input, 5 ), color );
+    input.seek( 8 );
+    final String colon = StringTable.intern( input, 6 );
+    assertEquals( colon, "color:" );
+    assertSame( StringTable.intern( "color:".toCharArray(), 0, 6 ), colon );
+  }
+
+  @Test
+  public void longStringsNotInterned()
+  {
+    final StringBuilder builder = new StringBuilder();
+    for ( int i = 0; i < 100; i++ )
+    {
+      builder.append( 'a' );
+    }
+    final String string = builder.toString();
+    assertSame( StringTable.intern( string ), string );
+    assertNotSame( StringTable.intern( new String( string ) ), string );
+    assertEquals( StringTable.intern( builder ), string );
+    assertNotSame( StringTable.intern( builder ), StringTable.intern( builder ) );
+  }
+
+  @Test
+  public void stringsNotSharedWhenNoTableBound()
+  {
+    StringTable.bind( null );
+    final String color = new String( "color" );
+    assertSame( StringTable.intern( color ), color );
+    assertNotSame( StringTable.intern( new String( "color" ) ), color );
+    assertNotSame( StringTable.intern( "color".toCharArray(), 0, 5 ), StringTable.intern( "color".toCharArray(), 0, 5 ) );
+  }
+}
@@ -0,0 +1,43 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.jfr;
+
+import jdk.jfr.Event;
+import org.localmatters.lesscss4j.compile.CompileTracer;
+
+/**
+ * Base class of the events emitted for the operations of the compiler.  The event is the span of the operation so
+ * tracing an operation allocates nothing beyond the event.  Event fields are named for how they appear in recordings
+ * rather than following the field naming conventions of the project.
+ */
+abstract class CompilerEvent
+  extends Event
+  implements CompileTracer.Span
+{
+  public final void end( final String resource, final String name, final long size )
+  {
+    if ( shouldCommit() )
+    {
+      set( resource, name, size );
+      commit();
+    }
+  }
+
+  /**
+   * Populates the fields of the event.
+   */
+  abstract void set( String resource, String name, long size );
+}
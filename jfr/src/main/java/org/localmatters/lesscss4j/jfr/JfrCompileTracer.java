@@ -0,0 +1,80 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.jfr;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import jdk.jfr.EventType;
+import org.localmatters.lesscss4j.compile.CompileTracer;
+
+/**
+ * Emits a Java Flight Recorder event for each traced operation of the compiler.  The tracer is registered as a
+ * service so adding this module to the classpath is sufficient to enable the events, which can then be enabled and
+ * given thresholds in the JFR settings like any other event.  When an event is disabled no span is returned and no
+ * event is created.
+ */
+public class JfrCompileTracer
+  implements CompileTracer
+{
+  /**
+   * The type of the event of each operation, indexed by ordinal, checked before creating an event so that nothing is
+   * allocated while the event is disabled.
+   */
+  private static final EventType[] EVENT_TYPES = new EventType[ Operation.values().length ];
+
+  static
+  {
+    for ( final Operation operation : Operation.values() )
+    {
+      EVENT_TYPES[ operation.ordinal() ] = EventType.getEventType( newEvent( operation ).getClass() );
+    }
+  }
+
+  @Nullable
+  public Span start( @Nonnull final Operation operation )
+  {
+    if ( EVENT_TYPES[ operation.ordinal() ].isEnabled() )
+    {
+      final CompilerEvent event = newEvent( operation );
+      event.begin();
+      return event;
+    }
+    else
+    {
+      return null;
+    }
+  }
+
+  @Nonnull
+  private static CompilerEvent newEvent( @Nonnull final Operation operation )
+  {
+    switch ( operation )
+    {
+      case PARSE:
+        return new ParseEvent();
+      case IMPORT:
+        return new ImportEvent();
+      case MIXIN_EXPANSION:
+        return new MixinExpansionEvent();
+      case FUNCTION_CALL:
+        return new FunctionCallEvent();
+      case WRITE:
+        return new WriteEvent();
+      default:
+        throw new IllegalArgumentException( "Unknown operation " + operation );
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name( "org.localmatters.lesscss4j.Write" )
+@Label( "Write" )
+@Description( "Writing of the compiled stylesheet" )
+@Category( { "LESS CSS", "Compiler" } )
+@StackTrace( false )
+class WriteEvent
+  extends CompilerEvent
+{
+  @Label( "Resource" )
+  String resource;
+
+  @Label( "Bytes" )
+  @DataAmount( DataAmount.BYTES )
+  long bytes;
+
+  @Override
+  void set( final String resource, final String name, final long size )
+  {
+    this.resource = resource;
+    this.bytes = size;
+  }
+}
@@ -0,0 +1,110 @@
+/*
+   Copyright 2010-present Local Matters, Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.localmatters.lesscss4j.jfr;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.localmatters.lesscss4j.compile.CompileTracer;
+import org.localmatters.lesscss4j.compile.CompileTracing;
+import org.localmatters.lesscss4j.compile.DefaultLessCssCompilerFactory;
+import org.localmatters.lesscss4j.parser.FileStyleSheetResource;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class JfrCompileTracerTest
+{
+  @Test
+  public void tracerRegisteredAsService()
+  {
+    assertTrue( CompileTracing.getTracer() instanceof JfrCompileTracer );
+  }
+
+  @Test
+  public void noSpanWhenDisabled()
+  {
+    final JfrCompileTracer tracer = new JfrCompileTracer();
+    for ( final CompileTracer.Operation operation : CompileTracer.Operation.values() )
+    {
+      assertNull( tracer.start( operation ) );
+    }
+    try ( final Recording recording = new Recording() )
+    {
+      recording.enable( "org.localmatters.lesscss4j.Parse" ).withoutThreshold();
+      recording.disable( "org.localmatters.lesscss4j.Write" );
+      recording.start();
+      assertNotNull( tracer.start( CompileTracer.Operation.PARSE ) );
+      assertNull( tracer.start( CompileTracer.Operation.WRITE ) );
+    }
+  }
+
+  @Test
+  public void eventsRecorded()
+    throws IOException
+  {
+    final Path dir = Files.createTempDirectory( "lesscss4j-jfr" );
+    try
+    {
+      final Path main = dir.resolve( "main.less" );
+      Files.write( dir.resolve( "mixins.less" ),
+                   ".border (@width: 1px) {\n  border: @width solid black;\n}\n".getBytes( StandardCharsets.UTF_8 ) );
+      Files.write( main,
+                   ( "@import \"mixins.less\";\n" +
+                     ".a {\n  .border(2px);\n  color: darken(#fff, 10%);\n}\n" ).getBytes( StandardCharsets.UTF_8 ) );
+
+      final Path output = dir.resolve( "recording.jfr" );
+      try ( final Recording recording = new Recording() )
+      {
+        for ( final String name : new String[]{ "Parse", "Import", "MixinExpansion", "FunctionCall", "Write" } )
+        {
+          recording.enable( "org.localmatters.lesscss4j." + name ).withoutThreshold();
+        }
+        recording.start();
+        new DefaultLessCssCompilerFactory().create().
+          compile( new FileStyleSheetResource( main.toString() ), new NullOutputStream(), null );
+        recording.stop();
+        recording.dump( output );
+      }
+
+      final Map<String, RecordedEvent> events = new HashMap<>();
+      for ( final RecordedEvent event : RecordingFile.readAllEvents( output ) )
+      {
+        events.put( event.getEventType().getName().substring( "org.localmatters.lesscss4j.".length() ), event );
+      }
+
+      assertEquals( events.get( "Import" ).getString( "path" ), "mixins.less" );
+      assertTrue( events.get( "Import" ).getString( "resource" ).endsWith( "/mixins.less" ) );
+      assertEquals( events.get( "MixinExpansion" ).getString( "selector" ), ".border" );
+      assertEquals( events.get( "MixinExpansion" ).getLong( "declarations" ), 1 );
+      assertEquals( events.get( "FunctionCall" ).getString( "function" ), "darken" );
+      assertEquals( events.get( "FunctionCall" ).getLong( "arguments" ), 2 );
+      assertTrue( events.get( "Parse" ).getLong( "characters" ) > 0 );
+      assertTrue( events.get( "Write" ).getLong( "bytes" ) > 0 );
+    }
+    finally
+    {
+      FileUtils.deleteQuietly( dir.toFile() );
+    }
+  }
+}